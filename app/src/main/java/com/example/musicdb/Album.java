@@ -0,0 +1,7 @@
+package com.example.musicdb;
+
+/**
+ * A row of the Album table.
+ */
+public record Album(int albumId, String title, int releaseYear, int artistId) {
+}
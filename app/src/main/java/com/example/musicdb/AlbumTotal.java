@@ -0,0 +1,7 @@
+package com.example.musicdb;
+
+/**
+ * Song count and total duration (in seconds) of one album.
+ */
+public record AlbumTotal(int albumId, String title, int songCount, long totalDuration) {
+}
@@ -0,0 +1,7 @@
+package com.example.musicdb;
+
+/**
+ * A row of the Artist table.
+ */
+public record Artist(int artistId, String name, String genre, String biography) {
+}
@@ -0,0 +1,581 @@
+package com.example.musicdb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams artists, albums and songs from CSV or JSONL files into the database.
+ *
+ * Each file is read one record at a time and inserted through a single reused
+ * PreparedStatement with addBatch/executeBatch, committing every chunkSize rows,
+ * so memory use does not depend on the size of the input. Albums may name their
+ * artist and songs may name their album (plus artist); those references are
+ * resolved to IDs through bounded in-memory maps backed by a database lookup.
+ * Imports go to a single database; a sharded catalog (-Dmusicdb.shards) is rejected.
+ *
+ * CSV files need a header row. Recognised columns (JSONL keys):
+ *   artists: name, genre, biography
+ *   albums:  title, release_year, artist_id or artist
+ *   songs:   title, duration, track_number, album_id or album + artist
+ *
+ * Usage: java com.example.musicdb.BulkImporter [--batch N] [--chunk N] [--artists FILE] [--albums FILE] [--songs FILE]
+ */
+public class BulkImporter {
+    private static final String INSERT_ARTIST = "INSERT INTO Artist (name, genre, biography) VALUES (?, ?, ?)";
+    private static final String INSERT_ALBUM = "INSERT INTO Album (title, release_year, artist_id) VALUES (?, ?, ?)";
+    private static final String INSERT_SONG = "INSERT INTO Song (title, duration, track_number, album_id) VALUES (?, ?, ?, ?)";
+    private static final String FIND_ARTIST = "SELECT artist_id FROM Artist WHERE name = ? LIMIT 1";
+    private static final String FIND_ALBUM = "SELECT al.album_id FROM Album al "
+            + "JOIN Artist ar ON al.artist_id = ar.artist_id "
+            + "WHERE ar.name = ? AND al.title = ? LIMIT 1";
+
+    private static final int MAX_CACHED_KEYS = 100_000;
+    private static final int MAX_REPORTED_REJECTS = 20;
+    private static final long PROGRESS_INTERVAL_NANOS = 2_000_000_000L;
+
+    private final int batchSize;
+    private final int chunkSize;
+
+    // Bounded name -> ID maps; misses fall back to a query on the import connection
+    private final Map<String, Integer> artistIds = lruMap();
+    private final Map<String, Integer> albumIds = lruMap();
+
+    /**
+     * @param batchSize Rows sent per executeBatch call.
+     * @param chunkSize Rows committed per transaction (rounded up to a whole number of batches).
+     */
+    public BulkImporter(int batchSize, int chunkSize) {
+        if (batchSize < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Batch and chunk sizes must be positive");
+        }
+        this.batchSize = batchSize;
+        this.chunkSize = Math.max(chunkSize, batchSize);
+    }
+
+    public static void main(String[] args) {
+        int batch = 1000;
+        int chunk = 50_000;
+        Path artists = null;
+        Path albums = null;
+        Path songs = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch": batch = Integer.parseInt(args[++i]); break;
+                    case "--chunk": chunk = Integer.parseInt(args[++i]); break;
+                    case "--artists": artists = Paths.get(args[++i]); break;
+                    case "--albums": albums = Paths.get(args[++i]); break;
+                    case "--songs": songs = Paths.get(args[++i]); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println("Usage: java com.example.musicdb.BulkImporter [--batch N] [--chunk N] "
+                    + "[--artists FILE] [--albums FILE] [--songs FILE]");
+            return;
+        }
+
+        DatabaseManager.createTables();
+        BulkImporter importer = new BulkImporter(batch, chunk);
+        try {
+            // Parents first so that name references in the later files resolve
+            if (artists != null) {
+                System.out.println(importer.importArtists(artists));
+            }
+            if (albums != null) {
+                System.out.println(importer.importAlbums(albums));
+            }
+            if (songs != null) {
+                System.out.println(importer.importSongs(songs));
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("Error importing data: " + e.getMessage());
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+
+    public Result importArtists(Path file) throws IOException, SQLException {
+        return load("Artist", file, INSERT_ARTIST, (conn, row, ps) -> {
+            String name = row.get("name");
+            if (isBlank(name)) {
+                return "missing name";
+            }
+            ps.setString(1, name);
+            ps.setString(2, row.get("genre"));
+            ps.setString(3, row.get("biography"));
+            return null;
+        });
+    }
+
+    public Result importAlbums(Path file) throws IOException, SQLException {
+        return load("Album", file, INSERT_ALBUM, (conn, row, ps) -> {
+            String title = row.get("title");
+            if (isBlank(title)) {
+                return "missing title";
+            }
+            Integer artistId = parseInt(row.get("artist_id"));
+            if (artistId == null) {
+                artistId = resolveArtist(conn, row.get("artist"));
+                if (artistId == null) {
+                    return "unknown artist '" + row.get("artist") + "'";
+                }
+            }
+            ps.setString(1, title);
+            setIntOrNull(ps, 2, parseInt(row.get("release_year")));
+            ps.setInt(3, artistId);
+            return null;
+        });
+    }
+
+    public Result importSongs(Path file) throws IOException, SQLException {
+        return load("Song", file, INSERT_SONG, (conn, row, ps) -> {
+            String title = row.get("title");
+            if (isBlank(title)) {
+                return "missing title";
+            }
+            Integer albumId = parseInt(row.get("album_id"));
+            if (albumId == null) {
+                albumId = resolveAlbum(conn, row.get("artist"), row.get("album"));
+                if (albumId == null) {
+                    return "unknown album '" + row.get("album") + "' by '" + row.get("artist") + "'";
+                }
+            }
+            ps.setString(1, title);
+            setIntOrNull(ps, 2, parseInt(row.get("duration")));
+            setIntOrNull(ps, 3, parseInt(row.get("track_number")));
+            ps.setInt(4, albumId);
+            return null;
+        });
+    }
+
+    private Result load(String table, Path file, String insertSql, RowBinder binder)
+            throws IOException, SQLException {
+        if (DatabaseManager.shards() != null) {
+            throw new SQLException("Bulk import runs on a single database, not on shards");
+        }
+        try {
+            // In WAL mode this holds the writer thread for the whole import; readers keep running
+            return DatabaseManager.write(conn -> {
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    RecordReader records = isJsonLines(file) ? new JsonLinesReader(reader) : new CsvReader(reader);
+                    return load(conn, table, records, insertSql, binder);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Result load(Connection conn, String table, RecordReader records, String insertSql, RowBinder binder)
+            throws IOException, SQLException {
+        long start = System.nanoTime();
+        long lastReport = start;
+        long read = 0;
+        long inserted = 0;
+        long rejected = 0;
+        int pendingBatch = 0;
+        int pendingChunk = 0;
+
+        conn.setAutoCommit(false);
+        // Chunks commit as they go; the pool bumps the versions again when the import ends
+        TableVersions.changed(TableVersions.ALL);
+        try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
+            Map<String, String> row;
+            while ((row = records.next()) != null) {
+                read++;
+                String problem;
+                try {
+                    problem = binder.bind(conn, row, ps);
+                } catch (NumberFormatException e) {
+                    problem = "bad number " + e.getMessage();
+                }
+                if (problem != null) {
+                    if (++rejected <= MAX_REPORTED_REJECTS) {
+                        System.out.println(table + " record " + read + " skipped: " + problem);
+                    }
+                    continue;
+                }
+                ps.addBatch();
+                if (++pendingBatch == batchSize) {
+                    inserted += executeBatch(ps);
+                    pendingChunk += pendingBatch;
+                    pendingBatch = 0;
+                    if (pendingChunk >= chunkSize) {
+                        conn.commit();
+                        pendingChunk = 0;
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                        System.out.printf("%s: %,d rows inserted (%,.0f rows/sec)%n",
+                                table, inserted, inserted / ((now - start) / 1e9));
+                        lastReport = now;
+                    }
+                }
+            }
+            if (pendingBatch > 0) {
+                inserted += executeBatch(ps);
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            // A lookup during the import may have loaded part of it
+            TypeaheadIndex.clear();
+        }
+        return new Result(table, read, inserted, rejected, System.nanoTime() - start);
+    }
+
+    private static int executeBatch(PreparedStatement ps) throws SQLException {
+        int count = 0;
+        for (int updated : ps.executeBatch()) {
+            count += updated == Statement.SUCCESS_NO_INFO ? 1 : Math.max(updated, 0);
+        }
+        return count;
+    }
+
+    private Integer resolveArtist(Connection conn, String name) throws SQLException {
+        if (isBlank(name)) {
+            return null;
+        }
+        Integer id = artistIds.get(name);
+        if (id == null) {
+            try (PreparedStatement ps = conn.prepareStatement(FIND_ARTIST)) {
+                ps.setString(1, name);
+                id = firstInt(ps);
+            }
+            if (id != null) {
+                artistIds.put(name, id);
+            }
+        }
+        return id;
+    }
+
+    private Integer resolveAlbum(Connection conn, String artist, String title) throws SQLException {
+        if (isBlank(artist) || isBlank(title)) {
+            return null;
+        }
+        String key = artist + '\u0000' + title;
+        Integer id = albumIds.get(key);
+        if (id == null) {
+            try (PreparedStatement ps = conn.prepareStatement(FIND_ALBUM)) {
+                ps.setString(1, artist);
+                ps.setString(2, title);
+                id = firstInt(ps);
+            }
+            if (id != null) {
+                albumIds.put(key, id);
+            }
+        }
+        return id;
+    }
+
+    private static Integer firstInt(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : null;
+        }
+    }
+
+    private static void setIntOrNull(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+
+    private static Integer parseInt(String value) {
+        return isBlank(value) ? null : Integer.valueOf(value.trim());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static boolean isJsonLines(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json");
+    }
+
+    private static <V> Map<String, V> lruMap() {
+        return new LinkedHashMap<String, V>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_CACHED_KEYS;
+            }
+        };
+    }
+
+    /**
+     * Binds one input record to the insert statement; returns a reason when the record is skipped.
+     */
+    private interface RowBinder {
+        String bind(Connection conn, Map<String, String> row, PreparedStatement ps) throws SQLException;
+    }
+
+    interface RecordReader {
+        /** Returns the next record keyed by column name, or null at end of input. */
+        Map<String, String> next() throws IOException;
+    }
+
+    /**
+     * Reads RFC 4180 style CSV: quoted fields may contain commas, doubled quotes and line breaks.
+     */
+    private static final class CsvReader implements RecordReader {
+        private final BufferedReader reader;
+        private List<String> header;
+
+        CsvReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                header = readFields();
+                if (header == null) {
+                    return null;
+                }
+                for (int i = 0; i < header.size(); i++) {
+                    header.set(i, header.get(i).trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            List<String> fields;
+            do {
+                fields = readFields();
+                if (fields == null) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isEmpty());
+
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                row.put(header.get(i), fields.get(i));
+            }
+            return row;
+        }
+
+        private List<String> readFields() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    // Line break inside a quoted field
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new IOException("Unterminated quoted CSV field");
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * Reads one flat JSON object per line; nested values are not supported.
+     */
+    static final class JsonLinesReader implements RecordReader {
+        private final BufferedReader reader;
+        private String line;
+        private int pos;
+
+        JsonLinesReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                line = line.trim();
+            } while (line.isEmpty());
+            pos = 0;
+
+            Map<String, String> row = new HashMap<>();
+            expect('{');
+            skipSpaces();
+            if (peek() == '}') {
+                return row;
+            }
+            while (true) {
+                skipSpaces();
+                String key = readString();
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+                row.put(key.toLowerCase(Locale.ROOT), readValue());
+                skipSpaces();
+                char c = take();
+                if (c == '}') {
+                    return row;
+                }
+                if (c != ',') {
+                    throw new IOException("Expected ',' or '}' at column " + pos + ": " + line);
+                }
+            }
+        }
+
+        private String readValue() throws IOException {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            int start = pos;
+            while (pos < line.length() && ",} \t".indexOf(line.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = line.substring(start, pos);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.isEmpty() || c == '{' || c == '[') {
+                throw new IOException("Unsupported JSON value at column " + start + ": " + line);
+            }
+            return literal;
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < line.length()) {
+                char c = line.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char esc = take();
+                switch (esc) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > line.length()) {
+                            throw new IOException("Unexpected end of JSON line in \\u escape: " + line);
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid \\u escape at column " + pos + ": " + line);
+                        }
+                        pos += 4;
+                        break;
+                    default: sb.append(esc);
+                }
+            }
+            throw new IOException("Unterminated JSON string: " + line);
+        }
+
+        private char peek() throws IOException {
+            if (pos >= line.length()) {
+                throw new IOException("Unexpected end of JSON line: " + line);
+            }
+            return line.charAt(pos);
+        }
+
+        private char take() throws IOException {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) throws IOException {
+            if (peek() != c) {
+                throw new IOException("Expected '" + c + "' at column " + pos + ": " + line);
+            }
+            pos++;
+        }
+
+        private void skipSpaces() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Outcome of importing one file.
+     */
+    public static final class Result {
+        public final String table;
+        public final long read;
+        public final long inserted;
+        public final long rejected;
+        public final long elapsedNanos;
+
+        Result(String table, long read, long inserted, long rejected, long elapsedNanos) {
+            this.table = table;
+            this.read = read;
+            this.inserted = inserted;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : inserted / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %,d read, %,d inserted, %,d skipped in %.2f s (%,.0f rows/sec)",
+                    table, read, inserted, rejected, elapsedNanos / 1e9, rowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.util.Arrays;
+
+/**
+ * Deletes many songs, albums or artists at once.
+ *
+ * IDs are deleted with set-based statements over chunks of {@link #CHUNK} IDs,
+ * all in one transaction, or in a savepoint when the caller already has a
+ * transaction open. Deletes cascade explicitly: an album takes its songs with
+ * it, and an artist its albums and their songs, so no orphan rows are left for
+ * the joins to scan. Every method returns the rows removed from each table.
+ * Cache entries and typeahead completions of the deleted rows are dropped
+ * once the transaction commits.
+ */
+public final class CatalogDeletes {
+    // IDs bound per statement, well below SQLite's host parameter limit
+    static final int CHUNK = 500;
+
+    // %s is an IN list of one chunk of IDs; QueryPlanCheck verifies each plan
+    static final String SONG_ALBUMS_SQL = "SELECT album_id FROM Song WHERE song_id IN %s";
+    static final String DELETE_SONGS_SQL = "DELETE FROM Song WHERE song_id IN %s";
+    static final String ALBUM_SONGS_SQL = "SELECT song_id FROM Song WHERE album_id IN %s";
+    static final String DELETE_ALBUM_SONGS_SQL = "DELETE FROM Song WHERE album_id IN %s";
+    static final String DELETE_ALBUMS_SQL = "DELETE FROM Album WHERE album_id IN %s";
+    static final String ARTIST_ALBUMS_SQL = "SELECT album_id FROM Album WHERE artist_id IN %s";
+    static final String DELETE_ARTISTS_SQL = "DELETE FROM Artist WHERE artist_id IN %s";
+    static final String ALBUMS_BEFORE_SQL = "SELECT album_id FROM Album WHERE release_year < ?";
+
+    private static final OperationStats DELETE_SONGS = Metrics.operation("deleteSongs");
+    private static final OperationStats DELETE_ALBUMS = Metrics.operation("deleteAlbums");
+    private static final OperationStats DELETE_ARTISTS = Metrics.operation("deleteArtists");
+    private static final OperationStats DELETE_ALBUMS_BEFORE = Metrics.operation("deleteAlbumsReleasedBefore");
+
+    private CatalogDeletes() {
+    }
+
+    public static DeleteCounts deleteSongs(Connection conn, int... songIds) throws SQLException {
+        return measure(DELETE_SONGS, () -> cascadeSongs(conn, songIds));
+    }
+
+    /**
+     * Deletes albums and their songs.
+     */
+    public static DeleteCounts deleteAlbums(Connection conn, int... albumIds) throws SQLException {
+        return measure(DELETE_ALBUMS, () -> cascadeAlbums(conn, albumIds));
+    }
+
+    /**
+     * Deletes artists with their albums and songs.
+     */
+    public static DeleteCounts deleteArtists(Connection conn, int... artistIds) throws SQLException {
+        return measure(DELETE_ARTISTS, () -> cascadeArtists(conn, artistIds));
+    }
+
+    /**
+     * Deletes every album released before the given year, with its songs.
+     * Albums without a release year are kept.
+     */
+    public static DeleteCounts deleteAlbumsReleasedBefore(Connection conn, int year) throws SQLException {
+        return measure(DELETE_ALBUMS_BEFORE, () -> inTransaction(conn, () ->
+                cascadeAlbums(conn, ids(conn, ALBUMS_BEFORE_SQL, year))));
+    }
+
+    static DeleteCounts cascadeSongs(Connection conn, int... songIds) throws SQLException {
+        int[] ids = distinct(songIds);
+        return inTransaction(conn, () -> {
+            int songs = 0;
+            for (int from = 0; from < ids.length; from += CHUNK) {
+                int[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + CHUNK));
+                // The owning albums' cached song lists are the only entries that change;
+                // deduplicated here, as DISTINCT would sort them in a temporary B-tree
+                int[] albumIds = distinct(ids(conn, in(SONG_ALBUMS_SQL, chunk), chunk));
+                TableVersions.afterTransaction(conn, () -> {
+                    for (int albumId : albumIds) {
+                        EntityCache.albumSongsChanged(albumId);
+                    }
+                });
+                songs += update(conn, in(DELETE_SONGS_SQL, chunk), chunk);
+            }
+            TableVersions.changed(TableVersions.SONG);
+            TableVersions.afterTransaction(conn, () -> TypeaheadIndex.remove(FullTextSearch.KIND_SONG, ids));
+            return new DeleteCounts(0, 0, songs);
+        });
+    }
+
+    static DeleteCounts cascadeAlbums(Connection conn, int... albumIds) throws SQLException {
+        int[] ids = distinct(albumIds);
+        return inTransaction(conn, () -> {
+            int songs = 0;
+            int albums = 0;
+            // Song IDs are only looked up when the typeahead index has entries to remove
+            boolean indexed = TypeaheadIndex.loaded();
+            int[][] songIds = new int[(ids.length + CHUNK - 1) / CHUNK][];
+            for (int from = 0; from < ids.length; from += CHUNK) {
+                int[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + CHUNK));
+                if (indexed) {
+                    songIds[from / CHUNK] = ids(conn, in(ALBUM_SONGS_SQL, chunk), chunk);
+                }
+                songs += update(conn, in(DELETE_ALBUM_SONGS_SQL, chunk), chunk);
+                albums += update(conn, in(DELETE_ALBUMS_SQL, chunk), chunk);
+            }
+            TableVersions.changed(TableVersions.ALBUM | TableVersions.SONG);
+            TableVersions.afterTransaction(conn, () -> {
+                for (int albumId : ids) {
+                    EntityCache.albumChanged(albumId);
+                    EntityCache.albumSongsChanged(albumId);
+                }
+                TypeaheadIndex.remove(FullTextSearch.KIND_ALBUM, ids);
+                for (int[] chunk : songIds) {
+                    if (chunk != null) {
+                        TypeaheadIndex.remove(FullTextSearch.KIND_SONG, chunk);
+                    }
+                }
+            });
+            return new DeleteCounts(0, albums, songs);
+        });
+    }
+
+    static DeleteCounts cascadeArtists(Connection conn, int... artistIds) throws SQLException {
+        int[] ids = distinct(artistIds);
+        return inTransaction(conn, () -> {
+            DeleteCounts counts = DeleteCounts.NONE;
+            int artists = 0;
+            for (int from = 0; from < ids.length; from += CHUNK) {
+                int[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + CHUNK));
+                counts = counts.plus(cascadeAlbums(conn,
+                        ids(conn, in(ARTIST_ALBUMS_SQL, chunk), chunk)));
+                artists += update(conn, in(DELETE_ARTISTS_SQL, chunk), chunk);
+            }
+            TableVersions.changed(TableVersions.ARTIST);
+            TableVersions.afterTransaction(conn, () -> {
+                for (int artistId : ids) {
+                    EntityCache.artistChanged(artistId);
+                }
+                TypeaheadIndex.remove(FullTextSearch.KIND_ARTIST, ids);
+            });
+            return counts.plus(new DeleteCounts(artists, 0, 0));
+        });
+    }
+
+    private interface Work {
+        DeleteCounts run() throws SQLException;
+    }
+
+    private static DeleteCounts measure(OperationStats op, Work work) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            DeleteCounts counts = work.run();
+            op.success(start, counts.total());
+            return counts;
+        } catch (SQLException | RuntimeException e) {
+            op.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs work in a new transaction, or in a savepoint of the caller's transaction.
+     */
+    private static DeleteCounts inTransaction(Connection conn, Work work) throws SQLException {
+        if (!conn.getAutoCommit()) {
+            Savepoint savepoint = conn.setSavepoint();
+            int deferred = TableVersions.savepoint();
+            try {
+                DeleteCounts counts = work.run();
+                conn.releaseSavepoint(savepoint);
+                return counts;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+                TableVersions.rolledBackTo(deferred);
+                throw e;
+            }
+        }
+        conn.setAutoCommit(false);
+        boolean committed = false;
+        try {
+            DeleteCounts counts = work.run();
+            conn.commit();
+            committed = true;
+            return counts;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            // Invalidates the caches now, not only when the connection goes back to its pool
+            TableVersions.transactionEnded(committed);
+        }
+    }
+
+    private static int[] distinct(int[] ids) {
+        return Arrays.stream(ids).sorted().distinct().toArray();
+    }
+
+    // Fills in "(?, ?, ?)" for a chunk of three IDs
+    static String in(String sql, int[] chunk) {
+        return String.format(sql, "(" + "?, ".repeat(chunk.length - 1) + "?)");
+    }
+
+    private static int update(Connection conn, String sql, int... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setInt(i + 1, params[i]);
+            }
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static int[] ids(Connection conn, String sql, int... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setInt(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int[] ids = new int[16];
+                int count = 0;
+                while (rs.next()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = rs.getInt(1);
+                }
+                return Arrays.copyOf(ids, count);
+            }
+        }
+    }
+}
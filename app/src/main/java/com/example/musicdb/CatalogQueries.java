@@ -0,0 +1,351 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Typed, lazily fetched queries over the catalog.
+ *
+ * The stream methods read rows from the database as the stream is consumed,
+ * fetchSize rows at a time, and hold a pooled connection until the stream is
+ * closed, so they must be used in a try-with-resources block. The page methods
+ * use keyset (seek) pagination: each page starts right after the key of the
+ * previous page's last row, so page N costs the same as page 1. Pages of songs
+ * by duration and albums by release year are kept in the {@link ResultCache}.
+ *
+ * The JDBC fetch size is set with -Dmusicdb.fetchSize (default 500).
+ *
+ * With a sharded catalog (-Dmusicdb.shards) every query runs on all shards in
+ * parallel and the ordered results are merged; see {@link ShardedCatalog}.
+ */
+public class CatalogQueries {
+    static final int FETCH_SIZE = Integer.getInteger("musicdb.fetchSize", 500);
+
+    private static final String ARTIST_COLUMNS = "SELECT artist_id, name, genre, biography FROM Artist";
+    private static final String ALBUM_COLUMNS = "SELECT album_id, title, release_year, artist_id FROM Album";
+    private static final String SONG_COLUMNS = "SELECT song_id, title, duration, track_number, album_id FROM Song";
+
+    static final String ARTISTS_SQL = ARTIST_COLUMNS + " ORDER BY artist_id";
+    static final String ARTISTS_AFTER_SQL = ARTIST_COLUMNS + " WHERE artist_id > ? ORDER BY artist_id LIMIT ?";
+    static final String ALBUMS_SQL = ALBUM_COLUMNS + " ORDER BY album_id";
+    static final String ALBUMS_AFTER_SQL = ALBUM_COLUMNS + " WHERE album_id > ? ORDER BY album_id LIMIT ?";
+    static final String SONGS_SQL = SONG_COLUMNS + " ORDER BY song_id";
+    static final String SONGS_AFTER_SQL = SONG_COLUMNS + " WHERE song_id > ? ORDER BY song_id LIMIT ?";
+
+    static final String SONGS_BY_DURATION_ASC_SQL = SONG_COLUMNS + " ORDER BY duration, song_id";
+    static final String SONGS_BY_DURATION_DESC_SQL = SONG_COLUMNS + " ORDER BY duration DESC, song_id DESC";
+    static final String SONGS_BY_DURATION_ASC_AFTER_SQL = SONG_COLUMNS
+            + " WHERE (duration, song_id) > (?, ?) ORDER BY duration, song_id LIMIT ?";
+    static final String SONGS_BY_DURATION_DESC_AFTER_SQL = SONG_COLUMNS
+            + " WHERE (duration, song_id) < (?, ?) ORDER BY duration DESC, song_id DESC LIMIT ?";
+
+    static final String ALBUMS_BY_YEAR_ASC_SQL = ALBUM_COLUMNS + " ORDER BY release_year, album_id";
+    static final String ALBUMS_BY_YEAR_DESC_SQL = ALBUM_COLUMNS + " ORDER BY release_year DESC, album_id DESC";
+    static final String ALBUMS_BY_YEAR_ASC_AFTER_SQL = ALBUM_COLUMNS
+            + " WHERE (release_year, album_id) > (?, ?) ORDER BY release_year, album_id LIMIT ?";
+    static final String ALBUMS_BY_YEAR_DESC_AFTER_SQL = ALBUM_COLUMNS
+            + " WHERE (release_year, album_id) < (?, ?) ORDER BY release_year DESC, album_id DESC LIMIT ?";
+
+    // Result order of each query, used to merge the results of several shards
+    static final Comparator<Artist> BY_ARTIST_ID = Comparator.comparingInt(Artist::artistId);
+    static final Comparator<Album> BY_ALBUM_ID = Comparator.comparingInt(Album::albumId);
+    static final Comparator<Song> BY_SONG_ID = Comparator.comparingInt(Song::songId);
+    static final Comparator<Song> BY_DURATION = Comparator.comparingInt(Song::duration).thenComparing(BY_SONG_ID);
+    static final Comparator<Album> BY_RELEASE_YEAR =
+            Comparator.comparingInt(Album::releaseYear).thenComparing(BY_ALBUM_ID);
+
+    private static final OperationStats ARTIST_PAGE = Metrics.operation("artistPage");
+    private static final OperationStats ALBUM_PAGE = Metrics.operation("albumPage");
+    private static final OperationStats SONG_PAGE = Metrics.operation("songPage");
+    private static final OperationStats SONGS_BY_DURATION_PAGE = Metrics.operation("songsByDurationPage");
+    private static final OperationStats ALBUMS_BY_YEAR_PAGE = Metrics.operation("albumsByReleaseYearPage");
+
+    /**
+     * Maps the current row of a result set to an object.
+     */
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // --- Streams ---
+
+    public static Stream<Artist> artists() throws SQLException {
+        return ordered(BY_ARTIST_ID, ARTISTS_SQL, CatalogQueries::artist);
+    }
+
+    public static Stream<Album> albums() throws SQLException {
+        return ordered(BY_ALBUM_ID, ALBUMS_SQL, CatalogQueries::album);
+    }
+
+    public static Stream<Song> songs() throws SQLException {
+        return ordered(BY_SONG_ID, SONGS_SQL, CatalogQueries::song);
+    }
+
+    public static Stream<Song> songsByDuration(boolean descending) throws SQLException {
+        return ordered(descending ? BY_DURATION.reversed() : BY_DURATION,
+                descending ? SONGS_BY_DURATION_DESC_SQL : SONGS_BY_DURATION_ASC_SQL, CatalogQueries::song);
+    }
+
+    /**
+     * Up to limit songs by duration after the given one (null for the first),
+     * read on the given connection of a single database, uncached.
+     */
+    static List<Song> songsByDurationPage(Connection conn, boolean descending, Song after, int limit)
+            throws SQLException {
+        if (after == null) {
+            return list(conn, (descending ? SONGS_BY_DURATION_DESC_SQL : SONGS_BY_DURATION_ASC_SQL) + " LIMIT ?",
+                    CatalogQueries::song, limit);
+        }
+        return list(conn, descending ? SONGS_BY_DURATION_DESC_AFTER_SQL : SONGS_BY_DURATION_ASC_AFTER_SQL,
+                CatalogQueries::song, after.duration(), after.songId(), limit);
+    }
+
+    public static Stream<Album> albumsByReleaseYear(boolean descending) throws SQLException {
+        return ordered(descending ? BY_RELEASE_YEAR.reversed() : BY_RELEASE_YEAR,
+                descending ? ALBUMS_BY_YEAR_DESC_SQL : ALBUMS_BY_YEAR_ASC_SQL, CatalogQueries::album);
+    }
+
+    // --- Keyset pages; pass null as "after" for the first page ---
+
+    public static Page<Artist> artistPage(Artist after, int limit) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.ARTIST_PAGE,
+                    after == null ? Integer.MIN_VALUE : after.artistId(), limit);
+        }
+        return page(ARTIST_PAGE, BY_ARTIST_ID, ARTISTS_AFTER_SQL, limit, CatalogQueries::artist,
+                after == null ? Integer.MIN_VALUE : after.artistId());
+    }
+
+    public static Page<Album> albumPage(Album after, int limit) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.ALBUM_PAGE,
+                    after == null ? Integer.MIN_VALUE : after.albumId(), limit);
+        }
+        return page(ALBUM_PAGE, BY_ALBUM_ID, ALBUMS_AFTER_SQL, limit, CatalogQueries::album,
+                after == null ? Integer.MIN_VALUE : after.albumId());
+    }
+
+    public static Page<Song> songPage(Song after, int limit) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.SONG_PAGE,
+                    after == null ? Integer.MIN_VALUE : after.songId(), limit);
+        }
+        return page(SONG_PAGE, BY_SONG_ID, SONGS_AFTER_SQL, limit, CatalogQueries::song,
+                after == null ? Integer.MIN_VALUE : after.songId());
+    }
+
+    // Served from the result cache until a song changes
+    public static Page<Song> songsByDurationPage(boolean descending, Song after, int limit) throws SQLException {
+        int afterDuration = after == null ? 0 : after.duration();
+        int afterId = after == null ? Integer.MIN_VALUE : after.songId();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.SONGS_BY_DURATION_PAGE, descending, afterDuration, afterId, limit);
+        }
+        return ResultCache.get(SONGS_BY_DURATION_PAGE, TableVersions.SONG, CatalogQueries::rows,
+                () -> loadSongsByDurationPage(descending, after, limit), descending, afterDuration, afterId, limit);
+    }
+
+    private static Page<Song> loadSongsByDurationPage(boolean descending, Song after, int limit) throws SQLException {
+        Comparator<Song> order = descending ? BY_DURATION.reversed() : BY_DURATION;
+        if (after == null) {
+            String sql = (descending ? SONGS_BY_DURATION_DESC_SQL : SONGS_BY_DURATION_ASC_SQL) + " LIMIT ?";
+            return page(SONGS_BY_DURATION_PAGE, order, sql, limit, CatalogQueries::song);
+        }
+        return page(SONGS_BY_DURATION_PAGE, order,
+                descending ? SONGS_BY_DURATION_DESC_AFTER_SQL : SONGS_BY_DURATION_ASC_AFTER_SQL,
+                limit, CatalogQueries::song, after.duration(), after.songId());
+    }
+
+    // Served from the result cache until an album changes
+    public static Page<Album> albumsByReleaseYearPage(boolean descending, Album after, int limit)
+            throws SQLException {
+        int afterYear = after == null ? 0 : after.releaseYear();
+        int afterId = after == null ? Integer.MIN_VALUE : after.albumId();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.ALBUMS_BY_YEAR_PAGE, descending, afterYear, afterId, limit);
+        }
+        return ResultCache.get(ALBUMS_BY_YEAR_PAGE, TableVersions.ALBUM, CatalogQueries::rows,
+                () -> loadAlbumsByReleaseYearPage(descending, after, limit), descending, afterYear, afterId, limit);
+    }
+
+    private static Page<Album> loadAlbumsByReleaseYearPage(boolean descending, Album after, int limit)
+            throws SQLException {
+        Comparator<Album> order = descending ? BY_RELEASE_YEAR.reversed() : BY_RELEASE_YEAR;
+        if (after == null) {
+            String sql = (descending ? ALBUMS_BY_YEAR_DESC_SQL : ALBUMS_BY_YEAR_ASC_SQL) + " LIMIT ?";
+            return page(ALBUMS_BY_YEAR_PAGE, order, sql, limit, CatalogQueries::album);
+        }
+        return page(ALBUMS_BY_YEAR_PAGE, order,
+                descending ? ALBUMS_BY_YEAR_DESC_AFTER_SQL : ALBUMS_BY_YEAR_ASC_AFTER_SQL,
+                limit, CatalogQueries::album, after.releaseYear(), after.albumId());
+    }
+
+    // --- Row mappers ---
+
+    static Artist artist(ResultSet rs) throws SQLException {
+        return new Artist(rs.getInt("artist_id"), rs.getString("name"),
+                rs.getString("genre"), rs.getString("biography"));
+    }
+
+    static Album album(ResultSet rs) throws SQLException {
+        return new Album(rs.getInt("album_id"), rs.getString("title"),
+                rs.getInt("release_year"), rs.getInt("artist_id"));
+    }
+
+    static Song song(ResultSet rs) throws SQLException {
+        return new Song(rs.getInt("song_id"), rs.getString("title"), rs.getInt("duration"),
+                rs.getInt("track_number"), rs.getInt("album_id"));
+    }
+
+    /**
+     * Runs a query on a pooled connection and returns its rows as a lazily fetched stream.
+     * The connection is returned to the pool when the stream is closed.
+     */
+    public static <T> Stream<T> stream(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        return stream(DatabaseManager.getConnection(), sql, mapper, params);
+    }
+
+    /**
+     * Like {@link #stream(String, RowMapper, Object...)}, on the given connection,
+     * which is closed when the stream is closed.
+     */
+    static <T> Stream<T> stream(Connection conn, String sql, RowMapper<T> mapper, Object... params)
+            throws SQLException {
+        try {
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            bind(pstmt, params);
+            pstmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = pstmt.executeQuery();
+            return StreamSupport.stream(new ResultSetSpliterator<>(rs, mapper), false)
+                    .onClose(() -> closeQuietly(rs, pstmt, conn));
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a query whose rows come in the given order: on the database, or on
+     * every shard with the results merged into one stream.
+     */
+    private static <T> Stream<T> ordered(Comparator<T> order, String sql, RowMapper<T> mapper, Object... params)
+            throws SQLException {
+        ShardedCatalog shards = DatabaseManager.shards();
+        return shards == null ? stream(sql, mapper, params) : shards.stream(order, sql, mapper, params);
+    }
+
+    /**
+     * Reads every row of a query into a list.
+     */
+    static <T> List<T> list(Connection conn, String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bind(pstmt, params);
+            pstmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Runs a page query whose last parameter is the row limit. One extra row is
+     * fetched to find out whether another page follows. On a sharded catalog
+     * every shard returns a page and the first limit rows of their merge are kept.
+     */
+    private static <T> Page<T> page(OperationStats op, Comparator<T> order, String sql, int limit,
+                                    RowMapper<T> mapper, Object... keys) throws SQLException {
+        Object[] params = new Object[keys.length + 1];
+        System.arraycopy(keys, 0, params, 0, keys.length);
+        params[keys.length] = limit + 1;
+        ShardedCatalog shards = DatabaseManager.shards();
+        if (shards != null) {
+            long start = System.nanoTime();
+            try {
+                List<T> rows = shards.gather(conn -> list(conn, sql, mapper, params), order);
+                op.success(start, Math.min(limit, rows.size()));
+                return new Page<>(List.copyOf(rows.subList(0, Math.min(limit, rows.size()))), rows.size() > limit);
+            } catch (SQLException | RuntimeException e) {
+                op.failure(start);
+                throw e;
+            }
+        }
+        List<T> items = new ArrayList<>(Math.min(limit, FETCH_SIZE));
+        long start = System.nanoTime();
+        boolean hasMore = false;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bind(pstmt, params);
+            pstmt.setFetchSize(Math.min(limit + 1, FETCH_SIZE));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (items.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    items.add(mapper.map(rs));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            op.failure(start);
+            throw e;
+        }
+        op.success(start, items.size());
+        return new Page<>(Collections.unmodifiableList(items), hasMore);
+    }
+
+    private static int rows(Page<?> page) {
+        return page.items().size();
+    }
+
+    private static void bind(PreparedStatement pstmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            pstmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                System.out.println("Error closing query resources: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+
+        ResultSetSpliterator(ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if (!rs.next()) {
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error reading query results: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary tables behind countSongsPerAlbum and countAlbumsPerArtist.
+ *
+ * AlbumStats holds one row per album with its song count and total duration,
+ * ArtistStats one row per artist with its album and song counts. Triggers on
+ * Song, Album and Artist adjust the affected rows on every insert, delete and
+ * move, so the counts are read in time proportional to the result instead of
+ * being aggregated over the whole catalog. Songs whose album no longer exists
+ * count for neither an album nor an artist, as with the LEFT JOIN aggregates
+ * they replace.
+ *
+ * {@link #verify(Connection)} compares the tables with a fresh aggregate and
+ * {@link #rebuild(Connection)} recomputes them.
+ *
+ * Usage: java com.example.musicdb.CatalogStats verify | java com.example.musicdb.CatalogStats rebuild
+ */
+public class CatalogStats {
+    private static final String CREATE_ALBUM_STATS = "CREATE TABLE IF NOT EXISTS AlbumStats ("
+            + "album_id INTEGER PRIMARY KEY,"
+            + "song_count INTEGER NOT NULL,"
+            + "total_duration INTEGER NOT NULL"
+            + ")";
+    private static final String CREATE_ARTIST_STATS = "CREATE TABLE IF NOT EXISTS ArtistStats ("
+            + "artist_id INTEGER PRIMARY KEY,"
+            + "album_count INTEGER NOT NULL,"
+            + "song_count INTEGER NOT NULL"
+            + ")";
+
+    // Aggregates computed from scratch, used to fill and to check the summary tables
+    static final String ALBUM_STATS_SQL = "SELECT a.album_id, COUNT(s.song_id) AS song_count, "
+            + "COALESCE(SUM(s.duration), 0) AS total_duration "
+            + "FROM Album a LEFT JOIN Song s ON s.album_id = a.album_id GROUP BY a.album_id";
+    static final String ARTIST_STATS_SQL = "SELECT ar.artist_id, "
+            + "(SELECT COUNT(*) FROM Album a WHERE a.artist_id = ar.artist_id) AS album_count, "
+            + "(SELECT COUNT(*) FROM Album a JOIN Song s ON s.album_id = a.album_id "
+            + "WHERE a.artist_id = ar.artist_id) AS song_count "
+            + "FROM Artist ar";
+
+    private static final String ALBUM_DRIFT_SQL = "SELECT e.album_id, st.song_count, st.total_duration, "
+            + "e.song_count, e.total_duration "
+            + "FROM (" + ALBUM_STATS_SQL + ") e LEFT JOIN AlbumStats st ON st.album_id = e.album_id "
+            + "WHERE st.album_id IS NULL OR st.song_count <> e.song_count OR st.total_duration <> e.total_duration "
+            + "UNION ALL SELECT st.album_id, st.song_count, st.total_duration, NULL, NULL FROM AlbumStats st "
+            + "WHERE NOT EXISTS (SELECT 1 FROM Album a WHERE a.album_id = st.album_id)";
+    private static final String ARTIST_DRIFT_SQL = "SELECT e.artist_id, st.album_count, st.song_count, "
+            + "e.album_count, e.song_count "
+            + "FROM (" + ARTIST_STATS_SQL + ") e LEFT JOIN ArtistStats st ON st.artist_id = e.artist_id "
+            + "WHERE st.artist_id IS NULL OR st.album_count <> e.album_count OR st.song_count <> e.song_count "
+            + "UNION ALL SELECT st.artist_id, st.album_count, st.song_count, NULL, NULL FROM ArtistStats st "
+            + "WHERE NOT EXISTS (SELECT 1 FROM Artist ar WHERE ar.artist_id = st.artist_id)";
+
+    private static final String ALBUM_ARTIST_ID = "(SELECT artist_id FROM Album WHERE album_id = %s.album_id)";
+
+    private static final String ADD_SONG = "UPDATE AlbumStats SET song_count = song_count + 1, "
+            + "total_duration = total_duration + COALESCE(new.duration, 0) WHERE album_id = new.album_id; "
+            + "UPDATE ArtistStats SET song_count = song_count + 1 WHERE artist_id = "
+            + String.format(ALBUM_ARTIST_ID, "new") + "; ";
+    private static final String REMOVE_SONG = "UPDATE AlbumStats SET song_count = song_count - 1, "
+            + "total_duration = total_duration - COALESCE(old.duration, 0) WHERE album_id = old.album_id; "
+            + "UPDATE ArtistStats SET song_count = song_count - 1 WHERE artist_id = "
+            + String.format(ALBUM_ARTIST_ID, "old") + "; ";
+
+    private static final String ALBUM_SONG_COUNT = "COALESCE((SELECT song_count FROM AlbumStats WHERE album_id = %s), 0)";
+
+    private static final String ADD_ALBUM_TO_ARTIST = "UPDATE ArtistStats SET album_count = album_count + 1, "
+            + "song_count = song_count + " + String.format(ALBUM_SONG_COUNT, "new.album_id") + " "
+            + "WHERE artist_id = new.artist_id; ";
+    private static final String REMOVE_ALBUM_FROM_ARTIST = "UPDATE ArtistStats SET album_count = album_count - 1, "
+            + "song_count = song_count - " + String.format(ALBUM_SONG_COUNT, "old.album_id") + " "
+            + "WHERE artist_id = old.artist_id; ";
+
+    private static final String[] TRIGGERS = {
+        "CREATE TRIGGER IF NOT EXISTS stats_artist_ai AFTER INSERT ON Artist BEGIN "
+            + "INSERT OR REPLACE INTO ArtistStats (artist_id, album_count, song_count) VALUES (new.artist_id, "
+            + "(SELECT COUNT(*) FROM Album WHERE artist_id = new.artist_id), "
+            + "(SELECT COALESCE(SUM(st.song_count), 0) FROM Album a JOIN AlbumStats st "
+            + "ON st.album_id = a.album_id WHERE a.artist_id = new.artist_id)); END",
+        "CREATE TRIGGER IF NOT EXISTS stats_artist_ad AFTER DELETE ON Artist BEGIN "
+            + "DELETE FROM ArtistStats WHERE artist_id = old.artist_id; END",
+
+        // An album may be inserted after songs that already reference its ID
+        "CREATE TRIGGER IF NOT EXISTS stats_album_ai AFTER INSERT ON Album BEGIN "
+            + "INSERT OR REPLACE INTO AlbumStats (album_id, song_count, total_duration) "
+            + "SELECT new.album_id, COUNT(*), COALESCE(SUM(duration), 0) FROM Song WHERE album_id = new.album_id; "
+            + ADD_ALBUM_TO_ARTIST + "END",
+        "CREATE TRIGGER IF NOT EXISTS stats_album_ad AFTER DELETE ON Album BEGIN "
+            + REMOVE_ALBUM_FROM_ARTIST
+            + "DELETE FROM AlbumStats WHERE album_id = old.album_id; END",
+        "CREATE TRIGGER IF NOT EXISTS stats_album_au AFTER UPDATE OF artist_id ON Album "
+            + "WHEN old.artist_id IS NOT new.artist_id BEGIN "
+            + REMOVE_ALBUM_FROM_ARTIST + ADD_ALBUM_TO_ARTIST + "END",
+
+        "CREATE TRIGGER IF NOT EXISTS stats_song_ai AFTER INSERT ON Song BEGIN " + ADD_SONG + "END",
+        "CREATE TRIGGER IF NOT EXISTS stats_song_ad AFTER DELETE ON Song BEGIN " + REMOVE_SONG + "END",
+        "CREATE TRIGGER IF NOT EXISTS stats_song_au AFTER UPDATE OF duration, album_id ON Song BEGIN "
+            + REMOVE_SONG + ADD_SONG + "END",
+    };
+
+    /**
+     * Creates the summary tables and their triggers if missing. Newly created
+     * tables are filled from the existing catalog.
+     */
+    public static void ensureSchema(Connection conn) throws SQLException {
+        boolean exists;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' "
+                     + "AND name IN ('AlbumStats', 'ArtistStats')")) {
+            exists = rs.next() && rs.getInt(1) == 2;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_ALBUM_STATS);
+            stmt.execute(CREATE_ARTIST_STATS);
+            for (String trigger : TRIGGERS) {
+                stmt.execute(trigger);
+            }
+        }
+        if (!exists) {
+            rebuild(conn);
+        }
+    }
+
+    /**
+     * Recomputes both summary tables from Artist, Album and Song.
+     * @return Number of summary rows written.
+     */
+    public static int rebuild(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM AlbumStats");
+            stmt.executeUpdate("DELETE FROM ArtistStats");
+            int rows = stmt.executeUpdate("INSERT INTO AlbumStats (album_id, song_count, total_duration) "
+                    + ALBUM_STATS_SQL);
+            rows += stmt.executeUpdate("INSERT INTO ArtistStats (artist_id, album_count, song_count) "
+                    + ARTIST_STATS_SQL);
+            // The per-album and per-artist counts are served from these tables
+            TableVersions.changed(TableVersions.ALL);
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Compares the summary tables with the aggregates they stand for.
+     * @return One line per missing, stale or wrong summary row; empty when they match.
+     */
+    public static List<String> verify(Connection conn) throws SQLException {
+        List<String> drift = new ArrayList<>();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(ALBUM_DRIFT_SQL)) {
+                while (rs.next()) {
+                    drift.add(describe("AlbumStats", "album", rs, "songs", "s"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(ARTIST_DRIFT_SQL)) {
+                while (rs.next()) {
+                    drift.add(describe("ArtistStats", "artist", rs, "albums", "songs"));
+                }
+            }
+        }
+        return drift;
+    }
+
+    // Columns: id, stored first, stored second, actual first, actual second
+    private static String describe(String table, String entity, ResultSet rs, String first, String second)
+            throws SQLException {
+        String id = table + " " + rs.getInt(1) + ": ";
+        rs.getObject(4);
+        if (rs.wasNull()) {
+            return id + "row for a deleted " + entity;
+        }
+        String actual = rs.getLong(4) + " " + first + ", " + rs.getLong(5) + " " + second;
+        rs.getObject(2);
+        if (rs.wasNull()) {
+            return id + "missing (actual " + actual + ")";
+        }
+        return id + "stored " + rs.getLong(2) + " " + first + ", " + rs.getLong(3) + " " + second
+                + " (actual " + actual + ")";
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1 || !(args[0].equals("verify") || args[0].equals("rebuild"))) {
+            System.out.println("Usage: java com.example.musicdb.CatalogStats verify | java com.example.musicdb.CatalogStats rebuild");
+            return;
+        }
+        DatabaseManager.createTables();
+        int drifted = 0;
+        try {
+            if (args[0].equals("rebuild")) {
+                long start = System.nanoTime();
+                int rows = DatabaseManager.write(CatalogStats::rebuild);
+                System.out.printf("Rebuilt summary tables: %,d rows in %.2f s%n",
+                        rows, (System.nanoTime() - start) / 1e9);
+            } else {
+                List<String> drift;
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    drift = verify(conn);
+                }
+                for (String line : drift) {
+                    System.out.println(line);
+                }
+                drifted = drift.size();
+                System.out.println(drifted == 0 ? "Summary tables match the catalog."
+                        : drifted + " summary row(s) drifted; run CatalogStats rebuild to repair them.");
+            }
+        } catch (SQLException e) {
+            System.out.println("Error checking summary tables: " + e.getMessage());
+            drifted = 1;
+        } finally {
+            DatabaseManager.shutdown();
+        }
+        if (drifted > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.musicdb;
+
+import java.io.PrintWriter;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Append-only, sequenced log of every insert, update and delete on Artist,
+ * Album and Song, for consumers that sync incrementally instead of copying
+ * the whole catalog.
+ *
+ * Triggers append one ChangeLog row per changed row in the same transaction
+ * as the change, so every mutation path (DatabaseManager, bulk deletes, the
+ * bulk importer, the write-behind queue) is covered and a rolled-back change
+ * leaves no record. A row holds the table, the row's ID, the operation (I, U
+ * or D) and, for inserts and updates, the row's new values as a JSON object.
+ * An update that changes a row's ID is logged as a delete of the old ID and
+ * an update of the new one.
+ *
+ * A consumer copies the catalog once, remembering {@link #lastSequence}
+ * first, then reads {@link #changesAfter} its position in pages. Each page is
+ * an index seek on the sequence number, so a consumer's cost follows the
+ * number of changes, not the size of the catalog. Consumers apply I and U as
+ * upserts and D as a delete.
+ *
+ * {@link #compact} drops every record that a later record of the same row
+ * supersedes, which keeps the log correct for consumers at any position.
+ * {@link #purge} drops all records up to a sequence number; consumers behind
+ * it get an error from {@link #changesAfter} and must copy the catalog again.
+ * Each database of a sharded catalog has its own log.
+ *
+ * Usage: java com.example.musicdb.ChangeLog tail AFTER [--batch N] [--follow]
+ *        | status | compact THROUGH | purge THROUGH
+ */
+public final class ChangeLog {
+    static final char INSERT = 'I';
+    static final char UPDATE = 'U';
+    static final char DELETE = 'D';
+
+    private static final String CREATE_LOG = "CREATE TABLE IF NOT EXISTS ChangeLog ("
+            + "seq INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "table_name TEXT NOT NULL,"
+            + "id INTEGER NOT NULL,"
+            + "op TEXT NOT NULL,"
+            + "row_values TEXT"
+            + ")";
+    private static final String CREATE_STATE = "CREATE TABLE IF NOT EXISTS ChangeLogState ("
+            + "id INTEGER PRIMARY KEY CHECK (id = 1),"
+            + "purged_through INTEGER NOT NULL"
+            + ")";
+
+    // Table, key column and the other columns logged with each change
+    private static final String[][] TABLES = {
+        {"Artist", "artist_id", "name", "genre", "biography"},
+        {"Album", "album_id", "title", "release_year", "artist_id"},
+        {"Song", "song_id", "title", "duration", "track_number", "album_id"},
+    };
+
+    private static final String APPEND = "INSERT INTO ChangeLog (table_name, id, op, row_values) ";
+
+    // AUTOINCREMENT keeps sequence numbers increasing after a purge empties the log
+    static final String LAST_SEQUENCE_SQL = "SELECT COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'ChangeLog'), 0)";
+    static final String CHANGES_AFTER_SQL =
+            "SELECT seq, table_name, id, op, row_values FROM ChangeLog WHERE seq > ? ORDER BY seq LIMIT ?";
+    static final String PURGED_THROUGH_SQL = "SELECT COALESCE((SELECT purged_through FROM ChangeLogState), 0)";
+    static final String COMPACT_SQL = "DELETE FROM ChangeLog WHERE seq <= ?1 AND seq NOT IN "
+            + "(SELECT MAX(seq) FROM ChangeLog WHERE seq <= ?1 GROUP BY table_name, id)";
+    static final String PURGE_SQL = "DELETE FROM ChangeLog WHERE seq <= ?";
+    private static final String RECORD_PURGE_SQL = "INSERT INTO ChangeLogState (id, purged_through) VALUES (1, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET purged_through = MAX(purged_through, excluded.purged_through)";
+
+    private static final long POLL_NANOS = 500_000_000L;
+
+    private static final OperationStats READ = Metrics.operation("changeLog.read");
+
+    /**
+     * One logged change.
+     * @param op INSERT, UPDATE or DELETE.
+     * @param values The row's new values as a JSON object; null for a delete.
+     */
+    public record Change(long sequence, String table, int id, char op, String values) {
+
+        /**
+         * The change as one line of JSON.
+         */
+        public String toJson() {
+            return "{\"seq\":" + sequence + ",\"table\":\"" + table + "\",\"id\":" + id + ",\"op\":\"" + op
+                    + "\",\"values\":" + (values == null ? "null" : values) + "}";
+        }
+    }
+
+    private ChangeLog() {
+    }
+
+    /**
+     * Creates the log, its state table and the triggers that feed it if missing.
+     */
+    public static void ensureSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_LOG);
+            stmt.execute(CREATE_STATE);
+            for (String trigger : triggers()) {
+                stmt.execute(trigger);
+            }
+        }
+    }
+
+    static List<String> triggers() {
+        List<String> triggers = new ArrayList<>();
+        for (String[] t : TABLES) {
+            String name = "changelog_" + t[0].toLowerCase();
+            String table = "'" + t[0] + "'";
+            triggers.add("CREATE TRIGGER IF NOT EXISTS " + name + "_ai AFTER INSERT ON " + t[0] + " BEGIN "
+                    + APPEND + "VALUES (" + table + ", new." + t[1] + ", '" + INSERT + "', " + values(t, "new.") + "); END");
+            triggers.add("CREATE TRIGGER IF NOT EXISTS " + name + "_au AFTER UPDATE ON " + t[0] + " BEGIN "
+                    + APPEND + "SELECT " + table + ", old." + t[1] + ", '" + DELETE + "', NULL WHERE old." + t[1]
+                    + " IS NOT new." + t[1] + "; "
+                    + APPEND + "VALUES (" + table + ", new." + t[1] + ", '" + UPDATE + "', " + values(t, "new.") + "); END");
+            triggers.add("CREATE TRIGGER IF NOT EXISTS " + name + "_ad AFTER DELETE ON " + t[0] + " BEGIN "
+                    + APPEND + "VALUES (" + table + ", old." + t[1] + ", '" + DELETE + "', NULL); END");
+        }
+        return triggers;
+    }
+
+    // json_object('artist_id', new.artist_id, 'name', new.name, ...)
+    private static String values(String[] table, String row) {
+        StringBuilder sb = new StringBuilder("json_object(");
+        for (int i = 1; i < table.length; i++) {
+            if (i > 1) {
+                sb.append(", ");
+            }
+            sb.append('\'').append(table[i]).append("', ").append(row).append(table[i]);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Logs every row of the catalog as inserted, as the triggers would have,
+     * for bulk loads that run without them.
+     */
+    static void recordAll(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String[] t : TABLES) {
+                stmt.executeUpdate(APPEND + "SELECT '" + t[0] + "', " + t[1] + ", '" + INSERT + "', " + values(t, "")
+                        + " FROM " + t[0] + " ORDER BY " + t[1]);
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number of the latest change, or 0 if none was logged.
+     */
+    public static long lastSequence(Connection conn) throws SQLException {
+        return queryLong(conn, LAST_SEQUENCE_SQL);
+    }
+
+    /**
+     * Returns the sequence number up to which the log was purged, or 0.
+     */
+    public static long purgedThrough(Connection conn) throws SQLException {
+        return queryLong(conn, PURGED_THROUGH_SQL);
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Returns up to limit changes after the given sequence number, oldest first.
+     * Pass the sequence of the page's last change to read the next page.
+     * @throws SQLException if changes after afterSequence were purged.
+     */
+    public static Page<Change> changesAfter(Connection conn, long afterSequence, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            long purged = purgedThrough(conn);
+            if (afterSequence < purged) {
+                throw new SQLException("Changes through " + purged + " were purged; copy the catalog again");
+            }
+            List<Change> changes = new ArrayList<>(Math.min(limit, CatalogQueries.FETCH_SIZE));
+            boolean hasMore = false;
+            try (PreparedStatement pstmt = conn.prepareStatement(CHANGES_AFTER_SQL)) {
+                pstmt.setLong(1, afterSequence);
+                pstmt.setInt(2, limit + 1);
+                pstmt.setFetchSize(Math.min(limit + 1, CatalogQueries.FETCH_SIZE));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (changes.size() == limit) {
+                            hasMore = true;
+                            break;
+                        }
+                        changes.add(new Change(rs.getLong(1), rs.getString(2), rs.getInt(3),
+                                rs.getString(4).charAt(0), rs.getString(5)));
+                    }
+                }
+            }
+            READ.success(start, changes.size());
+            return new Page<>(changes, hasMore);
+        } catch (SQLException | RuntimeException e) {
+            READ.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Passes the changes after the given sequence number to the consumer in
+     * batches of up to batchSize, borrowing a pooled connection per batch. With
+     * follow, waits for new changes until the thread is interrupted; otherwise
+     * returns once the consumer has caught up.
+     * @return The sequence number of the last change consumed.
+     */
+    public static long tail(long afterSequence, int batchSize, boolean follow, Consumer<List<Change>> consumer)
+            throws SQLException {
+        long position = afterSequence;
+        while (!Thread.currentThread().isInterrupted()) {
+            Page<Change> page;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                page = changesAfter(conn, position, batchSize);
+            }
+            if (!page.items().isEmpty()) {
+                consumer.accept(page.items());
+                position = page.last().sequence();
+            }
+            if (!page.hasMore()) {
+                if (!follow) {
+                    break;
+                }
+                LockSupport.parkNanos(POLL_NANOS);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Deletes every change up to the given sequence number that a later change
+     * of the same row, also up to that number, supersedes.
+     * @return Number of deleted changes.
+     */
+    public static int compact(Connection conn, long throughSequence) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(COMPACT_SQL)) {
+            pstmt.setLong(1, throughSequence);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes every change up to the given sequence number. Consumers that
+     * have not read that far must copy the catalog again.
+     * @return Number of deleted changes.
+     */
+    public static int purge(Connection conn, long throughSequence) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            int deleted;
+            try (PreparedStatement pstmt = conn.prepareStatement(PURGE_SQL)) {
+                pstmt.setLong(1, throughSequence);
+                deleted = pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(RECORD_PURGE_SQL)) {
+                pstmt.setLong(1, throughSequence);
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+            return deleted;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    public static void main(String[] args) {
+        String usage = "Usage: java com.example.musicdb.ChangeLog tail AFTER [--batch N] [--follow]"
+                + " | status | compact THROUGH | purge THROUGH";
+        if (args.length < 1) {
+            System.out.println(usage);
+            return;
+        }
+        try {
+            DatabaseManager.createTables();
+            switch (args[0]) {
+                case "status":
+                    try (Connection conn = DatabaseManager.getConnection();
+                         Statement stmt = conn.createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COALESCE(MIN(seq), 0) FROM ChangeLog")) {
+                        rs.next();
+                        System.out.printf("%,d changes logged, sequence %d to %d, purged through %d%n",
+                                rs.getLong(1), rs.getLong(2), lastSequence(conn), purgedThrough(conn));
+                    }
+                    break;
+                case "tail":
+                    long after = Long.parseLong(args[1]);
+                    int batch = 1000;
+                    boolean follow = false;
+                    for (int i = 2; i < args.length; i++) {
+                        if (args[i].equals("--batch")) {
+                            batch = Integer.parseInt(args[++i]);
+                        } else if (args[i].equals("--follow")) {
+                            follow = true;
+                        } else {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                    }
+                    PrintWriter out = DatabaseManager.bufferedConsole();
+                    tail(after, batch, follow, changes -> {
+                        for (Change change : changes) {
+                            out.println(change.toJson());
+                        }
+                        out.flush();
+                    });
+                    break;
+                case "compact":
+                    long compactThrough = Long.parseLong(args[1]);
+                    System.out.println("Compacted " + DatabaseManager.write(conn -> compact(conn, compactThrough))
+                            + " superseded change(s).");
+                    break;
+                case "purge":
+                    long purgeThrough = Long.parseLong(args[1]);
+                    System.out.println("Purged " + DatabaseManager.write(conn -> purge(conn, purgeThrough))
+                            + " change(s).");
+                    break;
+                default:
+                    System.out.println(usage);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println(usage);
+        } catch (SQLException e) {
+            System.out.println("Error reading change log: " + e.getMessage());
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.musicdb;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of long-lived SQLite connections.
+ *
+ * Connections handed out by {@link #getConnection()} are proxies: closing one
+ * returns the underlying connection to the pool instead of closing the file.
+ * Each physical connection runs the configured PRAGMA statements once when it
+ * is opened, is validated when borrowed, and is closed after sitting idle for
+ * longer than the idle timeout. Each keeps a {@link StatementCache}, so
+ * prepareStatement on a pooled connection reuses the statements of earlier
+ * borrowers.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final String DRIVER_CLASS = "org.sqlite.JDBC";
+
+    static {
+        // Load the SQLite JDBC driver once per JVM instead of on every connection
+        try {
+            Class.forName(DRIVER_CLASS);
+        } catch (ClassNotFoundException e) {
+            System.out.println("SQLite JDBC driver not found: " + e.getMessage());
+        }
+    }
+
+    private final String url;
+    private final int maxSize;
+    private final int minIdle;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final List<String> pragmas;
+
+    // Idle connections, most recently returned first so cold ones age out at the tail
+    private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalBorrowNanos = new AtomicLong();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    /**
+     * Creates a pool.
+     * @param url JDBC URL of the database.
+     * @param maxSize Maximum number of connections open at the same time.
+     * @param minIdle Number of idle connections kept open by the evictor.
+     * @param idleTimeoutMillis Idle time after which a connection is closed.
+     * @param borrowTimeoutMillis How long a borrower waits for a free connection.
+     * @param pragmas PRAGMA assignments (e.g. "busy_timeout=5000") run on every new connection.
+     */
+    public ConnectionPool(String url, int maxSize, int minIdle, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, List<String> pragmas) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.pragmas = List.copyOf(pragmas);
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "musicdb-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a pool configured from system properties:
+     * musicdb.pool.size, musicdb.pool.minIdle, musicdb.pool.idleTimeoutMs,
+     * musicdb.pool.borrowTimeoutMs and musicdb.pool.pragmas (semicolon separated).
+     */
+    public static ConnectionPool fromSystemProperties(String url) {
+        return fromSystemProperties(url, List.of());
+    }
+
+    /**
+     * Like {@link #fromSystemProperties(String)}, running extraPragmas after the configured ones.
+     */
+    public static ConnectionPool fromSystemProperties(String url, List<String> extraPragmas) {
+        int size = Integer.getInteger("musicdb.pool.size",
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+        return fromSystemProperties(url, size, extraPragmas);
+    }
+
+    /**
+     * Like {@link #fromSystemProperties(String, List)}, with the given size instead of musicdb.pool.size.
+     */
+    public static ConnectionPool fromSystemProperties(String url, int size, List<String> extraPragmas) {
+        int minIdle = Integer.getInteger("musicdb.pool.minIdle", 1);
+        long idleTimeout = Long.getLong("musicdb.pool.idleTimeoutMs", 60_000L);
+        long borrowTimeout = Long.getLong("musicdb.pool.borrowTimeoutMs", 30_000L);
+        String pragmaList = System.getProperty("musicdb.pool.pragmas", "busy_timeout=5000");
+        List<String> pragmas = new ArrayList<>();
+        for (String pragma : pragmaList.split(";")) {
+            if (!pragma.isBlank()) {
+                pragmas.add(pragma.trim());
+            }
+        }
+        pragmas.addAll(extraPragmas);
+        return new ConnectionPool(url, size, minIdle, idleTimeout, borrowTimeout, pragmas);
+    }
+
+    /**
+     * Borrows a connection. Closing the returned connection gives it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                Metrics.CONNECTION_ACQUIRE.failure(start);
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a pooled connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        PhysicalConnection physical;
+        try {
+            physical = takeValidIdle();
+            if (physical == null) {
+                physical = openPhysical();
+            }
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        active.incrementAndGet();
+        borrows.incrementAndGet();
+        long elapsed = System.nanoTime() - start;
+        totalBorrowNanos.addAndGet(elapsed);
+        maxBorrowNanos.accumulateAndGet(elapsed, Math::max);
+        Metrics.CONNECTION_ACQUIRE.recordNanos(elapsed);
+        return wrap(physical);
+    }
+
+    private PhysicalConnection takeValidIdle() {
+        PhysicalConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            try {
+                if (!candidate.connection.isClosed() && candidate.connection.isValid(1)) {
+                    return candidate;
+                }
+            } catch (SQLException e) {
+                // treated as a failed validation below
+            }
+            validationFailures.incrementAndGet();
+            discard(candidate);
+        }
+        return null;
+    }
+
+    private PhysicalConnection openPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : pragmas) {
+                stmt.execute("PRAGMA " + pragma);
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        open.incrementAndGet();
+        created.incrementAndGet();
+        return new PhysicalConnection(conn);
+    }
+
+    private void release(PhysicalConnection physical) {
+        active.decrementAndGet();
+        // Whether the borrower's last transaction committed; one left open is rolled back
+        boolean committed = false;
+        try {
+            Connection conn = physical.connection;
+            if (closed || conn.isClosed()) {
+                committed = !conn.isClosed() && conn.getAutoCommit();
+                discard(physical);
+            } else {
+                physical.statements.releaseAll();
+                committed = conn.getAutoCommit();
+                // Never hand a half-finished transaction to the next borrower
+                if (!committed) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+                physical.lastReturned = System.currentTimeMillis();
+                idle.offerFirst(physical);
+            }
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            TableVersions.transactionEnded(committed);
+            permits.release();
+        }
+    }
+
+    private void discard(PhysicalConnection physical) {
+        open.decrementAndGet();
+        physical.statements.close();
+        try {
+            physical.connection.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<PhysicalConnection> it = idle.descendingIterator();
+        while (it.hasNext() && idle.size() > minIdle) {
+            PhysicalConnection candidate = it.next();
+            if (candidate.lastReturned < cutoff && idle.remove(candidate)) {
+                evicted.incrementAndGet();
+                discard(candidate);
+            }
+        }
+    }
+
+    private Connection wrap(PhysicalConnection physical) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                new PooledHandler(physical));
+    }
+
+    /**
+     * Returns a point-in-time snapshot of the pool counters.
+     */
+    public Stats stats() {
+        long count = borrows.get();
+        return new Stats(maxSize, active.get(), idle.size(), open.get(),
+                permits.getQueueLength(), count, created.get(), evicted.get(),
+                validationFailures.get(), timeouts.get(),
+                count == 0 ? 0 : totalWaitNanos.get() / count, maxWaitNanos.get(),
+                count == 0 ? 0 : totalBorrowNanos.get() / count, maxBorrowNanos.get());
+    }
+
+    /**
+     * Closes all idle connections; connections still borrowed are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            discard(physical);
+        }
+    }
+
+    private static final class PhysicalConnection {
+        final Connection connection;
+        final StatementCache statements;
+        volatile long lastReturned = System.currentTimeMillis();
+
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new StatementCache(connection, StatementCache.SIZE);
+        }
+    }
+
+    private final class PooledHandler implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private boolean returned;
+
+        PooledHandler(PhysicalConnection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + url + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (StatementCache.caches(method)) {
+                return physical.statements.prepare((Connection) proxy, args);
+            }
+            try {
+                return method.invoke(physical.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of pool metrics. Times are in nanoseconds.
+     */
+    public static final class Stats {
+        public final int maxSize;
+        public final int active;
+        public final int idle;
+        public final int open;
+        public final int waiting;
+        public final long borrows;
+        public final long created;
+        public final long evicted;
+        public final long validationFailures;
+        public final long timeouts;
+        public final long avgWaitNanos;
+        public final long maxWaitNanos;
+        public final long avgBorrowNanos;
+        public final long maxBorrowNanos;
+
+        Stats(int maxSize, int active, int idle, int open, int waiting, long borrows,
+              long created, long evicted, long validationFailures, long timeouts,
+              long avgWaitNanos, long maxWaitNanos, long avgBorrowNanos, long maxBorrowNanos) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.open = open;
+            this.waiting = waiting;
+            this.borrows = borrows;
+            this.created = created;
+            this.evicted = evicted;
+            this.validationFailures = validationFailures;
+            this.timeouts = timeouts;
+            this.avgWaitNanos = avgWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.avgBorrowNanos = avgBorrowNanos;
+            this.maxBorrowNanos = maxBorrowNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Pool: " + active + " active, " + idle + " idle, " + open + " open (max " + maxSize + ")"
+                    + "\nWaiting borrowers: " + waiting
+                    + "\nBorrows: " + borrows + ", connections created: " + created
+                    + ", evicted: " + evicted + ", failed validation: " + validationFailures
+                    + ", timeouts: " + timeouts
+                    + String.format("%nWait time: avg %.3f ms, max %.3f ms",
+                            avgWaitNanos / 1e6, maxWaitNanos / 1e6)
+                    + String.format("%nBorrow latency: avg %.3f ms, max %.3f ms",
+                            avgBorrowNanos / 1e6, maxBorrowNanos / 1e6);
+        }
+    }
+}
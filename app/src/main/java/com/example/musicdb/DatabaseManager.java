@@ -0,0 +1,1527 @@
+package com.example.musicdb;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+public class DatabaseManager {
+    // Connection string for SQLite; -Dmusicdb.url or setDatabaseUrl() point it at another file
+    private static volatile String dbUrl = System.getProperty("musicdb.url", "jdbc:sqlite:music.db");
+
+    // SQL for the operations below; QueryPlanCheck verifies the plan of every query
+    static final String INSERT_ARTIST_SQL = "INSERT INTO Artist (name, genre, biography) VALUES (?, ?, ?)";
+    static final String INSERT_ALBUM_SQL = "INSERT INTO Album (title, release_year, artist_id) VALUES (?, ?, ?)";
+    static final String INSERT_SONG_SQL = "INSERT INTO Song (title, duration, track_number, album_id) VALUES (?, ?, ?, ?)";
+    // With IDs a sharded catalog assigns by bucket, inside the INSERT; the last parameter is the bucket
+    static final String INSERT_ARTIST_WITH_ID_SQL = ShardedCatalog.insertWithNextId("Artist", "artist_id", "name", "genre", "biography");
+    static final String INSERT_ALBUM_WITH_ID_SQL = ShardedCatalog.insertWithNextId("Album", "album_id", "title", "release_year", "artist_id");
+    static final String INSERT_SONG_WITH_ID_SQL = ShardedCatalog.insertWithNextId("Song", "song_id", "title", "duration", "track_number", "album_id");
+    static final String UPDATE_ALBUM_TITLE_SQL = "UPDATE Album SET title = ? WHERE album_id = ?";
+    static final String DELETE_SONG_SQL = "DELETE FROM Song WHERE song_id = ?";
+    static final String SONG_ALBUM_ID_SQL = "SELECT album_id FROM Song WHERE song_id = ?";
+    static final String ARTIST_BY_ID_SQL = "SELECT artist_id, name, genre, biography FROM Artist WHERE artist_id = ?";
+    static final String ALBUM_BY_ID_SQL = "SELECT album_id, title, release_year, artist_id FROM Album WHERE album_id = ?";
+    static final String SONGS_BY_ALBUM_SQL = "SELECT song_id, title, duration, track_number, album_id FROM Song WHERE album_id = ?";
+    static final String SONGS_BY_ARTIST_SQL = "SELECT s.title AS song_title, a.title AS album_title "
+            + "FROM Song s "
+            + "JOIN Album a ON s.album_id = a.album_id "
+            + "JOIN Artist ar ON a.artist_id = ar.artist_id "
+            + "WHERE ar.name = ?";
+    static final String SONGS_BY_ARTIST_ID_SQL = "SELECT s.title AS song_title, a.title AS album_title "
+            + "FROM Album a "
+            + "JOIN Song s ON s.album_id = a.album_id "
+            + "WHERE a.artist_id = ?";
+    static final String SEARCH_SONGS_SQL = "SELECT song_id, title FROM Song WHERE title LIKE ?";
+    static final String ALBUMS_BY_YEAR_SQL = "SELECT album_id, title, release_year, artist_id FROM Album WHERE release_year = ? ORDER BY album_id";
+    static final String ALBUMS_BY_YEAR_RANGE_SQL = "SELECT album_id, title, release_year, artist_id FROM Album WHERE release_year BETWEEN ? AND ? "
+            + "ORDER BY release_year, album_id";
+    // Read from the summary tables kept up to date by CatalogStats triggers. CROSS JOIN keeps the
+    // summary table outermost, so rows come in ID order without a sort.
+    static final String COUNT_SONGS_PER_ALBUM_SQL = "SELECT a.title AS album_title, st.song_count "
+            + "FROM AlbumStats st CROSS JOIN Album a ON a.album_id = st.album_id ORDER BY st.album_id";
+    static final String COUNT_ALBUMS_PER_ARTIST_SQL = "SELECT ar.name AS artist_name, st.album_count "
+            + "FROM ArtistStats st CROSS JOIN Artist ar ON ar.artist_id = st.artist_id ORDER BY st.artist_id";
+
+    // Latency, row and error statistics of each operation, published over JMX by Metrics
+    private static final OperationStats UPDATE_ALBUM_TITLE = Metrics.operation("updateAlbumTitle");
+    private static final OperationStats LIST_SONGS_BY_ARTIST = Metrics.operation("listSongsByArtist");
+    private static final OperationStats LIST_SONGS_BY_ARTIST_ID = Metrics.operation("listSongsByArtistId");
+    private static final OperationStats ADD_ARTIST = Metrics.operation("addArtist");
+    private static final OperationStats ADD_ALBUM = Metrics.operation("addAlbum");
+    private static final OperationStats ADD_SONG = Metrics.operation("addSong");
+    private static final OperationStats DELETE_SONG = Metrics.operation("deleteSongById");
+    private static final OperationStats DELETE_ALBUM = Metrics.operation("deleteAlbumById");
+    private static final OperationStats DELETE_ARTIST = Metrics.operation("deleteArtistById");
+    private static final OperationStats GET_ARTIST = Metrics.operation("getArtist");
+    private static final OperationStats GET_ALBUM = Metrics.operation("getAlbum");
+    private static final OperationStats GET_SONGS_BY_ALBUM = Metrics.operation("getSongsByAlbum");
+    private static final OperationStats SEARCH_SONGS_BY_TITLE = Metrics.operation("searchSongsByTitle");
+    private static final OperationStats LIST_ALBUMS_BY_YEAR = Metrics.operation("listAlbumsByYear");
+    private static final OperationStats LIST_ALBUMS_BY_YEAR_RANGE = Metrics.operation("listAlbumsByYearRange");
+    private static final OperationStats COUNT_SONGS_PER_ALBUM = Metrics.operation("countSongsPerAlbum");
+    private static final OperationStats COUNT_ALBUMS_PER_ARTIST = Metrics.operation("countAlbumsPerArtist");
+    private static final OperationStats LIST_SONGS_SORTED = Metrics.operation("listSongsSortedByDuration");
+    private static final OperationStats LIST_ALBUMS_SORTED = Metrics.operation("listAlbumsSortedByYear");
+
+    // Rows per analytical lane task in the songs-by-duration listing
+    private static final int LISTING_PAGE_SIZE = 1000;
+
+    // -Dmusicdb.search=fts answers searchSongsByTitle from the full-text index (word prefix matches)
+    private static final boolean FULL_TEXT_TITLE_SEARCH = "fts".equalsIgnoreCase(System.getProperty("musicdb.search"));
+
+    // -Dmusicdb.analytics=snapshot answers listSongsSortedByDuration from the in-memory SongSnapshot
+    private static final boolean SNAPSHOT_ANALYTICS = "snapshot".equalsIgnoreCase(System.getProperty("musicdb.analytics"));
+    // -Dmusicdb.snapshot.offHeap=true keeps the snapshot's columns in direct memory
+    private static final boolean SNAPSHOT_OFF_HEAP = Boolean.getBoolean("musicdb.snapshot.offHeap");
+
+    // -Dmusicdb.concurrency=wal: WAL journal, reads on a read-only pool, writes queued to one writer connection
+    private static final boolean WAL_MODE = "wal".equalsIgnoreCase(System.getProperty("musicdb.concurrency"));
+
+    // Long-lived connections shared by every operation, created on first use
+    private static volatile ConnectionPool pool;
+    private static volatile SingleWriter writer;
+    private static volatile WriteBehindQueue writeBehind;
+
+    // Columnar copy of Song/Album, loaded on first use and refreshed from SnapshotChanges
+    private static final Object SNAPSHOT_LOCK = new Object();
+    private static volatile SongSnapshot snapshot;
+
+    // Shards named by -Dmusicdb.shards, opened on first use
+    private static final String SHARD_MANIFEST = System.getProperty("musicdb.shards", "");
+    private static volatile ShardedCatalog shards;
+
+    private static ConnectionPool pool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseManager.class) {
+                p = pool;
+                if (p == null) {
+                    if (WAL_MODE) {
+                        // The writer switches the file to WAL before any reader opens it
+                        writer();
+                        p = ConnectionPool.fromSystemProperties(dbUrl, SingleWriter.readerPragmas());
+                    } else {
+                        p = ConnectionPool.fromSystemProperties(dbUrl);
+                    }
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Opens a separate pool of read connections of the given size, for a
+     * {@link QueryLanes} lane. In WAL mode its connections are read-only.
+     */
+    static ConnectionPool readPool(int size) {
+        if (WAL_MODE) {
+            writer();
+            return ConnectionPool.fromSystemProperties(dbUrl, size, SingleWriter.readerPragmas());
+        }
+        return ConnectionPool.fromSystemProperties(dbUrl, size, List.of());
+    }
+
+    private static SingleWriter writer() {
+        SingleWriter w = writer;
+        if (w == null) {
+            synchronized (DatabaseManager.class) {
+                w = writer;
+                if (w == null) {
+                    try {
+                        w = SingleWriter.fromSystemProperties(dbUrl);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Cannot open writer connection: " + e.getMessage(), e);
+                    }
+                    writer = w;
+                }
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Borrows a pooled connection. Closing it returns it to the pool.
+     * In WAL mode the connection is read-only; use {@link #write(SqlWork)} for changes.
+     */
+    public static Connection getConnection() throws SQLException {
+        return pool().getConnection();
+    }
+
+    /**
+     * Runs a unit of work that modifies the database and returns its result.
+     * In WAL mode the work is queued to the single writer connection and this call
+     * waits for it; otherwise it runs on a pooled connection. Work that turns off
+     * auto-commit must commit before returning, or its changes are rolled back.
+     */
+    public static <T> T write(SqlWork<T> work) throws SQLException {
+        if (WAL_MODE) {
+            return writer().execute(work);
+        }
+        try (Connection conn = getConnection()) {
+            return work.run(conn);
+        }
+    }
+
+    /**
+     * Returns the sharded catalog named by -Dmusicdb.shards, or null when the
+     * catalog is a single database.
+     */
+    public static ShardedCatalog shards() {
+        if (SHARD_MANIFEST.isEmpty()) {
+            return null;
+        }
+        ShardedCatalog s = shards;
+        if (s == null) {
+            synchronized (DatabaseManager.class) {
+                s = shards;
+                if (s == null) {
+                    try {
+                        s = ShardedCatalog.open(Paths.get(SHARD_MANIFEST));
+                    } catch (IOException | SQLException e) {
+                        throw new IllegalStateException("Cannot open shards " + SHARD_MANIFEST + ": " + e.getMessage(), e);
+                    }
+                    shards = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Borrows a connection to the database holding the given artist, album or song ID.
+     */
+    static Connection connectionFor(int id) throws SQLException {
+        ShardedCatalog s = shards();
+        return s == null ? getConnection() : s.connection(id);
+    }
+
+    /**
+     * Like {@link #write(SqlWork)}, on the shard that owns the given artist, album or song ID.
+     */
+    static <T> T writeTo(int id, SqlWork<T> work) throws SQLException {
+        ShardedCatalog s = shards();
+        return s == null ? write(work) : s.write(id, work);
+    }
+
+    /**
+     * Like {@link #write(SqlWork)}, on every shard of a sharded catalog.
+     * @return The result of each shard.
+     */
+    static <T> List<T> writeAll(SqlWork<T> work) throws SQLException {
+        ShardedCatalog s = shards();
+        return s == null ? List.of(write(work)) : s.gather(conn -> List.of(work.run(conn)), null);
+    }
+
+    /**
+     * Runs a query on the database, or on every shard with the results merged.
+     * @param order Order of the query's rows; null if unordered.
+     */
+    static <T> List<T> query(SqlWork<List<T>> work, Comparator<? super T> order) throws SQLException {
+        ShardedCatalog s = shards();
+        if (s != null) {
+            return s.gather(work, order);
+        }
+        try (Connection conn = getConnection()) {
+            return work.run(conn);
+        }
+    }
+
+    /**
+     * Runs read-only work in a {@link QueryLanes} lane, with the lane's timeout.
+     * Runs it on the calling thread with -Dmusicdb.lanes=false or on a sharded catalog.
+     */
+    static <T> T read(QueryLanes.Lane lane, SqlWork<T> work) throws SQLException {
+        if (!QueryLanes.ENABLED || shards() != null) {
+            try (Connection conn = getConnection()) {
+                return work.run(conn);
+            }
+        }
+        return QueryLanes.run(lane, work);
+    }
+
+    /**
+     * Like {@link #read(QueryLanes.Lane, SqlWork)}, on the shard that owns the given
+     * artist, album or song ID; shards run it on the calling thread.
+     */
+    static <T> T read(QueryLanes.Lane lane, int id, SqlWork<T> work) throws SQLException {
+        if (!QueryLanes.ENABLED || shards() != null) {
+            try (Connection conn = connectionFor(id)) {
+                return work.run(conn);
+            }
+        }
+        return QueryLanes.run(lane, work);
+    }
+
+    /**
+     * Like {@link #query(SqlWork, Comparator)}, in a {@link QueryLanes} lane on a single database.
+     */
+    static <T> List<T> query(QueryLanes.Lane lane, SqlWork<List<T>> work, Comparator<? super T> order)
+            throws SQLException {
+        if (!QueryLanes.ENABLED || shards() != null) {
+            return query(work, order);
+        }
+        return QueryLanes.run(lane, work);
+    }
+
+    private static WriteBehindQueue writeBehind() {
+        WriteBehindQueue q = writeBehind;
+        if (q == null) {
+            synchronized (DatabaseManager.class) {
+                q = writeBehind;
+                if (q == null) {
+                    q = WriteBehindQueue.fromSystemProperties();
+                    writeBehind = q;
+                }
+            }
+        }
+        return q;
+    }
+
+    /**
+     * Queues a unit of work for the write-behind queue, which commits queued work
+     * in groups. Blocks while the queue is full.
+     * @return Completes with the work's result once its group has committed.
+     */
+    public static <T> CompletableFuture<T> writeAsync(SqlWork<T> work) {
+        if (shards() != null) {
+            return CompletableFuture.failedFuture(
+                    new SQLException("Asynchronous writes are not supported on a sharded catalog"));
+        }
+        return writeBehind().submit(work);
+    }
+
+    /**
+     * Waits until all writes queued with the *Async methods so far are committed,
+     * so reads that follow see them.
+     */
+    public static void flushWrites() throws SQLException {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    /**
+     * Returns true when running with -Dmusicdb.concurrency=wal.
+     */
+    public static boolean isWalMode() {
+        return WAL_MODE;
+    }
+
+    /**
+     * Returns the current connection pool metrics.
+     */
+    public static ConnectionPool.Stats poolStats() {
+        return pool().stats();
+    }
+
+    /**
+     * Returns the prepared statement cache counters of all connections.
+     */
+    public static StatementCache.Stats statementCacheStats() {
+        return StatementCache.stats();
+    }
+
+    /**
+     * Returns the query result cache counters.
+     */
+    public static ResultCache.Stats resultCacheStats() {
+        return ResultCache.stats();
+    }
+
+    /**
+     * Returns the writer queue metrics, or null when not in WAL mode.
+     */
+    public static SingleWriter.Stats writerStats() {
+        return WAL_MODE ? writer().stats() : null;
+    }
+
+    /**
+     * Returns the write-behind queue metrics, or null if no asynchronous write was made.
+     */
+    public static WriteBehindQueue.Stats writeBehindStats() {
+        WriteBehindQueue q = writeBehind;
+        return q == null ? null : q.stats();
+    }
+
+    /**
+     * Switches to another database. Pooled connections to the previous one are closed.
+     * @param url JDBC URL, e.g. "jdbc:sqlite:/data/catalog.db".
+     */
+    public static synchronized void setDatabaseUrl(String url) {
+        shutdown();
+        dbUrl = url;
+        EntityCache.clear();
+        ResultCache.clear();
+        TypeaheadIndex.clear();
+    }
+
+    /**
+     * Commits queued asynchronous writes, then closes all pooled connections and
+     * the writer, after its queued writes finish. All are recreated on next use.
+     */
+    public static synchronized void shutdown() {
+        if (writeBehind != null) {
+            writeBehind.close();
+            writeBehind = null;
+        }
+        QueryLanes.shutdown();
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        snapshot = null;
+        WorkloadRecorder.flush();
+        if (shards != null) {
+            shards.close();
+            shards = null;
+        }
+    }
+
+    /**
+     * Brings the schema up to date. An up-to-date database is only checked on a
+     * read connection; pending migrations run through {@link #write}.
+     */
+    public static void createTables() {
+        try {
+            if (shards() != null) {
+                // Every shard is migrated when it is opened
+                return;
+            }
+            int version;
+            try (Connection conn = getConnection()) {
+                version = SchemaMigrations.currentVersion(conn);
+            }
+            if (version < SchemaMigrations.LATEST) {
+                int migrated = write(SchemaMigrations::migrate);
+                System.out.println("Migrated schema from version " + version + " to " + migrated + ".");
+            }
+        } catch (SQLException e) {
+            System.out.println("Error creating tables: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts the sample artists, albums and songs unless they already exist.
+     */
+    public static void populateData() {
+        if (shards() != null) {
+            populateShards();
+            return;
+        }
+        // Use INSERT OR IGNORE to prevent duplicate key errors on repeated runs
+        String insertArtist1 = "INSERT OR IGNORE INTO Artist (artist_id, name, genre, biography) VALUES (1, 'The Beatles', 'Rock', 'Legendary band from Liverpool.')";
+        String insertArtist2 = "INSERT OR IGNORE INTO Artist (artist_id, name, genre, biography) VALUES (2, 'Taylor Swift', 'Pop', 'Popular singer-songwriter.')";
+
+        String insertAlbum1 = "INSERT OR IGNORE INTO Album (album_id, title, release_year, artist_id) VALUES (1, 'Abbey Road', 1969, 1)";
+        String insertAlbum2 = "INSERT OR IGNORE INTO Album (album_id, title, release_year, artist_id) VALUES (2, '1989', 2014, 2)";
+
+        String insertSong1 = "INSERT OR IGNORE INTO Song (song_id, title, duration, track_number, album_id) VALUES (1, 'Come Together', 259, 1, 1)";
+        String insertSong2 = "INSERT OR IGNORE INTO Song (song_id, title, duration, track_number, album_id) VALUES (2, 'Something', 182, 2, 1)";
+        String insertSong3 = "INSERT OR IGNORE INTO Song (song_id, title, duration, track_number, album_id) VALUES (3, 'Blank Space', 231, 1, 2)";
+        String insertSong4 = "INSERT OR IGNORE INTO Song (song_id, title, duration, track_number, album_id) VALUES (4, 'Style', 231, 2, 2)";
+
+        try {
+            write(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    conn.setAutoCommit(false);
+                    stmt.executeUpdate(insertArtist1);
+                    stmt.executeUpdate(insertArtist2);
+                    stmt.executeUpdate(insertAlbum1);
+                    stmt.executeUpdate(insertAlbum2);
+                    stmt.executeUpdate(insertSong1);
+                    stmt.executeUpdate(insertSong2);
+                    stmt.executeUpdate(insertSong3);
+                    stmt.executeUpdate(insertSong4);
+                    TableVersions.changed(TableVersions.ALL);
+                    TypeaheadIndex.clear();
+                    conn.commit();
+                    conn.setAutoCommit(true);
+                }
+                return null;
+            });
+            System.out.println("Sample data inserted successfully.");
+        } catch (SQLException e) {
+            System.out.println("Error inserting data: " + e.getMessage());
+        }
+    }
+
+    // The fixed sample IDs would not share a bucket, so shards get the same rows with assigned IDs
+    private static void populateShards() {
+        try {
+            if (!query(conn -> songsByArtist(conn, "The Beatles"), null).isEmpty()) {
+                System.out.println("Sample data already present.");
+                return;
+            }
+            int beatles = writeTo(ShardedCatalog.artistBucket("The Beatles"),
+                    conn -> addArtist(conn, "The Beatles", "Rock", "Legendary band from Liverpool."));
+            int swift = writeTo(ShardedCatalog.artistBucket("Taylor Swift"),
+                    conn -> addArtist(conn, "Taylor Swift", "Pop", "Popular singer-songwriter."));
+            int abbeyRoad = writeTo(beatles, conn -> addAlbum(conn, "Abbey Road", 1969, beatles));
+            int album1989 = writeTo(swift, conn -> addAlbum(conn, "1989", 2014, swift));
+            writeTo(abbeyRoad, conn -> addSong(conn, "Come Together", 259, 1, abbeyRoad));
+            writeTo(abbeyRoad, conn -> addSong(conn, "Something", 182, 2, abbeyRoad));
+            writeTo(album1989, conn -> addSong(conn, "Blank Space", 231, 1, album1989));
+            writeTo(album1989, conn -> addSong(conn, "Style", 231, 2, album1989));
+            System.out.println("Sample data inserted successfully.");
+        } catch (SQLException e) {
+            System.out.println("Error inserting data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Updates the title of an existing album.
+     * @param albumId ID of the album to update.
+     * @param newTitle New title to set.
+     */
+    public static void updateAlbumTitle(int albumId, String newTitle) {
+        try {
+            int affected = writeTo(albumId, conn -> updateAlbumTitle(conn, albumId, newTitle));
+            System.out.println("Updated " + affected + " album(s).");
+        } catch (SQLException e) {
+            System.out.println("Error updating album title: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Updates the title of an existing album on the given connection.
+     * @return Number of updated albums.
+     */
+    public static int updateAlbumTitle(Connection conn, int albumId, String newTitle) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.UPDATE_ALBUM_TITLE, albumId, newTitle);
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_ALBUM_TITLE_SQL)) {
+            pstmt.setString(1, newTitle);
+            pstmt.setInt(2, albumId);
+            int affected = pstmt.executeUpdate();
+            TableVersions.changed(TableVersions.ALBUM);
+            TableVersions.afterTransaction(conn, () -> {
+                EntityCache.albumChanged(albumId);
+                if (affected > 0) {
+                    TypeaheadIndex.put(FullTextSearch.KIND_ALBUM, albumId, newTitle);
+                }
+            });
+            UPDATE_ALBUM_TITLE.success(start, affected);
+            return affected;
+        } catch (SQLException | RuntimeException e) {
+            UPDATE_ALBUM_TITLE.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Lists all songs by a given artist, printing song title and album title.
+     * @param artistName Name of the artist to query.
+     */
+    public static void listSongsByArtist(String artistName) {
+        try {
+            for (SongWithAlbum song : query(QueryLanes.Lane.INTERACTIVE, conn -> songsByArtist(conn, artistName), null)) {
+                System.out.println(song.songTitle() + " - " + song.albumTitle());
+            }
+        } catch (SQLException e) {
+            System.out.println("Error listing songs by artist: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lists all songs by the artist with the given ID, printing song title and album title.
+     * Resolve the ID from a typed name with {@link TypeaheadIndex}.
+     */
+    public static void listSongsByArtist(int artistId) {
+        try {
+            for (SongWithAlbum song : query(QueryLanes.Lane.INTERACTIVE, conn -> songsByArtist(conn, artistId), null)) {
+                System.out.println(song.songTitle() + " - " + song.albumTitle());
+            }
+        } catch (SQLException e) {
+            System.out.println("Error listing songs by artist: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns all songs by the artist with the given ID, with their album titles.
+     */
+    public static List<SongWithAlbum> songsByArtist(Connection conn, int artistId) throws SQLException {
+        List<SongWithAlbum> songs = new ArrayList<>();
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.LIST_SONGS_BY_ARTIST_ID, artistId);
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(SONGS_BY_ARTIST_ID_SQL)) {
+            pstmt.setInt(1, artistId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songs.add(new SongWithAlbum(rs.getString("song_title"), rs.getString("album_title")));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            LIST_SONGS_BY_ARTIST_ID.failure(start);
+            throw e;
+        }
+        LIST_SONGS_BY_ARTIST_ID.success(start, songs.size());
+        return songs;
+    }
+
+    /**
+     * Returns all songs by the artist with the given name, with their album titles.
+     * The name must match exactly; typeahead callers pass the ID they resolved instead.
+     */
+    public static List<SongWithAlbum> songsByArtist(Connection conn, String artistName) throws SQLException {
+        List<SongWithAlbum> songs = new ArrayList<>();
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.LIST_SONGS_BY_ARTIST, artistName);
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(SONGS_BY_ARTIST_SQL)) {
+            pstmt.setString(1, artistName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songs.add(new SongWithAlbum(rs.getString("song_title"), rs.getString("album_title")));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            LIST_SONGS_BY_ARTIST.failure(start);
+            throw e;
+        }
+        LIST_SONGS_BY_ARTIST.success(start, songs.size());
+        return songs;
+    }
+
+    /**
+     * Inserts a new artist.
+     */
+    public static void addArtist(String name, String genre, String biography) {
+        try {
+            writeTo(ShardedCatalog.artistBucket(name), conn -> addArtist(conn, name, genre, biography));
+            System.out.println("Artist added.");
+        } catch (SQLException e) {
+            System.out.println("Error adding artist: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts a new artist on the given connection.
+     * @return The generated artist ID.
+     */
+    public static int addArtist(Connection conn, String name, String genre, String biography) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.ADD_ARTIST, name, genre, biography);
+        }
+        try (PreparedStatement pstmt = prepareInsert(conn, INSERT_ARTIST_SQL, INSERT_ARTIST_WITH_ID_SQL)) {
+            pstmt.setString(1, name);
+            pstmt.setString(2, genre);
+            pstmt.setString(3, biography);
+            if (shards() != null) {
+                pstmt.setInt(4, ShardedCatalog.artistBucket(name));
+            }
+            int affected = pstmt.executeUpdate();
+            int artistId = generatedKey(pstmt);
+            TableVersions.changed(TableVersions.ARTIST);
+            TableVersions.afterTransaction(conn, () -> {
+                EntityCache.artistChanged(artistId);
+                TypeaheadIndex.put(FullTextSearch.KIND_ARTIST, artistId, name);
+            });
+            ADD_ARTIST.success(start, affected);
+            return artistId;
+        } catch (SQLException | RuntimeException e) {
+            ADD_ARTIST.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a new artist for the next group commit.
+     * @return Completes with the generated artist ID.
+     */
+    public static CompletableFuture<Integer> addArtistAsync(String name, String genre, String biography) {
+        return writeAsync(conn -> addArtist(conn, name, genre, biography));
+    }
+
+    /**
+     * Inserts a new album.
+     */
+    public static void addAlbum(String title, int releaseYear, int artistId) {
+        try {
+            writeTo(artistId, conn -> addAlbum(conn, title, releaseYear, artistId));
+            System.out.println("Album added.");
+        } catch (SQLException e) {
+            System.out.println("Error adding album: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts a new album on the given connection.
+     * @return The generated album ID.
+     */
+    public static int addAlbum(Connection conn, String title, int releaseYear, int artistId) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.ADD_ALBUM, title, releaseYear, artistId);
+        }
+        try (PreparedStatement pstmt = prepareInsert(conn, INSERT_ALBUM_SQL, INSERT_ALBUM_WITH_ID_SQL)) {
+            pstmt.setString(1, title);
+            pstmt.setInt(2, releaseYear);
+            pstmt.setInt(3, artistId);
+            if (shards() != null) {
+                pstmt.setInt(4, ShardManifest.bucketOf(artistId));
+            }
+            int affected = pstmt.executeUpdate();
+            int albumId = generatedKey(pstmt);
+            TableVersions.changed(TableVersions.ALBUM);
+            TableVersions.afterTransaction(conn, () -> {
+                // An earlier lookup of this ID may have cached an empty song list
+                EntityCache.albumChanged(albumId);
+                EntityCache.albumSongsChanged(albumId);
+                TypeaheadIndex.put(FullTextSearch.KIND_ALBUM, albumId, title);
+            });
+            ADD_ALBUM.success(start, affected);
+            return albumId;
+        } catch (SQLException | RuntimeException e) {
+            ADD_ALBUM.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a new album for the next group commit.
+     * @return Completes with the generated album ID.
+     */
+    public static CompletableFuture<Integer> addAlbumAsync(String title, int releaseYear, int artistId) {
+        return writeAsync(conn -> addAlbum(conn, title, releaseYear, artistId));
+    }
+
+    /**
+     * Inserts a new song.
+     */
+    public static void addSong(String title, int duration, int trackNumber, int albumId) {
+        try {
+            writeTo(albumId, conn -> addSong(conn, title, duration, trackNumber, albumId));
+            System.out.println("Song added.");
+        } catch (SQLException e) {
+            System.out.println("Error adding song: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts a new song on the given connection.
+     * @return The generated song ID.
+     */
+    public static int addSong(Connection conn, String title, int duration, int trackNumber, int albumId)
+            throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.ADD_SONG, title, duration, trackNumber, albumId);
+        }
+        try (PreparedStatement pstmt = prepareInsert(conn, INSERT_SONG_SQL, INSERT_SONG_WITH_ID_SQL)) {
+            pstmt.setString(1, title);
+            pstmt.setInt(2, duration);
+            pstmt.setInt(3, trackNumber);
+            pstmt.setInt(4, albumId);
+            if (shards() != null) {
+                pstmt.setInt(5, ShardManifest.bucketOf(albumId));
+            }
+            int affected = pstmt.executeUpdate();
+            TableVersions.changed(TableVersions.SONG);
+            int songId = generatedKey(pstmt);
+            TableVersions.afterTransaction(conn, () -> {
+                EntityCache.albumSongsChanged(albumId);
+                TypeaheadIndex.put(FullTextSearch.KIND_SONG, songId, title);
+            });
+            ADD_SONG.success(start, affected);
+            return songId;
+        } catch (SQLException | RuntimeException e) {
+            ADD_SONG.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a new song for the next group commit.
+     * @return Completes with the generated song ID.
+     */
+    public static CompletableFuture<Integer> addSongAsync(String title, int duration, int trackNumber, int albumId) {
+        return writeAsync(conn -> addSong(conn, title, duration, trackNumber, albumId));
+    }
+
+    /**
+     * Deletes a song by ID.
+     */
+    public static void deleteSongById(int songId) {
+        try {
+            int affected = writeTo(songId, conn -> deleteSongById(conn, songId));
+            System.out.println("Deleted " + affected + " song(s).");
+        } catch (SQLException e) {
+            System.out.println("Error deleting song: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes a song by ID on the given connection.
+     * @return Number of deleted songs.
+     */
+    public static int deleteSongById(Connection conn, int songId) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.DELETE_SONG, songId);
+        }
+        try {
+            // The owning album's cached song list is the only entry that changes
+            int albumId = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(SONG_ALBUM_ID_SQL)) {
+                pstmt.setInt(1, songId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        albumId = rs.getInt(1);
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(DELETE_SONG_SQL)) {
+                pstmt.setInt(1, songId);
+                int affected = pstmt.executeUpdate();
+                if (affected > 0) {
+                    int owner = albumId;
+                    TableVersions.changed(TableVersions.SONG);
+                    TableVersions.afterTransaction(conn, () -> {
+                        EntityCache.albumSongsChanged(owner);
+                        TypeaheadIndex.remove(FullTextSearch.KIND_SONG, songId);
+                    });
+                }
+                DELETE_SONG.success(start, affected);
+                return affected;
+            }
+        } catch (SQLException | RuntimeException e) {
+            DELETE_SONG.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a song deletion for the next group commit.
+     * @return Completes with the number of deleted songs.
+     */
+    public static CompletableFuture<Integer> deleteSongByIdAsync(int songId) {
+        return writeAsync(conn -> deleteSongById(conn, songId));
+    }
+
+    /**
+     * Deletes an album and its songs by ID.
+     */
+    public static void deleteAlbumById(int albumId) {
+        try {
+            int affected = writeTo(albumId, conn -> deleteAlbumById(conn, albumId));
+            System.out.println("Deleted " + affected + " album(s).");
+        } catch (SQLException e) {
+            System.out.println("Error deleting album: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes an album and its songs by ID on the given connection.
+     * @return Number of deleted albums.
+     */
+    public static int deleteAlbumById(Connection conn, int albumId) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.DELETE_ALBUM, albumId);
+        }
+        try {
+            DeleteCounts counts = CatalogDeletes.cascadeAlbums(conn, albumId);
+            DELETE_ALBUM.success(start, counts.total());
+            return counts.albums();
+        } catch (SQLException | RuntimeException e) {
+            DELETE_ALBUM.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes an artist with its albums and songs by ID.
+     */
+    public static void deleteArtistById(int artistId) {
+        try {
+            int affected = writeTo(artistId, conn -> deleteArtistById(conn, artistId));
+            System.out.println("Deleted " + affected + " artist(s).");
+        } catch (SQLException e) {
+            System.out.println("Error deleting artist: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes an artist with its albums and songs by ID on the given connection.
+     * @return Number of deleted artists.
+     */
+    public static int deleteArtistById(Connection conn, int artistId) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.DELETE_ARTIST, artistId);
+        }
+        try {
+            DeleteCounts counts = CatalogDeletes.cascadeArtists(conn, artistId);
+            DELETE_ARTIST.success(start, counts.total());
+            return counts.artists();
+        } catch (SQLException | RuntimeException e) {
+            DELETE_ARTIST.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes every album released before the given year, with its songs.
+     */
+    public static void deleteAlbumsReleasedBefore(int year) {
+        try {
+            DeleteCounts deleted = DeleteCounts.NONE;
+            for (DeleteCounts counts : writeAll(conn -> CatalogDeletes.deleteAlbumsReleasedBefore(conn, year))) {
+                deleted = deleted.plus(counts);
+            }
+            System.out.println("Deleted " + deleted + ".");
+        } catch (SQLException e) {
+            System.out.println("Error deleting albums: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the artist with the given ID, or null if there is none. Served from the entity cache.
+     */
+    public static Artist getArtist(int artistId) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.GET_ARTIST, artistId);
+        }
+        try {
+            Artist artist = EntityCache.ARTISTS.get(artistId, DatabaseManager::loadArtist);
+            GET_ARTIST.success(start, artist == null ? 0 : 1);
+            return artist;
+        } catch (SQLException | RuntimeException e) {
+            GET_ARTIST.failure(start);
+            throw e;
+        }
+    }
+
+    private static Artist loadArtist(int artistId) throws SQLException {
+        return read(QueryLanes.Lane.INTERACTIVE, artistId, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(ARTIST_BY_ID_SQL)) {
+                pstmt.setInt(1, artistId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? CatalogQueries.artist(rs) : null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the album with the given ID, or null if there is none. Served from the entity cache.
+     */
+    public static Album getAlbum(int albumId) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.GET_ALBUM, albumId);
+        }
+        try {
+            Album album = EntityCache.ALBUMS.get(albumId, DatabaseManager::loadAlbum);
+            GET_ALBUM.success(start, album == null ? 0 : 1);
+            return album;
+        } catch (SQLException | RuntimeException e) {
+            GET_ALBUM.failure(start);
+            throw e;
+        }
+    }
+
+    private static Album loadAlbum(int albumId) throws SQLException {
+        return read(QueryLanes.Lane.INTERACTIVE, albumId, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(ALBUM_BY_ID_SQL)) {
+                pstmt.setInt(1, albumId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? CatalogQueries.album(rs) : null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the songs of an album in track order. Served from the entity cache.
+     */
+    public static List<Song> getSongsByAlbum(int albumId) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.GET_SONGS_BY_ALBUM, albumId);
+        }
+        try {
+            List<Song> songs = EntityCache.ALBUM_SONGS.get(albumId, DatabaseManager::loadSongsByAlbum);
+            GET_SONGS_BY_ALBUM.success(start, songs.size());
+            return songs;
+        } catch (SQLException | RuntimeException e) {
+            GET_SONGS_BY_ALBUM.failure(start);
+            throw e;
+        }
+    }
+
+    private static List<Song> loadSongsByAlbum(int albumId) throws SQLException {
+        List<Song> songs = read(QueryLanes.Lane.INTERACTIVE, albumId,
+                conn -> CatalogQueries.list(conn, SONGS_BY_ALBUM_SQL, CatalogQueries::song, albumId));
+        // Sorted here rather than in SQL so the lookup stays a plain index search
+        songs.sort(Comparator.comparingInt(Song::trackNumber).thenComparingInt(Song::songId));
+        return List.copyOf(songs);
+    }
+
+    /**
+     * Returns the columnar snapshot of Song and Album, loading it on first use
+     * and otherwise bringing it up to date with the changes committed since.
+     */
+    public static SongSnapshot songSnapshot() throws SQLException {
+        synchronized (SNAPSHOT_LOCK) {
+            try (Connection conn = getConnection()) {
+                SongSnapshot s = snapshot;
+                snapshot = s == null ? SongSnapshot.load(conn, SNAPSHOT_OFF_HEAP) : s.refresh(conn);
+                return snapshot;
+            }
+        }
+    }
+
+    /**
+     * Prints a duration histogram, the longest songs and the longest albums, computed from the snapshot.
+     */
+    public static void printDurationAnalytics() {
+        try {
+            long start = System.nanoTime();
+            SongSnapshot s = songSnapshot();
+            long loaded = System.nanoTime();
+            long[] histogram = s.durationHistogram(60, 10);
+            List<Song> longest = s.topByDuration(5, true);
+            List<AlbumTotal> albums = new ArrayList<>(s.albumTotals());
+            albums.sort(Comparator.comparingLong(AlbumTotal::totalDuration).reversed());
+            long done = System.nanoTime();
+
+            System.out.println("Songs by length (" + s.size() + " songs):");
+            for (int i = 0; i < histogram.length; i++) {
+                System.out.printf("  %s min: %d%n", i == histogram.length - 1 ? i + "+" : i + "-" + (i + 1), histogram[i]);
+            }
+            System.out.println("Longest songs:");
+            for (Song song : longest) {
+                System.out.println("  " + song.title() + ": " + song.duration() + "s");
+            }
+            System.out.println("Longest albums:");
+            for (AlbumTotal album : albums.subList(0, Math.min(5, albums.size()))) {
+                System.out.println("  " + album.title() + ": " + album.songCount() + " songs, "
+                        + album.totalDuration() + "s");
+            }
+            System.out.printf("Snapshot refresh %.1f ms, analytics %.1f ms%n",
+                    (loaded - start) / 1e6, (done - loaded) / 1e6);
+        } catch (SQLException e) {
+            System.out.println("Error computing duration analytics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints call counts, row counts, errors and latency percentiles of every operation so far.
+     */
+    public static void printMetrics() {
+        System.out.print(Metrics.dump());
+    }
+
+    /**
+     * Prints hit, miss and eviction counts of the entity, statement and result caches.
+     */
+    public static void printCacheStats() {
+        for (LruCache.Stats stats : EntityCache.stats()) {
+            System.out.println(stats);
+        }
+        System.out.println(statementCacheStats());
+        System.out.println(resultCacheStats());
+    }
+
+    /**
+     * Compares the AlbumStats/ArtistStats summary tables with the catalog and prints every drifted row.
+     * @return Number of drifted rows, or -1 if the check failed.
+     */
+    public static int verifyCatalogStats() {
+        try (Connection conn = getConnection()) {
+            List<String> drift = CatalogStats.verify(conn);
+            for (String line : drift) {
+                System.out.println(line);
+            }
+            System.out.println(drift.isEmpty() ? "Summary tables match the catalog."
+                    : drift.size() + " summary row(s) drifted.");
+            return drift.size();
+        } catch (SQLException e) {
+            System.out.println("Error verifying summary tables: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Recomputes the AlbumStats/ArtistStats summary tables from the catalog.
+     */
+    public static void rebuildCatalogStats() {
+        try {
+            int rows = write(CatalogStats::rebuild);
+            System.out.println("Rebuilt " + rows + " summary row(s).");
+        } catch (SQLException e) {
+            System.out.println("Error rebuilding summary tables: " + e.getMessage());
+        }
+    }
+
+    // On a sharded catalog the caller binds the bucket of the new row as the last parameter
+    private static PreparedStatement prepareInsert(Connection conn, String sql, String shardedSql) throws SQLException {
+        return conn.prepareStatement(shards() == null ? sql : shardedSql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    private static int generatedKey(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("No generated key returned");
+            }
+            return keys.getInt(1);
+        }
+    }
+
+    /**
+     * Searches songs by title keyword.
+     */
+    public static void searchSongsByTitle(String keyword) {
+        try {
+            for (SongTitle song : query(QueryLanes.Lane.ANALYTICAL, conn -> searchSongsByTitle(conn, keyword), null)) {
+                System.out.println(song.songId() + ": " + song.title());
+            }
+        } catch (SQLException e) {
+            System.out.println("Error searching songs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the songs whose title contains the keyword, or with -Dmusicdb.search=fts,
+     * the songs with a title word starting with each keyword word.
+     */
+    public static List<SongTitle> searchSongsByTitle(Connection conn, String keyword) throws SQLException {
+        List<SongTitle> songs = new ArrayList<>();
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.SEARCH_SONGS_BY_TITLE, keyword);
+        }
+        try {
+            if (FULL_TEXT_TITLE_SEARCH) {
+                for (FullTextSearch.Hit hit : FullTextSearch.searchSongTitles(conn, keyword, 0, Integer.MAX_VALUE)) {
+                    songs.add(new SongTitle(hit.id, hit.song));
+                }
+            } else {
+                try (PreparedStatement pstmt = conn.prepareStatement(SEARCH_SONGS_SQL)) {
+                    pstmt.setString(1, "%" + keyword + "%");
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            songs.add(new SongTitle(rs.getInt("song_id"), rs.getString("title")));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            SEARCH_SONGS_BY_TITLE.failure(start);
+            throw e;
+        }
+        SEARCH_SONGS_BY_TITLE.success(start, songs.size());
+        return songs;
+    }
+
+    /**
+     * Full-text search across song titles, album titles and artist names, best matches first.
+     * @param words Search words; each one also matches as a prefix.
+     * @param page Zero-based page number.
+     * @param pageSize Results per page.
+     */
+    public static void searchCatalog(String words, int page, int pageSize) {
+        try {
+            List<FullTextSearch.Hit> hits = read(QueryLanes.Lane.ANALYTICAL,
+                    conn -> FullTextSearch.search(conn, words, page, pageSize));
+            if (hits.isEmpty()) {
+                System.out.println("No matches.");
+            }
+            for (FullTextSearch.Hit hit : hits) {
+                System.out.println(hit);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error searching catalog: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the artists, albums and songs whose name starts with the prefix,
+     * ignoring case and accents, from the in-memory {@link TypeaheadIndex}.
+     */
+    public static void completeNames(String prefix, int limit) {
+        try {
+            List<TypeaheadIndex.Completion> completions = TypeaheadIndex.complete(prefix, limit);
+            if (completions.isEmpty()) {
+                System.out.println("No matches.");
+            }
+            for (TypeaheadIndex.Completion completion : completions) {
+                System.out.println(completion);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error completing names: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lists albums released in a given year.
+     */
+    public static void listAlbumsByYear(int year) {
+        try {
+            printAlbums(albumsByYear(year));
+        } catch (SQLException e) {
+            System.out.println("Error listing albums by year: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the albums of the catalog released in the given year, in ID order,
+     * from the result cache unless an album changed since.
+     */
+    public static List<Album> albumsByYear(int year) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.LIST_ALBUMS_BY_YEAR, year);
+        }
+        return ResultCache.get(LIST_ALBUMS_BY_YEAR, TableVersions.ALBUM, List::size,
+                () -> List.copyOf(query(QueryLanes.Lane.INTERACTIVE,
+                        conn -> queryAlbums(conn, LIST_ALBUMS_BY_YEAR, ALBUMS_BY_YEAR_SQL, year),
+                        CatalogQueries.BY_ALBUM_ID)), year);
+    }
+
+    /**
+     * Returns the albums released in the given year, in ID order.
+     */
+    public static List<Album> albumsByYear(Connection conn, int year) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.LIST_ALBUMS_BY_YEAR, year);
+        }
+        return queryAlbums(conn, LIST_ALBUMS_BY_YEAR, ALBUMS_BY_YEAR_SQL, year);
+    }
+
+    /**
+     * Lists albums released between two years.
+     */
+    public static void listAlbumsByYearRange(int startYear, int endYear) {
+        try {
+            printAlbums(albumsByYearRange(startYear, endYear));
+        } catch (SQLException e) {
+            System.out.println("Error listing albums by range: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the albums of the catalog released between the two years, inclusive,
+     * by year and then ID, from the result cache unless an album changed since.
+     */
+    public static List<Album> albumsByYearRange(int startYear, int endYear) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.LIST_ALBUMS_BY_YEAR_RANGE, startYear, endYear);
+        }
+        return ResultCache.get(LIST_ALBUMS_BY_YEAR_RANGE, TableVersions.ALBUM, List::size,
+                () -> List.copyOf(query(QueryLanes.Lane.ANALYTICAL,
+                        conn -> queryAlbums(conn, LIST_ALBUMS_BY_YEAR_RANGE, ALBUMS_BY_YEAR_RANGE_SQL, startYear, endYear),
+                        CatalogQueries.BY_RELEASE_YEAR)), startYear, endYear);
+    }
+
+    /**
+     * Returns the albums released between the two years, inclusive, by year and then ID.
+     */
+    public static List<Album> albumsByYearRange(Connection conn, int startYear, int endYear) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.LIST_ALBUMS_BY_YEAR_RANGE, startYear, endYear);
+        }
+        return queryAlbums(conn, LIST_ALBUMS_BY_YEAR_RANGE, ALBUMS_BY_YEAR_RANGE_SQL, startYear, endYear);
+    }
+
+    private static List<Album> queryAlbums(Connection conn, OperationStats op, String sql, int... params)
+            throws SQLException {
+        List<Album> albums = new ArrayList<>();
+        long start = System.nanoTime();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setInt(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    albums.add(CatalogQueries.album(rs));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            op.failure(start);
+            throw e;
+        }
+        op.success(start, albums.size());
+        return albums;
+    }
+
+    private static void printAlbums(List<Album> albums) {
+        for (Album album : albums) {
+            System.out.println(album.albumId() + ": " + album.title() + " (" + album.releaseYear() + ")");
+        }
+    }
+
+    /**
+     * Counts songs per album.
+     */
+    public static void countSongsPerAlbum() {
+        try {
+            for (NamedCount count : songCountsPerAlbum()) {
+                System.out.println(count.name() + ": " + count.count());
+            }
+        } catch (SQLException e) {
+            System.out.println("Error counting songs per album: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of songs on each album of the catalog, keyed by album
+     * title, from the result cache unless an album or song changed since.
+     */
+    public static List<NamedCount> songCountsPerAlbum() throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.COUNT_SONGS_PER_ALBUM);
+        }
+        return ResultCache.get(COUNT_SONGS_PER_ALBUM, TableVersions.ALBUM | TableVersions.SONG, List::size,
+                () -> List.copyOf(query(QueryLanes.Lane.ANALYTICAL,
+                        conn -> queryCounts(conn, COUNT_SONGS_PER_ALBUM, COUNT_SONGS_PER_ALBUM_SQL), null)));
+    }
+
+    /**
+     * Returns the number of songs on each album, keyed by album title.
+     */
+    public static List<NamedCount> songCountsPerAlbum(Connection conn) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.COUNT_SONGS_PER_ALBUM);
+        }
+        return queryCounts(conn, COUNT_SONGS_PER_ALBUM, COUNT_SONGS_PER_ALBUM_SQL);
+    }
+
+    /**
+     * Counts albums per artist.
+     */
+    public static void countAlbumsPerArtist() {
+        try {
+            for (NamedCount count : albumCountsPerArtist()) {
+                System.out.println(count.name() + ": " + count.count());
+            }
+        } catch (SQLException e) {
+            System.out.println("Error counting albums per artist: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of albums of each artist of the catalog, keyed by artist
+     * name, from the result cache unless an artist or album changed since.
+     */
+    public static List<NamedCount> albumCountsPerArtist() throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.COUNT_ALBUMS_PER_ARTIST);
+        }
+        return ResultCache.get(COUNT_ALBUMS_PER_ARTIST, TableVersions.ARTIST | TableVersions.ALBUM, List::size,
+                () -> List.copyOf(query(QueryLanes.Lane.ANALYTICAL,
+                        conn -> queryCounts(conn, COUNT_ALBUMS_PER_ARTIST, COUNT_ALBUMS_PER_ARTIST_SQL), null)));
+    }
+
+    /**
+     * Returns the number of albums of each artist, keyed by artist name.
+     */
+    public static List<NamedCount> albumCountsPerArtist(Connection conn) throws SQLException {
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.COUNT_ALBUMS_PER_ARTIST);
+        }
+        return queryCounts(conn, COUNT_ALBUMS_PER_ARTIST, COUNT_ALBUMS_PER_ARTIST_SQL);
+    }
+
+    private static List<NamedCount> queryCounts(Connection conn, OperationStats op, String sql) throws SQLException {
+        List<NamedCount> counts = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                counts.add(new NamedCount(rs.getString(1), rs.getInt(2)));
+            }
+        } catch (SQLException | RuntimeException e) {
+            op.failure(start);
+            throw e;
+        }
+        op.success(start, counts.size());
+        return counts;
+    }
+
+    /**
+     * Lists songs sorted by duration, streaming rows to the console through a buffered writer.
+     * A listing that fits in the result cache is kept there until a song changes.
+     * On a single database the rows are fetched a page at a time in the analytical
+     * lane, so its timeout bounds each query, and printed on the calling thread.
+     */
+    public static void listSongsSortedByDuration(boolean descending) {
+        // The snapshot covers a single database
+        if (SNAPSHOT_ANALYTICS && shards() == null) {
+            listSongsSortedByDurationFromSnapshot(descending);
+            return;
+        }
+        PrintWriter out = bufferedConsole();
+        long start = System.nanoTime();
+        List<Song> cached = ResultCache.lookup(LIST_SONGS_SORTED, descending);
+        if (cached != null) {
+            for (Song song : cached) {
+                out.println(song.title() + ": " + song.duration() + "s");
+            }
+            LIST_SONGS_SORTED.success(start, cached.size());
+            out.flush();
+            return;
+        }
+        long stamp = TableVersions.stamp(TableVersions.SONG);
+        try {
+            long rows;
+            if (QueryLanes.ENABLED && shards() == null) {
+                rows = printSongs(out, songsByDurationInLane(descending), stamp, descending);
+            } else {
+                try (Stream<Song> songs = CatalogQueries.songsByDuration(descending)) {
+                    rows = printSongs(out, songs.iterator(), stamp, descending);
+                }
+            }
+            LIST_SONGS_SORTED.success(start, rows);
+        } catch (SQLException | IllegalStateException e) {
+            LIST_SONGS_SORTED.failure(start);
+            out.println("Error listing songs sorted: " + e.getMessage());
+        }
+        out.flush();
+    }
+
+    // Prints the listing; one that fits is put in the result cache
+    private static long printSongs(PrintWriter out, Iterator<Song> songs, long stamp, boolean descending) {
+        // Collected for the cache until the listing outgrows it
+        List<Song> kept = new ArrayList<>();
+        long rows = 0;
+        for (; songs.hasNext(); rows++) {
+            Song song = songs.next();
+            out.println(song.title() + ": " + song.duration() + "s");
+            if (kept != null) {
+                kept.add(song);
+                if (kept.size() > ResultCache.MAX_ROWS) {
+                    kept = null;
+                }
+            }
+        }
+        if (kept != null) {
+            ResultCache.put(LIST_SONGS_SORTED, TableVersions.SONG, stamp, Collections.unmodifiableList(kept),
+                    kept.size(), descending);
+        }
+        return rows;
+    }
+
+    // Songs by duration, each keyset page fetched as its own analytical lane task
+    private static Iterator<Song> songsByDurationInLane(boolean descending) {
+        return new Iterator<>() {
+            private List<Song> page = List.of();
+            private int next;
+            private boolean more = true;
+
+            @Override
+            public boolean hasNext() {
+                if (next == page.size() && more) {
+                    Song after = page.isEmpty() ? null : page.get(page.size() - 1);
+                    try {
+                        page = QueryLanes.run(QueryLanes.Lane.ANALYTICAL,
+                                conn -> CatalogQueries.songsByDurationPage(conn, descending, after, LISTING_PAGE_SIZE));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    next = 0;
+                    more = page.size() == LISTING_PAGE_SIZE;
+                }
+                return next < page.size();
+            }
+
+            @Override
+            public Song next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+    }
+
+    private static void listSongsSortedByDurationFromSnapshot(boolean descending) {
+        PrintWriter out = bufferedConsole();
+        long start = System.nanoTime();
+        try {
+            SongSnapshot s = songSnapshot();
+            int[] rows = s.rowsByDuration(descending);
+            for (int row : rows) {
+                out.println(s.title(row) + ": " + s.duration(row) + "s");
+            }
+            LIST_SONGS_SORTED.success(start, rows.length);
+        } catch (SQLException | RuntimeException e) {
+            LIST_SONGS_SORTED.failure(start);
+            out.println("Error listing songs sorted: " + e.getMessage());
+        }
+        out.flush();
+    }
+
+    /**
+     * Lists albums sorted by release year, streaming rows to the console through a buffered writer.
+     */
+    public static void listAlbumsSortedByYear(boolean descending) {
+        PrintWriter out = bufferedConsole();
+        long start = System.nanoTime();
+        try (Stream<Album> albums = CatalogQueries.albumsByReleaseYear(descending)) {
+            long rows = 0;
+            for (Iterator<Album> it = albums.iterator(); it.hasNext(); rows++) {
+                Album album = it.next();
+                out.println(album.title() + ": " + album.releaseYear());
+            }
+            LIST_ALBUMS_SORTED.success(start, rows);
+        } catch (SQLException | IllegalStateException e) {
+            LIST_ALBUMS_SORTED.failure(start);
+            out.println("Error listing albums sorted: " + e.getMessage());
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns a buffered writer on standard output; callers flush it when done.
+     */
+    static PrintWriter bufferedConsole() {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), false);
+    }
+
+    /**
+     * Demonstrates a simple transaction that adds then rolls back.
+     */
+    public static void demonstrateTransaction() {
+        try {
+            write(conn -> {
+                conn.setAutoCommit(false);
+                // example: insert temporary artist then rollback
+                String sql = "INSERT INTO Artist (name, genre, biography) VALUES ('Temp Artist', 'Test', 'Demo')";
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(sql);
+                    System.out.println("Temporary artist added but will rollback");
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                    System.out.println("Rolled back transaction");
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.out.println("Error in transaction demo: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.musicdb;
+
+/**
+ * Rows removed from each table by a delete, including cascaded rows.
+ */
+public record DeleteCounts(int artists, int albums, int songs) {
+    public static final DeleteCounts NONE = new DeleteCounts(0, 0, 0);
+
+    public DeleteCounts plus(DeleteCounts other) {
+        return new DeleteCounts(artists + other.artists, albums + other.albums, songs + other.songs);
+    }
+
+    public int total() {
+        return artists + albums + songs;
+    }
+
+    @Override
+    public String toString() {
+        return artists + " artist(s), " + albums + " album(s), " + songs + " song(s)";
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.musicdb;
+
+import java.util.List;
+
+/**
+ * In-process caches for Artist and Album rows and for the song list of each album.
+ *
+ * DatabaseManager reads through these caches and invalidates the affected
+ * entries after every insert, update and delete, once its transaction commits
+ * (see {@link TableVersions#afterTransaction}); invalidating earlier would let
+ * a concurrent read cache the row as it was before the commit, and a rollback
+ * leaves the entries as they are. Configured with
+ * -Dmusicdb.cache.size (entries per cache, 0 disables caching) and
+ * -Dmusicdb.cache.ttlMs (0 keeps entries until they are evicted or invalidated).
+ */
+public class EntityCache {
+    private static final int SIZE = Integer.getInteger("musicdb.cache.size", 10_000);
+    private static final long TTL_MILLIS = Long.getLong("musicdb.cache.ttlMs", 0L);
+
+    static final LruCache<Integer, Artist> ARTISTS = new LruCache<>("Artist", SIZE, TTL_MILLIS);
+    static final LruCache<Integer, Album> ALBUMS = new LruCache<>("Album", SIZE, TTL_MILLIS);
+    static final LruCache<Integer, List<Song>> ALBUM_SONGS = new LruCache<>("Album songs", SIZE, TTL_MILLIS);
+
+    public static void artistChanged(int artistId) {
+        ARTISTS.invalidate(artistId);
+    }
+
+    public static void albumChanged(int albumId) {
+        ALBUMS.invalidate(albumId);
+    }
+
+    public static void albumSongsChanged(int albumId) {
+        ALBUM_SONGS.invalidate(albumId);
+    }
+
+    public static void clear() {
+        ARTISTS.invalidateAll();
+        ALBUMS.invalidateAll();
+        ALBUM_SONGS.invalidateAll();
+    }
+
+    public static List<LruCache.Stats> stats() {
+        return List.of(ARTISTS.stats(), ALBUMS.stats(), ALBUM_SONGS.stats());
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Full-text search over song, album and artist titles backed by an FTS5 table.
+ *
+ * CatalogSearch holds one row per artist, album and song with the columns
+ * (song, album, artist); an album row has no song and an artist row only has
+ * the artist name. The rowid encodes the entity: id * 4 + kind, where kind is
+ * 0 for artists, 1 for albums and 2 for songs. Triggers on Artist, Album and
+ * Song keep the index in sync with every insert, update and delete, including
+ * renamed albums and artists.
+ *
+ * Usage: java com.example.musicdb.FullTextSearch rebuild | java com.example.musicdb.FullTextSearch search WORDS...
+ */
+public class FullTextSearch {
+    public static final int KIND_ARTIST = 0;
+    public static final int KIND_ALBUM = 1;
+    public static final int KIND_SONG = 2;
+
+    private static final OperationStats SEARCH_CATALOG = Metrics.operation("searchCatalog");
+
+    private static final String CREATE_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS CatalogSearch USING fts5("
+            + "song, album, artist, "
+            + "tokenize = 'unicode61 remove_diacritics 2', "
+            + "prefix = '2 3')";
+
+    // Matches in a song title count more than in its album, which count more than in the artist name
+    private static final String RANK_FUNCTION = "bm25(10.0, 5.0, 2.0)";
+
+    private static final String ARTIST_NAME = "(SELECT name FROM Artist WHERE artist_id = %s)";
+    private static final String ALBUM_TITLE = "(SELECT title FROM Album WHERE album_id = %s)";
+    private static final String ALBUM_ARTIST_NAME = "(SELECT ar.name FROM Album a JOIN Artist ar "
+            + "ON a.artist_id = ar.artist_id WHERE a.album_id = %s)";
+
+    private static final String[] TRIGGERS = {
+        "CREATE TRIGGER IF NOT EXISTS fts_artist_ai AFTER INSERT ON Artist BEGIN "
+            + "INSERT INTO CatalogSearch (rowid, song, album, artist) "
+            + "VALUES (new.artist_id * 4, NULL, NULL, new.name); END",
+        "CREATE TRIGGER IF NOT EXISTS fts_artist_ad AFTER DELETE ON Artist BEGIN "
+            + "DELETE FROM CatalogSearch WHERE rowid = old.artist_id * 4; END",
+        "CREATE TRIGGER IF NOT EXISTS fts_artist_au AFTER UPDATE OF name ON Artist BEGIN "
+            + "UPDATE CatalogSearch SET artist = new.name WHERE rowid = new.artist_id * 4; "
+            + "UPDATE CatalogSearch SET artist = new.name WHERE rowid IN ("
+            + "SELECT album_id * 4 + 1 FROM Album WHERE artist_id = new.artist_id "
+            + "UNION ALL SELECT s.song_id * 4 + 2 FROM Album a JOIN Song s ON s.album_id = a.album_id "
+            + "WHERE a.artist_id = new.artist_id); END",
+
+        "CREATE TRIGGER IF NOT EXISTS fts_album_ai AFTER INSERT ON Album BEGIN "
+            + "INSERT INTO CatalogSearch (rowid, song, album, artist) "
+            + "VALUES (new.album_id * 4 + 1, NULL, new.title, "
+            + String.format(ARTIST_NAME, "new.artist_id") + "); END",
+        "CREATE TRIGGER IF NOT EXISTS fts_album_ad AFTER DELETE ON Album BEGIN "
+            + "DELETE FROM CatalogSearch WHERE rowid = old.album_id * 4 + 1; END",
+        "CREATE TRIGGER IF NOT EXISTS fts_album_au AFTER UPDATE OF title, artist_id ON Album BEGIN "
+            + "UPDATE CatalogSearch SET album = new.title, artist = "
+            + String.format(ARTIST_NAME, "new.artist_id") + " "
+            + "WHERE rowid = new.album_id * 4 + 1; "
+            + "UPDATE CatalogSearch SET album = new.title, artist = "
+            + String.format(ARTIST_NAME, "new.artist_id") + " "
+            + "WHERE rowid IN (SELECT song_id * 4 + 2 FROM Song WHERE album_id = new.album_id); END",
+
+        "CREATE TRIGGER IF NOT EXISTS fts_song_ai AFTER INSERT ON Song BEGIN "
+            + "INSERT INTO CatalogSearch (rowid, song, album, artist) "
+            + "VALUES (new.song_id * 4 + 2, new.title, "
+            + String.format(ALBUM_TITLE, "new.album_id") + ", "
+            + String.format(ALBUM_ARTIST_NAME, "new.album_id") + "); END",
+        "CREATE TRIGGER IF NOT EXISTS fts_song_ad AFTER DELETE ON Song BEGIN "
+            + "DELETE FROM CatalogSearch WHERE rowid = old.song_id * 4 + 2; END",
+        "CREATE TRIGGER IF NOT EXISTS fts_song_au AFTER UPDATE OF title, album_id ON Song BEGIN "
+            + "UPDATE CatalogSearch SET song = new.title, "
+            + "album = " + String.format(ALBUM_TITLE, "new.album_id") + ", "
+            + "artist = " + String.format(ALBUM_ARTIST_NAME, "new.album_id") + " "
+            + "WHERE rowid = new.song_id * 4 + 2; END",
+    };
+
+    static final String SEARCH_SQL = "SELECT rowid, song, album, artist, rank FROM CatalogSearch "
+            + "WHERE CatalogSearch MATCH ? ORDER BY rank LIMIT ? OFFSET ?";
+
+    /**
+     * Creates the search table and its triggers if missing. A newly created
+     * table is filled from the existing catalog.
+     */
+    public static void ensureSchema(Connection conn) throws SQLException {
+        boolean exists;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'CatalogSearch'")) {
+            exists = rs.next();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE);
+            stmt.execute("INSERT INTO CatalogSearch (CatalogSearch, rank) VALUES ('rank', '" + RANK_FUNCTION + "')");
+            for (String trigger : TRIGGERS) {
+                stmt.execute(trigger);
+            }
+        }
+        if (!exists) {
+            rebuild(conn);
+        }
+    }
+
+    /**
+     * Repopulates the search table from Artist, Album and Song.
+     * @return Number of indexed rows.
+     */
+    public static int rebuild(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM CatalogSearch");
+            stmt.executeUpdate("INSERT INTO CatalogSearch (rowid, song, album, artist) "
+                    + "SELECT artist_id * 4, NULL, NULL, name FROM Artist");
+            stmt.executeUpdate("INSERT INTO CatalogSearch (rowid, song, album, artist) "
+                    + "SELECT a.album_id * 4 + 1, NULL, a.title, ar.name "
+                    + "FROM Album a LEFT JOIN Artist ar ON a.artist_id = ar.artist_id");
+            stmt.executeUpdate("INSERT INTO CatalogSearch (rowid, song, album, artist) "
+                    + "SELECT s.song_id * 4 + 2, s.title, a.title, ar.name "
+                    + "FROM Song s LEFT JOIN Album a ON s.album_id = a.album_id "
+                    + "LEFT JOIN Artist ar ON a.artist_id = ar.artist_id");
+            stmt.execute("INSERT INTO CatalogSearch (CatalogSearch) VALUES ('optimize')");
+            int rows;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM CatalogSearch")) {
+                rows = rs.next() ? rs.getInt(1) : 0;
+            }
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Ranked search across song, album and artist names. Every word must match,
+     * and each word also matches as a prefix ("beat" finds "Beatles").
+     * @param words User-entered search words.
+     * @param page Zero-based page number.
+     * @param pageSize Results per page.
+     */
+    public static List<Hit> search(Connection conn, String words, int page, int pageSize) throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.SEARCH_CATALOG, words, page, pageSize);
+        }
+        try {
+            List<Hit> hits = query(conn, toMatchExpression(null, words), page, pageSize);
+            SEARCH_CATALOG.success(start, hits.size());
+            return hits;
+        } catch (SQLException | RuntimeException e) {
+            SEARCH_CATALOG.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #search}, but only matches song titles.
+     */
+    public static List<Hit> searchSongTitles(Connection conn, String words, int page, int pageSize)
+            throws SQLException {
+        return query(conn, toMatchExpression("song", words), page, pageSize);
+    }
+
+    private static List<Hit> query(Connection conn, String match, int page, int pageSize) throws SQLException {
+        List<Hit> hits = new ArrayList<>();
+        if (match == null) {
+            return hits;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(SEARCH_SQL)) {
+            pstmt.setString(1, match);
+            pstmt.setInt(2, pageSize);
+            pstmt.setLong(3, (long) page * pageSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long rowid = rs.getLong("rowid");
+                    hits.add(new Hit((int) (rowid & 3), (int) (rowid >> 2), rs.getString("song"),
+                            rs.getString("album"), rs.getString("artist"), rs.getDouble("rank")));
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Turns free text into an FTS5 query of quoted prefix terms, so user input
+     * can never be parsed as FTS5 operators. Returns null when there are no words.
+     */
+    static String toMatchExpression(String column, String words) {
+        StringBuilder terms = new StringBuilder();
+        for (String word : words.trim().split("[\\s\"]+")) {
+            if (!word.isEmpty()) {
+                terms.append(terms.length() == 0 ? "" : " ").append('"').append(word).append("\"*");
+            }
+        }
+        if (terms.length() == 0) {
+            return null;
+        }
+        return column == null ? terms.toString() : "{" + column + "} : (" + terms + ")";
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || !(args[0].equals("rebuild") || args[0].equals("search"))) {
+            System.out.println("Usage: java com.example.musicdb.FullTextSearch rebuild | java com.example.musicdb.FullTextSearch search WORDS...");
+            return;
+        }
+        DatabaseManager.createTables();
+        try {
+            if (args[0].equals("rebuild")) {
+                long start = System.nanoTime();
+                int rows = DatabaseManager.write(FullTextSearch::rebuild);
+                System.out.printf("Rebuilt full-text index: %,d rows in %.2f s%n",
+                        rows, (System.nanoTime() - start) / 1e9);
+            } else {
+                String words = String.join(" ", Arrays.asList(args).subList(1, args.length));
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    for (Hit hit : search(conn, words, 0, 20)) {
+                        System.out.println(hit);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error running full-text search: " + e.getMessage());
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+
+    /**
+     * One search result. Lower rank is a better match.
+     */
+    public static final class Hit {
+        public final int kind;
+        public final int id;
+        public final String song;
+        public final String album;
+        public final String artist;
+        public final double rank;
+
+        Hit(int kind, int id, String song, String album, String artist, double rank) {
+            this.kind = kind;
+            this.id = id;
+            this.song = song;
+            this.album = album;
+            this.artist = artist;
+            this.rank = rank;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case KIND_ARTIST:
+                    return "Artist " + id + ": " + artist;
+                case KIND_ALBUM:
+                    return "Album " + id + ": " + album + " by " + artist;
+                default:
+                    return "Song " + id + ": " + song + " - " + album + " by " + artist;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.musicdb;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded, least-recently-used read-through cache with an optional time to live.
+ *
+ * A value loaded while an invalidation is in flight is returned to the caller
+ * but not stored, so a reader that raced with a write can never put the old
+ * row back into the cache.
+ */
+public class LruCache<K, V> {
+
+    /**
+     * Loads a value on a cache miss; returning null means "no such row" and is not cached.
+     */
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    // Bumped by every invalidation; a load only stores its result if this did not move
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    /**
+     * @param name Name used in statistics output.
+     * @param maxSize Maximum number of entries kept.
+     * @param ttlMillis Time after which an entry is reloaded, or 0 to keep entries until evicted.
+     */
+    public LruCache(String name, int maxSize, long ttlMillis) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<K, Entry<V>>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it on a miss.
+     */
+    public V get(K key, Loader<K, V> loader) throws SQLException {
+        long startGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (ttlNanos == 0 || System.nanoTime() - entry.loadedAt < ttlNanos) {
+                    hits++;
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            startGeneration = generation;
+        }
+
+        // Load outside the lock so a slow query does not block other keys
+        V value = loader.load(key);
+
+        synchronized (this) {
+            if (value != null && maxSize > 0 && generation == startGeneration) {
+                entries.put(key, new Entry<>(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(name, entries.size(), maxSize, hits, misses, evictions, expirations, invalidations);
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Snapshot of cache counters.
+     */
+    public static final class Stats {
+        public final String name;
+        public final int size;
+        public final int maxSize;
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long expirations;
+        public final long invalidations;
+
+        Stats(String name, int size, int maxSize, long hits, long misses,
+              long evictions, long expirations, long invalidations) {
+            this.name = name;
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d/%d entries, %d hits, %d misses (%.1f%% hit rate), "
+                            + "%d evictions, %d expirations, %d invalidations",
+                    name, size, maxSize, hits, misses, hitRate() * 100, evictions, expirations, invalidations);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.musicdb;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of per-operation statistics.
+ *
+ * Every operation is published as an MXBean named
+ * com.example.musicdb:type=Operation,name=&lt;operation&gt; (visible in JConsole or
+ * VisualVM). Creating the platform MBean server takes a few hundred
+ * milliseconds, so registration happens on a background thread instead of
+ * delaying startup; -Dmusicdb.metrics.jmx=false skips it. With
+ * -Dmusicdb.metrics.dumpSeconds=N the table from {@link #dump()} is also
+ * printed every N seconds.
+ */
+public final class Metrics {
+    private static final Map<String, OperationStats> OPERATIONS = new ConcurrentHashMap<>();
+
+    // Declared before the operations below so that they are registered too
+    private static final boolean JMX = !"false".equalsIgnoreCase(System.getProperty("musicdb.metrics.jmx"));
+    private static final ExecutorService REGISTRAR = JMX ? Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "musicdb-jmx");
+        t.setDaemon(true);
+        return t;
+    }) : null;
+
+    // Time to borrow a pooled connection, and for queued writes, to reach the writer thread
+    public static final OperationStats CONNECTION_ACQUIRE = operation("connection.acquire");
+    public static final OperationStats WRITER_QUEUE = operation("writer.queue");
+
+    private static ScheduledExecutorService reporter;
+
+    static {
+        long seconds = Long.getLong("musicdb.metrics.dumpSeconds", 0L);
+        if (seconds > 0) {
+            startReporter(seconds);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the statistics of the named operation, creating and registering them on first use.
+     * Look operations up once and keep them; the lookup itself is not free.
+     */
+    public static OperationStats operation(String name) {
+        return OPERATIONS.computeIfAbsent(name, Metrics::register);
+    }
+
+    private static OperationStats register(String name) {
+        OperationStats stats = new OperationStats(name);
+        if (JMX) {
+            REGISTRAR.execute(() -> registerMBean(name, stats));
+        }
+        return stats;
+    }
+
+    private static void registerMBean(String name, OperationStats stats) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("com.example.musicdb:type=Operation,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(stats, objectName);
+            }
+        } catch (JMException e) {
+            System.out.println("Error registering metrics for " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * All operations, in name order.
+     */
+    public static List<OperationStats> operations() {
+        List<OperationStats> all = new ArrayList<>(OPERATIONS.values());
+        all.sort(Comparator.comparing(OperationStats::getName));
+        return all;
+    }
+
+    /**
+     * A table of every operation that has been called, with latencies in milliseconds.
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-28s %9s %7s %10s %9s %9s %9s %9s %9s%n",
+                "Operation", "Calls", "Errors", "Rows", "Mean ms", "p50 ms", "p99 ms", "p99.9 ms", "Max ms"));
+        for (OperationStats op : operations()) {
+            if (op.getCalls() == 0) {
+                continue;
+            }
+            sb.append(String.format("%-28s %9d %7d %10d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    op.getName(), op.getCalls(), op.getErrors(), op.getRows(), op.getMeanMicros() / 1e3,
+                    op.getP50Micros() / 1e3, op.getP99Micros() / 1e3, op.getP999Micros() / 1e3,
+                    op.getMaxMicros() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints {@link #dump()} to standard output every periodSeconds, from a daemon thread.
+     */
+    public static synchronized void startReporter(long periodSeconds) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "musicdb-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> System.out.print("\n" + dump()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Clears every histogram and counter.
+     */
+    public static void reset() {
+        for (OperationStats op : OPERATIONS.values()) {
+            op.reset();
+        }
+    }
+}
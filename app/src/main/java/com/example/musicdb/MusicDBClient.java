@@ -0,0 +1,406 @@
+package com.example.musicdb;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.function.Function;
+
+public class MusicDBClient {
+    // Rows shown per page by the list options
+    private static final int PAGE_SIZE = Integer.getInteger("musicdb.pageSize", 25);
+
+    /**
+     * Fetches the page that follows the given row (null for the first page).
+     */
+    private interface PageFetcher<T> {
+        Page<T> fetch(T after) throws SQLException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // "serve [port]" runs the HTTP server instead of the menu
+        if (args.length > 0 && args[0].equals("serve")) {
+            MusicDBServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        StartupTimings.mark("jvm");
+        WorkloadRecorder.start();
+
+        // "script [FILE]" runs commands from a file or stdin without the menu, then exits
+        if (args.length > 0 && args[0].equals("script")) {
+            ScriptRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Apply pending schema migrations; an up-to-date database is only checked
+        DatabaseManager.createTables();
+        StartupTimings.mark("database");
+
+        // "seed" inserts the sample artists, albums and songs, then exits
+        if (args.length > 0 && args[0].equals("seed")) {
+            DatabaseManager.populateData();
+            DatabaseManager.shutdown();
+            return;
+        }
+        System.out.println(StartupTimings.summary());
+
+        // Simple console-based menu-driven client
+        Scanner scanner = new Scanner(System.in);
+        int choice = -1;
+        while (choice != 0) {
+            System.out.println("\nMusic Database Client");
+            System.out.println("1. List all Artists");
+            System.out.println("2. List all Albums");
+            System.out.println("3. List all Songs");
+            System.out.println("4. Update an album's title (e.g., album ID 2, new title \"1989 (Taylor's Version)\")");
+            System.out.println("5. Search songs by artist (name prefix, any case or accents)");
+            System.out.println("6. Add new artist");
+            System.out.println("7. Add new album");
+            System.out.println("8. Add new song");
+            System.out.println("9. Delete song by ID");
+            System.out.println("10. Delete album by ID");
+            System.out.println("11. Delete artist by ID");
+            System.out.println("12. Search songs by title keyword");
+            System.out.println("13. List albums by year");
+            System.out.println("14. List albums by year range");
+            System.out.println("15. Count songs per album");
+            System.out.println("16. Count albums per artist");
+            System.out.println("17. List songs sorted by duration");
+            System.out.println("18. List albums sorted by release year");
+            System.out.println("19. Demonstrate transaction");
+            System.out.println("20. Show connection pool metrics");
+            System.out.println("21. Full-text search (songs, albums, artists)");
+            System.out.println("22. Show album details (cached)");
+            System.out.println("23. Show cache statistics");
+            System.out.println("24. Show operation metrics");
+            System.out.println("25. Verify and repair song/album count summaries");
+            System.out.println("26. Song and album duration analytics (in-memory snapshot)");
+            System.out.println("27. Delete albums released before a year (with their songs)");
+            System.out.println("28. Complete artist, album and song names (typeahead)");
+            System.out.println("0. Exit");
+            System.out.print("Enter your choice: ");
+            
+            try {
+                choice = Integer.parseInt(scanner.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid number.");
+                continue;
+            }
+
+            switch(choice) {
+                case 1:
+                    listArtists(scanner);
+                    break;
+                case 2:
+                    listAlbums(scanner);
+                    break;
+                case 3:
+                    listSongs(scanner);
+                    break;
+                case 4:
+                    // Update an album's title
+                    System.out.println("Hint: enter an existing album ID, for example: 2");
+                    System.out.print("Enter album ID to update: ");
+                    int albumId;
+                    try {
+                        albumId = Integer.parseInt(scanner.nextLine());
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid album ID.");
+                        break;
+                    }
+                    System.out.println("Hint: enter the new album title, for example: 1989 (Taylor's Version)");
+                    System.out.print("Enter new title: ");
+                    String newTitle = scanner.nextLine();
+                    DatabaseManager.updateAlbumTitle(albumId, newTitle);
+                    break;
+                case 5:
+                    // List songs by artist, resolved to an ID through the typeahead index
+                    System.out.println("Hint: enter the start of the artist name, for example: the beat or taylor");
+                    System.out.print("Enter artist name: ");
+                    Integer artistId = chooseArtist(scanner, scanner.nextLine());
+                    if (artistId != null) {
+                        DatabaseManager.listSongsByArtist(artistId);
+                    }
+                    break;
+                case 6:
+                    // Add new artist
+                    System.out.println("Hint: enter name, genre, biography");
+                    System.out.print("Name: ");
+                    String aName = scanner.nextLine();
+                    System.out.print("Genre: ");
+                    String aGenre = scanner.nextLine();
+                    System.out.print("Biography: ");
+                    String aBio = scanner.nextLine();
+                    DatabaseManager.addArtist(aName, aGenre, aBio);
+                    break;
+                case 7:
+                    // Add new album
+                    System.out.println("Hint: enter title, year, artist ID");
+                    System.out.print("Title: ");
+                    String albTitle = scanner.nextLine();
+                    System.out.print("Year: ");
+                    int albYear = Integer.parseInt(scanner.nextLine());
+                    System.out.print("Artist ID: ");
+                    int albArtistId = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.addAlbum(albTitle, albYear, albArtistId);
+                    break;
+                case 8:
+                    // Add new song
+                    System.out.println("Hint: enter title, duration (sec), track number, album ID");
+                    System.out.print("Title: ");
+                    String sTitle = scanner.nextLine();
+                    System.out.print("Duration: ");
+                    int sDuration = Integer.parseInt(scanner.nextLine());
+                    System.out.print("Track #: ");
+                    int sTrack = Integer.parseInt(scanner.nextLine());
+                    System.out.print("Album ID: ");
+                    int sAlbumId = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.addSong(sTitle, sDuration, sTrack, sAlbumId);
+                    break;
+                case 9:
+                    // Delete song by ID
+                    System.out.print("Enter song ID to delete: ");
+                    int delSongId = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.deleteSongById(delSongId);
+                    break;
+                case 10:
+                    // Delete album by ID
+                    System.out.print("Enter album ID to delete: ");
+                    int delAlbumId = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.deleteAlbumById(delAlbumId);
+                    break;
+                case 11:
+                    // Delete artist by ID
+                    System.out.print("Enter artist ID to delete: ");
+                    int delArtistId = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.deleteArtistById(delArtistId);
+                    break;
+                case 12:
+                    // Search songs by title keyword
+                    System.out.print("Enter keyword: ");
+                    String keyword = scanner.nextLine();
+                    DatabaseManager.searchSongsByTitle(keyword);
+                    break;
+                case 13:
+                    // List albums by year
+                    System.out.print("Enter year: ");
+                    int year = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.listAlbumsByYear(year);
+                    break;
+                case 14:
+                    // List albums by year range
+                    System.out.print("Enter start year: ");
+                    int startYear = Integer.parseInt(scanner.nextLine());
+                    System.out.print("Enter end year: ");
+                    int endYear = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.listAlbumsByYearRange(startYear, endYear);
+                    break;
+                case 15:
+                    // Count songs per album
+                    DatabaseManager.countSongsPerAlbum();
+                    break;
+                case 16:
+                    // Count albums per artist
+                    DatabaseManager.countAlbumsPerArtist();
+                    break;
+                case 17:
+                    // List songs sorted by duration
+                    System.out.print("Enter 1 for descending, 0 for ascending: ");
+                    boolean descSong = scanner.nextLine().equals("1");
+                    printPages(scanner, "Songs by duration:",
+                            (Song after) -> CatalogQueries.songsByDurationPage(descSong, after, PAGE_SIZE),
+                            song -> song.title() + ": " + song.duration() + "s");
+                    break;
+                case 18:
+                    // List albums sorted by release year
+                    System.out.print("Enter 1 for descending, 0 for ascending: ");
+                    boolean descAlb = scanner.nextLine().equals("1");
+                    printPages(scanner, "Albums by release year:",
+                            (Album after) -> CatalogQueries.albumsByReleaseYearPage(descAlb, after, PAGE_SIZE),
+                            album -> album.title() + ": " + album.releaseYear());
+                    break;
+                case 19:
+                    // Demonstrate transaction
+                    DatabaseManager.demonstrateTransaction();
+                    break;
+                case 20:
+                    // Show connection pool metrics, plus the write queues and query lanes when in use
+                    System.out.println(DatabaseManager.poolStats());
+                    if (DatabaseManager.isWalMode()) {
+                        System.out.println(DatabaseManager.writerStats());
+                    }
+                    if (DatabaseManager.writeBehindStats() != null) {
+                        System.out.println(DatabaseManager.writeBehindStats());
+                    }
+                    for (QueryLanes.Stats lane : QueryLanes.stats()) {
+                        System.out.println(lane);
+                    }
+                    break;
+                case 21:
+                    // Full-text search across songs, albums and artists
+                    System.out.println("Hint: words may be partial, for example: beat abb");
+                    System.out.print("Enter search words: ");
+                    String words = scanner.nextLine();
+                    System.out.print("Page (starting at 1): ");
+                    int page;
+                    try {
+                        page = Math.max(1, Integer.parseInt(scanner.nextLine()));
+                    } catch (NumberFormatException e) {
+                        page = 1;
+                    }
+                    DatabaseManager.searchCatalog(words, page - 1, 10);
+                    break;
+                case 22:
+                    // Show an album with its artist and track list
+                    System.out.print("Enter album ID: ");
+                    int detailAlbumId;
+                    try {
+                        detailAlbumId = Integer.parseInt(scanner.nextLine());
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid album ID.");
+                        break;
+                    }
+                    showAlbum(detailAlbumId);
+                    break;
+                case 23:
+                    // Show entity cache statistics
+                    DatabaseManager.printCacheStats();
+                    break;
+                case 24:
+                    // Latency percentiles, row and error counts per operation
+                    DatabaseManager.printMetrics();
+                    break;
+                case 25:
+                    // Check the incrementally maintained counts against a full recount
+                    if (DatabaseManager.verifyCatalogStats() > 0) {
+                        System.out.print("Rebuild the summary tables? (y/n): ");
+                        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                            DatabaseManager.rebuildCatalogStats();
+                        }
+                    }
+                    break;
+                case 26:
+                    // Histogram, longest songs and albums from the columnar snapshot
+                    DatabaseManager.printDurationAnalytics();
+                    break;
+                case 27:
+                    // Bulk delete of old albums and their songs
+                    System.out.print("Enter year: ");
+                    int beforeYear = Integer.parseInt(scanner.nextLine());
+                    DatabaseManager.deleteAlbumsReleasedBefore(beforeYear);
+                    break;
+                case 28:
+                    // Prefix completion from the in-memory index
+                    System.out.println("Hint: case and accents are ignored, for example: beyonce or ab");
+                    System.out.print("Enter prefix: ");
+                    DatabaseManager.completeNames(scanner.nextLine(), 10);
+                    break;
+                case 0:
+                    System.out.println("Exiting client.");
+                    break;
+                default:
+                    System.out.println("Invalid choice. Please try again.");
+            }
+        }
+        scanner.close();
+        DatabaseManager.shutdown();
+    }
+    
+    // Resolve a typed artist name: an exact (folded) match or the only completion is taken,
+    // otherwise the user picks one of the completions by ID
+    private static Integer chooseArtist(Scanner scanner, String name) {
+        List<TypeaheadIndex.Completion> artists;
+        try {
+            artists = TypeaheadIndex.complete(FullTextSearch.KIND_ARTIST, name, 10);
+        } catch (SQLException e) {
+            System.out.println("Error completing artist name: " + e.getMessage());
+            return null;
+        }
+        if (artists.isEmpty()) {
+            System.out.println("No artist starts with \"" + name + "\".");
+            return null;
+        }
+        TypeaheadIndex.Completion first = artists.get(0);
+        if (artists.size() == 1 || TypeaheadIndex.fold(first.name()).equals(TypeaheadIndex.fold(name))) {
+            System.out.println("Songs by " + first.name() + ":");
+            return first.id();
+        }
+        for (TypeaheadIndex.Completion artist : artists) {
+            System.out.println(artist);
+        }
+        System.out.print("Enter artist ID: ");
+        try {
+            return Integer.parseInt(scanner.nextLine());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid artist ID.");
+            return null;
+        }
+    }
+
+    // Display one album with its artist and songs, read through the entity cache
+    private static void showAlbum(int albumId) {
+        try {
+            Album album = DatabaseManager.getAlbum(albumId);
+            if (album == null) {
+                System.out.println("No album with ID " + albumId + ".");
+                return;
+            }
+            Artist artist = DatabaseManager.getArtist(album.artistId());
+            System.out.println("\n" + album.title() + " (" + album.releaseYear() + ") by "
+                    + (artist == null ? "unknown artist" : artist.name()));
+            for (Song song : DatabaseManager.getSongsByAlbum(albumId)) {
+                System.out.println(song.trackNumber() + ". " + song.title() + " (" + song.duration() + " seconds)");
+            }
+        } catch (SQLException e) {
+            System.out.println("Error retrieving album: " + e.getMessage());
+        }
+    }
+
+    // Page through all artists
+    private static void listArtists(Scanner scanner) {
+        printPages(scanner, "Artists:", (Artist after) -> CatalogQueries.artistPage(after, PAGE_SIZE),
+                artist -> artist.artistId() + ": " + artist.name() + " (" + artist.genre() + ")");
+    }
+
+    // Page through all albums
+    private static void listAlbums(Scanner scanner) {
+        printPages(scanner, "Albums:", (Album after) -> CatalogQueries.albumPage(after, PAGE_SIZE),
+                album -> album.albumId() + ": " + album.title() + " (" + album.releaseYear() + ")");
+    }
+
+    // Page through all songs
+    private static void listSongs(Scanner scanner) {
+        printPages(scanner, "Songs:", (Song after) -> CatalogQueries.songPage(after, PAGE_SIZE),
+                song -> song.songId() + ": " + song.title() + " (" + song.duration() + " seconds)");
+    }
+
+    // Print one keyset page at a time through a buffered writer, asking before fetching the next
+    private static <T> void printPages(Scanner scanner, String heading, PageFetcher<T> fetcher,
+                                       Function<T, String> format) {
+        PrintWriter out = DatabaseManager.bufferedConsole();
+        out.println("\n" + heading);
+        T after = null;
+        try {
+            while (true) {
+                Page<T> page = fetcher.fetch(after);
+                for (T item : page.items()) {
+                    out.println(format.apply(item));
+                }
+                if (!page.hasMore()) {
+                    break;
+                }
+                out.print("-- Press Enter for the next " + PAGE_SIZE + ", or q to stop: ");
+                out.flush();
+                if (!scanner.hasNextLine() || scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+                after = page.last();
+            }
+        } catch (SQLException e) {
+            out.println("Error retrieving rows: " + e.getMessage());
+        }
+        out.flush();
+    }
+}
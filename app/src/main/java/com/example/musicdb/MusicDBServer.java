@@ -0,0 +1,649 @@
+package com.example.musicdb;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the DatabaseManager operations as JSON over HTTP.
+ *
+ * GET    /artists, /albums, /songs           ?after=ID&limit=N (keyset pages)
+ * GET    /artists/{id}, /albums/{id}          (entity cache)
+ * GET    /albums/{id}/songs
+ * GET    /songs/by-artist?id= or ?name=        /songs/search?q=
+ * GET    /albums/by-year?year= or ?from=&to=
+ * GET    /search?q=&page=&size=               (full-text, songs, albums and artists)
+ * GET    /typeahead?q=&kind=&limit=           (name prefix; kind artist, album or song)
+ * GET    /stats/songs-per-album, /stats/albums-per-artist
+ * GET    /changes?after=SEQ&limit=N           (change log, oldest first)
+ * POST   /artists, /albums, /songs            (flat JSON object, returns the new ID)
+ * PUT    /albums/{id}                         ({"title": ...})
+ * DELETE /artists/{id}, /albums/{id}, /songs/{id}
+ * GET    /metrics                             (plain text)
+ *
+ * Connections are scoped to a database call, not to the request: each call a
+ * request makes borrows a pooled connection (from the owning shard's pool on a
+ * sharded catalog, from the lane's pool for lane queries) and returns it
+ * before the response is written, so a slow client holds none. Requests run on
+ * virtual threads where the JVM has them (Java 21+) and on a fixed thread pool
+ * otherwise; at most musicdb.server.maxConcurrent of them work at once, and
+ * the rest wait up to musicdb.server.queueTimeoutMs before getting a 503.
+ * Searches and listings run in the {@link QueryLanes}: a full lane also gets a
+ * 503, and a query past its lane's timeout is interrupted and gets a 504.
+ *
+ * Other settings: musicdb.server.port (8080), musicdb.server.threads (256, without
+ * virtual threads), musicdb.server.backlog (1024) and musicdb.server.shutdownSeconds (10).
+ */
+public class MusicDBServer {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    static {
+        // Headers and body go out in separate writes; without TCP_NODELAY every
+        // keep-alive response waits out the client's delayed ACK (about 40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final long queueTimeoutMs;
+    private final boolean virtualThreads;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong clientErrors = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Binds the server; call {@link #start()} to accept requests.
+     * @param port TCP port, or 0 for any free port.
+     * @param maxConcurrent Requests allowed to work at the same time.
+     * @param queueTimeoutMs How long a request waits for a slot before a 503.
+     */
+    public MusicDBServer(int port, int maxConcurrent, long queueTimeoutMs) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port),
+                Integer.getInteger("musicdb.server.backlog", 1024));
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.queueTimeoutMs = queueTimeoutMs;
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual
+                : Executors.newFixedThreadPool(Integer.getInteger("musicdb.server.threads", 256), r -> {
+                    Thread t = new Thread(r, "musicdb-http");
+                    t.setDaemon(true);
+                    return t;
+                });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Creates a server configured from system properties.
+     */
+    public static MusicDBServer fromSystemProperties() throws IOException {
+        return new MusicDBServer(Integer.getInteger("musicdb.server.port", 8080),
+                Integer.getInteger("musicdb.server.maxConcurrent", 64),
+                Long.getLong("musicdb.server.queueTimeoutMs", 1000L));
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() exists from Java 21; the build targets 17
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Music DB server listening on port " + port()
+                + (virtualThreads ? " (virtual threads)" : " (platform threads)"));
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections, lets running requests finish for up to
+     * graceSeconds, then closes the executor and the database connections.
+     */
+    public void stop(int graceSeconds) {
+        server.stop(graceSeconds);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(graceSeconds, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        DatabaseManager.shutdown();
+        System.out.println("Music DB server stopped.");
+    }
+
+    /**
+     * Request counters and the database metrics, as plain text.
+     */
+    public String metrics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Requests: ").append(requests.get()).append(", in flight: ").append(inFlight.get())
+                .append(", rejected (503): ").append(rejected.get())
+                .append(", client errors: ").append(clientErrors.get())
+                .append(", server errors: ").append(serverErrors.get()).append('\n');
+        sb.append(DatabaseManager.poolStats()).append('\n');
+        sb.append(DatabaseManager.statementCacheStats()).append('\n');
+        sb.append(DatabaseManager.resultCacheStats()).append('\n');
+        if (DatabaseManager.isWalMode()) {
+            sb.append(DatabaseManager.writerStats()).append('\n');
+        }
+        for (QueryLanes.Stats lane : QueryLanes.stats()) {
+            sb.append(lane).append('\n');
+        }
+        sb.append(Metrics.dump());
+        return sb.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            boolean admitted;
+            try {
+                admitted = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                admitted = false;
+            }
+            if (!admitted) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendJson(exchange, 503, error("Server busy"));
+                return;
+            }
+            inFlight.incrementAndGet();
+            try {
+                route(exchange);
+            } catch (SQLTimeoutException e) {
+                serverErrors.incrementAndGet();
+                sendJson(exchange, 504, error(e.getMessage()));
+            } catch (SQLTransientException e) {
+                // A full query lane
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendJson(exchange, 503, error(e.getMessage()));
+            } catch (SQLException e) {
+                serverErrors.incrementAndGet();
+                sendJson(exchange, 500, error(e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                clientErrors.incrementAndGet();
+                sendJson(exchange, 400, error(e.getMessage()));
+            } catch (RuntimeException e) {
+                serverErrors.incrementAndGet();
+                sendJson(exchange, 500, error(String.valueOf(e.getMessage())));
+            } finally {
+                inFlight.decrementAndGet();
+                permits.release();
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException, SQLException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String resource = path[0];
+        String sub = path.length > 1 ? path[1] : null;
+
+        if (method.equals("GET")) {
+            switch (resource) {
+                case "artists":
+                    if (sub == null) {
+                        Page<Artist> page = CatalogQueries.artistPage(afterId(query) == null ? null
+                                : new Artist(afterId(query), null, null, null), limit(query));
+                        sendJson(exchange, 200, page(page, MusicDBServer::artist, a -> a.artistId()));
+                        return;
+                    }
+                    Artist artist = DatabaseManager.getArtist(id(sub));
+                    sendFound(exchange, artist == null ? null : artist(artist));
+                    return;
+                case "albums":
+                    if (sub == null) {
+                        Page<Album> page = CatalogQueries.albumPage(afterId(query) == null ? null
+                                : new Album(afterId(query), null, 0, 0), limit(query));
+                        sendJson(exchange, 200, page(page, MusicDBServer::album, a -> a.albumId()));
+                        return;
+                    }
+                    if (sub.equals("by-year")) {
+                        List<Album> albums = query.containsKey("year")
+                                ? DatabaseManager.albumsByYear(intParam(query, "year"))
+                                : DatabaseManager.albumsByYearRange(intParam(query, "from"), intParam(query, "to"));
+                        sendJson(exchange, 200, array(albums, MusicDBServer::album));
+                        return;
+                    }
+                    if (path.length > 2 && path[2].equals("songs")) {
+                        sendJson(exchange, 200, array(DatabaseManager.getSongsByAlbum(id(sub)), MusicDBServer::song));
+                        return;
+                    }
+                    Album album = DatabaseManager.getAlbum(id(sub));
+                    sendFound(exchange, album == null ? null : album(album));
+                    return;
+                case "songs":
+                    if (sub == null) {
+                        Page<Song> page = CatalogQueries.songPage(afterId(query) == null ? null
+                                : new Song(afterId(query), null, 0, 0, 0), limit(query));
+                        sendJson(exchange, 200, page(page, MusicDBServer::song, s -> s.songId()));
+                        return;
+                    }
+                    if (sub.equals("by-artist")) {
+                        List<SongWithAlbum> songs;
+                        if (query.containsKey("id")) {
+                            int artistId = intParam(query, "id");
+                            songs = DatabaseManager.query(QueryLanes.Lane.INTERACTIVE,
+                                    conn -> DatabaseManager.songsByArtist(conn, artistId), null);
+                        } else {
+                            String name = param(query, "name");
+                            songs = DatabaseManager.query(QueryLanes.Lane.INTERACTIVE,
+                                    conn -> DatabaseManager.songsByArtist(conn, name), null);
+                        }
+                        sendJson(exchange, 200, array(songs, MusicDBServer::songWithAlbum));
+                        return;
+                    }
+                    if (sub.equals("search")) {
+                        String keyword = param(query, "q");
+                        sendJson(exchange, 200, array(DatabaseManager.query(QueryLanes.Lane.ANALYTICAL,
+                                conn -> DatabaseManager.searchSongsByTitle(conn, keyword), null), MusicDBServer::songTitle));
+                        return;
+                    }
+                    break;
+                case "search": {
+                    if (DatabaseManager.shards() != null) {
+                        throw new IllegalArgumentException("Catalog search is not supported on shards");
+                    }
+                    String words = param(query, "q");
+                    int page = query.containsKey("page") ? intParam(query, "page") : 0;
+                    int size = query.containsKey("size") ? Math.min(intParam(query, "size"), MAX_LIMIT) : 20;
+                    List<FullTextSearch.Hit> hits = DatabaseManager.read(QueryLanes.Lane.ANALYTICAL,
+                            conn -> FullTextSearch.search(conn, words, page, size));
+                    sendJson(exchange, 200, array(hits, MusicDBServer::hit));
+                    return;
+                }
+                case "typeahead":
+                    if (sub == null) {
+                        String prefix = param(query, "q");
+                        int limit = query.containsKey("limit") ? limit(query) : 10;
+                        List<TypeaheadIndex.Completion> completions = query.containsKey("kind")
+                                ? TypeaheadIndex.complete(kind(param(query, "kind")), prefix, limit)
+                                : TypeaheadIndex.complete(prefix, limit);
+                        sendJson(exchange, 200, array(completions, MusicDBServer::completion));
+                        return;
+                    }
+                    break;
+                case "stats":
+                    if ("songs-per-album".equals(sub)) {
+                        sendJson(exchange, 200, array(DatabaseManager.songCountsPerAlbum(), MusicDBServer::count));
+                        return;
+                    }
+                    if ("albums-per-artist".equals(sub)) {
+                        sendJson(exchange, 200, array(DatabaseManager.albumCountsPerArtist(), MusicDBServer::count));
+                        return;
+                    }
+                    break;
+                case "changes":
+                    if (DatabaseManager.shards() != null) {
+                        throw new IllegalArgumentException("Each shard has its own change log; read it with ChangeLog");
+                    }
+                    try (Connection conn = DatabaseManager.getConnection()) {
+                        long after = query.containsKey("after") ? parseLong(query.get("after"), "after") : 0;
+                        sendJson(exchange, 200, changes(ChangeLog.changesAfter(conn, after, limit(query)), after,
+                                ChangeLog.lastSequence(conn)));
+                    }
+                    return;
+                case "metrics":
+                    send(exchange, 200, "text/plain; charset=utf-8", metrics());
+                    return;
+                default:
+                    break;
+            }
+            sendJson(exchange, 404, error("Not found"));
+            return;
+        }
+
+        if (method.equals("POST") && sub == null) {
+            Map<String, String> body = readBody(exchange);
+            int id;
+            switch (resource) {
+                case "artists": {
+                    String name = required(body, "name");
+                    id = DatabaseManager.writeTo(ShardedCatalog.artistBucket(name), conn ->
+                            DatabaseManager.addArtist(conn, name, body.get("genre"), body.get("biography")));
+                    break;
+                }
+                case "albums": {
+                    String title = required(body, "title");
+                    int year = intField(body, "release_year");
+                    int artistId = intField(body, "artist_id");
+                    id = DatabaseManager.writeTo(artistId,
+                            conn -> DatabaseManager.addAlbum(conn, title, year, artistId));
+                    break;
+                }
+                case "songs": {
+                    String title = required(body, "title");
+                    int duration = intField(body, "duration");
+                    int track = intField(body, "track_number");
+                    int albumId = intField(body, "album_id");
+                    id = DatabaseManager.writeTo(albumId,
+                            conn -> DatabaseManager.addSong(conn, title, duration, track, albumId));
+                    break;
+                }
+                default:
+                    sendJson(exchange, 404, error("Not found"));
+                    return;
+            }
+            sendJson(exchange, 201, "{\"id\":" + id + "}");
+            return;
+        }
+
+        if (method.equals("PUT") && resource.equals("albums") && sub != null && path.length == 2) {
+            int albumId = id(sub);
+            String title = required(readBody(exchange), "title");
+            int updated = DatabaseManager.writeTo(albumId,
+                    conn -> DatabaseManager.updateAlbumTitle(conn, albumId, title));
+            sendJson(exchange, updated == 0 ? 404 : 200, "{\"updated\":" + updated + "}");
+            return;
+        }
+
+        if (method.equals("DELETE") && sub != null && path.length == 2) {
+            int id = id(sub);
+            int deleted;
+            switch (resource) {
+                case "artists":
+                    deleted = DatabaseManager.writeTo(id, conn -> DatabaseManager.deleteArtistById(conn, id));
+                    break;
+                case "albums":
+                    deleted = DatabaseManager.writeTo(id, conn -> DatabaseManager.deleteAlbumById(conn, id));
+                    break;
+                case "songs":
+                    deleted = DatabaseManager.writeTo(id, conn -> DatabaseManager.deleteSongById(conn, id));
+                    break;
+                default:
+                    sendJson(exchange, 404, error("Not found"));
+                    return;
+            }
+            sendJson(exchange, deleted == 0 ? 404 : 200, "{\"deleted\":" + deleted + "}");
+            return;
+        }
+
+        sendJson(exchange, 405, error("Method not allowed"));
+    }
+
+    // --- Request parsing ---
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    // Request bodies are one flat JSON object, read with the bulk importer's JSON Lines parser
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace('\r', ' ').replace('\n', ' ');
+        }
+        if (body.isBlank()) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        try {
+            return new BulkImporter.JsonLinesReader(new BufferedReader(new StringReader(body))).next();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid JSON body: " + e.getMessage());
+        }
+    }
+
+    private static String param(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter '" + name + "'");
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> query, String name) {
+        return parseInt(param(query, name), name);
+    }
+
+    private static String required(Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing field '" + name + "'");
+        }
+        return value;
+    }
+
+    private static int intField(Map<String, String> body, String name) {
+        return parseInt(required(body, name), name);
+    }
+
+    private static int id(String segment) {
+        return parseInt(segment, "id");
+    }
+
+    private static Integer afterId(Map<String, String> query) {
+        return query.containsKey("after") ? intParam(query, "after") : null;
+    }
+
+    private static int limit(Map<String, String> query) {
+        int limit = query.containsKey("limit") ? intParam(query, "limit") : DEFAULT_LIMIT;
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + name + "' must be a number");
+        }
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + name + "' must be a number");
+        }
+    }
+
+    // --- JSON output ---
+
+    private interface JsonMapper<T> {
+        String toJson(T value);
+    }
+
+    private interface IdOf<T> {
+        int id(T value);
+    }
+
+    private static String artist(Artist a) {
+        return "{\"artist_id\":" + a.artistId() + ",\"name\":" + quote(a.name())
+                + ",\"genre\":" + quote(a.genre()) + ",\"biography\":" + quote(a.biography()) + "}";
+    }
+
+    private static String album(Album a) {
+        return "{\"album_id\":" + a.albumId() + ",\"title\":" + quote(a.title())
+                + ",\"release_year\":" + a.releaseYear() + ",\"artist_id\":" + a.artistId() + "}";
+    }
+
+    private static String song(Song s) {
+        return "{\"song_id\":" + s.songId() + ",\"title\":" + quote(s.title()) + ",\"duration\":" + s.duration()
+                + ",\"track_number\":" + s.trackNumber() + ",\"album_id\":" + s.albumId() + "}";
+    }
+
+    private static String songWithAlbum(SongWithAlbum s) {
+        return "{\"song\":" + quote(s.songTitle()) + ",\"album\":" + quote(s.albumTitle()) + "}";
+    }
+
+    private static String songTitle(SongTitle s) {
+        return "{\"song_id\":" + s.songId() + ",\"title\":" + quote(s.title()) + "}";
+    }
+
+    private static String count(NamedCount c) {
+        return "{\"name\":" + quote(c.name()) + ",\"count\":" + c.count() + "}";
+    }
+
+    private static String hit(FullTextSearch.Hit h) {
+        String kind = h.kind == FullTextSearch.KIND_ARTIST ? "artist"
+                : h.kind == FullTextSearch.KIND_ALBUM ? "album" : "song";
+        return "{\"kind\":\"" + kind + "\",\"id\":" + h.id + ",\"song\":" + quote(h.song)
+                + ",\"album\":" + quote(h.album) + ",\"artist\":" + quote(h.artist) + ",\"rank\":" + h.rank + "}";
+    }
+
+    private static String completion(TypeaheadIndex.Completion c) {
+        return "{\"kind\":\"" + c.kindName() + "\",\"id\":" + c.id() + ",\"name\":" + quote(c.name()) + "}";
+    }
+
+    private static int kind(String name) {
+        switch (name) {
+            case "artist":
+                return FullTextSearch.KIND_ARTIST;
+            case "album":
+                return FullTextSearch.KIND_ALBUM;
+            case "song":
+                return FullTextSearch.KIND_SONG;
+            default:
+                throw new IllegalArgumentException("kind must be artist, album or song");
+        }
+    }
+
+    private static <T> String array(List<T> items, JsonMapper<T> mapper) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(mapper.toJson(items.get(i)));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static <T> String page(Page<T> page, JsonMapper<T> mapper, IdOf<T> idOf) {
+        String next = page.hasMore() ? String.valueOf(idOf.id(page.last())) : "null";
+        return "{\"items\":" + array(page.items(), mapper) + ",\"next_after\":" + next + "}";
+    }
+
+    // Unlike the catalog pages, next_after is always set: a consumer resumes from it once more changes arrive
+    private static String changes(Page<ChangeLog.Change> page, long after, long lastSequence) {
+        long next = page.items().isEmpty() ? after : page.last().sequence();
+        return "{\"items\":" + array(page.items(), ChangeLog.Change::toJson) + ",\"next_after\":" + next
+                + ",\"has_more\":" + page.hasMore() + ",\"last_seq\":" + lastSequence + "}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void sendFound(HttpExchange exchange, String json) throws IOException {
+        if (json == null) {
+            sendJson(exchange, 404, error("Not found"));
+        } else {
+            sendJson(exchange, 200, json);
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Starts the server and runs until the process is stopped (Ctrl+C or SIGTERM),
+     * then shuts down gracefully.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            System.setProperty("musicdb.server.port", args[0]);
+        }
+        StartupTimings.mark("jvm");
+        WorkloadRecorder.start();
+        DatabaseManager.createTables();
+        StartupTimings.mark("database");
+        MusicDBServer server = fromSystemProperties();
+        int grace = Integer.getInteger("musicdb.server.shutdownSeconds", 10);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(grace), "musicdb-http-shutdown"));
+        server.start();
+        StartupTimings.mark("server");
+        System.out.println(StartupTimings.summary());
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.musicdb;
+
+/**
+ * A name with a count, as returned by the per-album and per-artist aggregates.
+ */
+public record NamedCount(String name, int count) {
+}
@@ -0,0 +1,112 @@
+package com.example.musicdb;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histogram and counters of one named operation. Instances are created
+ * once, through {@link Metrics#operation(String)}, and kept in static fields so
+ * that recording a call allocates nothing:
+ *
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     ...
+ *     OP.success(start, rows);
+ * } catch (SQLException | RuntimeException e) {
+ *     OP.failure(start);
+ *     throw e;
+ * }
+ * </pre>
+ */
+public final class OperationStats implements OperationStatsMXBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a successful call that started at the given System.nanoTime().
+     * @param rowCount Rows returned or affected.
+     */
+    public void success(long startNanos, long rowCount) {
+        latency.record(System.nanoTime() - startNanos);
+        rows.addAndGet(rowCount);
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.completed(this, startNanos, true);
+        }
+    }
+
+    /**
+     * Records a failed call that started at the given System.nanoTime().
+     */
+    public void failure(long startNanos) {
+        latency.record(System.nanoTime() - startNanos);
+        errors.incrementAndGet();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.completed(this, startNanos, false);
+        }
+    }
+
+    /**
+     * Records a duration measured by the caller, for timings that are not calls.
+     */
+    public void recordNanos(long nanos) {
+        latency.record(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.count();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.mean() / 1e3;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.percentile(50) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.percentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.max() / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.set(0);
+        rows.set(0);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.musicdb;
+
+/**
+ * JMX view of one instrumented operation. Times are in microseconds.
+ */
+public interface OperationStatsMXBean {
+    String getName();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
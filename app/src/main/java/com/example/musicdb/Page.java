@@ -0,0 +1,17 @@
+package com.example.musicdb;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query. The next page is requested by passing
+ * {@link #last()} as the "after" argument of the same query.
+ */
+public record Page<T>(List<T> items, boolean hasMore) {
+
+    /**
+     * Returns the last item of the page, or null if the page is empty.
+     */
+    public T last() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+}
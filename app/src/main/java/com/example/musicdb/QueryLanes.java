@@ -0,0 +1,371 @@
+package com.example.musicdb;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs reads in two lanes, so that heavy queries cannot starve point lookups:
+ * INTERACTIVE for lookups by ID or name and short pages, ANALYTICAL for scans,
+ * aggregates and unbounded listings. {@link DatabaseManager} loads the entity
+ * cache's artists, albums and album song lists in the interactive lane, and
+ * fetches the songs-by-duration listing a page at a time in the analytical one.
+ *
+ * Each lane has its own threads and its own {@link ConnectionPool} of the same
+ * size, its connection budget, and a bounded queue. Work submitted to a full
+ * lane is rejected at once with an {@link SQLTransientException}. Every
+ * execution has a deadline, counted from submission: work still queued then is
+ * dropped, and a running statement is interrupted (sqlite3_interrupt; the
+ * driver's setQueryTimeout only bounds lock waits) and fails with an
+ * {@link SQLTimeoutException}. {@link Execution#cancel} interrupts the same
+ * way on request.
+ *
+ * Settings per lane, with "interactive" or "analytical" for LANE:
+ * musicdb.lanes.LANE.threads (interactive: number of processors, at least 2;
+ * analytical: 2), musicdb.lanes.LANE.queue (256; 16) and
+ * musicdb.lanes.LANE.timeoutMs (5000; 60000). -Dmusicdb.lanes=false runs reads
+ * on the caller's thread, as before. Queue waits and rejections are recorded
+ * as the lane.LANE.queue operation in {@link Metrics}.
+ */
+public final class QueryLanes {
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("musicdb.lanes"));
+
+    public enum Lane {
+        INTERACTIVE(Math.max(2, Runtime.getRuntime().availableProcessors()), 256, 5_000),
+        ANALYTICAL(2, 16, 60_000);
+
+        final int threads;
+        final int queueCapacity;
+        final long timeoutMillis;
+        final OperationStats queueStats;
+
+        Lane(int threads, int queueCapacity, long timeoutMillis) {
+            String prefix = "musicdb.lanes." + name().toLowerCase(Locale.ROOT) + ".";
+            this.threads = Integer.getInteger(prefix + "threads", threads);
+            this.queueCapacity = Integer.getInteger(prefix + "queue", queueCapacity);
+            this.timeoutMillis = Long.getLong(prefix + "timeoutMs", timeoutMillis);
+            this.queueStats = Metrics.operation("lane." + name().toLowerCase(Locale.ROOT) + ".queue");
+        }
+    }
+
+    // Interrupts executions at their deadline
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "musicdb-lane-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private static final AtomicReferenceArray<LaneExecutor> EXECUTORS = new AtomicReferenceArray<>(Lane.values().length);
+
+    private QueryLanes() {
+    }
+
+    /**
+     * Runs work in a lane and waits for its result, for at most the lane's timeout.
+     */
+    public static <T> T run(Lane lane, SqlWork<T> work) throws SQLException {
+        return submit(lane, lane.timeoutMillis, work).get();
+    }
+
+    /**
+     * Queues work in a lane.
+     * @param timeoutMillis Time from now after which the work is dropped or interrupted.
+     * @throws SQLTransientException If the lane's queue is full.
+     */
+    public static <T> Execution<T> submit(Lane lane, long timeoutMillis, SqlWork<T> work) throws SQLException {
+        LaneExecutor executor = executor(lane);
+        Execution<T> execution = new Execution<>(executor, work, timeoutMillis);
+        try {
+            executor.threads.execute(execution);
+        } catch (RejectedExecutionException e) {
+            executor.rejected.incrementAndGet();
+            lane.queueStats.failure(execution.submitted);
+            throw new SQLTransientException(String.format("%s lane is full: %d queued, %d running",
+                    lane, executor.queue.size(), executor.threads.getActiveCount()));
+        }
+        execution.timer = TIMER.schedule(execution::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        return execution;
+    }
+
+    private static LaneExecutor executor(Lane lane) {
+        LaneExecutor executor = EXECUTORS.get(lane.ordinal());
+        if (executor == null) {
+            // Opened outside any lock: the lane's pool may open the writer, which locks DatabaseManager
+            LaneExecutor opened = new LaneExecutor(lane);
+            if (EXECUTORS.compareAndSet(lane.ordinal(), null, opened)) {
+                executor = opened;
+            } else {
+                opened.close();
+                executor = EXECUTORS.get(lane.ordinal());
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Stops the lanes after their running work and closes their connections.
+     * They are recreated on next use.
+     */
+    static void shutdown() {
+        for (int i = 0; i < EXECUTORS.length(); i++) {
+            LaneExecutor executor = EXECUTORS.getAndSet(i, null);
+            if (executor != null) {
+                executor.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the counters of every lane in use.
+     */
+    public static List<Stats> stats() {
+        List<Stats> stats = new ArrayList<>();
+        for (int i = 0; i < EXECUTORS.length(); i++) {
+            LaneExecutor executor = EXECUTORS.get(i);
+            if (executor != null) {
+                stats.add(executor.stats());
+            }
+        }
+        return stats;
+    }
+
+    private static final class LaneExecutor {
+        final Lane lane;
+        final ArrayBlockingQueue<Runnable> queue;
+        final ThreadPoolExecutor threads;
+        final ConnectionPool pool;
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong timedOut = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+
+        LaneExecutor(Lane lane) {
+            this.lane = lane;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, lane.queueCapacity));
+            AtomicInteger count = new AtomicInteger();
+            String name = "musicdb-" + lane.name().toLowerCase(Locale.ROOT) + "-";
+            this.threads = new ThreadPoolExecutor(lane.threads, lane.threads, 0, TimeUnit.MILLISECONDS, queue, r -> {
+                Thread t = new Thread(r, name + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.pool = DatabaseManager.readPool(lane.threads);
+        }
+
+        void close() {
+            threads.shutdown();
+            pool.close();
+        }
+
+        Stats stats() {
+            return new Stats(lane, lane.threads, lane.queueCapacity, lane.timeoutMillis, queue.size(),
+                    threads.getActiveCount(), completed.get(), rejected.get(), timedOut.get(), cancelled.get());
+        }
+    }
+
+    /**
+     * One unit of work in a lane, which can be waited for or cancelled.
+     */
+    public static final class Execution<T> implements Runnable {
+        private final LaneExecutor executor;
+        private final SqlWork<T> work;
+        private final long submitted = System.nanoTime();
+        private final long deadline;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> timer;
+
+        // The connection of the running work, guarded by this; interrupted on timeout or cancel
+        private DB running;
+        private boolean timedOut;
+        private boolean cancelled;
+
+        private Execution(LaneExecutor executor, SqlWork<T> work, long timeoutMillis) {
+            this.executor = executor;
+            this.work = work;
+            this.deadline = submitted + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        @Override
+        public void run() {
+            Lane lane = executor.lane;
+            if (result.isDone()) {
+                // Expired or cancelled while queued
+                return;
+            }
+            lane.queueStats.success(submitted, 0);
+            try (Connection conn = executor.pool.getConnection()) {
+                synchronized (this) {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    running = conn.unwrap(SQLiteConnection.class).getDatabase();
+                }
+                try {
+                    result.complete(work.run(conn));
+                } finally {
+                    synchronized (this) {
+                        running = null;
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                fail(e);
+            } finally {
+                ScheduledFuture<?> t = timer;
+                if (t != null) {
+                    t.cancel(false);
+                }
+                executor.completed.incrementAndGet();
+            }
+        }
+
+        private synchronized void fail(Exception e) {
+            if (timedOut) {
+                result.completeExceptionally(timeout(e));
+            } else if (cancelled) {
+                result.completeExceptionally(new SQLException("Query cancelled", e));
+            } else {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private SQLTimeoutException timeout(Throwable cause) {
+            return new SQLTimeoutException(executor.lane + " query timed out after "
+                    + TimeUnit.NANOSECONDS.toMillis(deadline - submitted) + " ms", cause);
+        }
+
+        /**
+         * Interrupts the work if it is running, or drops it from the queue.
+         * @return false if the work had already finished.
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (result.isDone() || cancelled) {
+                    return false;
+                }
+                cancelled = true;
+                executor.cancelled.incrementAndGet();
+                if (running != null) {
+                    interrupt();
+                    return true;
+                }
+                executor.lane.queueStats.failure(submitted);
+                result.completeExceptionally(new SQLException("Query cancelled"));
+            }
+            executor.threads.remove(this);
+            return true;
+        }
+
+        private void expire() {
+            synchronized (this) {
+                if (result.isDone() || timedOut) {
+                    return;
+                }
+                timedOut = true;
+                executor.timedOut.incrementAndGet();
+                if (running != null) {
+                    interrupt();
+                    return;
+                }
+                executor.lane.queueStats.failure(submitted);
+                result.completeExceptionally(timeout(null));
+            }
+            executor.threads.remove(this);
+        }
+
+        // Called with the lock held, so the connection cannot go back to the pool meanwhile
+        private void interrupt() {
+            try {
+                running.interrupt();
+            } catch (SQLException e) {
+                System.out.println("Error interrupting query: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Waits for the result until the deadline. Work that is still running
+         * then is interrupted and the caller gets an SQLTimeoutException.
+         */
+        public T get() throws SQLException {
+            try {
+                return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                expire();
+                if (result.isDone() && !result.isCompletedExceptionally()) {
+                    return result.join();
+                }
+                throw timeout(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new SQLException("Interrupted while waiting for a query", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                throw (RuntimeException) cause;
+            }
+        }
+    }
+
+    /**
+     * Snapshot of one lane's counters.
+     */
+    public static final class Stats {
+        public final Lane lane;
+        public final int threads;
+        public final int queueCapacity;
+        public final long timeoutMillis;
+        public final int queued;
+        public final int running;
+        public final long completed;
+        public final long rejected;
+        public final long timedOut;
+        public final long cancelled;
+
+        Stats(Lane lane, int threads, int queueCapacity, long timeoutMillis, int queued, int running,
+              long completed, long rejected, long timedOut, long cancelled) {
+            this.lane = lane;
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+            this.timeoutMillis = timeoutMillis;
+            this.queued = queued;
+            this.running = running;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Lane %s: %d/%d running, %d/%d queued, %d completed, %d rejected, "
+                            + "%d timed out (%d ms), %d cancelled",
+                    lane.name().toLowerCase(Locale.ROOT), running, threads, queued, queueCapacity, completed,
+                    rejected, timedOut, timeoutMillis, cancelled);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs EXPLAIN QUERY PLAN for every query issued by DatabaseManager and
+ * CatalogQueries and fails when one of them regresses to a full table scan.
+ *
+ * A plan step is rejected when it scans a table without an index, or when it
+ * needs a temporary B-tree to sort. Queries that must read every row of a
+ * table (unfiltered listings and whole-catalog aggregates) declare which
+ * table aliases they are allowed to scan.
+ *
+ * Exits with status 1 on failure so it can gate a CI build.
+ * Usage: java com.example.musicdb.QueryPlanCheck
+ */
+public class QueryPlanCheck {
+
+    private static final class Check {
+        final String name;
+        final String sql;
+        final Set<String> scanAllowed;
+
+        Check(String name, String sql, String... scanAllowed) {
+            this.name = name;
+            this.sql = sql;
+            this.scanAllowed = Set.of(scanAllowed);
+        }
+    }
+
+    static List<Check> checks() {
+        List<Check> checks = new ArrayList<>();
+        checks.add(new Check("updateAlbumTitle", DatabaseManager.UPDATE_ALBUM_TITLE_SQL));
+        checks.add(new Check("listSongsByArtist", DatabaseManager.SONGS_BY_ARTIST_SQL));
+        checks.add(new Check("listSongsByArtistId", DatabaseManager.SONGS_BY_ARTIST_ID_SQL));
+        checks.add(new Check("getArtist", DatabaseManager.ARTIST_BY_ID_SQL));
+        checks.add(new Check("getAlbum", DatabaseManager.ALBUM_BY_ID_SQL));
+        checks.add(new Check("getSongsByAlbum", DatabaseManager.SONGS_BY_ALBUM_SQL));
+        checks.add(new Check("deleteSongById(album lookup)", DatabaseManager.SONG_ALBUM_ID_SQL));
+        checks.add(new Check("deleteSongById", DatabaseManager.DELETE_SONG_SQL));
+        int[] chunk = {1, 2};
+        checks.add(new Check("deleteSongs(albums)", CatalogDeletes.in(CatalogDeletes.SONG_ALBUMS_SQL, chunk)));
+        checks.add(new Check("deleteSongs", CatalogDeletes.in(CatalogDeletes.DELETE_SONGS_SQL, chunk)));
+        checks.add(new Check("deleteAlbums(song ids)", CatalogDeletes.in(CatalogDeletes.ALBUM_SONGS_SQL, chunk)));
+        checks.add(new Check("deleteAlbums(songs)", CatalogDeletes.in(CatalogDeletes.DELETE_ALBUM_SONGS_SQL, chunk)));
+        checks.add(new Check("deleteAlbums", CatalogDeletes.in(CatalogDeletes.DELETE_ALBUMS_SQL, chunk)));
+        checks.add(new Check("deleteArtists(albums)", CatalogDeletes.in(CatalogDeletes.ARTIST_ALBUMS_SQL, chunk)));
+        checks.add(new Check("deleteArtists", CatalogDeletes.in(CatalogDeletes.DELETE_ARTISTS_SQL, chunk)));
+        checks.add(new Check("deleteAlbumsReleasedBefore", CatalogDeletes.ALBUMS_BEFORE_SQL));
+        // A leading wildcard can only be answered by reading every title
+        checks.add(new Check("searchSongsByTitle", DatabaseManager.SEARCH_SONGS_SQL, "Song"));
+        checks.add(new Check("searchCatalog", FullTextSearch.SEARCH_SQL));
+        checks.add(new Check("listAlbumsByYear", DatabaseManager.ALBUMS_BY_YEAR_SQL));
+        checks.add(new Check("listAlbumsByYearRange", DatabaseManager.ALBUMS_BY_YEAR_RANGE_SQL));
+        checks.add(new Check("countSongsPerAlbum", DatabaseManager.COUNT_SONGS_PER_ALBUM_SQL, "st"));
+        checks.add(new Check("countAlbumsPerArtist", DatabaseManager.COUNT_ALBUMS_PER_ARTIST_SQL, "st"));
+        checks.add(new Check("songs", CatalogQueries.SONGS_SQL, "Song"));
+        checks.add(new Check("songPage", CatalogQueries.SONGS_AFTER_SQL));
+        checks.add(new Check("albums", CatalogQueries.ALBUMS_SQL, "Album"));
+        checks.add(new Check("albumPage", CatalogQueries.ALBUMS_AFTER_SQL));
+        checks.add(new Check("artists", CatalogQueries.ARTISTS_SQL, "Artist"));
+        checks.add(new Check("artistPage", CatalogQueries.ARTISTS_AFTER_SQL));
+        checks.add(new Check("songsByDuration(asc)", CatalogQueries.SONGS_BY_DURATION_ASC_SQL));
+        checks.add(new Check("songsByDuration(desc)", CatalogQueries.SONGS_BY_DURATION_DESC_SQL));
+        checks.add(new Check("songsByDurationPage(asc)", CatalogQueries.SONGS_BY_DURATION_ASC_AFTER_SQL));
+        checks.add(new Check("songsByDurationPage(desc)", CatalogQueries.SONGS_BY_DURATION_DESC_AFTER_SQL));
+        checks.add(new Check("albumsByReleaseYear(asc)", CatalogQueries.ALBUMS_BY_YEAR_ASC_SQL));
+        checks.add(new Check("albumsByReleaseYear(desc)", CatalogQueries.ALBUMS_BY_YEAR_DESC_SQL));
+        checks.add(new Check("albumsByReleaseYearPage(asc)", CatalogQueries.ALBUMS_BY_YEAR_ASC_AFTER_SQL));
+        checks.add(new Check("albumsByReleaseYearPage(desc)", CatalogQueries.ALBUMS_BY_YEAR_DESC_AFTER_SQL));
+        checks.add(new Check("changeLog.changesAfter", ChangeLog.CHANGES_AFTER_SQL));
+        // The typeahead index loads every name once
+        checks.add(new Check("typeahead.load(artists)", TypeaheadIndex.ARTIST_NAMES_SQL, "Artist"));
+        checks.add(new Check("typeahead.load(albums)", TypeaheadIndex.ALBUM_TITLES_SQL, "Album"));
+        checks.add(new Check("typeahead.load(songs)", TypeaheadIndex.SONG_TITLES_SQL, "Song"));
+        return checks;
+    }
+
+    public static void main(String[] args) {
+        DatabaseManager.createTables();
+        int failures;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            failures = run(conn);
+        } catch (SQLException e) {
+            System.out.println("Error checking query plans: " + e.getMessage());
+            failures = 1;
+        } finally {
+            DatabaseManager.shutdown();
+        }
+        if (failures > 0) {
+            System.out.println("QUERY PLAN CHECK FAILED: " + failures + " quer"
+                    + (failures == 1 ? "y uses" : "ies use") + " a full scan or temporary sort.");
+            System.exit(1);
+        }
+        System.out.println("All query plans use indexes.");
+    }
+
+    /**
+     * Prints the plan of every query and returns the number of queries that failed.
+     */
+    static int run(Connection conn) throws SQLException {
+        int failures = 0;
+        for (Check check : checks()) {
+            List<String> problems = new ArrayList<>();
+            StringBuilder plan = new StringBuilder();
+            try (PreparedStatement ps = conn.prepareStatement("EXPLAIN QUERY PLAN " + check.sql);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String detail = rs.getString("detail");
+                    plan.append("    ").append(detail).append('\n');
+                    String problem = problem(detail, check.scanAllowed);
+                    if (problem != null) {
+                        problems.add(problem);
+                    }
+                }
+            }
+            System.out.println((problems.isEmpty() ? "OK   " : "FAIL ") + check.name);
+            System.out.print(plan);
+            for (String problem : problems) {
+                System.out.println("    !! " + problem);
+            }
+            if (!problems.isEmpty()) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    private static String problem(String detail, Set<String> scanAllowed) {
+        if (detail.contains("USE TEMP B-TREE")) {
+            return "sorts in a temporary B-tree instead of reading an index in order";
+        }
+        if (detail.startsWith("SCAN ") && !detail.contains(" INDEX ")) {
+            String table = detail.substring(5).split(" ")[0];
+            if (!scanAllowed.contains(table)) {
+                return "full table scan of " + table;
+            }
+        }
+        return null;
+    }
+}
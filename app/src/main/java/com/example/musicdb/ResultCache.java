@@ -0,0 +1,190 @@
+package com.example.musicdb;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Least-recently-used cache of whole query results (aggregates, year ranges
+ * and ordered pages), keyed by operation and parameters.
+ *
+ * Each entry remembers the tables its query read and the {@link TableVersions}
+ * stamp of those tables taken before the query ran. A lookup compares that
+ * stamp with the current one, so an entry is dropped as soon as any of its
+ * tables changes, and a result loaded while a write was in flight is never
+ * served after the write. Entries are weighted by their row count and the
+ * least recently used are evicted while the total exceeds
+ * -Dmusicdb.resultCache.maxRows (100000; 0 disables). A result larger than the
+ * limit is returned but not cached.
+ *
+ * A hit counts as a call of the operation in {@link Metrics}, with the hit's
+ * latency and row count.
+ */
+public final class ResultCache {
+    static final long MAX_ROWS = Long.getLong("musicdb.resultCache.maxRows", 100_000L);
+
+    /**
+     * Runs the query on a cache miss.
+     */
+    interface Loader<V> {
+        V load() throws SQLException;
+    }
+
+    private record Key(OperationStats op, List<Object> params) {
+    }
+
+    private static final class Entry {
+        final Object value;
+        final int tables;
+        final long stamp;
+        final int weight;
+
+        Entry(Object value, int tables, long stamp, int weight) {
+            this.value = value;
+            this.tables = tables;
+            this.stamp = stamp;
+            this.weight = weight;
+        }
+    }
+
+    private static final LinkedHashMap<Key, Entry> ENTRIES = new LinkedHashMap<>(256, 0.75f, true);
+    private static long weight;
+    private static long hits;
+    private static long misses;
+    private static long stale;
+    private static long evictions;
+
+    private ResultCache() {
+    }
+
+    /**
+     * Returns the cached result of the operation with these parameters, or runs
+     * the query and caches its result.
+     * @param tables The tables the query reads, a combination of TableVersions.ARTIST, ALBUM and SONG.
+     * @param weigher The number of rows of a result.
+     */
+    static <V> V get(OperationStats op, int tables, ToIntFunction<? super V> weigher, Loader<V> loader,
+                     Object... params) throws SQLException {
+        long start = System.nanoTime();
+        V value = lookup(op, params);
+        if (value != null) {
+            op.success(start, weigher.applyAsInt(value));
+            return value;
+        }
+        long stamp = TableVersions.stamp(tables);
+        // Recorded from here, queue wait included, wherever the query runs
+        WorkloadRecorder.Pending recorded = WorkloadRecorder.RECORDING ? WorkloadRecorder.take(op) : null;
+        try {
+            value = loader.load();
+        } catch (SQLException | RuntimeException e) {
+            if (recorded != null) {
+                WorkloadRecorder.completed(recorded, start, false);
+            }
+            throw e;
+        }
+        put(op, tables, stamp, value, weigher.applyAsInt(value), params);
+        if (recorded != null) {
+            WorkloadRecorder.completed(recorded, start, true);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the current cached result of the operation with these parameters, or null.
+     */
+    @SuppressWarnings("unchecked")
+    static synchronized <V> V lookup(OperationStats op, Object... params) {
+        if (MAX_ROWS <= 0) {
+            return null;
+        }
+        Key key = new Key(op, Arrays.asList(params));
+        Entry entry = ENTRIES.get(key);
+        if (entry != null && entry.stamp != TableVersions.stamp(entry.tables)) {
+            ENTRIES.remove(key);
+            weight -= entry.weight;
+            stale++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (V) entry.value;
+    }
+
+    /**
+     * Caches a result, unless one of its tables changed since the stamp was taken.
+     * @param stamp TableVersions.stamp(tables), taken before the query ran.
+     * @param rows The number of rows of the result.
+     */
+    static synchronized void put(OperationStats op, int tables, long stamp, Object value, int rows,
+                                 Object... params) {
+        int entryWeight = Math.max(1, rows);
+        if (entryWeight > MAX_ROWS || stamp != TableVersions.stamp(tables)) {
+            return;
+        }
+        Entry previous = ENTRIES.put(new Key(op, Arrays.asList(params)), new Entry(value, tables, stamp, entryWeight));
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entryWeight;
+        Iterator<Entry> eldest = ENTRIES.values().iterator();
+        while (weight > MAX_ROWS) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    static synchronized void clear() {
+        ENTRIES.clear();
+        weight = 0;
+    }
+
+    public static synchronized Stats stats() {
+        return new Stats(ENTRIES.size(), weight, MAX_ROWS, hits, misses, stale, evictions);
+    }
+
+    /**
+     * Snapshot of the result cache counters.
+     */
+    public static final class Stats {
+        public final int entries;
+        public final long rows;
+        public final long maxRows;
+        public final long hits;
+        public final long misses;
+        public final long stale;
+        public final long evictions;
+
+        Stats(int entries, long rows, long maxRows, long hits, long misses, long stale, long evictions) {
+            this.entries = entries;
+            this.rows = rows;
+            this.maxRows = maxRows;
+            this.hits = hits;
+            this.misses = misses;
+            this.stale = stale;
+            this.evictions = evictions;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Results: %d entries, %d/%d rows, %d hits, %d misses (%.1f%% hit rate), "
+                            + "%d stale, %d evictions",
+                    entries, rows, maxRows, hits, misses, hitRate() * 100, stale, evictions);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Secondary indexes for the Artist/Album/Song access paths.
+ *
+ * Every index whose name starts with "idx_" is owned by this class:
+ * {@link #ensureIndexes(Connection)} creates the missing ones, recreates any
+ * whose definition changed and drops the ones no longer listed here. It runs
+ * as a schema migration, so after changing {@link #INDEXES} append a migration
+ * to {@link SchemaMigrations} that calls it again.
+ */
+public class SchemaIndexes {
+    // Index name -> definition. SQLite adds the rowid (the *_id primary key) to every
+    // index entry, so these cover the id columns of their table as well.
+    static final Map<String, String> INDEXES = new LinkedHashMap<>();
+
+    static {
+        // listSongsByArtist: find the artist by name
+        INDEXES.put("idx_artist_name", "CREATE INDEX idx_artist_name ON Artist(name)");
+        // listSongsByArtist, countAlbumsPerArtist: albums of an artist with their titles
+        INDEXES.put("idx_album_artist", "CREATE INDEX idx_album_artist ON Album(artist_id, title)");
+        // listAlbumsByYear, listAlbumsByYearRange, keyset pages over (release_year, album_id)
+        INDEXES.put("idx_album_year", "CREATE INDEX idx_album_year ON Album(release_year, album_id, title)");
+        // listSongsByArtist, countSongsPerAlbum: songs of an album with their titles
+        INDEXES.put("idx_song_album", "CREATE INDEX idx_song_album ON Song(album_id, title)");
+        // listSongsSortedByDuration, keyset pages over (duration, song_id)
+        INDEXES.put("idx_song_duration", "CREATE INDEX idx_song_duration ON Song(duration, song_id, title)");
+    }
+
+    /**
+     * Brings the managed indexes in line with {@link #INDEXES} and refreshes planner statistics.
+     * @return Number of indexes created or dropped.
+     */
+    public static int ensureIndexes(Connection conn) throws SQLException {
+        Map<String, String> existing = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT name, sql FROM sqlite_master WHERE type = 'index' AND name LIKE 'idx\\_%' ESCAPE '\\'")) {
+            while (rs.next()) {
+                existing.put(rs.getString("name"), rs.getString("sql"));
+            }
+        }
+
+        int changes = 0;
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> entry : existing.entrySet()) {
+                String wanted = INDEXES.get(entry.getKey());
+                if (wanted == null || !normalize(wanted).equals(normalize(entry.getValue()))) {
+                    stmt.execute("DROP INDEX IF EXISTS " + entry.getKey());
+                    changes++;
+                }
+            }
+            for (Map.Entry<String, String> entry : INDEXES.entrySet()) {
+                String current = existing.get(entry.getKey());
+                if (current == null || !normalize(entry.getValue()).equals(normalize(current))) {
+                    stmt.execute(entry.getValue());
+                    changes++;
+                }
+            }
+            // Lets the planner pick up statistics for new indexes; cheap when nothing changed
+            stmt.execute("PRAGMA optimize");
+        }
+        return changes;
+    }
+
+    private static String normalize(String sql) {
+        return sql == null ? "" : sql.replaceAll("\\s+", " ").trim().toLowerCase();
+    }
+}
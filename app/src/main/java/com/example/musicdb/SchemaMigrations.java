@@ -0,0 +1,134 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Versioned schema changes.
+ *
+ * schema_version records every migration applied to the database. Startup
+ * compares the highest recorded version with {@link #LATEST} on a read
+ * connection and only takes the write path when migrations are pending, so
+ * an up-to-date database costs one indexed lookup.
+ *
+ * To change the schema, append a migration with the next version number; never
+ * edit or reorder applied ones. Migrations run with auto-commit on, so they
+ * must be idempotent (CREATE ... IF NOT EXISTS and the like): a migration
+ * interrupted before its version row was written simply runs again. Databases
+ * created before versioning start at version 0 and replay every migration,
+ * which leaves their existing tables as they are.
+ */
+public class SchemaMigrations {
+
+    /**
+     * One schema change.
+     */
+    record Migration(int version, String description, SqlWork<?> work) {
+    }
+
+    static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "Artist, Album and Song tables", SchemaMigrations::createCatalogTables),
+        new Migration(2, "Secondary indexes", SchemaIndexes::ensureIndexes),
+        new Migration(3, "Full-text search index", conn -> {
+            FullTextSearch.ensureSchema(conn);
+            return null;
+        }),
+        new Migration(4, "AlbumStats and ArtistStats summary tables", conn -> {
+            CatalogStats.ensureSchema(conn);
+            return null;
+        }),
+        new Migration(5, "SnapshotChanges change counter", conn -> {
+            SongSnapshot.ensureSchema(conn);
+            return null;
+        }),
+        new Migration(6, "ChangeLog of catalog changes", conn -> {
+            ChangeLog.ensureSchema(conn);
+            return null;
+        })
+    );
+
+    public static final int LATEST = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version ("
+            + "version INTEGER PRIMARY KEY,"
+            + "description TEXT NOT NULL,"
+            + "applied_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP"
+            + ")";
+    static final String CURRENT_VERSION_SQL = "SELECT COALESCE(MAX(version), 0) FROM schema_version";
+    private static final String RECORD_VERSION_SQL =
+            "INSERT OR IGNORE INTO schema_version (version, description) VALUES (?, ?)";
+
+    /**
+     * Returns the highest applied migration, or 0 for a new or unversioned database.
+     */
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'schema_version'")) {
+                if (!rs.next()) {
+                    return 0;
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(CURRENT_VERSION_SQL)) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Applies every migration newer than the database's version, recording each one.
+     * @return The schema version after migrating.
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_VERSION_TABLE);
+        }
+        int version = currentVersion(conn);
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= version) {
+                continue;
+            }
+            migration.work().run(conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(RECORD_VERSION_SQL)) {
+                pstmt.setInt(1, migration.version());
+                pstmt.setString(2, migration.description());
+                pstmt.executeUpdate();
+            }
+            version = migration.version();
+        }
+        return version;
+    }
+
+    private static Void createCatalogTables(Connection conn) throws SQLException {
+        String createArtistTable = "CREATE TABLE IF NOT EXISTS Artist ("
+                + "artist_id INTEGER PRIMARY KEY,"
+                + "name TEXT NOT NULL,"
+                + "genre TEXT,"
+                + "biography TEXT"
+                + ");";
+
+        String createAlbumTable = "CREATE TABLE IF NOT EXISTS Album ("
+                + "album_id INTEGER PRIMARY KEY,"
+                + "title TEXT NOT NULL,"
+                + "release_year INTEGER,"
+                + "artist_id INTEGER,"
+                + "FOREIGN KEY (artist_id) REFERENCES Artist(artist_id)"
+                + ");";
+
+        String createSongTable = "CREATE TABLE IF NOT EXISTS Song ("
+                + "song_id INTEGER PRIMARY KEY,"
+                + "title TEXT NOT NULL,"
+                + "duration INTEGER,"
+                + "track_number INTEGER,"
+                + "album_id INTEGER,"
+                + "FOREIGN KEY (album_id) REFERENCES Album(album_id)"
+                + ");";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(createArtistTable);
+            stmt.execute(createAlbumTable);
+            stmt.execute(createSongTable);
+        }
+        return null;
+    }
+}
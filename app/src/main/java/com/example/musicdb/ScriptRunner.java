@@ -0,0 +1,611 @@
+package com.example.musicdb;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a script of catalog operations without the menu, for jobs that used to
+ * pipe answers into {@link MusicDBClient}.
+ *
+ * Each line is one command followed by its arguments, for example
+ * {@code add-song "Come Together" 259 1 1}. Arguments are separated by tabs
+ * when the line has any, otherwise by spaces, with double quotes around
+ * arguments that contain spaces (\" and \\ escape inside quotes). Blank lines
+ * and lines starting with # are skipped; {@code help} lists the commands.
+ *
+ * The whole script runs on one connection, through
+ * {@link DatabaseManager#write}, so in WAL mode it holds the single writer
+ * until it ends. Writes commit one by one unless --batch N groups every N
+ * writes into a transaction; {@code begin} ... {@code commit} (or
+ * {@code rollback}) groups them explicitly. A failed command stops the script
+ * and rolls back the open transaction; with --continue it is reported, only
+ * its own changes are undone, and the script goes on.
+ *
+ * Every command writes one line of output, through a buffered stream, after
+ * any rows it returned. As TSV (the default), "LINE COMMAND row FIELDS..." for
+ * each row, then "LINE COMMAND ok MICROS RESULT" or "LINE COMMAND error MICROS
+ * MESSAGE", where RESULT is the generated ID, the number of changed or
+ * returned rows. As JSON Lines, one object per command with the line,
+ * command, status, micros and either the result, the rows or the error.
+ * A summary of calls, errors and latencies per command goes to standard
+ * error at the end.
+ *
+ * Usage: java -jar musicdb.jar script [FILE|-] [--format tsv|jsonl] [--output FILE] [--batch N] [--continue]
+ */
+public final class ScriptRunner {
+    private static final String USAGE = "Usage: java -jar musicdb.jar script [FILE|-] [--format tsv|jsonl] "
+            + "[--output FILE] [--batch N] [--continue]";
+
+    private interface Operation {
+        Object run(Connection conn, String[] args) throws SQLException;
+    }
+
+    /**
+     * A script command. Arguments in brackets in its usage are optional.
+     */
+    private static final class Command {
+        final String usage;
+        final boolean write;
+        final Operation operation;
+        final int minArgs;
+        final int maxArgs;
+
+        Command(String usage, boolean write, Operation operation) {
+            this.usage = usage;
+            this.write = write;
+            this.operation = operation;
+            String[] words = usage.split(" ");
+            int optional = 0;
+            for (String word : words) {
+                if (word.startsWith("[")) {
+                    optional++;
+                }
+            }
+            this.maxArgs = words.length - 1;
+            this.minArgs = maxArgs - optional;
+        }
+    }
+
+    private static final Map<String, Command> COMMANDS = new LinkedHashMap<>();
+
+    static {
+        command("add-artist NAME GENRE BIOGRAPHY", true,
+                (conn, a) -> DatabaseManager.addArtist(conn, a[0], a[1], a[2]));
+        command("add-album TITLE YEAR ARTIST_ID", true,
+                (conn, a) -> DatabaseManager.addAlbum(conn, a[0], integer(a[1]), integer(a[2])));
+        command("add-song TITLE DURATION TRACK ALBUM_ID", true,
+                (conn, a) -> DatabaseManager.addSong(conn, a[0], integer(a[1]), integer(a[2]), integer(a[3])));
+        command("update-album-title ALBUM_ID TITLE", true,
+                (conn, a) -> DatabaseManager.updateAlbumTitle(conn, integer(a[0]), a[1]));
+        command("delete-song SONG_ID", true, (conn, a) -> DatabaseManager.deleteSongById(conn, integer(a[0])));
+        command("delete-album ALBUM_ID", true, (conn, a) -> DatabaseManager.deleteAlbumById(conn, integer(a[0])));
+        command("delete-artist ARTIST_ID", true,
+                (conn, a) -> DatabaseManager.deleteArtistById(conn, integer(a[0])));
+        command("delete-albums-before YEAR", true,
+                (conn, a) -> CatalogDeletes.deleteAlbumsReleasedBefore(conn, integer(a[0])));
+        command("songs-by-artist ARTIST_ID", false, (conn, a) -> DatabaseManager.songsByArtist(conn, integer(a[0])));
+        command("songs-by-artist-name NAME", false, (conn, a) -> DatabaseManager.songsByArtist(conn, a[0]));
+        command("search KEYWORD", false, (conn, a) -> DatabaseManager.searchSongsByTitle(conn, a[0]));
+        command("search-catalog WORDS [LIMIT]", false,
+                (conn, a) -> FullTextSearch.search(conn, a[0], 0, a.length > 1 ? integer(a[1]) : 20));
+        command("complete PREFIX [LIMIT]", false,
+                (conn, a) -> TypeaheadIndex.complete(a[0], a.length > 1 ? integer(a[1]) : 10));
+        command("albums-by-year YEAR", false, (conn, a) -> DatabaseManager.albumsByYear(conn, integer(a[0])));
+        command("albums-by-year-range FROM TO", false,
+                (conn, a) -> DatabaseManager.albumsByYearRange(conn, integer(a[0]), integer(a[1])));
+        command("songs-per-album", false, (conn, a) -> DatabaseManager.songCountsPerAlbum(conn));
+        command("albums-per-artist", false, (conn, a) -> DatabaseManager.albumCountsPerArtist(conn));
+    }
+
+    private static void command(String usage, boolean write, Operation operation) {
+        COMMANDS.put(usage.substring(0, usage.indexOf(' ') < 0 ? usage.length() : usage.indexOf(' ')),
+                new Command(usage, write, operation));
+    }
+
+    /**
+     * Thrown to stop the script at a failed command.
+     */
+    private static final class Stopped extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Stopped(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final Connection conn;
+    private final PrintWriter out;
+    private final boolean json;
+    private final int batch;
+    private final boolean continueOnError;
+
+    // Latencies in nanoseconds and errors per command, in order of first use
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final Map<String, Integer> errors = new LinkedHashMap<>();
+
+    // Open transaction: started by begin, or by the first write of a batch
+    private boolean explicitTransaction;
+    private int uncommittedWrites;
+    private int commits;
+
+    private ScriptRunner(Connection conn, PrintWriter out, boolean json, int batch, boolean continueOnError) {
+        this.conn = conn;
+        this.out = out;
+        this.json = json;
+        this.batch = batch;
+        this.continueOnError = continueOnError;
+    }
+
+    /**
+     * Runs every command read from in and writes their results to out.
+     * @param batch Writes per transaction; 1 commits each write on its own.
+     * @return Number of failed commands.
+     */
+    public static int run(BufferedReader in, PrintWriter out, boolean json, int batch, boolean continueOnError)
+            throws SQLException, IOException {
+        if (DatabaseManager.shards() != null) {
+            throw new SQLException("Script mode runs on a single database, not on shards");
+        }
+        if (batch < 1) {
+            throw new IllegalArgumentException("--batch must be at least 1");
+        }
+        long start = System.nanoTime();
+        ScriptRunner runner = DatabaseManager.write(conn -> {
+            ScriptRunner r = new ScriptRunner(conn, out, json, batch, continueOnError);
+            try {
+                r.runAll(in);
+            } catch (IOException e) {
+                throw new SQLException("Error reading script: " + e.getMessage(), e);
+            }
+            return r;
+        });
+        out.flush();
+        System.err.print(runner.summary(System.nanoTime() - start));
+        int failed = 0;
+        for (int count : runner.errors.values()) {
+            failed += count;
+        }
+        return failed;
+    }
+
+    private void runAll(BufferedReader in) throws IOException, SQLException {
+        String line;
+        int lineNumber = 0;
+        try {
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                execute(lineNumber, line);
+            }
+            if (explicitTransaction) {
+                System.err.println("Script ended inside begin; rolled back " + uncommittedWrites + " write(s).");
+                rollback();
+            } else {
+                commit();
+            }
+        } catch (Stopped e) {
+            System.err.println(e.getMessage());
+            rollback();
+        }
+    }
+
+    private void execute(int lineNumber, String line) throws SQLException, Stopped {
+        long start = System.nanoTime();
+        String name = line.trim().split("[\\s]+", 2)[0];
+        Object result;
+        try {
+            List<String> words = split(line);
+            String[] args = words.subList(1, words.size()).toArray(new String[0]);
+            result = run(name, args);
+        } catch (SQLException | RuntimeException e) {
+            long nanos = System.nanoTime() - start;
+            record(name, nanos, false);
+            String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            error(lineNumber, name, nanos, message);
+            if (!continueOnError) {
+                throw new Stopped("Stopped at line " + lineNumber + " (" + name + "): " + message);
+            }
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        record(name, nanos, true);
+        ok(lineNumber, name, nanos, result);
+    }
+
+    private Object run(String name, String[] args) throws SQLException {
+        switch (name) {
+            case "begin":
+                if (explicitTransaction) {
+                    throw new IllegalArgumentException("Already in a transaction; commit or rollback first");
+                }
+                commit();
+                conn.setAutoCommit(false);
+                explicitTransaction = true;
+                return null;
+            case "commit":
+                int committed = uncommittedWrites;
+                commit();
+                return committed;
+            case "rollback":
+                int rolledBack = uncommittedWrites;
+                rollback();
+                return rolledBack;
+            case "help":
+                List<String> usages = new ArrayList<>(List.of("begin", "commit", "rollback"));
+                for (Command command : COMMANDS.values()) {
+                    usages.add(command.usage);
+                }
+                return usages;
+            default:
+                break;
+        }
+        Command command = COMMANDS.get(name);
+        if (command == null) {
+            throw new IllegalArgumentException("Unknown command '" + name + "'; try help");
+        }
+        if (args.length < command.minArgs || args.length > command.maxArgs) {
+            throw new IllegalArgumentException("Usage: " + command.usage);
+        }
+        if (!command.write) {
+            return command.operation.run(conn, args);
+        }
+        if (batch > 1 && conn.getAutoCommit()) {
+            conn.setAutoCommit(false);
+        }
+        Object result = runWrite(command, args);
+        uncommittedWrites++;
+        if (!explicitTransaction && uncommittedWrites >= batch) {
+            commit();
+        }
+        return result;
+    }
+
+    // Inside a transaction, a failed write that the script goes past only undoes its own changes
+    private Object runWrite(Command command, String[] args) throws SQLException {
+        if (conn.getAutoCommit() || !continueOnError) {
+            return command.operation.run(conn, args);
+        }
+        Savepoint savepoint = conn.setSavepoint();
+        int deferred = TableVersions.savepoint();
+        try {
+            Object result = command.operation.run(conn, args);
+            conn.releaseSavepoint(savepoint);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback(savepoint);
+            conn.releaseSavepoint(savepoint);
+            TableVersions.rolledBackTo(deferred);
+            throw e;
+        }
+    }
+
+    private void commit() throws SQLException {
+        if (!conn.getAutoCommit()) {
+            conn.commit();
+            conn.setAutoCommit(true);
+            commits++;
+        }
+        transactionEnded(true);
+    }
+
+    private void rollback() throws SQLException {
+        if (!conn.getAutoCommit()) {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+        transactionEnded(false);
+    }
+
+    private void transactionEnded(boolean committed) {
+        explicitTransaction = false;
+        uncommittedWrites = 0;
+        // Cached results read while the transaction was open are stale now
+        TableVersions.transactionEnded(committed);
+    }
+
+    private void record(String name, long nanos, boolean ok) {
+        latencies.computeIfAbsent(name, n -> new LatencyHistogram()).record(nanos);
+        if (!ok) {
+            errors.merge(name, 1, Integer::sum);
+        }
+    }
+
+    private void ok(int line, String name, long nanos, Object result) {
+        List<?> rows = result instanceof List ? (List<?>) result
+                : result != null && !isScalar(result) ? List.of(result) : null;
+        if (json) {
+            StringBuilder sb = header(line, name, "ok", nanos);
+            if (rows == null) {
+                sb.append(",\"result\":").append(result == null ? "null" : jsonValue(result));
+            } else {
+                sb.append(",\"rows\":[");
+                for (int i = 0; i < rows.size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    appendJson(sb, rows.get(i));
+                }
+                sb.append(']');
+            }
+            out.println(sb.append('}'));
+            return;
+        }
+        if (rows != null) {
+            for (Object row : rows) {
+                StringBuilder sb = new StringBuilder().append(line).append('\t').append(name).append("\trow");
+                for (Object value : fields(row).values()) {
+                    sb.append('\t').append(tsv(value));
+                }
+                out.println(sb);
+            }
+        }
+        out.println(line + "\t" + name + "\tok\t" + nanos / 1000 + "\t"
+                + (rows != null ? String.valueOf(rows.size()) : result == null ? "" : tsv(result)));
+    }
+
+    private void error(int line, String name, long nanos, String message) {
+        if (json) {
+            out.println(header(line, name, "error", nanos).append(",\"error\":")
+                    .append(MusicDBServer.quote(message)).append('}'));
+        } else {
+            out.println(line + "\t" + name + "\terror\t" + nanos / 1000 + "\t" + tsv(message));
+        }
+    }
+
+    private static StringBuilder header(int line, String name, String status, long nanos) {
+        return new StringBuilder("{\"line\":").append(line).append(",\"command\":").append(MusicDBServer.quote(name))
+                .append(",\"status\":\"").append(status).append("\",\"micros\":").append(nanos / 1000);
+    }
+
+    private static boolean isScalar(Object value) {
+        return value instanceof Number || value instanceof String || value instanceof Boolean;
+    }
+
+    private static void appendJson(StringBuilder sb, Object row) {
+        if (isScalar(row)) {
+            sb.append(jsonValue(row));
+            return;
+        }
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> field : fields(row).entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(MusicDBServer.quote(field.getKey())).append(':').append(jsonValue(field.getValue()));
+        }
+        sb.append('}');
+    }
+
+    private static String jsonValue(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return MusicDBServer.quote(value.toString());
+    }
+
+    // Record components, or public fields of the other result classes
+    private static Map<String, Object> fields(Object row) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        try {
+            if (row.getClass().isRecord()) {
+                for (RecordComponent component : row.getClass().getRecordComponents()) {
+                    fields.put(component.getName(), component.getAccessor().invoke(row));
+                }
+            } else if (isScalar(row)) {
+                fields.put("value", row);
+            } else {
+                for (Field field : row.getClass().getFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        fields.put(field.getName(), field.get(row));
+                    }
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot read " + row.getClass().getSimpleName(), e);
+        }
+        return fields;
+    }
+
+    private static String tsv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String s = value.toString();
+        if (s.indexOf('\t') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0 && s.indexOf('\\') < 0) {
+            return s;
+        }
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * Splits a script line into words: on tabs if it has any, otherwise on
+     * spaces, keeping double-quoted words together.
+     */
+    static List<String> split(String line) {
+        List<String> words = new ArrayList<>();
+        if (line.indexOf('\t') >= 0) {
+            for (String word : line.trim().split("\t", -1)) {
+                words.add(word);
+            }
+            return words;
+        }
+        StringBuilder word = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '\\' && i + 1 < line.length()) {
+                    word.append(line.charAt(++i));
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    word.append(c);
+                }
+            } else if (c == '"') {
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                quoted = true;
+            } else if (Character.isWhitespace(c)) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+            } else {
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                word.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private static int integer(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + value + "' is not a number");
+        }
+    }
+
+    /**
+     * A table of calls, errors and latencies in milliseconds per command.
+     */
+    private String summary(long totalNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-22s %9s %7s %10s %9s %9s %9s %9s%n",
+                "Command", "Calls", "Errors", "Total ms", "Mean ms", "p50 ms", "p99 ms", "Max ms"));
+        long calls = 0;
+        int failed = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            int errorCount = errors.getOrDefault(entry.getKey(), 0);
+            calls += h.count();
+            failed += errorCount;
+            sb.append(String.format("%-22s %9d %7d %10.1f %9.3f %9.3f %9.3f %9.3f%n",
+                    entry.getKey(), h.count(), errorCount, h.mean() * h.count() / 1e6, h.mean() / 1e6,
+                    h.percentile(50) / 1e6, h.percentile(99) / 1e6, h.max() / 1e6));
+        }
+        sb.append(String.format("%d command(s), %d error(s), %d transaction(s) committed in %.1f ms%n",
+                calls, failed, commits, totalNanos / 1e6));
+        return sb.toString();
+    }
+
+    /**
+     * Runs a script from the arguments of "musicdb.jar script ...".
+     */
+    public static void main(String[] args) throws IOException {
+        String file = "-";
+        String output = null;
+        boolean json = false;
+        int batch = 1;
+        boolean continueOnError = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format":
+                        String format = args[++i];
+                        if (!format.equals("tsv") && !format.equals("jsonl")) {
+                            throw new IllegalArgumentException("Unknown format: " + format);
+                        }
+                        json = format.equals("jsonl");
+                        break;
+                    case "--output":
+                        output = args[++i];
+                        break;
+                    case "--batch":
+                        batch = Integer.parseInt(args[++i]);
+                        break;
+                    case "--continue":
+                        continueOnError = true;
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        file = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        // Standard output is for results; migration messages go to standard error
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        try {
+            DatabaseManager.createTables();
+        } finally {
+            System.setOut(stdout);
+        }
+        InputStream input;
+        OutputStream stream;
+        try {
+            input = file.equals("-") ? System.in : new FileInputStream(file);
+            stream = output == null ? System.out : new FileOutputStream(output);
+        } catch (FileNotFoundException e) {
+            System.err.println("Error running script: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        int failed;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16));
+            try {
+                failed = run(in, out, json, batch, continueOnError);
+            } finally {
+                out.flush();
+                if (output != null) {
+                    out.close();
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            System.err.println("Error running script: " + e.getMessage());
+            failed = 1;
+        } finally {
+            DatabaseManager.shutdown();
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.musicdb;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+/**
+ * Which database file owns which part of a sharded catalog.
+ *
+ * The catalog is split into {@link #BUCKETS} virtual buckets. An artist and
+ * all of its albums and songs live in the same bucket, and every one of their
+ * IDs is congruent to the bucket number modulo BUCKETS, so any ID routes to its
+ * shard without a lookup. Each shard owns a set of buckets; splitting a shard
+ * moves some of its buckets to a new file and never changes an ID.
+ *
+ * Stored as a properties file:
+ * <pre>
+ * shard.0.url=jdbc:sqlite:music-0.db
+ * shard.0.buckets=0-31
+ * shard.1.url=jdbc:sqlite:music-1.db
+ * shard.1.buckets=32-63
+ * </pre>
+ */
+public final class ShardManifest {
+    public static final int BUCKETS = 64;
+
+    private final List<String> urls;
+    private final int[] owners;
+
+    private ShardManifest(List<String> urls, int[] owners) {
+        this.urls = List.copyOf(urls);
+        this.owners = owners;
+    }
+
+    /**
+     * Spreads the buckets evenly over the given shards.
+     */
+    public static ShardManifest even(List<String> urls) {
+        if (urls.isEmpty() || urls.size() > BUCKETS) {
+            throw new IllegalArgumentException("Need between 1 and " + BUCKETS + " shards");
+        }
+        int[] owners = new int[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            owners[bucket] = bucket * urls.size() / BUCKETS;
+        }
+        return new ShardManifest(urls, owners);
+    }
+
+    public static ShardManifest load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            props.load(in);
+        }
+        List<String> urls = new ArrayList<>();
+        int[] owners = new int[BUCKETS];
+        Arrays.fill(owners, -1);
+        for (int shard = 0; props.getProperty("shard." + shard + ".url") != null; shard++) {
+            urls.add(props.getProperty("shard." + shard + ".url"));
+            for (int bucket : parseBuckets(props.getProperty("shard." + shard + ".buckets", ""))) {
+                if (owners[bucket] != -1) {
+                    throw new IOException(file + ": bucket " + bucket + " is assigned twice");
+                }
+                owners[bucket] = shard;
+            }
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (owners[bucket] == -1) {
+                throw new IOException(file + ": bucket " + bucket + " has no shard");
+            }
+        }
+        return new ShardManifest(urls, owners);
+    }
+
+    /**
+     * Writes the manifest to a temporary file and renames it over the old one,
+     * so readers see either the old or the new assignment.
+     */
+    public void save(Path file) throws IOException {
+        Properties props = new Properties();
+        for (int shard = 0; shard < urls.size(); shard++) {
+            props.setProperty("shard." + shard + ".url", urls.get(shard));
+            props.setProperty("shard." + shard + ".buckets", formatBuckets(buckets(shard)));
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        Path partial = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (Writer out = Files.newBufferedWriter(partial)) {
+            props.store(out, "Music DB shards: " + BUCKETS + " buckets, an ID belongs to bucket ID % " + BUCKETS);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int shardCount() {
+        return urls.size();
+    }
+
+    public String url(int shard) {
+        return urls.get(shard);
+    }
+
+    public static int bucketOf(int id) {
+        return Math.floorMod(id, BUCKETS);
+    }
+
+    /**
+     * The shard that owns the given artist, album or song ID.
+     */
+    public int shardOf(int id) {
+        return owners[bucketOf(id)];
+    }
+
+    /**
+     * The buckets owned by a shard, in ascending order.
+     */
+    public int[] buckets(int shard) {
+        return IntStream.range(0, BUCKETS).filter(b -> owners[b] == shard).toArray();
+    }
+
+    /**
+     * Returns a manifest in which the given buckets belong to a new shard at newUrl.
+     */
+    public ShardManifest withNewShard(String newUrl, int[] movedBuckets) {
+        List<String> newUrls = new ArrayList<>(urls);
+        newUrls.add(newUrl);
+        int[] newOwners = owners.clone();
+        for (int bucket : movedBuckets) {
+            newOwners[bucket] = urls.size();
+        }
+        return new ShardManifest(newUrls, newOwners);
+    }
+
+    // "0-3,8,10-11" -> 0 1 2 3 8 10 11
+    static int[] parseBuckets(String spec) {
+        List<Integer> buckets = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            int from = Integer.parseInt(dash < 0 ? part : part.substring(0, dash).trim());
+            int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+            if (from < 0 || to >= BUCKETS || from > to) {
+                throw new IllegalArgumentException("Invalid bucket range: " + part);
+            }
+            for (int bucket = from; bucket <= to; bucket++) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static String formatBuckets(int[] buckets) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < buckets.length; i++) {
+            int from = buckets[i];
+            while (i + 1 < buckets.length && buckets[i + 1] == buckets[i] + 1) {
+                i++;
+            }
+            sb.append(sb.length() == 0 ? "" : ",").append(from == buckets[i] ? "" + from : from + "-" + buckets[i]);
+        }
+        return sb.toString();
+    }
+}
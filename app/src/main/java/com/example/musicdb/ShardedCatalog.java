@@ -0,0 +1,407 @@
+package com.example.musicdb;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A catalog partitioned by artist over several SQLite files, enabled with
+ * -Dmusicdb.shards=path/to/shards.properties.
+ *
+ * Each shard has its own connection pool. An artist, its albums and its songs
+ * live on one shard, chosen by the ID bucket described in {@link ShardManifest},
+ * so lookups and writes by ID touch a single file. Queries over the whole
+ * catalog run on every shard in parallel, and ordered results are merged back
+ * into the query's order, so callers see one sorted result.
+ *
+ * Usage: java com.example.musicdb.ShardedCatalog init MANIFEST COUNT FILE_PREFIX
+ *      | java com.example.musicdb.ShardedCatalog status MANIFEST
+ *      | java com.example.musicdb.ShardedCatalog split MANIFEST SHARD NEW_URL
+ */
+public final class ShardedCatalog implements AutoCloseable {
+    private final ShardManifest manifest;
+    private final List<ConnectionPool> pools = new ArrayList<>();
+    private final ExecutorService executor;
+
+    /**
+     * Opens every shard of the manifest and brings its schema up to date.
+     */
+    public ShardedCatalog(ShardManifest manifest) throws SQLException {
+        this.manifest = manifest;
+        for (int shard = 0; shard < manifest.shardCount(); shard++) {
+            pools.add(ConnectionPool.fromSystemProperties(manifest.url(shard)));
+        }
+        executor = Executors.newFixedThreadPool(manifest.shardCount(), r -> {
+            Thread t = new Thread(r, "musicdb-shard-query");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (ConnectionPool pool : pools) {
+                try (Connection conn = pool.getConnection()) {
+                    if (SchemaMigrations.currentVersion(conn) < SchemaMigrations.LATEST) {
+                        SchemaMigrations.migrate(conn);
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static ShardedCatalog open(Path manifestFile) throws IOException, SQLException {
+        return new ShardedCatalog(ShardManifest.load(manifestFile));
+    }
+
+    public ShardManifest manifest() {
+        return manifest;
+    }
+
+    /**
+     * Borrows a connection to the shard that owns the given artist, album or song ID.
+     */
+    public Connection connection(int id) throws SQLException {
+        return pools.get(manifest.shardOf(id)).getConnection();
+    }
+
+    /**
+     * Runs a unit of work on the shard that owns the given ID.
+     */
+    public <T> T write(int id, SqlWork<T> work) throws SQLException {
+        try (Connection conn = connection(id)) {
+            return work.run(conn);
+        }
+    }
+
+    /**
+     * Runs a query on every shard in parallel.
+     * @param order Order of each shard's rows, used to merge them; null to concatenate in shard order.
+     */
+    public <T> List<T> gather(SqlWork<List<T>> work, Comparator<? super T> order) throws SQLException {
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (ConnectionPool pool : pools) {
+            futures.add(executor.submit(() -> {
+                try (Connection conn = pool.getConnection()) {
+                    return work.run(conn);
+                }
+            }));
+        }
+        List<Iterator<T>> results = new ArrayList<>();
+        int size = 0;
+        for (Future<List<T>> future : futures) {
+            List<T> rows = await(future);
+            results.add(rows.iterator());
+            size += rows.size();
+        }
+        List<T> merged = new ArrayList<>(size);
+        merge(results, order).forEachRemaining(merged::add);
+        return merged;
+    }
+
+    /**
+     * Streams a query over every shard, merged in the given order. The shards
+     * start executing in parallel; rows are then read lazily. Closing the
+     * stream closes every shard's cursor.
+     */
+    public <T> Stream<T> stream(Comparator<? super T> order, String sql, CatalogQueries.RowMapper<T> mapper,
+                                Object... params) throws SQLException {
+        List<Stream<T>> streams = new ArrayList<>();
+        try {
+            for (ConnectionPool pool : pools) {
+                streams.add(CatalogQueries.stream(pool.getConnection(), sql, mapper, params));
+            }
+            List<Iterator<T>> iterators = new ArrayList<>();
+            List<Future<Boolean>> started = new ArrayList<>();
+            for (Stream<T> s : streams) {
+                Iterator<T> it = s.iterator();
+                iterators.add(it);
+                // SQLite runs a query up to its first row on the first step
+                started.add(executor.submit(it::hasNext));
+            }
+            for (Future<Boolean> future : started) {
+                await(future);
+            }
+            Iterator<T> merged = merge(iterators, order);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                    .onClose(() -> streams.forEach(Stream::close));
+        } catch (SQLException | RuntimeException e) {
+            streams.forEach(Stream::close);
+            throw e;
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SQLException("Shard query failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * K-way merge of sorted iterators, or their concatenation when order is null.
+     */
+    static <T> Iterator<T> merge(List<Iterator<T>> sources, Comparator<? super T> order) {
+        if (order == null) {
+            return sources.stream().flatMap(it -> StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)).iterator();
+        }
+        // Each entry is the next row of one source; ties go to the lower shard
+        record Head<T>(T row, int source) {
+        }
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                Comparator.<Head<T>, T>comparing(Head::row, order).thenComparingInt(Head::source));
+        return new Iterator<T>() {
+            private boolean primed;
+
+            @Override
+            public boolean hasNext() {
+                if (!primed) {
+                    for (int i = 0; i < sources.size(); i++) {
+                        if (sources.get(i).hasNext()) {
+                            heads.add(new Head<>(sources.get(i).next(), i));
+                        }
+                    }
+                    primed = true;
+                }
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Head<T> head = heads.poll();
+                Iterator<T> source = sources.get(head.source());
+                if (source.hasNext()) {
+                    heads.add(new Head<>(source.next(), head.source()));
+                }
+                return head.row();
+            }
+        };
+    }
+
+    /**
+     * The bucket of a new artist. Its albums and songs take the same bucket.
+     */
+    public static int artistBucket(String name) {
+        // Fibonacci hashing: the top bits of the product spread similar names over all buckets
+        return (name.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(ShardManifest.BUCKETS));
+    }
+
+    /**
+     * Builds an INSERT of the given columns whose ID is the smallest one above the
+     * table's current maximum that falls into a bucket, bound as the last
+     * parameter, so the new row stays on its shard after a split. The ID is
+     * computed inside the statement, which holds the write lock, so concurrent
+     * writers on one shard cannot pick the same ID.
+     */
+    static String insertWithNextId(String table, String idColumn, String... columns) {
+        int buckets = ShardManifest.BUCKETS;
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ", " + idColumn + ") SELECT "
+                + String.join(", ", Collections.nCopies(columns.length, "?"))
+                + ", m - m % " + buckets + " + b + CASE WHEN m % " + buckets + " < b THEN 0 ELSE " + buckets + " END"
+                + " FROM (SELECT COALESCE(MAX(" + idColumn + "), 0) AS m, ? AS b FROM " + table + ")";
+    }
+
+    /**
+     * Moves the given buckets of a shard to a new database file and returns the
+     * manifest that routes them there. Rows are copied and committed to the new
+     * file before the manifest changes and deleted from the source only
+     * afterwards, so a failed split leaves the old manifest valid. The source's
+     * write lock is held from before the copy until the delete commits, so other
+     * processes cannot write to it meanwhile; their writes wait, then fail as
+     * busy. The source then rejects inserts into the moved buckets, so a process
+     * still routing by the old manifest fails instead of writing rows nobody
+     * reads. Restart such processes to load the new manifest.
+     */
+    public static ShardManifest split(Path manifestFile, int shard, String newUrl) throws IOException, SQLException {
+        ShardManifest old = ShardManifest.load(manifestFile);
+        int[] owned = old.buckets(shard);
+        if (owned.length < 2) {
+            throw new IllegalArgumentException("Shard " + shard + " owns " + owned.length + " bucket(s); nothing to split");
+        }
+        int[] moved = Arrays.copyOfRange(owned, owned.length / 2, owned.length);
+        String inMoved = "% " + ShardManifest.BUCKETS + " IN (" + joinBuckets(moved) + ")";
+        if (!newUrl.startsWith("jdbc:sqlite:")) {
+            throw new IllegalArgumentException("Not a SQLite URL: " + newUrl);
+        }
+        try (ConnectionPool target = ConnectionPool.fromSystemProperties(newUrl);
+             Connection conn = target.getConnection()) {
+            SchemaMigrations.migrate(conn);
+        }
+        ShardManifest updated = old.withNewShard(newUrl, moved);
+        // One connection holds the source's write lock and deletes; the other copies, which only reads the source
+        try (ConnectionPool source = ConnectionPool.fromSystemProperties(old.url(shard), 2, List.of());
+             Connection lock = source.getConnection();
+             Connection copy = source.getConnection()) {
+            try (Statement stmt = lock.createStatement()) {
+                lock.setAutoCommit(false);
+                try {
+                    // The first write takes the lock; the rows stay invisible to others until the commit
+                    stmt.executeUpdate(CREATE_MOVED_BUCKETS);
+                    for (int bucket : moved) {
+                        stmt.executeUpdate("INSERT OR IGNORE INTO MovedBuckets (bucket) VALUES (" + bucket + ")");
+                    }
+                    copyBuckets(copy, newUrl, inMoved);
+                    updated.save(manifestFile);
+                    stmt.executeUpdate("DELETE FROM Song WHERE song_id " + inMoved);
+                    stmt.executeUpdate("DELETE FROM Album WHERE album_id " + inMoved);
+                    stmt.executeUpdate("DELETE FROM Artist WHERE artist_id " + inMoved);
+                    for (String trigger : MOVED_BUCKET_TRIGGERS) {
+                        stmt.execute(trigger);
+                    }
+                    lock.commit();
+                } catch (SQLException | IOException | RuntimeException e) {
+                    lock.rollback();
+                    throw e;
+                } finally {
+                    lock.setAutoCommit(true);
+                }
+            }
+        }
+        return updated;
+    }
+
+    // Buckets a split moved off a shard, whose inserts the triggers below reject
+    static final String CREATE_MOVED_BUCKETS = "CREATE TABLE IF NOT EXISTS MovedBuckets (bucket INTEGER PRIMARY KEY)";
+
+    private static final String MOVED_BUCKET_TRIGGER = "CREATE TRIGGER IF NOT EXISTS moved_buckets_%1$s "
+            + "BEFORE INSERT ON %2$s WHEN new.%3$s %% " + ShardManifest.BUCKETS
+            + " IN (SELECT bucket FROM MovedBuckets) BEGIN "
+            + "SELECT RAISE(ABORT, 'This bucket moved to another shard; reload the shard manifest'); END";
+
+    private static final String[] MOVED_BUCKET_TRIGGERS = {
+        String.format(MOVED_BUCKET_TRIGGER, "artist", "Artist", "artist_id"),
+        String.format(MOVED_BUCKET_TRIGGER, "album", "Album", "album_id"),
+        String.format(MOVED_BUCKET_TRIGGER, "song", "Song", "song_id"),
+    };
+
+    private static void copyBuckets(Connection conn, String newUrl, String inMoved) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ATTACH DATABASE '" + newUrl.substring("jdbc:sqlite:".length()).replace("'", "''")
+                    + "' AS target");
+            try {
+                conn.setAutoCommit(false);
+                try {
+                    stmt.executeUpdate("INSERT INTO target.Artist SELECT * FROM main.Artist WHERE artist_id " + inMoved);
+                    stmt.executeUpdate("INSERT INTO target.Album SELECT * FROM main.Album WHERE album_id " + inMoved);
+                    stmt.executeUpdate("INSERT INTO target.Song SELECT * FROM main.Song WHERE song_id " + inMoved);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } finally {
+                stmt.execute("DETACH DATABASE target");
+            }
+        }
+    }
+
+    private static String joinBuckets(int[] buckets) {
+        StringBuilder sb = new StringBuilder();
+        for (int bucket : buckets) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(bucket);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the artist, album and song counts of every shard.
+     */
+    public List<int[]> counts() throws SQLException {
+        return gather(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM Artist), "
+                         + "(SELECT COUNT(*) FROM Album), (SELECT COUNT(*) FROM Song)")) {
+                rs.next();
+                return List.of(new int[] {rs.getInt(1), rs.getInt(2), rs.getInt(3)});
+            }
+        }, null);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (ConnectionPool pool : pools) {
+            pool.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        String usage = "Usage: java com.example.musicdb.ShardedCatalog init MANIFEST COUNT FILE_PREFIX"
+                + " | status MANIFEST | split MANIFEST SHARD NEW_URL";
+        try {
+            if (args.length == 4 && args[0].equals("init")) {
+                Path file = Paths.get(args[1]);
+                if (Files.exists(file)) {
+                    System.out.println(file + " already exists.");
+                    return;
+                }
+                List<String> urls = new ArrayList<>();
+                for (int shard = 0; shard < Integer.parseInt(args[2]); shard++) {
+                    urls.add("jdbc:sqlite:" + args[3] + "-" + shard + ".db");
+                }
+                ShardManifest manifest = ShardManifest.even(urls);
+                new ShardedCatalog(manifest).close();
+                manifest.save(file);
+                System.out.println("Created " + urls.size() + " shard(s) in " + file + ".");
+            } else if (args.length == 2 && args[0].equals("status")) {
+                try (ShardedCatalog shards = open(Paths.get(args[1]))) {
+                    List<int[]> counts = shards.counts();
+                    for (int shard = 0; shard < counts.size(); shard++) {
+                        int[] c = counts.get(shard);
+                        System.out.printf("Shard %d %s buckets %s: %,d artists, %,d albums, %,d songs%n", shard,
+                                shards.manifest.url(shard), ShardManifest.formatBuckets(shards.manifest.buckets(shard)),
+                                c[0], c[1], c[2]);
+                    }
+                }
+            } else if (args.length == 4 && args[0].equals("split")) {
+                long start = System.nanoTime();
+                ShardManifest updated = split(Paths.get(args[1]), Integer.parseInt(args[2]), args[3]);
+                int added = updated.shardCount() - 1;
+                System.out.printf("Moved buckets %s to shard %d in %.2f s%n",
+                        ShardManifest.formatBuckets(updated.buckets(added)), added, (System.nanoTime() - start) / 1e9);
+            } else {
+                System.out.println(usage);
+            }
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            System.out.println("Error managing shards: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
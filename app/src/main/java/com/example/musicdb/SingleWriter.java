@@ -0,0 +1,305 @@
+package com.example.musicdb;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one connection allowed to write in WAL mode, owned by a dedicated thread.
+ *
+ * SQLite lets any number of readers run alongside one writer when the database
+ * is in WAL mode, but concurrent writers still queue on the file lock. Sending
+ * every write through a single thread turns that lock contention (and the
+ * SQLITE_BUSY errors it causes) into an orderly in-process queue, while reads
+ * run in parallel on the read-only pool.
+ *
+ * Configured with system properties:
+ *   musicdb.busyTimeoutMs (5000), musicdb.wal.synchronous (NORMAL),
+ *   musicdb.wal.mmapSize (268435456), musicdb.wal.cacheSize (-16000, i.e. 16 MB),
+ *   musicdb.wal.autoCheckpointPages (1000), musicdb.wal.checkpointSeconds (30, 0 disables),
+ *   musicdb.wal.checkpointMode (PASSIVE) and musicdb.wal.writeQueue (1024).
+ */
+public class SingleWriter implements AutoCloseable {
+    private final Connection conn;
+    private final BlockingQueue<Task> queue;
+    private final Thread thread;
+    private final ScheduledExecutorService checkpointer;
+    private final String checkpointMode;
+    private volatile boolean closed;
+
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    /**
+     * Opens the writer connection and starts the writer thread.
+     * @param url JDBC URL of the database.
+     * @param pragmas PRAGMA assignments run on the writer connection.
+     * @param queueCapacity Writes that may wait before submitters block.
+     * @param checkpointSeconds Interval of scheduled WAL checkpoints, or 0 for none.
+     * @param checkpointMode PASSIVE, FULL, RESTART or TRUNCATE.
+     */
+    public SingleWriter(String url, List<String> pragmas, int queueCapacity,
+                        long checkpointSeconds, String checkpointMode) throws SQLException {
+        this.conn = StatementCache.wrap(DriverManager.getConnection(url), StatementCache.SIZE);
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : pragmas) {
+                stmt.execute("PRAGMA " + pragma);
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.checkpointMode = checkpointMode;
+
+        this.thread = new Thread(this::drain, "musicdb-writer");
+        thread.setDaemon(true);
+        thread.start();
+
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "musicdb-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        if (checkpointSeconds > 0) {
+            checkpointer.scheduleWithFixedDelay(() -> submit(this::checkpoint),
+                    checkpointSeconds, checkpointSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Creates a writer configured from system properties.
+     */
+    public static SingleWriter fromSystemProperties(String url) throws SQLException {
+        List<String> pragmas = List.of(
+                "journal_mode = WAL",
+                "synchronous = " + System.getProperty("musicdb.wal.synchronous", "NORMAL"),
+                "wal_autocheckpoint = " + Integer.getInteger("musicdb.wal.autoCheckpointPages", 1000));
+        return new SingleWriter(url, concat(commonPragmas(), pragmas),
+                Integer.getInteger("musicdb.wal.writeQueue", 1024),
+                Long.getLong("musicdb.wal.checkpointSeconds", 30L),
+                System.getProperty("musicdb.wal.checkpointMode", "PASSIVE"));
+    }
+
+    /**
+     * PRAGMAs for the read-only pool that serves reads in WAL mode.
+     */
+    public static List<String> readerPragmas() {
+        return concat(commonPragmas(), List.of("query_only = 1"));
+    }
+
+    private static List<String> commonPragmas() {
+        return List.of(
+                "busy_timeout = " + Long.getLong("musicdb.busyTimeoutMs", 5000L),
+                "cache_size = " + Long.getLong("musicdb.wal.cacheSize", -16000L),
+                "mmap_size = " + Long.getLong("musicdb.wal.mmapSize", 268_435_456L));
+    }
+
+    private static List<String> concat(List<String> a, List<String> b) {
+        List<String> all = new ArrayList<>(a);
+        all.addAll(b);
+        return all;
+    }
+
+    /**
+     * Runs the work on the writer connection and waits for its result. Blocks
+     * while the write queue is full. Called from the writer thread itself (from
+     * inside other work), it runs immediately.
+     */
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        if (Thread.currentThread() == thread) {
+            return work.run(conn);
+        }
+        try {
+            return submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Queues the work for the writer thread. Blocks while the write queue is full.
+     */
+    public <T> CompletableFuture<T> submit(SqlWork<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new SQLException("Writer is closed"));
+            return result;
+        }
+        long queuedAt = System.nanoTime();
+        Task task = new Task(result) {
+            @Override
+            public void run() {
+                long waited = System.nanoTime() - queuedAt;
+                totalQueueNanos.addAndGet(waited);
+                maxQueueNanos.accumulateAndGet(waited, Math::max);
+                Metrics.WRITER_QUEUE.recordNanos(waited);
+                tasks.incrementAndGet();
+                try {
+                    result.complete(work.run(conn));
+                } catch (Throwable t) {
+                    failures.incrementAndGet();
+                    result.completeExceptionally(t);
+                } finally {
+                    boolean committed = !resetTransaction() && !result.isCompletedExceptionally();
+                    TableVersions.transactionEnded(committed);
+                }
+            }
+        };
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new SQLException("Interrupted while queueing a write", e));
+            return result;
+        }
+        // close() may have drained the queue between the check above and the put;
+        // whatever the writer thread did not take is failed here
+        if (closed && queue.remove(task)) {
+            task.fail();
+        }
+        return result;
+    }
+
+    // A queued unit of work, which close() fails if the writer thread never runs it
+    private abstract static class Task implements Runnable {
+        private final CompletableFuture<?> result;
+
+        Task(CompletableFuture<?> result) {
+            this.result = result;
+        }
+
+        void fail() {
+            result.completeExceptionally(new SQLException("Writer is closed"));
+        }
+    }
+
+    private void drain() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Task task = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                if (closed) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Never let a failed unit of work leave a transaction open for the next one;
+    // returns whether there was one to roll back
+    private boolean resetTransaction() {
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+                return true;
+            }
+            return false;
+        } catch (SQLException e) {
+            System.out.println("Error resetting writer connection: " + e.getMessage());
+            return true;
+        }
+    }
+
+    private Void checkpoint(Connection c) throws SQLException {
+        try (Statement stmt = c.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(" + checkpointMode + ")");
+            checkpoints.incrementAndGet();
+        }
+        return null;
+    }
+
+    public Stats stats() {
+        long count = tasks.get();
+        return new Stats(count, failures.get(), queue.size(), checkpoints.get(),
+                count == 0 ? 0 : totalQueueNanos.get() / count, maxQueueNanos.get());
+    }
+
+    /**
+     * Finishes queued writes, checkpoints the WAL and closes the writer connection.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        checkpointer.shutdownNow();
+        try {
+            submit(this::checkpoint);
+        } finally {
+            closed = true;
+        }
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Left over if the writer thread did not finish in time
+        Task task;
+        while ((task = queue.poll()) != null) {
+            task.fail();
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing writer connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Snapshot of writer counters. Times are in nanoseconds.
+     */
+    public static final class Stats {
+        public final long writes;
+        public final long failures;
+        public final int queued;
+        public final long checkpoints;
+        public final long avgQueueNanos;
+        public final long maxQueueNanos;
+
+        Stats(long writes, long failures, int queued, long checkpoints, long avgQueueNanos, long maxQueueNanos) {
+            this.writes = writes;
+            this.failures = failures;
+            this.queued = queued;
+            this.checkpoints = checkpoints;
+            this.avgQueueNanos = avgQueueNanos;
+            this.maxQueueNanos = maxQueueNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Writer: " + writes + " writes (" + failures + " failed), " + queued + " queued, "
+                    + checkpoints + " checkpoints"
+                    + String.format("%nWrite queue time: avg %.3f ms, max %.3f ms",
+                            avgQueueNanos / 1e6, maxQueueNanos / 1e6);
+        }
+    }
+}
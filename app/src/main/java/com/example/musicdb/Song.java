@@ -0,0 +1,7 @@
+package com.example.musicdb;
+
+/**
+ * A row of the Song table.
+ */
+public record Song(int songId, String title, int duration, int trackNumber, int albumId) {
+}
@@ -0,0 +1,658 @@
+package com.example.musicdb;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Read-optimized, immutable copy of the Song and Album tables for analytics.
+ *
+ * Each column is a primitive int buffer ordered by ID, on the heap or, with
+ * offHeap, in direct memory. Titles are dictionary-encoded: the column holds
+ * a code into a string table shared by the versions that refreshes derive from
+ * one load. A full reload starts a new table, and a refresh rebuilds the table
+ * once it holds more than twice as many strings as there are rows. NULL
+ * numbers read as 0. Sorts, filters, top-N and group-bys run over the columns
+ * on the common fork/join pool without decoding rows or boxing values.
+ *
+ * Triggers record the IDs of inserted, updated and deleted songs and albums in
+ * SnapshotChanges under an increasing sequence number. {@link #refresh} reads
+ * the changes after the snapshot's sequence, fetches only those rows and
+ * merges them into a new snapshot, leaving this one untouched for readers that
+ * still hold it.
+ */
+public final class SongSnapshot {
+    static final int KIND_SONG = 0;
+    static final int KIND_ALBUM = 1;
+
+    private static final String CREATE_CHANGES = "CREATE TABLE IF NOT EXISTS SnapshotChanges ("
+            + "seq INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "kind INTEGER NOT NULL,"
+            + "id INTEGER NOT NULL,"
+            + "UNIQUE (kind, id)"
+            + ")";
+
+    // AUTOINCREMENT keeps sequence numbers increasing when REPLACE moves an entity's row to the end
+    private static final String RECORD_CHANGE = "INSERT OR REPLACE INTO SnapshotChanges (kind, id) VALUES (%d, %s); ";
+
+    private static final String[] TRIGGERS = {
+        "CREATE TRIGGER IF NOT EXISTS snapshot_song_ai AFTER INSERT ON Song BEGIN "
+            + String.format(RECORD_CHANGE, KIND_SONG, "new.song_id") + "END",
+        "CREATE TRIGGER IF NOT EXISTS snapshot_song_au AFTER UPDATE ON Song BEGIN "
+            + String.format(RECORD_CHANGE, KIND_SONG, "old.song_id")
+            + String.format(RECORD_CHANGE, KIND_SONG, "new.song_id") + "END",
+        "CREATE TRIGGER IF NOT EXISTS snapshot_song_ad AFTER DELETE ON Song BEGIN "
+            + String.format(RECORD_CHANGE, KIND_SONG, "old.song_id") + "END",
+        "CREATE TRIGGER IF NOT EXISTS snapshot_album_ai AFTER INSERT ON Album BEGIN "
+            + String.format(RECORD_CHANGE, KIND_ALBUM, "new.album_id") + "END",
+        "CREATE TRIGGER IF NOT EXISTS snapshot_album_au AFTER UPDATE ON Album BEGIN "
+            + String.format(RECORD_CHANGE, KIND_ALBUM, "old.album_id")
+            + String.format(RECORD_CHANGE, KIND_ALBUM, "new.album_id") + "END",
+        "CREATE TRIGGER IF NOT EXISTS snapshot_album_ad AFTER DELETE ON Album BEGIN "
+            + String.format(RECORD_CHANGE, KIND_ALBUM, "old.album_id") + "END",
+    };
+
+    static final String LAST_CHANGE_SQL = "SELECT COALESCE(MAX(seq), 0) FROM SnapshotChanges";
+    static final String CHANGES_SQL = "SELECT kind, id FROM SnapshotChanges WHERE seq > ? AND seq <= ?";
+
+    // The first column is the key and the second the dictionary-encoded title
+    private static final String SONG_COLUMNS = "SELECT song_id, title, duration, track_number, album_id FROM Song";
+    private static final String ALBUM_COLUMNS = "SELECT album_id, title, release_year, artist_id FROM Album";
+    private static final String SONG_ID = "song_id";
+    private static final String ALBUM_ID = "album_id";
+
+    private static final int SONG_COLUMN_COUNT = 5;
+    private static final int ALBUM_COLUMN_COUNT = 4;
+
+    // Changed rows are fetched with IN lists of this many IDs
+    private static final int FETCH_BATCH = 500;
+
+    // Ranges smaller than this are scanned by one task
+    private static final int MIN_SPLIT = 1 << 14;
+
+    private static final OperationStats REFRESH = Metrics.operation("songSnapshot.refresh");
+
+    private final long sequence;
+    private final boolean offHeap;
+    private final Dictionary titles;
+    private final Columns songs;
+    private final Columns albums;
+
+    private SongSnapshot(long sequence, boolean offHeap, Dictionary titles, Columns songs, Columns albums) {
+        this.sequence = sequence;
+        this.offHeap = offHeap;
+        this.titles = titles;
+        this.songs = songs;
+        this.albums = albums;
+    }
+
+    /**
+     * Creates the change table and its triggers if missing.
+     */
+    public static void ensureSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_CHANGES);
+            for (String trigger : TRIGGERS) {
+                stmt.execute(trigger);
+            }
+        }
+    }
+
+    /**
+     * Records every song and album as changed, as the triggers would have, for
+     * bulk loads that run without them.
+     */
+    static void recordAllChanged(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT OR REPLACE INTO SnapshotChanges (kind, id) SELECT " + KIND_ALBUM
+                    + ", album_id FROM Album");
+            stmt.executeUpdate("INSERT OR REPLACE INTO SnapshotChanges (kind, id) SELECT " + KIND_SONG
+                    + ", song_id FROM Song");
+        }
+    }
+
+    /**
+     * Reads the whole Song and Album tables into a new snapshot.
+     * @param offHeap Keep the columns in direct memory instead of on the heap.
+     */
+    public static SongSnapshot load(Connection conn, boolean offHeap) throws SQLException {
+        return load(conn, offHeap, new Dictionary());
+    }
+
+    private static SongSnapshot load(Connection conn, boolean offHeap, Dictionary titles) throws SQLException {
+        // Read the sequence first: a change made during the load is fetched again by the next refresh
+        long sequence = lastChange(conn);
+        Columns songs = fetch(conn, SONG_COLUMNS + " ORDER BY song_id", SONG_COLUMN_COUNT, titles).build(offHeap);
+        Columns albums = fetch(conn, ALBUM_COLUMNS + " ORDER BY album_id", ALBUM_COLUMN_COUNT, titles).build(offHeap);
+        return new SongSnapshot(sequence, offHeap, titles, songs, albums);
+    }
+
+    /**
+     * Returns a snapshot that includes every change committed since this one
+     * was taken, or this snapshot if nothing changed. Only the changed rows are
+     * read; the rest are copied from this snapshot.
+     */
+    public SongSnapshot refresh(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            long last = lastChange(conn);
+            if (last == sequence) {
+                REFRESH.success(start, 0);
+                return this;
+            }
+            Builder songIds = new Builder(1, 256);
+            Builder albumIds = new Builder(1, 16);
+            try (PreparedStatement pstmt = conn.prepareStatement(CHANGES_SQL)) {
+                pstmt.setLong(1, sequence);
+                pstmt.setLong(2, last);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        (rs.getInt(1) == KIND_SONG ? songIds : albumIds).add(rs.getInt(2));
+                    }
+                }
+            }
+            int changed = songIds.rows + albumIds.rows;
+            SongSnapshot next;
+            if (songIds.rows > songs.rows / 2) {
+                // Cheaper to read everything again than to look up most rows one batch at a time
+                next = load(conn, offHeap, new Dictionary());
+            } else {
+                int[] changedSongs = songIds.sortedKeys();
+                int[] changedAlbums = albumIds.sortedKeys();
+                Columns mergedSongs = songs.merge(changedSongs,
+                        fetchChanged(conn, SONG_COLUMNS, SONG_ID, SONG_COLUMN_COUNT, changedSongs, titles), offHeap);
+                Columns mergedAlbums = albums.merge(changedAlbums,
+                        fetchChanged(conn, ALBUM_COLUMNS, ALBUM_ID, ALBUM_COLUMN_COUNT, changedAlbums, titles), offHeap);
+                Dictionary nextTitles = titles;
+                if (titles.size() > 2 * (mergedSongs.rows + mergedAlbums.rows) + 1024) {
+                    // Renamed and deleted titles are never removed; drop them with a fresh table
+                    nextTitles = new Dictionary();
+                    mergedSongs = mergedSongs.recode(1, titles, nextTitles, offHeap);
+                    mergedAlbums = mergedAlbums.recode(1, titles, nextTitles, offHeap);
+                }
+                next = new SongSnapshot(last, offHeap, nextTitles, mergedSongs, mergedAlbums);
+            }
+            REFRESH.success(start, changed);
+            return next;
+        } catch (SQLException | RuntimeException e) {
+            REFRESH.failure(start);
+            throw e;
+        }
+    }
+
+    private static long lastChange(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LAST_CHANGE_SQL)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static Builder fetch(Connection conn, String sql, int columns, Dictionary titles) throws SQLException {
+        Builder rows = new Builder(columns, 1024);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(CatalogQueries.FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                rows.addAll(rs, titles);
+            }
+        }
+        return rows;
+    }
+
+    private static Builder fetchChanged(Connection conn, String columnsSql, String idColumn, int columns,
+                                        int[] ids, Dictionary titles) throws SQLException {
+        Builder rows = new Builder(columns, Math.max(16, ids.length));
+        for (int from = 0; from < ids.length; from += FETCH_BATCH) {
+            int to = Math.min(ids.length, from + FETCH_BATCH);
+            String sql = columnsSql + " WHERE " + idColumn + " IN ("
+                    + String.join(", ", Collections.nCopies(to - from, "?")) + ") ORDER BY " + idColumn;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = from; i < to; i++) {
+                    pstmt.setInt(i - from + 1, ids[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rows.addAll(rs, titles);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The last change included in this snapshot.
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Number of songs.
+     */
+    public int size() {
+        return songs.rows;
+    }
+
+    // --- Row accessors; rows are numbered from 0 in song ID order ---
+
+    public int songId(int row) {
+        return songs.get(0, row);
+    }
+
+    public String title(int row) {
+        return titles.decode(songs.get(1, row));
+    }
+
+    public int duration(int row) {
+        return songs.get(2, row);
+    }
+
+    public int trackNumber(int row) {
+        return songs.get(3, row);
+    }
+
+    public int albumId(int row) {
+        return songs.get(4, row);
+    }
+
+    public Song song(int row) {
+        return new Song(songId(row), title(row), duration(row), trackNumber(row), albumId(row));
+    }
+
+    // --- Analytics ---
+
+    /**
+     * Rows ordered by duration, ties by song ID, like listSongsSortedByDuration.
+     */
+    public int[] rowsByDuration(boolean descending) {
+        int n = songs.rows;
+        long[] keys = new long[n];
+        IntStream.range(0, n).parallel().forEach(row -> keys[row] = durationKey(row));
+        Arrays.parallelSort(keys);
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[descending ? n - 1 - i : i] = (int) keys[i];
+        }
+        return rows;
+    }
+
+    /**
+     * The n longest (or shortest) songs, longest (or shortest) first.
+     */
+    public List<Song> topByDuration(int n, boolean longest) {
+        List<Song> top = new ArrayList<>();
+        if (n <= 0 || songs.rows == 0) {
+            return top;
+        }
+        // Every leaf keeps its n largest keys; for the shortest songs the keys are inverted
+        long[] keys = reduce((from, to) -> {
+            long[] heap = new long[Math.min(n, to - from)];
+            int count = 0;
+            for (int row = from; row < to; row++) {
+                long key = longest ? durationKey(row) : ~durationKey(row);
+                if (count < heap.length) {
+                    heap[count] = key;
+                    siftUp(heap, count++);
+                } else if (key > heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, count);
+                }
+            }
+            return Arrays.copyOf(heap, count);
+        }, (a, b) -> {
+            long[] both = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, both, a.length, b.length);
+            Arrays.sort(both);
+            return Arrays.copyOfRange(both, Math.max(0, both.length - n), both.length);
+        });
+        Arrays.sort(keys);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            top.add(song((int) (longest ? keys[i] : ~keys[i])));
+        }
+        return top;
+    }
+
+    /**
+     * IDs of the songs whose duration is between min and max seconds, inclusive, in ID order.
+     */
+    public int[] songIdsWithDuration(int min, int max) {
+        return IntStream.range(0, songs.rows).parallel()
+                .filter(row -> {
+                    int duration = duration(row);
+                    return duration >= min && duration <= max;
+                })
+                .map(this::songId)
+                .toArray();
+    }
+
+    /**
+     * Number of songs per duration bucket of bucketSeconds. Bucket i counts
+     * durations in [i * bucketSeconds, (i + 1) * bucketSeconds); the last bucket
+     * also counts everything longer and the first everything shorter.
+     */
+    public long[] durationHistogram(int bucketSeconds, int buckets) {
+        if (bucketSeconds <= 0 || buckets <= 0) {
+            throw new IllegalArgumentException("bucketSeconds and buckets must be positive");
+        }
+        return reduce((from, to) -> {
+            long[] counts = new long[buckets];
+            for (int row = from; row < to; row++) {
+                int bucket = duration(row) / bucketSeconds;
+                counts[Math.max(0, Math.min(buckets - 1, bucket))]++;
+            }
+            return counts;
+        }, SongSnapshot::add);
+    }
+
+    /**
+     * Song count and total duration of every album, in album ID order. Songs
+     * whose album does not exist are not counted.
+     */
+    public List<AlbumTotal> albumTotals() {
+        int albumCount = albums.rows;
+        // Interleaved (count, total duration) per album row
+        long[] totals = reduce((from, to) -> {
+            long[] sums = new long[albumCount * 2];
+            int lastId = Integer.MIN_VALUE;
+            int lastRow = -1;
+            for (int row = from; row < to; row++) {
+                int albumId = albumId(row);
+                if (albumId != lastId) {
+                    lastId = albumId;
+                    lastRow = albums.find(albumId);
+                }
+                if (lastRow >= 0) {
+                    sums[lastRow * 2]++;
+                    sums[lastRow * 2 + 1] += duration(row);
+                }
+            }
+            return sums;
+        }, SongSnapshot::add);
+        List<AlbumTotal> result = new ArrayList<>(albumCount);
+        for (int row = 0; row < albumCount; row++) {
+            result.add(new AlbumTotal(albums.get(0, row), titles.decode(albums.get(1, row)),
+                    (int) totals[row * 2], totals[row * 2 + 1]));
+        }
+        return result;
+    }
+
+    // Orders by duration, then row (which is song ID order); the row is in the low 32 bits
+    private long durationKey(int row) {
+        return ((long) duration(row) << 32) | row;
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+            swap(heap, i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private static void siftDown(long[] heap, int count) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < count && heap[left] < heap[smallest]) {
+                smallest = left;
+            }
+            if (right < count && heap[right] < heap[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(long[] heap, int i, int j) {
+        long t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+
+    /**
+     * Computes a result per range of song rows on the fork/join pool and combines them.
+     */
+    private <R> R reduce(RangeFunction<R> leaf, BinaryOperator<R> combine) {
+        int split = Math.max(MIN_SPLIT, songs.rows / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        return ForkJoinPool.commonPool().invoke(new RangeTask<>(0, songs.rows, split, leaf, combine));
+    }
+
+    private interface RangeFunction<R> {
+        R apply(int from, int to);
+    }
+
+    private static final class RangeTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int split;
+        private final RangeFunction<R> leaf;
+        private final BinaryOperator<R> combine;
+
+        RangeTask(int from, int to, int split, RangeFunction<R> leaf, BinaryOperator<R> combine) {
+            this.from = from;
+            this.to = to;
+            this.split = split;
+            this.leaf = leaf;
+            this.combine = combine;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= split) {
+                return leaf.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask<R> left = new RangeTask<>(from, mid, split, leaf, combine);
+            left.fork();
+            R right = new RangeTask<>(mid, to, split, leaf, combine).compute();
+            return combine.apply(left.join(), right);
+        }
+    }
+
+    /**
+     * Immutable int columns sorted by the first one.
+     */
+    private static final class Columns {
+        final int rows;
+        final IntBuffer[] columns;
+
+        Columns(int rows, IntBuffer[] columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        int get(int column, int row) {
+            return columns[column].get(row);
+        }
+
+        /**
+         * Row of the given key, or -1.
+         */
+        int find(int key) {
+            IntBuffer keys = columns[0];
+            int low = 0;
+            int high = rows - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int value = keys.get(mid);
+                if (value < key) {
+                    low = mid + 1;
+                } else if (value > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Replaces the rows of the changed keys by the fetched rows. A changed key
+         * without a fetched row was deleted. Both arrays are sorted by key.
+         */
+        Columns merge(int[] changed, Builder fetched, boolean offHeap) {
+            if (changed.length == 0) {
+                return this;
+            }
+            Builder out = new Builder(columns.length, rows + fetched.rows);
+            int row = 0;
+            int c = 0;
+            int f = 0;
+            while (row < rows || c < changed.length) {
+                int key = row < rows ? get(0, row) : Integer.MAX_VALUE;
+                if (c < changed.length && changed[c] <= key) {
+                    if (changed[c] == key) {
+                        row++;
+                    }
+                    if (f < fetched.rows && fetched.get(0, f) == changed[c]) {
+                        out.copyRow(fetched, f++);
+                    }
+                    c++;
+                } else {
+                    out.copyRow(this, row++);
+                }
+            }
+            return out.build(offHeap);
+        }
+
+        /**
+         * Copy with the codes of one column translated from one dictionary to another.
+         */
+        Columns recode(int column, Dictionary from, Dictionary to, boolean offHeap) {
+            Builder out = new Builder(columns.length, rows);
+            for (int row = 0; row < rows; row++) {
+                out.copyRow(this, row);
+                out.columns[column][row] = to.encode(from.decode(get(column, row)));
+            }
+            return out.build(offHeap);
+        }
+    }
+
+    /**
+     * Growable int columns used while loading and merging.
+     */
+    private static final class Builder {
+        int[][] columns;
+        int rows;
+
+        Builder(int columnCount, int capacity) {
+            columns = new int[columnCount][Math.max(1, capacity)];
+        }
+
+        int get(int column, int row) {
+            return columns[column][row];
+        }
+
+        void add(int value) {
+            grow();
+            columns[0][rows++] = value;
+        }
+
+        void addAll(ResultSet rs, Dictionary titles) throws SQLException {
+            while (rs.next()) {
+                grow();
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c][rows] = c == 1 ? titles.encode(rs.getString(2)) : rs.getInt(c + 1);
+                }
+                rows++;
+            }
+        }
+
+        void copyRow(Builder from, int row) {
+            grow();
+            for (int c = 0; c < columns.length; c++) {
+                columns[c][rows] = from.columns[c][row];
+            }
+            rows++;
+        }
+
+        void copyRow(Columns from, int row) {
+            grow();
+            for (int c = 0; c < columns.length; c++) {
+                columns[c][rows] = from.get(c, row);
+            }
+            rows++;
+        }
+
+        int[] sortedKeys() {
+            int[] keys = Arrays.copyOf(columns[0], rows);
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        private void grow() {
+            if (rows == columns[0].length) {
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], rows * 2);
+                }
+            }
+        }
+
+        Columns build(boolean offHeap) {
+            IntBuffer[] buffers = new IntBuffer[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                if (offHeap) {
+                    buffers[c] = ByteBuffer.allocateDirect(Math.max(1, rows) * Integer.BYTES)
+                            .order(ByteOrder.nativeOrder()).asIntBuffer();
+                    buffers[c].put(columns[c], 0, rows);
+                } else {
+                    buffers[c] = IntBuffer.wrap(Arrays.copyOf(columns[c], rows));
+                }
+            }
+            return new Columns(rows, buffers);
+        }
+    }
+
+    /**
+     * Append-only string table shared by the refreshed versions of a snapshot, so codes stay valid across them.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private volatile String[] values = new String[1024];
+        private int size;
+
+        synchronized int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                code = size;
+                values[size++] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return values[code];
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.musicdb;
+
+/**
+ * ID and title of a song, as returned by title searches.
+ */
+public record SongTitle(int songId, String title) {
+}
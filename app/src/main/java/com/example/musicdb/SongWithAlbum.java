@@ -0,0 +1,7 @@
+package com.example.musicdb;
+
+/**
+ * A song title together with the title of the album it appears on.
+ */
+public record SongWithAlbum(String songTitle, String albumTitle) {
+}
@@ -0,0 +1,12 @@
+package com.example.musicdb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A unit of database work run on a connection supplied by the caller.
+ */
+@FunctionalInterface
+public interface SqlWork<T> {
+    T run(Connection conn) throws SQLException;
+}
@@ -0,0 +1,311 @@
+package com.example.musicdb;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least-recently-used cache of the prepared statements of one connection,
+ * keyed by SQL text, so that repeated calls skip SQLite's parse and plan.
+ *
+ * {@link #prepare} hands out a proxy of the cached statement. Closing the proxy
+ * keeps the statement open: it closes the statement's open result set (an
+ * unfinished query would otherwise hold its read lock), clears the parameters
+ * and batch, restores the fetch size, row limit and query timeout, and returns
+ * the statement to the cache. A statement whose SQL is already in use on the
+ * connection, as in a nested query, is prepared uncached.
+ *
+ * Used by {@link ConnectionPool} for every pooled connection and by
+ * {@link SingleWriter} through {@link #wrap}. Sized with
+ * -Dmusicdb.statementCache.size (64 statements per connection; 0 disables).
+ */
+public final class StatementCache {
+    static final int SIZE = Integer.getInteger("musicdb.statementCache.size", 64);
+
+    // prepareStatement(sql) without the autoGeneratedKeys argument
+    private static final int NO_KEYS = -1;
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong UNCACHED = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    private final Connection conn;
+    private final int maxSize;
+    private final LinkedHashMap<Key, Cached> entries;
+    private int checkedOut;
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    private static final class Cached {
+        final PreparedStatement statement;
+        final int fetchSize;
+        final int maxRows;
+        final int queryTimeout;
+        Handle handle;
+        ResultSet resultSet;
+        boolean evicted;
+
+        Cached(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+    }
+
+    StatementCache(Connection conn, int maxSize) {
+        this.conn = conn;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                EVICTIONS.incrementAndGet();
+                Cached cached = eldest.getValue();
+                if (cached.handle == null) {
+                    closeQuietly(cached.statement);
+                } else {
+                    cached.evicted = true;
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Whether a Connection method is one of the prepareStatement calls the cache serves.
+     */
+    static boolean caches(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        return method.getName().equals("prepareStatement")
+                && (types.length == 1 || types.length == 2 && types[1] == int.class);
+    }
+
+    /**
+     * Serves a cached prepareStatement call.
+     * @param owner The connection the caller prepared on, returned by getConnection().
+     * @param args The arguments of the call: the SQL and optionally autoGeneratedKeys.
+     */
+    PreparedStatement prepare(Connection owner, Object[] args) throws SQLException {
+        String sql = (String) args[0];
+        int keys = args.length == 1 ? NO_KEYS : (Integer) args[1];
+        if (maxSize <= 0) {
+            return prepareUncached(sql, keys);
+        }
+        Key key = new Key(sql, keys);
+        Cached cached = entries.get(key);
+        if (cached != null && cached.handle != null) {
+            UNCACHED.incrementAndGet();
+            return prepareUncached(sql, keys);
+        }
+        if (cached != null) {
+            HITS.incrementAndGet();
+        } else {
+            MISSES.incrementAndGet();
+            cached = new Cached(prepareUncached(sql, keys));
+            entries.put(key, cached);
+        }
+        cached.handle = new Handle(owner, cached);
+        checkedOut++;
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, cached.handle);
+    }
+
+    private PreparedStatement prepareUncached(String sql, int keys) throws SQLException {
+        return keys == NO_KEYS ? conn.prepareStatement(sql) : conn.prepareStatement(sql, keys);
+    }
+
+    /**
+     * Returns statements the borrower did not close to the cache, before the
+     * connection goes back to the pool.
+     */
+    void releaseAll() {
+        if (checkedOut == 0) {
+            return;
+        }
+        for (Cached cached : new ArrayList<>(entries.values())) {
+            if (cached.handle != null) {
+                cached.handle.release();
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement.
+     */
+    void close() {
+        for (Cached cached : entries.values()) {
+            closeQuietly(cached.statement);
+        }
+        entries.clear();
+        checkedOut = 0;
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a connection that serves prepareStatement from a cache of the
+     * given size, for connections that are not pooled. Closing it closes the
+     * cached statements and the connection.
+     */
+    static Connection wrap(Connection conn, int maxSize) {
+        StatementCache cache = new StatementCache(conn, maxSize);
+        return (Connection) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (caches(method)) {
+                        return cache.prepare((Connection) proxy, args);
+                    }
+                    switch (method.getName()) {
+                        case "close":
+                            cache.close();
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * The counters of every statement cache.
+     */
+    public static Stats stats() {
+        return new Stats(HITS.get(), MISSES.get(), UNCACHED.get(), EVICTIONS.get());
+    }
+
+    /**
+     * Snapshot of the statement cache counters of all connections.
+     */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long uncached;
+        public final long evictions;
+
+        Stats(long hits, long misses, long uncached, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.uncached = uncached;
+            this.evictions = evictions;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses + uncached;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Statements: %d hits, %d misses, %d uncached (%.1f%% hit rate), %d evictions",
+                    hits, misses, uncached, hitRate() * 100, evictions);
+        }
+    }
+
+    /**
+     * One checkout of a cached statement; closing it returns the statement.
+     */
+    private final class Handle implements InvocationHandler {
+        private final Connection owner;
+        private final Cached cached;
+        private boolean closed;
+
+        Handle(Connection owner, Cached cached) {
+            this.owner = owner;
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.statement + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                Object result = method.invoke(cached.statement, args);
+                if (result instanceof ResultSet && !method.getName().equals("getGeneratedKeys")) {
+                    cached.resultSet = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        void release() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cached.handle = null;
+            checkedOut--;
+            PreparedStatement statement = cached.statement;
+            try {
+                if (cached.resultSet != null) {
+                    cached.resultSet.close();
+                    cached.resultSet = null;
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                if (statement.getFetchSize() != cached.fetchSize) {
+                    statement.setFetchSize(cached.fetchSize);
+                }
+                if (statement.getMaxRows() != cached.maxRows) {
+                    statement.setMaxRows(cached.maxRows);
+                }
+                if (statement.getQueryTimeout() != cached.queryTimeout) {
+                    statement.setQueryTimeout(cached.queryTimeout);
+                }
+            } catch (SQLException e) {
+                // A statement that cannot be reset is not reused
+                cached.evicted = true;
+                entries.values().remove(cached);
+            }
+            if (cached.evicted) {
+                closeQuietly(statement);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.musicdb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version counters of the Artist, Album and Song tables, used by
+ * {@link ResultCache} to tell whether a cached result is still current.
+ *
+ * Every mutation calls {@link #changed} with the tables it wrote. Inside an
+ * explicit transaction the change is not yet visible to other connections, so
+ * a reader could still load and cache the old rows under the new version; the
+ * tables are therefore noted per thread and bumped once more by
+ * {@link #transactionEnded}, which runs when the pool takes a connection back
+ * and after each unit of work on the single writer.
+ *
+ * The same hook applies the {@link EntityCache} invalidations and
+ * {@link TypeaheadIndex} updates registered with {@link #afterTransaction},
+ * so that a reader cannot cache or list a row before its change is committed.
+ * They run only when the transaction committed: a rollback discards them, and
+ * a rollback to a savepoint discards those registered since {@link #savepoint}.
+ *
+ * Only changes made through this process are seen.
+ */
+final class TableVersions {
+    static final int ARTIST = 1;
+    static final int ALBUM = 2;
+    static final int SONG = 4;
+    static final int ALL = ARTIST | ALBUM | SONG;
+
+    private static final AtomicLongArray VERSIONS = new AtomicLongArray(3);
+
+    // Tables the current thread changed since its transaction last ended
+    private static final ThreadLocal<int[]> UNCOMMITTED = ThreadLocal.withInitial(() -> new int[1]);
+
+    // Actions the current thread deferred until its transaction ends
+    private static final ThreadLocal<List<Runnable>> AFTER_TRANSACTION = ThreadLocal.withInitial(ArrayList::new);
+
+    private TableVersions() {
+    }
+
+    /**
+     * Marks the given tables as changed.
+     * @param tables A combination of ARTIST, ALBUM and SONG.
+     */
+    static void changed(int tables) {
+        bump(tables);
+        UNCOMMITTED.get()[0] |= tables;
+    }
+
+    /**
+     * Runs an action once the connection's changes are committed: now when it
+     * auto-commits, otherwise when the current thread's transaction commits.
+     * The action is dropped if the transaction rolls back instead.
+     */
+    static void afterTransaction(Connection conn, Runnable action) throws SQLException {
+        if (conn.getAutoCommit()) {
+            action.run();
+        } else {
+            AFTER_TRANSACTION.get().add(action);
+        }
+    }
+
+    /**
+     * Marks a savepoint of the current thread's transaction, for {@link #rolledBackTo}.
+     */
+    static int savepoint() {
+        return AFTER_TRANSACTION.get().size();
+    }
+
+    /**
+     * Drops the actions registered since the savepoint, which was rolled back.
+     */
+    static void rolledBackTo(int savepoint) {
+        List<Runnable> actions = AFTER_TRANSACTION.get();
+        if (actions.size() > savepoint) {
+            actions.subList(savepoint, actions.size()).clear();
+        }
+    }
+
+    /**
+     * Bumps the tables the current thread changed again, now that its
+     * transaction ended, then runs its deferred actions if it committed or
+     * drops them if it rolled back.
+     */
+    static void transactionEnded(boolean committed) {
+        int[] uncommitted = UNCOMMITTED.get();
+        if (uncommitted[0] != 0) {
+            bump(uncommitted[0]);
+            uncommitted[0] = 0;
+        }
+        // After the bump, so that a typeahead load that misses an update sees a new stamp
+        List<Runnable> actions = AFTER_TRANSACTION.get();
+        if (!actions.isEmpty()) {
+            List<Runnable> pending = new ArrayList<>(actions);
+            actions.clear();
+            if (committed) {
+                pending.forEach(Runnable::run);
+            }
+        }
+    }
+
+    /**
+     * Returns a value that changes whenever any of the given tables changes:
+     * the sum of their versions, which only grow.
+     */
+    static long stamp(int tables) {
+        long stamp = 0;
+        for (int i = 0; i < VERSIONS.length(); i++) {
+            if ((tables & (1 << i)) != 0) {
+                stamp += VERSIONS.get(i);
+            }
+        }
+        return stamp;
+    }
+
+    private static void bump(int tables) {
+        for (int i = 0; i < VERSIONS.length(); i++) {
+            if ((tables & (1 << i)) != 0) {
+                VERSIONS.incrementAndGet(i);
+            }
+        }
+    }
+}
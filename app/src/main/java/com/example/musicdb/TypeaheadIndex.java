@@ -0,0 +1,290 @@
+package com.example.musicdb;
+
+import java.sql.*;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index over artist names, album titles and song titles, for
+ * typeahead completion without a LIKE scan per keystroke.
+ *
+ * Names are folded to lower case without accents ("Beyoncé" matches "beyon").
+ * Each kind keeps its entries sorted by folded name and ID, so a lookup seeks
+ * to the prefix and reads the first completions in order: a name equal to the
+ * prefix comes first, then longer ones alphabetically.
+ *
+ * The index is loaded from the catalog (every shard) on first use. The add,
+ * update and delete methods of {@link DatabaseManager} and
+ * {@link CatalogDeletes} then keep it current once their transaction commits
+ * (see {@link TableVersions#afterTransaction}), and a load that overlaps a
+ * change loads again. Bulk imports and a switch of database drop it, to be
+ * loaded again on the next lookup. As with the caches, only changes made
+ * through this process are seen, and a rolled-back change never reaches the
+ * index.
+ *
+ * Usage: java com.example.musicdb.TypeaheadIndex PREFIX [LIMIT]
+ */
+public final class TypeaheadIndex {
+    static final String ARTIST_NAMES_SQL = "SELECT artist_id, name FROM Artist";
+    static final String ALBUM_TITLES_SQL = "SELECT album_id, title FROM Album";
+    static final String SONG_TITLES_SQL = "SELECT song_id, title FROM Song";
+
+    private static final OperationStats COMPLETE = Metrics.operation("typeahead");
+    private static final OperationStats LOAD = Metrics.operation("typeahead.load");
+
+    // A load retried this often while writes keep coming is kept as is
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final String[] KIND_NAMES = {"artist", "album", "song"};
+
+    /**
+     * A completion: an artist (name), album or song (title) whose name starts with the prefix.
+     * @param kind FullTextSearch.KIND_ARTIST, KIND_ALBUM or KIND_SONG.
+     */
+    public record Completion(int kind, int id, String name) {
+        public String kindName() {
+            return KIND_NAMES[kind];
+        }
+
+        @Override
+        public String toString() {
+            return Character.toUpperCase(kindName().charAt(0)) + kindName().substring(1) + " " + id + ": " + name;
+        }
+    }
+
+    private record Term(String key, int id, Completion completion) {
+    }
+
+    private static final Comparator<Term> ORDER = Comparator.comparing(Term::key).thenComparingInt(Term::id);
+
+    // Entries of one kind, sorted for prefix seeks and by ID for updates; writers
+    // lock the pair so that both always hold the same entries, readers do not
+    private static final class Terms {
+        final ConcurrentSkipListSet<Term> sorted = new ConcurrentSkipListSet<>(ORDER);
+        final Map<Integer, Term> byId = new ConcurrentHashMap<>();
+
+        synchronized void put(Term term) {
+            Term previous = byId.put(term.id(), term);
+            if (previous != null) {
+                sorted.remove(previous);
+            }
+            sorted.add(term);
+        }
+
+        synchronized void remove(int id) {
+            Term previous = byId.remove(id);
+            if (previous != null) {
+                sorted.remove(previous);
+            }
+        }
+
+        void complete(String prefix, int limit, List<Term> into) {
+            for (Term term : sorted.tailSet(new Term(prefix, Integer.MIN_VALUE, null))) {
+                if (into.size() == limit || !term.key().startsWith(prefix)) {
+                    return;
+                }
+                into.add(term);
+            }
+        }
+    }
+
+    private static volatile Terms[] index;
+
+    private TypeaheadIndex() {
+    }
+
+    /**
+     * Returns up to limit completions of one kind, in folded name order.
+     * @param kind FullTextSearch.KIND_ARTIST, KIND_ALBUM or KIND_SONG.
+     */
+    public static List<Completion> complete(int kind, String prefix, int limit) throws SQLException {
+        if (kind < 0 || kind >= KIND_NAMES.length) {
+            throw new IllegalArgumentException("Unknown kind: " + kind);
+        }
+        return complete(kind, kind, prefix, limit);
+    }
+
+    /**
+     * Returns up to limit artists, albums and songs together, in folded name order.
+     */
+    public static List<Completion> complete(String prefix, int limit) throws SQLException {
+        return complete(FullTextSearch.KIND_ARTIST, FullTextSearch.KIND_SONG, prefix, limit);
+    }
+
+    private static List<Completion> complete(int fromKind, int toKind, String prefix, int limit)
+            throws SQLException {
+        long start = System.nanoTime();
+        if (WorkloadRecorder.RECORDING) {
+            WorkloadRecorder.arguments(WorkloadOp.TYPEAHEAD, fromKind == toKind ? fromKind : -1, prefix, limit);
+        }
+        try {
+            Terms[] terms = index();
+            String key = fold(prefix);
+            List<Term> found = new ArrayList<>();
+            for (int kind = fromKind; kind <= toKind; kind++) {
+                List<Term> ofKind = new ArrayList<>();
+                terms[kind].complete(key, limit, ofKind);
+                found.addAll(ofKind);
+            }
+            if (fromKind != toKind) {
+                found.sort(ORDER);
+            }
+            List<Completion> completions = new ArrayList<>(Math.min(limit, found.size()));
+            for (int i = 0; i < found.size() && i < limit; i++) {
+                completions.add(found.get(i).completion());
+            }
+            COMPLETE.success(start, completions.size());
+            return completions;
+        } catch (SQLException | RuntimeException e) {
+            COMPLETE.failure(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Lower-cases a name and strips its accents, the form the index compares.
+     */
+    static String fold(String name) {
+        if (isAscii(name)) {
+            // Most names; nothing to decompose
+            return name.toLowerCase(Locale.ROOT);
+        }
+        return MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds or renames an entry, if the index is loaded.
+     * @param kind FullTextSearch.KIND_ARTIST, KIND_ALBUM or KIND_SONG.
+     */
+    static void put(int kind, int id, String name) {
+        Terms[] terms = index;
+        if (terms != null && name != null) {
+            terms[kind].put(term(kind, id, name));
+        }
+    }
+
+    /**
+     * Removes entries, if the index is loaded.
+     */
+    static void remove(int kind, int... ids) {
+        Terms[] terms = index;
+        if (terms != null) {
+            for (int id : ids) {
+                terms[kind].remove(id);
+            }
+        }
+    }
+
+    /**
+     * Whether the index is loaded, so that deletes need to tell it which IDs went.
+     */
+    static boolean loaded() {
+        return index != null;
+    }
+
+    /**
+     * Drops the index; the next lookup loads it again.
+     */
+    static void clear() {
+        index = null;
+    }
+
+    private static Terms[] index() throws SQLException {
+        Terms[] terms = index;
+        if (terms != null) {
+            return terms;
+        }
+        synchronized (TypeaheadIndex.class) {
+            terms = index;
+            for (int attempt = 1; terms == null; attempt++) {
+                // Writers change the versions before they update the index (once more when
+                // their transaction ends), so a write that misses the published index is
+                // always seen by the check after publishing it
+                long stamp = TableVersions.stamp(TableVersions.ALL);
+                Terms[] loaded = load();
+                index = loaded;
+                if (TableVersions.stamp(TableVersions.ALL) == stamp || attempt == MAX_LOAD_ATTEMPTS) {
+                    terms = loaded;
+                } else {
+                    index = null;
+                }
+            }
+            return terms;
+        }
+    }
+
+    private static Terms[] load() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Terms[] terms = {new Terms(), new Terms(), new Terms()};
+            String[] sql = {ARTIST_NAMES_SQL, ALBUM_TITLES_SQL, SONG_TITLES_SQL};
+            int rows = 0;
+            for (int kind = 0; kind < sql.length; kind++) {
+                int k = kind;
+                for (Term term : DatabaseManager.query(conn -> terms(conn, k, sql[k]), null)) {
+                    terms[kind].put(term);
+                    rows++;
+                }
+            }
+            LOAD.success(start, rows);
+            return terms;
+        } catch (SQLException | RuntimeException e) {
+            LOAD.failure(start);
+            throw e;
+        }
+    }
+
+    private static List<Term> terms(Connection conn, int kind, String sql) throws SQLException {
+        List<Term> terms = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String name = rs.getString(2);
+                if (name != null) {
+                    terms.add(term(kind, rs.getInt(1), name));
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static Term term(int kind, int id, String name) {
+        return new Term(fold(name), id, new Completion(kind, id, name));
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 1) {
+            System.out.println("Usage: java com.example.musicdb.TypeaheadIndex PREFIX [LIMIT]");
+            return;
+        }
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long start = System.nanoTime();
+        complete(args[0], 1);
+        System.out.printf("Loaded in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        start = System.nanoTime();
+        List<Completion> completions = complete(args[0], limit);
+        long micros = (System.nanoTime() - start) / 1000;
+        for (Completion completion : completions) {
+            System.out.println(completion);
+        }
+        System.out.println(completions.size() + " completion(s) in " + micros + " microseconds");
+        DatabaseManager.shutdown();
+    }
+}
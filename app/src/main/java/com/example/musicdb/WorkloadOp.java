@@ -0,0 +1,231 @@
+package com.example.musicdb;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The catalog operations that {@link WorkloadRecorder} records and
+ * {@link WorkloadReplay} re-executes.
+ *
+ * Each operation has a stable code for the recording file, the name of its
+ * {@link Metrics} operation, and the types of its arguments: 'i' for int,
+ * 's' for a string (possibly null) and 'b' for boolean. {@link #run} repeats
+ * the call the way the client does, without printing.
+ */
+enum WorkloadOp {
+    GET_ARTIST(1, "getArtist", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.getArtist(i(args, 0));
+        }
+    },
+    GET_ALBUM(2, "getAlbum", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.getAlbum(i(args, 0));
+        }
+    },
+    GET_SONGS_BY_ALBUM(3, "getSongsByAlbum", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.getSongsByAlbum(i(args, 0));
+        }
+    },
+    LIST_SONGS_BY_ARTIST(4, "listSongsByArtist", "s") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.query(conn -> DatabaseManager.songsByArtist(conn, s(args, 0)), null);
+        }
+    },
+    SEARCH_SONGS_BY_TITLE(5, "searchSongsByTitle", "s") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.query(conn -> DatabaseManager.searchSongsByTitle(conn, s(args, 0)), null);
+        }
+    },
+    LIST_ALBUMS_BY_YEAR(6, "listAlbumsByYear", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.albumsByYear(i(args, 0));
+        }
+    },
+    LIST_ALBUMS_BY_YEAR_RANGE(7, "listAlbumsByYearRange", "ii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.albumsByYearRange(i(args, 0), i(args, 1));
+        }
+    },
+    COUNT_SONGS_PER_ALBUM(8, "countSongsPerAlbum", "") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.songCountsPerAlbum();
+        }
+    },
+    COUNT_ALBUMS_PER_ARTIST(9, "countAlbumsPerArtist", "") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.albumCountsPerArtist();
+        }
+    },
+    SEARCH_CATALOG(10, "searchCatalog", "sii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.query(conn -> FullTextSearch.search(conn, s(args, 0), i(args, 1), i(args, 2)),
+                    null);
+        }
+    },
+    // Pages record the key of the row they start after, Integer.MIN_VALUE for the first page, then the limit
+    ARTIST_PAGE(11, "artistPage", "ii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return CatalogQueries.artistPage(i(args, 0) == Integer.MIN_VALUE ? null
+                    : new Artist(i(args, 0), null, null, null), i(args, 1));
+        }
+    },
+    ALBUM_PAGE(12, "albumPage", "ii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return CatalogQueries.albumPage(i(args, 0) == Integer.MIN_VALUE ? null
+                    : new Album(i(args, 0), null, 0, 0), i(args, 1));
+        }
+    },
+    SONG_PAGE(13, "songPage", "ii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return CatalogQueries.songPage(i(args, 0) == Integer.MIN_VALUE ? null
+                    : new Song(i(args, 0), null, 0, 0, 0), i(args, 1));
+        }
+    },
+    // Descending, then the duration and ID of the row the page starts after
+    SONGS_BY_DURATION_PAGE(14, "songsByDurationPage", "biii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return CatalogQueries.songsByDurationPage(b(args, 0), i(args, 2) == Integer.MIN_VALUE ? null
+                    : new Song(i(args, 2), null, i(args, 1), 0, 0), i(args, 3));
+        }
+    },
+    // Descending, then the release year and ID of the row the page starts after
+    ALBUMS_BY_YEAR_PAGE(15, "albumsByReleaseYearPage", "biii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return CatalogQueries.albumsByReleaseYearPage(b(args, 0), i(args, 2) == Integer.MIN_VALUE ? null
+                    : new Album(i(args, 2), null, i(args, 1), 0), i(args, 3));
+        }
+    },
+    LIST_SONGS_BY_ARTIST_ID(16, "listSongsByArtistId", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.query(conn -> DatabaseManager.songsByArtist(conn, i(args, 0)), null);
+        }
+    },
+    // The kind of completion, -1 for all kinds, then the prefix and the limit
+    TYPEAHEAD(17, "typeahead", "isi") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return i(args, 0) < 0 ? TypeaheadIndex.complete(s(args, 1), i(args, 2))
+                    : TypeaheadIndex.complete(i(args, 0), s(args, 1), i(args, 2));
+        }
+    },
+    UPDATE_ALBUM_TITLE(20, "updateAlbumTitle", "is") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.writeTo(i(args, 0),
+                    conn -> DatabaseManager.updateAlbumTitle(conn, i(args, 0), s(args, 1)));
+        }
+    },
+    ADD_ARTIST(21, "addArtist", "sss") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.writeTo(ShardedCatalog.artistBucket(s(args, 0)),
+                    conn -> DatabaseManager.addArtist(conn, s(args, 0), s(args, 1), s(args, 2)));
+        }
+    },
+    ADD_ALBUM(22, "addAlbum", "sii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.writeTo(i(args, 2),
+                    conn -> DatabaseManager.addAlbum(conn, s(args, 0), i(args, 1), i(args, 2)));
+        }
+    },
+    ADD_SONG(23, "addSong", "siii") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.writeTo(i(args, 3),
+                    conn -> DatabaseManager.addSong(conn, s(args, 0), i(args, 1), i(args, 2), i(args, 3)));
+        }
+    },
+    DELETE_SONG(24, "deleteSongById", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.writeTo(i(args, 0), conn -> DatabaseManager.deleteSongById(conn, i(args, 0)));
+        }
+    },
+    DELETE_ALBUM(25, "deleteAlbumById", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.writeTo(i(args, 0), conn -> DatabaseManager.deleteAlbumById(conn, i(args, 0)));
+        }
+    },
+    DELETE_ARTIST(26, "deleteArtistById", "i") {
+        @Override
+        Object run(Object[] args) throws SQLException {
+            return DatabaseManager.writeTo(i(args, 0), conn -> DatabaseManager.deleteArtistById(conn, i(args, 0)));
+        }
+    };
+
+    private static final Map<Integer, WorkloadOp> BY_CODE = new HashMap<>();
+
+    static {
+        for (WorkloadOp op : values()) {
+            BY_CODE.put(op.code, op);
+        }
+    }
+
+    final int code;
+    final String argTypes;
+    final OperationStats stats;
+
+    WorkloadOp(int code, String name, String argTypes) {
+        this.code = code;
+        this.argTypes = argTypes;
+        this.stats = Metrics.operation(name);
+    }
+
+    /**
+     * Repeats the operation with the recorded arguments.
+     * @return The result, which callers only keep alive.
+     */
+    abstract Object run(Object[] args) throws SQLException;
+
+    boolean isWrite() {
+        return code >= UPDATE_ALBUM_TITLE.code;
+    }
+
+    /**
+     * The name of the operation, as in the metrics table.
+     */
+    String operationName() {
+        return stats.getName();
+    }
+
+    static WorkloadOp ofCode(int code) {
+        WorkloadOp op = BY_CODE.get(code);
+        if (op == null) {
+            throw new IllegalArgumentException("Unknown operation code " + code);
+        }
+        return op;
+    }
+
+    private static int i(Object[] args, int index) {
+        return (Integer) args[index];
+    }
+
+    private static String s(Object[] args, int index) {
+        return (String) args[index];
+    }
+
+    private static boolean b(Object[] args, int index) {
+        return (Boolean) args[index];
+    }
+}
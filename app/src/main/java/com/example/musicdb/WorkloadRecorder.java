@@ -0,0 +1,283 @@
+package com.example.musicdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records every {@link WorkloadOp} the process runs, with its arguments, start
+ * time and latency, so that {@link WorkloadReplay} can run the same workload
+ * again. Enabled with -Dmusicdb.record=FILE, in the client or the server.
+ *
+ * The recorded methods pass their arguments to {@link #arguments} when they
+ * start; {@link OperationStats} calls {@link #completed} when the operation
+ * ends, which writes the entry. {@link ResultCache} completes a cache miss
+ * itself, as its query may run on a lane thread. Entries are written in
+ * completion order.
+ *
+ * File layout: a header (magic, version, wall-clock start in epoch
+ * milliseconds), then one entry per call: the operation code, the start as
+ * microseconds since the recording began and the latency in nanoseconds (both
+ * variable-length), a status byte (0 ok, 1 failed) and the arguments. Ints are
+ * zig-zag variable-length, booleans one byte, and strings a variable-length
+ * byte count plus one (0 for null) followed by UTF-8.
+ */
+public final class WorkloadRecorder {
+    static final int MAGIC = 0x4D445752; // "MDWR"
+    static final int VERSION = 1;
+
+    private static final Path FILE = System.getProperty("musicdb.record", "").isEmpty() ? null
+            : Paths.get(System.getProperty("musicdb.record"));
+    private static final long START_NANOS = System.nanoTime();
+    private static DataOutputStream out = open();
+
+    /**
+     * Whether this process records its workload; callers check it before
+     * building the arguments of {@link #arguments}.
+     */
+    static final boolean RECORDING = out != null;
+
+    // The operation the current thread is running, until its statistics are recorded
+    private static final ThreadLocal<Pending> PENDING = ThreadLocal.withInitial(Pending::new);
+
+    static final class Pending {
+        WorkloadOp op;
+        Object[] args;
+    }
+
+    /**
+     * One recorded call.
+     * @param startNanos Start, relative to the start of the recording.
+     */
+    record Entry(WorkloadOp op, Object[] args, long startNanos, long latencyNanos, boolean ok) {
+    }
+
+    private WorkloadRecorder() {
+    }
+
+    private static DataOutputStream open() {
+        if (FILE == null) {
+            return null;
+        }
+        try {
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(FILE), 1 << 16));
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeLong(System.currentTimeMillis());
+            Runtime.getRuntime().addShutdownHook(new Thread(WorkloadRecorder::close, "musicdb-record-close"));
+            System.out.println("Recording operations to " + FILE);
+            return stream;
+        } catch (IOException e) {
+            System.out.println("Error opening workload recording: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens the recording, if one was requested, now rather than at the first
+     * recorded operation, so that its clock starts with the process.
+     */
+    public static void start() {
+        // Class initialization does the work
+    }
+
+    /**
+     * Notes the arguments of the operation the current thread is starting.
+     */
+    static void arguments(WorkloadOp op, Object... args) {
+        Pending pending = PENDING.get();
+        pending.op = op;
+        pending.args = args;
+    }
+
+    /**
+     * Writes the entry of the current thread's operation if stats belong to it.
+     * Statistics of other operations, like connection acquisition, are ignored.
+     */
+    static void completed(OperationStats stats, long startNanos, boolean ok) {
+        Pending pending = take(stats);
+        if (pending != null) {
+            completed(pending, startNanos, ok);
+        }
+    }
+
+    /**
+     * Removes the current thread's operation if stats belong to it, so that the
+     * caller can complete it after work whose own statistics must not.
+     * @return The operation, or null.
+     */
+    static Pending take(OperationStats stats) {
+        Pending pending = PENDING.get();
+        if (pending.op == null || pending.op.stats != stats) {
+            return null;
+        }
+        Pending taken = new Pending();
+        taken.op = pending.op;
+        taken.args = pending.args;
+        pending.op = null;
+        pending.args = null;
+        return taken;
+    }
+
+    /**
+     * Writes the entry of an operation removed with {@link #take}.
+     */
+    static void completed(Pending pending, long startNanos, boolean ok) {
+        WorkloadOp op = pending.op;
+        Object[] args = pending.args;
+        long latency = System.nanoTime() - startNanos;
+        synchronized (WorkloadRecorder.class) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.writeByte(op.code);
+                writeVarLong(out, Math.max(0, (startNanos - START_NANOS) / 1000));
+                writeVarLong(out, Math.max(0, latency));
+                out.writeByte(ok ? 0 : 1);
+                for (int i = 0; i < op.argTypes.length(); i++) {
+                    writeArg(out, op.argTypes.charAt(i), args[i]);
+                }
+            } catch (IOException e) {
+                System.out.println("Error recording workload, recording stopped: " + e.getMessage());
+                closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Writes buffered entries to the file.
+     */
+    public static synchronized void flush() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error flushing workload recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and closes the recording; later operations are not recorded.
+     */
+    public static synchronized void close() {
+        flush();
+        closeQuietly();
+    }
+
+    private static void closeQuietly() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.out.println("Error closing workload recording: " + e.getMessage());
+        }
+        out = null;
+    }
+
+    /**
+     * Reads every entry of a recording, in the order they were written.
+     */
+    static List<Entry> read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a workload recording");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + ": unsupported recording version " + version);
+            }
+            in.readLong();
+            int code;
+            while ((code = in.read()) != -1) {
+                WorkloadOp op = WorkloadOp.ofCode(code);
+                long start = readVarLong(in) * 1000;
+                long latency = readVarLong(in);
+                boolean ok = in.readByte() == 0;
+                Object[] args = new Object[op.argTypes.length()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArg(in, op.argTypes.charAt(i));
+                }
+                entries.add(new Entry(op, args, start, latency, ok));
+            }
+        } catch (EOFException e) {
+            // An entry cut short by a crash; keep the complete ones
+        }
+        return entries;
+    }
+
+    private static void writeArg(DataOutputStream out, char type, Object value) throws IOException {
+        switch (type) {
+            case 'i':
+                int v = (Integer) value;
+                writeVarLong(out, ((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+                break;
+            case 'b':
+                out.writeByte((Boolean) value ? 1 : 0);
+                break;
+            default:
+                if (value == null) {
+                    writeVarLong(out, 0);
+                } else {
+                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(out, bytes.length + 1L);
+                    out.write(bytes);
+                }
+                break;
+        }
+    }
+
+    private static Object readArg(DataInputStream in, char type) throws IOException {
+        switch (type) {
+            case 'i':
+                int zigzag = (int) readVarLong(in);
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            case 'b':
+                return in.readByte() != 0;
+            default:
+                long length = readVarLong(in);
+                if (length == 0) {
+                    return null;
+                }
+                byte[] bytes = new byte[(int) (length - 1)];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Seven bits per byte, low bits first; the high bit marks that more follow
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.musicdb;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-executes a workload recorded with -Dmusicdb.record, or a synthetic mix of
+ * catalog operations, on N threads, and reports throughput, latency
+ * percentiles and error and busy rates per operation.
+ *
+ * A recording is replayed with its original timing by default; --speed 2 runs
+ * it twice as fast, --speed 0 as fast as the threads allow, and --rate N at N
+ * operations per second. The synthetic mix reads albums, their songs, artists,
+ * albums by year and song pages, and adds songs for --writes percent of the
+ * operations. When operations are paced, latency is measured from when an
+ * operation was due, so time spent waiting for a busy thread counts.
+ *
+ * Replay changes the database. Run it on a copy, and for a faithful replay, on
+ * a copy of the database as it was when the recording started.
+ *
+ * Usage: java -Dmusicdb.url=... com.example.musicdb.WorkloadReplay replay FILE
+ *        [--threads N] [--speed X] [--rate N]
+ *        | synthetic [--ops N] [--threads N] [--rate N] [--writes PERCENT] [--seed N]
+ */
+public final class WorkloadReplay {
+    // SQLite result codes of a lock held by another connection (the low byte of extended codes)
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static final long UNPACED = Long.MIN_VALUE;
+
+    private static final String MAX_IDS_SQL = "SELECT (SELECT MAX(artist_id) FROM Artist),"
+            + " (SELECT MAX(album_id) FROM Album), (SELECT MAX(song_id) FROM Song),"
+            + " (SELECT MIN(release_year) FROM Album), (SELECT MAX(release_year) FROM Album)";
+
+    private final List<WorkloadRecorder.Entry> entries;
+    // Start of each entry relative to the run, or null to run them back to back
+    private final long[] dueNanos;
+    private final Map<WorkloadOp, Results> results = new EnumMap<>(WorkloadOp.class);
+
+    /**
+     * Latencies and failures of one operation.
+     */
+    static final class Results {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong busy = new AtomicLong();
+    }
+
+    private WorkloadReplay(List<WorkloadRecorder.Entry> entries, long[] dueNanos) {
+        this.entries = entries;
+        this.dueNanos = dueNanos;
+        for (WorkloadOp op : WorkloadOp.values()) {
+            results.put(op, new Results());
+        }
+    }
+
+    /**
+     * Runs the entries on the given number of threads and returns the elapsed nanoseconds.
+     */
+    private long run(int threads) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        long base = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = next.getAndIncrement(); i < entries.size(); i = next.getAndIncrement()) {
+                    execute(entries.get(i), dueNanos == null ? UNPACED : base + dueNanos[i]);
+                }
+            }, "musicdb-replay-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - base;
+    }
+
+    private void execute(WorkloadRecorder.Entry entry, long due) {
+        long now = System.nanoTime();
+        while (due > now) {
+            LockSupport.parkNanos(due - now);
+            now = System.nanoTime();
+        }
+        long start = due == UNPACED ? now : due;
+        Results r = results.get(entry.op());
+        try {
+            entry.op().run(entry.args());
+        } catch (SQLException e) {
+            r.errors.incrementAndGet();
+            int code = e.getErrorCode() & 0xFF;
+            if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+                r.busy.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            r.errors.incrementAndGet();
+        }
+        r.latency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * A table of every operation that ran, with latencies in milliseconds.
+     */
+    static String report(Map<WorkloadOp, Results> results, long elapsedNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-26s %9s %9s %7s %7s %9s %9s %9s %9s %9s%n", "Operation", "Calls", "Ops/s",
+                "Error%", "Busy%", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "Max ms"));
+        LatencyHistogram all = new LatencyHistogram();
+        long errors = 0;
+        long busy = 0;
+        for (Map.Entry<WorkloadOp, Results> e : results.entrySet()) {
+            Results r = e.getValue();
+            long calls = r.latency.count();
+            if (calls == 0) {
+                continue;
+            }
+            row(sb, e.getKey().operationName(), r.latency, r.errors.get(), r.busy.get(), elapsedNanos);
+            all.merge(r.latency);
+            errors += r.errors.get();
+            busy += r.busy.get();
+        }
+        row(sb, "total", all, errors, busy, elapsedNanos);
+        return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, String name, LatencyHistogram latency, long errors, long busy,
+                            long elapsedNanos) {
+        long calls = latency.count();
+        sb.append(String.format("%-26s %9d %9.0f %7.2f %7.2f %9.3f %9.3f %9.3f %9.3f %9.3f%n", name, calls,
+                calls / (elapsedNanos / 1e9), 100.0 * errors / calls, 100.0 * busy / calls,
+                latency.percentile(50) / 1e6, latency.percentile(90) / 1e6, latency.percentile(99) / 1e6,
+                latency.percentile(99.9) / 1e6, latency.max() / 1e6));
+    }
+
+    /**
+     * The recorded latencies and failures, in the same form as a replay's.
+     */
+    private static Map<WorkloadOp, Results> recorded(List<WorkloadRecorder.Entry> entries) {
+        Map<WorkloadOp, Results> results = new EnumMap<>(WorkloadOp.class);
+        for (WorkloadRecorder.Entry entry : entries) {
+            Results r = results.computeIfAbsent(entry.op(), op -> new Results());
+            r.latency.record(entry.latencyNanos());
+            if (!entry.ok()) {
+                r.errors.incrementAndGet();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Generates a read-mostly mix over the IDs and years present in the catalog.
+     */
+    static List<WorkloadRecorder.Entry> synthetic(int ops, int writePercent, long seed) throws SQLException {
+        int[] ranges = new int[5];
+        for (int[] shard : DatabaseManager.query(conn -> {
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(MAX_IDS_SQL)) {
+                rs.next();
+                return List.of(new int[] {rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5)});
+            }
+        }, null)) {
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = i == 3 && ranges[i] != 0 ? Math.min(ranges[i], shard[i]) : Math.max(ranges[i], shard[i]);
+            }
+        }
+        int artists = Math.max(1, ranges[0]);
+        int albums = Math.max(1, ranges[1]);
+        int songs = Math.max(1, ranges[2]);
+        int years = Math.max(1, ranges[4] - ranges[3] + 1);
+
+        Random random = new Random(seed);
+        List<WorkloadRecorder.Entry> entries = new ArrayList<>(ops);
+        for (int i = 0; i < ops; i++) {
+            int albumId = random.nextInt(albums) + 1;
+            if (random.nextInt(100) < writePercent) {
+                entries.add(entry(WorkloadOp.ADD_SONG, "Replay song " + i, 120 + random.nextInt(240), 1, albumId));
+                continue;
+            }
+            switch (random.nextInt(5)) {
+                case 0:
+                    entries.add(entry(WorkloadOp.GET_ALBUM, albumId));
+                    break;
+                case 1:
+                    entries.add(entry(WorkloadOp.GET_SONGS_BY_ALBUM, albumId));
+                    break;
+                case 2:
+                    entries.add(entry(WorkloadOp.GET_ARTIST, random.nextInt(artists) + 1));
+                    break;
+                case 3:
+                    entries.add(entry(WorkloadOp.LIST_ALBUMS_BY_YEAR, ranges[3] + random.nextInt(years)));
+                    break;
+                default:
+                    entries.add(entry(WorkloadOp.SONG_PAGE, random.nextInt(songs), 20));
+                    break;
+            }
+        }
+        return entries;
+    }
+
+    private static WorkloadRecorder.Entry entry(WorkloadOp op, Object... args) {
+        return new WorkloadRecorder.Entry(op, args, 0, 0, true);
+    }
+
+    public static void main(String[] args) {
+        String usage = "Usage: java com.example.musicdb.WorkloadReplay replay FILE [--threads N] [--speed X] [--rate N]"
+                + " | synthetic [--ops N] [--threads N] [--rate N] [--writes PERCENT] [--seed N]";
+        boolean replay = args.length >= 2 && args[0].equals("replay");
+        if (!replay && (args.length < 1 || !args[0].equals("synthetic"))) {
+            System.out.println(usage);
+            return;
+        }
+        int threads = 4;
+        double speed = 1;
+        double rate = 0;
+        int ops = 100_000;
+        int writePercent = 5;
+        long seed = 42;
+        try {
+            for (int i = replay ? 2 : 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--speed": speed = Double.parseDouble(args[++i]); break;
+                    case "--rate": rate = Double.parseDouble(args[++i]); break;
+                    case "--ops": ops = Integer.parseInt(args[++i]); break;
+                    case "--writes": writePercent = Integer.parseInt(args[++i]); break;
+                    case "--seed": seed = Long.parseLong(args[++i]); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println(usage);
+            return;
+        }
+        try {
+            DatabaseManager.createTables();
+            List<WorkloadRecorder.Entry> entries;
+            long[] due = null;
+            if (replay) {
+                entries = new ArrayList<>(WorkloadRecorder.read(Paths.get(args[1])));
+                entries.sort(Comparator.comparingLong(WorkloadRecorder.Entry::startNanos));
+                long first = entries.isEmpty() ? 0 : entries.get(0).startNanos();
+                long last = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).startNanos();
+                System.out.printf("Recorded: %,d operations over %.2f s%n", entries.size(), (last - first) / 1e9);
+                System.out.print(report(recorded(entries), Math.max(1, last - first)));
+                if (rate <= 0 && speed > 0) {
+                    due = new long[entries.size()];
+                    for (int i = 0; i < due.length; i++) {
+                        due[i] = (long) ((entries.get(i).startNanos() - first) / speed);
+                    }
+                }
+            } else {
+                entries = synthetic(ops, writePercent, seed);
+            }
+            if (rate > 0) {
+                due = new long[entries.size()];
+                for (int i = 0; i < due.length; i++) {
+                    due[i] = (long) (i * 1e9 / rate);
+                }
+            }
+
+            System.out.printf("Running %,d operations on %d threads%s%n", entries.size(), threads,
+                    due == null ? ", unpaced" : "");
+            WorkloadReplay run = new WorkloadReplay(entries, due);
+            long elapsed = run.run(threads);
+            System.out.printf("Replayed: %,d operations in %.2f s%n", entries.size(), elapsed / 1e9);
+            System.out.print(report(run.results, elapsed));
+        } catch (IOException | SQLException e) {
+            System.out.println("Error replaying workload: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.musicdb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accepts writes without waiting for them and commits them in groups.
+ *
+ * Every auto-committed statement pays for its own transaction and sync to disk.
+ * This queue lets a background thread collect writes until it has batchSize of
+ * them or the oldest has waited maxDelayMs, then runs them all in one
+ * transaction through {@link DatabaseManager#write(SqlWork)}. Each write runs
+ * inside its own savepoint, so a failing one is rolled back and reported on its
+ * future without affecting the rest of the group. Futures complete only after
+ * the group has committed.
+ *
+ * Configured with system properties musicdb.writeBehind.batchSize (256),
+ * musicdb.writeBehind.maxDelayMs (10) and musicdb.writeBehind.queue (10000).
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    private final BlockingQueue<Op<?>> queue;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong failedOperations = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+    private final AtomicLong totalCommitNanos = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    /**
+     * Starts the background committer.
+     * @param queueCapacity Writes that may be waiting before submitters block.
+     * @param batchSize Most writes committed together.
+     * @param maxDelayMs Longest a write waits for others to join its group.
+     */
+    public WriteBehindQueue(int queueCapacity, int batchSize, long maxDelayMs) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.thread = new Thread(this::drain, "musicdb-write-behind");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates a queue configured from system properties.
+     */
+    public static WriteBehindQueue fromSystemProperties() {
+        return new WriteBehindQueue(
+                Integer.getInteger("musicdb.writeBehind.queue", 10_000),
+                Integer.getInteger("musicdb.writeBehind.batchSize", 256),
+                Long.getLong("musicdb.writeBehind.maxDelayMs", 10L));
+    }
+
+    /**
+     * Queues a write. Blocks while the queue is full.
+     * @return Completes with the work's result once its group has committed.
+     */
+    public <T> CompletableFuture<T> submit(SqlWork<T> work) {
+        Op<T> op = new Op<>(work);
+        enqueue(op);
+        return op.future;
+    }
+
+    /**
+     * Returns a future that completes once every write submitted before this call
+     * has been committed (or has failed).
+     */
+    public CompletableFuture<Void> flushAsync() {
+        Op<Void> barrier = new Op<>(null);
+        enqueue(barrier);
+        return barrier.future;
+    }
+
+    /**
+     * Waits until every write submitted before this call has been committed, so
+     * that subsequent reads see them.
+     */
+    public void flush() throws SQLException {
+        try {
+            flushAsync().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while flushing writes", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Flush failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void enqueue(Op<?> op) {
+        if (closed) {
+            op.future.completeExceptionally(new SQLException("Write-behind queue is closed"));
+            return;
+        }
+        try {
+            queue.put(op);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            op.future.completeExceptionally(new SQLException("Interrupted while queueing a write", e));
+            return;
+        }
+        // close() may have run between the check above and the put, after its last poll;
+        // an op the committer did not take is failed here
+        if (closed && queue.remove(op)) {
+            op.future.completeExceptionally(new SQLException("Write-behind queue is closed"));
+        }
+    }
+
+    private void drain() {
+        List<Op<?>> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                Op<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                // A barrier ends the group so its caller is not kept waiting
+                while (batch.size() < batchSize && !batch.get(batch.size() - 1).isBarrier()) {
+                    long remaining = deadline - System.nanoTime();
+                    Op<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Not used for shutdown; close() sets the flag and the poll timeout notices it
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Op<?>> batch) {
+        if (batch.stream().allMatch(Op::isBarrier)) {
+            batch.forEach(Op::complete);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            DatabaseManager.write(conn -> {
+                conn.setAutoCommit(false);
+                try {
+                    for (Op<?> op : batch) {
+                        op.apply(conn);
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    // The group's cache and index updates must not run for rows that are gone
+                    TableVersions.transactionEnded(false);
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                return null;
+            });
+            commits.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            failedCommits.incrementAndGet();
+            for (Op<?> op : batch) {
+                op.fail(e);
+            }
+        }
+        totalCommitNanos.addAndGet(System.nanoTime() - start);
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        for (Op<?> op : batch) {
+            if (!op.isBarrier()) {
+                operations.incrementAndGet();
+                if (op.error != null) {
+                    failedOperations.incrementAndGet();
+                }
+            }
+            op.complete();
+        }
+    }
+
+    public Stats stats() {
+        long groups = commits.get() + failedCommits.get();
+        return new Stats(operations.get(), failedOperations.get(), commits.get(), failedCommits.get(),
+                queue.size(), largestBatch.get(), groups == 0 ? 0 : totalCommitNanos.get() / groups);
+    }
+
+    /**
+     * Commits everything already queued and stops the background thread.
+     * Writes submitted afterwards fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Submitted while the thread was stopping
+        Op<?> op;
+        while ((op = queue.poll()) != null) {
+            op.future.completeExceptionally(new SQLException("Write-behind queue is closed"));
+        }
+    }
+
+    /**
+     * A queued write, or a flush barrier when work is null.
+     */
+    private static final class Op<T> {
+        final SqlWork<T> work;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Exception error;
+
+        Op(SqlWork<T> work) {
+            this.work = work;
+        }
+
+        boolean isBarrier() {
+            return work == null;
+        }
+
+        void apply(Connection conn) throws SQLException {
+            if (isBarrier()) {
+                return;
+            }
+            Savepoint savepoint = conn.setSavepoint();
+            int deferred = TableVersions.savepoint();
+            try {
+                result = work.run(conn);
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+                TableVersions.rolledBackTo(deferred);
+                error = e;
+            }
+        }
+
+        void fail(Exception e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null && !isBarrier()) {
+                future.completeExceptionally(error);
+            } else {
+                // A barrier completes normally: it only orders, the failures belong to the writes
+                future.complete(error == null ? result : null);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of write-behind counters. Times are in nanoseconds.
+     */
+    public static final class Stats {
+        public final long operations;
+        public final long failedOperations;
+        public final long commits;
+        public final long failedCommits;
+        public final int queued;
+        public final long largestBatch;
+        public final long avgCommitNanos;
+
+        Stats(long operations, long failedOperations, long commits, long failedCommits,
+              int queued, long largestBatch, long avgCommitNanos) {
+            this.operations = operations;
+            this.failedOperations = failedOperations;
+            this.commits = commits;
+            this.failedCommits = failedCommits;
+            this.queued = queued;
+            this.largestBatch = largestBatch;
+            this.avgCommitNanos = avgCommitNanos;
+        }
+
+        @Override
+        public String toString() {
+            long groups = commits + failedCommits;
+            return "Write-behind: " + operations + " writes (" + failedOperations + " failed) in "
+                    + groups + " group commits (" + failedCommits + " failed), " + queued + " queued"
+                    + String.format("%nGroup size: avg %.1f, max %d; commit time avg %.3f ms",
+                            groups == 0 ? 0.0 : (double) operations / groups, largestBatch, avgCommitNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkImporterTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        // The Beatles: Abbey Road (1969) with 2 songs; Taylor Swift: 1989 (2014) with 2 songs
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private Path file(String name, String... lines) throws IOException {
+        return Files.writeString(dir.resolve(name), String.join("\n", lines) + "\n", StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(String sql) throws SQLException {
+        return DatabaseManager.write(conn -> CatalogQueries.list(conn, sql, rs -> rs.getString(1)));
+    }
+
+    @Test
+    void csvRecordsResolveTheirParentsByName() throws Exception {
+        BulkImporter importer = new BulkImporter(2, 4);
+        BulkImporter.Result artists = importer.importArtists(file("artists.csv",
+                "Name,Genre,Biography",
+                "Queen,Rock,\"London, 1970\"",
+                "\"The \"\"Band\"\"\",Rock,\"Two",
+                "lines\"",
+                "",
+                ",Pop,no name"));
+        assertEquals(3, artists.read);
+        assertEquals(2, artists.inserted);
+        assertEquals(1, artists.rejected);
+        assertEquals(List.of("London, 1970", "Two\nlines"),
+                strings("SELECT biography FROM Artist WHERE artist_id > 2 ORDER BY artist_id"));
+
+        BulkImporter.Result albums = importer.importAlbums(file("albums.csv",
+                "title,release_year,artist,artist_id",
+                "A Night at the Opera,1975,Queen,",
+                "Help!,1965,,1",
+                "Nowhere,2000,Nobody,",
+                "Bad Year,19x5,Queen,"));
+        assertEquals(2, albums.inserted);
+        assertEquals(2, albums.rejected);
+
+        BulkImporter.Result songs = importer.importSongs(file("songs.csv",
+                "title,duration,track_number,album,artist",
+                "Bohemian Rhapsody,354,11,A Night at the Opera,Queen",
+                "Yesterday,125,,Help!,The Beatles",
+                "Lost,100,1,Help!,Queen"));
+        assertEquals(2, songs.inserted);
+        assertEquals(1, songs.rejected);
+        assertEquals(List.of("Bohemian Rhapsody:Queen", "Yesterday:The Beatles"),
+                strings("SELECT s.title || ':' || ar.name FROM Song s JOIN Album al ON s.album_id = al.album_id "
+                        + "JOIN Artist ar ON al.artist_id = ar.artist_id WHERE s.song_id > 4 ORDER BY s.song_id"));
+    }
+
+    @Test
+    void jsonLinesValuesAreUnescaped() throws Exception {
+        BulkImporter.Result songs = new BulkImporter(10, 10).importSongs(file("songs.jsonl",
+                "{\"title\": \"Caf\\u00e9 \\\"Live\\\"\", \"duration\": 200, \"track_number\": null, \"album_id\": 2}",
+                "",
+                "{\"Title\":\"Tab\\tbed\",\"album_id\":\"1\"}"));
+        assertEquals(2, songs.inserted);
+        assertEquals(List.of("Café \"Live\"|200|", "Tab\tbed||"),
+                strings("SELECT title || '|' || IFNULL(duration, '') || '|' || IFNULL(track_number, '') "
+                        + "FROM Song WHERE song_id > 4 ORDER BY song_id"));
+    }
+
+    @Test
+    void truncatedLineStopsTheImportAfterTheCommittedChunks() throws Exception {
+        // Chunks of two rows: the first two commit, the third is rolled back
+        Path songs = file("songs.jsonl",
+                "{\"title\": \"One\", \"album_id\": 1}",
+                "{\"title\": \"Two\", \"album_id\": 1}",
+                "{\"title\": \"Three\", \"album_id\": 1}",
+                "{\"title\": \"Fo");
+        IOException e = assertThrows(IOException.class, () -> new BulkImporter(1, 2).importSongs(songs));
+        assertEquals("Unterminated JSON string: {\"title\": \"Fo", e.getMessage());
+        assertEquals(List.of("One", "Two"), strings("SELECT title FROM Song WHERE song_id > 4 ORDER BY song_id"));
+        // The connection went back to the pool in auto-commit mode
+        DatabaseManager.write(conn -> DatabaseManager.addSong(conn, "Five", 1, 5, 1));
+        assertEquals(3, strings("SELECT title FROM Song WHERE song_id > 4").size());
+    }
+
+    @Test
+    void importIsVisibleToTheCaches() throws Exception {
+        assertEquals(List.of(), TypeaheadIndex.complete("queen", 10));
+        assertEquals(2, DatabaseManager.songCountsPerAlbum().size());
+        new BulkImporter(10, 10).importArtists(file("artists.csv", "name", "Queen"));
+        new BulkImporter(10, 10).importAlbums(file("albums.csv", "title,artist", "Innuendo,Queen"));
+        assertEquals(List.of("Queen"), TypeaheadIndex.complete("queen", 10).stream()
+                .map(TypeaheadIndex.Completion::name).toList());
+        assertEquals(3, DatabaseManager.songCountsPerAlbum().size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CatalogDeletesTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        // The Beatles: Abbey Road (1969) with 2 songs; Taylor Swift: 1989 (2014) with 2 songs
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private static int count(String table) throws SQLException {
+        return DatabaseManager.write(conn -> {
+            try (var stmt = conn.createStatement(); var rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        });
+    }
+
+    private static List<String> names(String prefix) throws SQLException {
+        return TypeaheadIndex.complete(prefix, 10).stream().map(TypeaheadIndex.Completion::name).toList();
+    }
+
+    @Test
+    void deletingAnArtistCascades() throws SQLException {
+        DeleteCounts counts = DatabaseManager.write(conn -> CatalogDeletes.deleteArtists(conn, 1, 1, 99));
+        assertEquals(new DeleteCounts(1, 1, 2), counts);
+        assertEquals(1, count("Artist"));
+        assertEquals(1, count("Album"));
+        assertEquals(2, count("Song"));
+    }
+
+    @Test
+    void deletesSpanSeveralChunks() throws SQLException {
+        int[] ids = IntStream.rangeClosed(1, CatalogDeletes.CHUNK * 2 + 1).toArray();
+        assertEquals(new DeleteCounts(0, 0, 4), DatabaseManager.write(conn -> CatalogDeletes.deleteSongs(conn, ids)));
+        assertEquals(0, count("Song"));
+    }
+
+    @Test
+    void deletesAlbumsReleasedBefore() throws SQLException {
+        DeleteCounts counts = DatabaseManager.write(conn -> CatalogDeletes.deleteAlbumsReleasedBefore(conn, 2000));
+        assertEquals(new DeleteCounts(0, 1, 2), counts);
+        assertNull(DatabaseManager.getAlbum(1));
+        assertEquals("1989", DatabaseManager.getAlbum(2).title());
+    }
+
+    @Test
+    void committedDeleteInvalidatesTheCaches() throws SQLException {
+        assertEquals(2, DatabaseManager.getSongsByAlbum(1).size());
+        assertEquals(List.of("Abbey Road"), names("abbey"));
+        DatabaseManager.write(conn -> CatalogDeletes.deleteAlbums(conn, 1));
+        assertNull(DatabaseManager.getAlbum(1));
+        assertEquals(List.of(), DatabaseManager.getSongsByAlbum(1));
+        assertEquals(List.of(), names("abbey"));
+        assertEquals(List.of(), names("come together"));
+    }
+
+    @Test
+    void rolledBackDeleteKeepsTheCaches() throws SQLException {
+        assertEquals("Abbey Road", DatabaseManager.getAlbum(1).title());
+        names("");
+        long invalidations = EntityCache.ALBUMS.stats().invalidations;
+        DatabaseManager.write(conn -> {
+            conn.setAutoCommit(false);
+            // Runs in a savepoint of this transaction, which is then left open and rolled back
+            return CatalogDeletes.deleteAlbums(conn, 1);
+        });
+        assertEquals(invalidations, EntityCache.ALBUMS.stats().invalidations);
+        assertEquals("Abbey Road", DatabaseManager.getAlbum(1).title());
+        assertEquals(List.of("Abbey Road"), names("abbey"));
+        assertEquals(4, count("Song"));
+    }
+
+    @Test
+    void rolledBackInsertNeverReachesTheIndexOrTheCache() throws Exception {
+        assertEquals("Abbey Road", DatabaseManager.getAlbum(1).title());
+        names("");
+        long invalidations = EntityCache.ALBUMS.stats().invalidations;
+
+        // A write-behind op that fails is rolled back to its savepoint
+        CompletableFuture<Integer> failed = DatabaseManager.writeAsync(conn -> {
+            DatabaseManager.addArtist(conn, "Zed", "Rock", "");
+            DatabaseManager.updateAlbumTitle(conn, 1, "Let It Be");
+            throw new SQLException("rejected");
+        });
+        assertThrows(ExecutionException.class, failed::get);
+
+        // A transaction left open is rolled back when the connection goes back to the pool
+        DatabaseManager.write(conn -> {
+            conn.setAutoCommit(false);
+            DatabaseManager.addArtist(conn, "Zed", "Rock", "");
+            return DatabaseManager.updateAlbumTitle(conn, 1, "Let It Be");
+        });
+
+        assertEquals(List.of(), names("zed"));
+        assertEquals(invalidations, EntityCache.ALBUMS.stats().invalidations);
+        assertEquals("Abbey Road", DatabaseManager.getAlbum(1).title());
+    }
+}
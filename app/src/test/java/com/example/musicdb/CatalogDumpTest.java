@@ -0,0 +1,103 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CatalogDumpTest {
+    @TempDir
+    Path dir;
+
+    private Connection open(String name) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve(name));
+        SchemaMigrations.migrate(conn);
+        return conn;
+    }
+
+    private static void populate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO Artist (artist_id, name, genre, biography) VALUES "
+                    + "(1, 'The Beatles', 'Rock', 'Legendary band from Liverpool.'), "
+                    + "(7, 'Beyoncé', NULL, '')");
+            stmt.executeUpdate("INSERT INTO Album (album_id, title, release_year, artist_id) VALUES "
+                    + "(1, 'Abbey Road', 1969, 1), (2, 'Lemonade', NULL, 7)");
+            stmt.executeUpdate("INSERT INTO Song (song_id, title, duration, track_number, album_id) VALUES "
+                    + "(1, 'Come Together', 259, 1, 1), (2, 'Something', 182, 2, 1), "
+                    + "(5, 'Formation', NULL, NULL, 2)");
+        }
+    }
+
+    // Every row of a table in ID order, NULLs included
+    private static List<List<Object>> rows(Connection conn, String table, String id) throws SQLException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " ORDER BY " + id)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            while (rs.next()) {
+                List<Object> row = new ArrayList<>();
+                for (int c = 1; c <= meta.getColumnCount(); c++) {
+                    row.add(rs.getObject(c));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void exportOpenImportRoundTrip() throws Exception {
+        Path file = dir.resolve("catalog.mdbd");
+        try (Connection source = open("source.db"); Connection target = open("target.db")) {
+            populate(source);
+            CatalogDump.export(source, file);
+
+            CatalogDump dump = CatalogDump.open(file);
+            assertEquals(2, dump.artistCount());
+            assertEquals(2, dump.albumCount());
+            assertEquals(3, dump.songCount());
+            assertEquals(new Artist(7, "Beyoncé", null, ""), dump.artist(1));
+            assertEquals(new Album(2, "Lemonade", 0, 7), dump.album(1));
+            assertEquals(new Song(2, "Something", 182, 2, 1), dump.song(1));
+            assertEquals(259, dump.songDuration(0));
+
+            List<BulkImporter.Result> results = dump.importInto(target, 2, 2);
+            assertEquals(3, results.size());
+            assertEquals(List.of(2L, 2L, 3L), results.stream().map(r -> r.inserted).toList());
+            assertEquals(rows(source, "Artist", "artist_id"), rows(target, "Artist", "artist_id"));
+            assertEquals(rows(source, "Album", "album_id"), rows(target, "Album", "album_id"));
+            assertEquals(rows(source, "Song", "song_id"), rows(target, "Song", "song_id"));
+        }
+    }
+
+    @Test
+    void corruptDumpIsRejected() throws Exception {
+        Path file = dir.resolve("catalog.mdbd");
+        try (Connection source = open("source.db")) {
+            populate(source);
+            CatalogDump.export(source, file);
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, ch.size() - 1);
+            b.put(0, (byte) (b.get(0) ^ 0xFF)).rewind();
+            ch.write(b, ch.size() - 1);
+        }
+        assertThrows(IOException.class, () -> CatalogDump.open(file));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogQueriesTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        // The Beatles: Abbey Road (1969) with 2 songs; Taylor Swift: 1989 (2014) with 2 songs
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private static List<String> titles(List<Song> songs) {
+        return songs.stream().map(Song::title).toList();
+    }
+
+    @Test
+    void songPagesFollowOneAnother() throws SQLException {
+        Page<Song> first = CatalogQueries.songPage(null, 3);
+        assertEquals(List.of("Come Together", "Something", "Blank Space"), titles(first.items()));
+        assertTrue(first.hasMore());
+        Page<Song> second = CatalogQueries.songPage(first.last(), 3);
+        assertEquals(List.of("Style"), titles(second.items()));
+        assertFalse(second.hasMore());
+        Page<Song> empty = CatalogQueries.songPage(second.last(), 3);
+        assertEquals(List.of(), empty.items());
+        assertNull(empty.last());
+    }
+
+    @Test
+    void exactlyFullPageHasNoMore() throws SQLException {
+        Page<Artist> page = CatalogQueries.artistPage(null, 2);
+        assertEquals(2, page.items().size());
+        assertFalse(page.hasMore());
+        assertEquals(List.of(1), CatalogQueries.albumPage(null, 1).items().stream().map(Album::albumId).toList());
+    }
+
+    @Test
+    void durationPagesBreakTiesBySongId() throws SQLException {
+        // Blank Space and Style are both 231 s
+        for (boolean descending : new boolean[] {false, true}) {
+            List<Song> paged = new ArrayList<>();
+            Page<Song> page = CatalogQueries.songsByDurationPage(descending, null, 1);
+            paged.addAll(page.items());
+            while (page.hasMore()) {
+                page = CatalogQueries.songsByDurationPage(descending, page.last(), 1);
+                paged.addAll(page.items());
+            }
+            try (Stream<Song> songs = CatalogQueries.songsByDuration(descending)) {
+                assertEquals(songs.toList(), paged);
+            }
+            assertEquals(descending ? List.of("Come Together", "Style", "Blank Space", "Something")
+                    : List.of("Something", "Blank Space", "Style", "Come Together"), titles(paged));
+        }
+    }
+
+    @Test
+    void cachedPageIsReplacedWhenAnAlbumChanges() throws SQLException {
+        Page<Album> page = CatalogQueries.albumsByReleaseYearPage(true, null, 1);
+        assertSame(page, CatalogQueries.albumsByReleaseYearPage(true, null, 1));
+        assertEquals("1989", page.last().title());
+        DatabaseManager.write(conn -> DatabaseManager.addAlbum(conn, "Midnights", 2022, 2));
+        assertEquals("Midnights", CatalogQueries.albumsByReleaseYearPage(true, null, 1).last().title());
+    }
+
+    @Test
+    void closingAStreamReturnsItsConnection() throws SQLException {
+        ConnectionPool.Stats before = DatabaseManager.poolStats();
+        try (Stream<Artist> artists = CatalogQueries.artists()) {
+            assertEquals(before.active + 1, DatabaseManager.poolStats().active);
+            assertEquals("The Beatles", artists.findFirst().orElseThrow().name());
+        }
+        assertEquals(before.active, DatabaseManager.poolStats().active);
+        try (Stream<Album> albums = CatalogQueries.albumsByReleaseYear(false)) {
+            assertEquals(List.of(1969, 2014), albums.map(Album::releaseYear).toList());
+        }
+        assertEquals(before.active, DatabaseManager.poolStats().active);
+    }
+}
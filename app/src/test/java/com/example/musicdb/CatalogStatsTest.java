@@ -0,0 +1,100 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogStatsTest {
+    @TempDir
+    Path dir;
+
+    private Connection conn;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("music.db"));
+        SchemaMigrations.migrate(conn);
+        execute("INSERT INTO Artist (artist_id, name) VALUES (1, 'The Beatles'), (2, 'Taylor Swift')");
+        execute("INSERT INTO Album (album_id, title, release_year, artist_id) VALUES "
+                + "(1, 'Abbey Road', 1969, 1), (2, '1989', 2014, 2)");
+        execute("INSERT INTO Song (song_id, title, duration, track_number, album_id) VALUES "
+                + "(1, 'Come Together', 259, 1, 1), (2, 'Something', 182, 2, 1), (3, 'Style', 231, 1, 2)");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        conn.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private List<String> albumStats() throws SQLException {
+        return CatalogQueries.list(conn, "SELECT album_id || ':' || song_count || ':' || total_duration "
+                + "FROM AlbumStats ORDER BY album_id", rs -> rs.getString(1));
+    }
+
+    private List<String> artistStats() throws SQLException {
+        return CatalogQueries.list(conn, "SELECT artist_id || ':' || album_count || ':' || song_count "
+                + "FROM ArtistStats ORDER BY artist_id", rs -> rs.getString(1));
+    }
+
+    @Test
+    void triggersKeepTheCountsCurrent() throws SQLException {
+        assertEquals(List.of("1:2:441", "2:1:231"), albumStats());
+        assertEquals(List.of("1:1:2", "2:1:1"), artistStats());
+
+        execute("UPDATE Song SET album_id = 2, duration = 200 WHERE song_id = 2");
+        assertEquals(List.of("1:1:259", "2:2:431"), albumStats());
+        assertEquals(List.of("1:1:1", "2:1:2"), artistStats());
+
+        execute("UPDATE Album SET artist_id = 1 WHERE album_id = 2");
+        assertEquals(List.of("1:2:3", "2:0:0"), artistStats());
+
+        execute("DELETE FROM Album WHERE album_id = 1");
+        assertEquals(List.of("2:2:431"), albumStats());
+        assertEquals(List.of("1:1:2", "2:0:0"), artistStats());
+        // Song 1 lost its album and counts for no one
+        assertEquals(List.of(), CatalogStats.verify(conn));
+    }
+
+    @Test
+    void albumInsertedAfterItsSongsCountsThem() throws SQLException {
+        execute("INSERT INTO Song (song_id, title, duration, album_id) VALUES (10, 'Early', 100, 5)");
+        execute("INSERT INTO Album (album_id, title, artist_id) VALUES (5, 'Late', 2)");
+        assertEquals(List.of("1:2:441", "2:1:231", "5:1:100"), albumStats());
+        assertEquals(List.of("1:1:2", "2:2:2"), artistStats());
+        execute("INSERT INTO Artist (artist_id, name) VALUES (3, 'Nobody')");
+        execute("DELETE FROM Artist WHERE artist_id = 1");
+        assertEquals(List.of("2:2:2", "3:0:0"), artistStats());
+        assertEquals(List.of(), CatalogStats.verify(conn));
+    }
+
+    @Test
+    void driftIsReportedAndRebuilt() throws SQLException {
+        execute("UPDATE AlbumStats SET song_count = 9 WHERE album_id = 1");
+        execute("DELETE FROM ArtistStats WHERE artist_id = 2");
+        execute("INSERT INTO AlbumStats (album_id, song_count, total_duration) VALUES (99, 1, 1)");
+        assertEquals(List.of(
+                "AlbumStats 1: stored 9 songs, 441 s (actual 2 songs, 441 s)",
+                "AlbumStats 99: row for a deleted album",
+                "ArtistStats 2: missing (actual 1 albums, 1 songs)"), CatalogStats.verify(conn));
+
+        assertEquals(4, CatalogStats.rebuild(conn));
+        assertEquals(List.of(), CatalogStats.verify(conn));
+        assertEquals(List.of("1:2:441", "2:1:231"), albumStats());
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeLogTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        // 2 artists, 2 albums and 4 songs, logged as 8 inserts
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private static List<ChangeLog.Change> changesAfter(long sequence) throws SQLException {
+        return DatabaseManager.write(conn -> ChangeLog.changesAfter(conn, sequence, 1000)).items();
+    }
+
+    private static long lastSequence() throws SQLException {
+        return DatabaseManager.write(ChangeLog::lastSequence);
+    }
+
+    // A consumer's copy after applying the changes: upserts for I and U, removal for D
+    private static Map<String, String> apply(Map<String, String> rows, List<ChangeLog.Change> changes) {
+        Map<String, String> applied = new TreeMap<>(rows);
+        for (ChangeLog.Change change : changes) {
+            String key = change.table() + ":" + change.id();
+            if (change.op() == ChangeLog.DELETE) {
+                applied.remove(key);
+            } else {
+                applied.put(key, change.values());
+            }
+        }
+        return applied;
+    }
+
+    @Test
+    void everyMutationIsLogged() throws SQLException {
+        assertEquals(8, lastSequence());
+        assertEquals(new ChangeLog.Change(1, "Artist", 1, 'I', "{\"artist_id\":1,\"name\":\"The Beatles\","
+                + "\"genre\":\"Rock\",\"biography\":\"Legendary band from Liverpool.\"}"), changesAfter(0).get(0));
+
+        DatabaseManager.write(conn -> DatabaseManager.updateAlbumTitle(conn, 2, "Red"));
+        DatabaseManager.write(conn -> {
+            try (var stmt = conn.createStatement()) {
+                return stmt.executeUpdate("UPDATE Song SET song_id = 40 WHERE song_id = 4");
+            }
+        });
+        DatabaseManager.write(conn -> DatabaseManager.deleteSongById(conn, 3));
+        // Rolled back when the connection goes back to the pool
+        DatabaseManager.write(conn -> {
+            conn.setAutoCommit(false);
+            return DatabaseManager.addArtist(conn, "Zed", "Rock", "");
+        });
+
+        List<String> logged = changesAfter(8).stream()
+                .map(c -> c.sequence() + " " + c.op() + " " + c.table() + ":" + c.id()).toList();
+        assertEquals(List.of("9 U Album:2", "10 D Song:4", "11 U Song:40", "12 D Song:3"), logged);
+        assertEquals("{\"seq\":9,\"table\":\"Album\",\"id\":2,\"op\":\"U\",\"values\":{\"album_id\":2,"
+                + "\"title\":\"Red\",\"release_year\":2014,\"artist_id\":2}}", changesAfter(8).get(0).toJson());
+        assertEquals("{\"seq\":12,\"table\":\"Song\",\"id\":3,\"op\":\"D\",\"values\":null}",
+                changesAfter(11).get(0).toJson());
+    }
+
+    @Test
+    void tailReadsInBatchesUntilCaughtUp() throws SQLException {
+        List<List<ChangeLog.Change>> batches = new ArrayList<>();
+        assertEquals(8, ChangeLog.tail(2, 4, false, batches::add));
+        assertEquals(List.of(4, 2), batches.stream().map(List::size).toList());
+        assertEquals(3, batches.get(0).get(0).sequence());
+
+        batches.clear();
+        assertEquals(8, ChangeLog.tail(8, 4, false, batches::add));
+        assertTrue(batches.isEmpty());
+
+        Page<ChangeLog.Change> page = DatabaseManager.write(conn -> ChangeLog.changesAfter(conn, 0, 8));
+        assertFalse(page.hasMore());
+        assertTrue(DatabaseManager.write(conn -> ChangeLog.changesAfter(conn, 0, 7)).hasMore());
+    }
+
+    @Test
+    void compactionKeepsWhatConsumersEndUpWith() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            String title = "Take " + i;
+            DatabaseManager.write(conn -> DatabaseManager.updateAlbumTitle(conn, 1, title));
+        }
+        DatabaseManager.write(conn -> DatabaseManager.deleteSongById(conn, 2));
+        long through = lastSequence();
+        DatabaseManager.write(conn -> DatabaseManager.updateAlbumTitle(conn, 1, "After"));
+
+        List<ChangeLog.Change> log = changesAfter(0);
+        Map<String, String> expected = apply(Map.of(), log);
+        int compacted = DatabaseManager.write(conn -> ChangeLog.compact(conn, through));
+        assertEquals(6, compacted);
+        assertEquals(log.size() - 6, changesAfter(0).size());
+
+        // Consumers at any position, the start included, reach the same rows
+        for (int position = 0; position <= through; position++) {
+            Map<String, String> copy = apply(Map.of(), log.subList(0, position));
+            assertEquals(expected, apply(copy, changesAfter(position)), "consumer at " + position);
+        }
+
+        // The change after the compacted range is untouched
+        assertEquals(through + 1, changesAfter(through).get(0).sequence());
+        assertEquals(through + 1, lastSequence());
+    }
+
+    @Test
+    void consumersBehindAPurgeMustCopyAgain() throws SQLException {
+        int purged = DatabaseManager.write(conn -> ChangeLog.purge(conn, 5));
+        assertEquals(5, purged);
+        assertEquals(5, DatabaseManager.write(ChangeLog::purgedThrough));
+        SQLException e = assertThrows(SQLException.class, () -> changesAfter(4));
+        assertTrue(e.getMessage().contains("purged"), e.getMessage());
+        assertEquals(3, changesAfter(5).size());
+
+        // Sequence numbers keep increasing once the log is empty
+        DatabaseManager.write(conn -> ChangeLog.purge(conn, 8));
+        assertEquals(List.of(), changesAfter(8));
+        DatabaseManager.write(conn -> DatabaseManager.deleteSongById(conn, 1));
+        assertEquals(9, changesAfter(8).get(0).sequence());
+        // An older purge does not move the mark back
+        DatabaseManager.write(conn -> ChangeLog.purge(conn, 2));
+        assertEquals(8, DatabaseManager.write(ChangeLog::purgedThrough));
+    }
+}
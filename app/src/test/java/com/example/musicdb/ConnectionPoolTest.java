@@ -0,0 +1,155 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+    @TempDir
+    Path dir;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        try (ConnectionPool setup = pool(1, 0, 60_000, 1_000);
+             Connection conn = setup.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE Numbers (n INTEGER)");
+        }
+    }
+
+    @AfterEach
+    void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPool pool(int maxSize, int minIdle, long idleTimeoutMillis, long borrowTimeoutMillis) {
+        return new ConnectionPool("jdbc:sqlite:" + dir.resolve("pool.db"), maxSize, minIdle, idleTimeoutMillis,
+                borrowTimeoutMillis, List.of("busy_timeout=5000", "cache_size=-1234"));
+    }
+
+    private static int queryInt(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // The driver's connection behind a pooled handle
+    private static Connection physical(Connection handle) throws SQLException {
+        return handle.unwrap(Connection.class);
+    }
+
+    @Test
+    void returnedConnectionIsReused() throws SQLException {
+        pool = pool(2, 0, 60_000, 1_000);
+        Connection first = pool.getConnection();
+        Connection physical = physical(first);
+        assertEquals(-1234, queryInt(first, "PRAGMA cache_size"));
+        first.close();
+        assertTrue(first.isClosed());
+        assertThrows(SQLException.class, first::createStatement);
+
+        try (Connection second = pool.getConnection()) {
+            assertSame(physical, physical(second));
+            assertEquals(-1234, queryInt(second, "PRAGMA cache_size"));
+        }
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(2, stats.borrows);
+        assertEquals(1, stats.created);
+        assertEquals(0, stats.active);
+        assertEquals(1, stats.idle);
+    }
+
+    @Test
+    void openTransactionIsRolledBackOnReturn() throws SQLException {
+        pool = pool(1, 0, 60_000, 1_000);
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("INSERT INTO Numbers VALUES (1)");
+        }
+        try (Connection conn = pool.getConnection()) {
+            assertTrue(conn.getAutoCommit());
+            assertEquals(0, queryInt(conn, "SELECT COUNT(*) FROM Numbers"));
+        }
+    }
+
+    @Test
+    void closedIdleConnectionFailsValidation() throws SQLException {
+        pool = pool(1, 0, 60_000, 1_000);
+        Connection physical;
+        try (Connection conn = pool.getConnection()) {
+            physical = physical(conn);
+        }
+        physical.close();
+        try (Connection conn = pool.getConnection()) {
+            assertNotSame(physical, physical(conn));
+            assertEquals(0, queryInt(conn, "SELECT COUNT(*) FROM Numbers"));
+        }
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(1, stats.validationFailures);
+        assertEquals(2, stats.created);
+        assertEquals(1, stats.open);
+    }
+
+    @Test
+    void borrowerTimesOutWhenThePoolIsExhausted() throws SQLException {
+        pool = pool(1, 0, 60_000, 50);
+        try (Connection held = pool.getConnection()) {
+            SQLException e = assertThrows(SQLException.class, pool::getConnection);
+            assertTrue(e.getMessage().contains("Timed out"), e.getMessage());
+        }
+        assertEquals(1, pool.stats().timeouts);
+        pool.getConnection().close();
+    }
+
+    @Test
+    void idleConnectionsAboveMinIdleAreEvicted() throws Exception {
+        pool = pool(3, 1, 0, 1_000);
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        Connection c = pool.getConnection();
+        a.close();
+        b.close();
+        c.close();
+        assertEquals(3, pool.stats().open);
+        // The evictor runs every second
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pool.stats().evicted < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(2, stats.evicted);
+        assertEquals(1, stats.open);
+        assertEquals(1, stats.idle);
+    }
+
+    @Test
+    void closedPoolRefusesBorrowers() throws SQLException {
+        pool = pool(1, 0, 60_000, 1_000);
+        Connection held = pool.getConnection();
+        Connection physical = physical(held);
+        pool.close();
+        assertThrows(SQLException.class, pool::getConnection);
+        held.close();
+        assertTrue(physical.isClosed());
+        assertEquals(0, pool.stats().open);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FullTextSearchTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        // The Beatles: Abbey Road (1969) with 2 songs; Taylor Swift: 1989 (2014) with 2 songs
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private static List<String> search(String words) throws SQLException {
+        return DatabaseManager.write(conn -> FullTextSearch.search(conn, words, 0, 20))
+                .stream().map(FullTextSearch.Hit::toString).toList();
+    }
+
+    private static List<String> searchSongTitles(String words) throws SQLException {
+        return DatabaseManager.write(conn -> FullTextSearch.searchSongTitles(conn, words, 0, 20))
+                .stream().map(FullTextSearch.Hit::toString).toList();
+    }
+
+    @Test
+    void wordsMatchAsPrefixesWithoutDiacritics() throws SQLException {
+        DatabaseManager.write(conn -> DatabaseManager.addArtist(conn, "Beyoncé", "Pop", ""));
+        assertEquals(List.of("Artist 3: Beyoncé"), search("beyonce"));
+        assertEquals(List.of("Song 1: Come Together - Abbey Road by The Beatles"), search("tog beat"));
+        assertEquals(List.of("Song 3: Blank Space - 1989 by Taylor Swift"), searchSongTitles("spa"));
+        assertEquals(List.of(), searchSongTitles("taylor"));
+    }
+
+    @Test
+    void songTitleMatchesRankAboveAlbumAndArtist() throws SQLException {
+        int albumId = DatabaseManager.write(conn -> DatabaseManager.addAlbum(conn, "Something Else", 1970, 2));
+        DatabaseManager.write(conn -> DatabaseManager.addSong(conn, "Track", 100, 1, albumId));
+        List<String> hits = search("something");
+        assertEquals("Song 2: Something - Abbey Road by The Beatles", hits.get(0));
+        assertEquals(3, hits.size());
+    }
+
+    @Test
+    void renamedAlbumIsFoundUnderItsNewTitle() throws SQLException {
+        DatabaseManager.write(conn -> DatabaseManager.updateAlbumTitle(conn, 1, "Let It Be"));
+        assertEquals(List.of(), search("abbey"));
+        assertEquals(List.of("Album 1: Let It Be by The Beatles",
+                "Song 1: Come Together - Let It Be by The Beatles",
+                "Song 2: Something - Let It Be by The Beatles"), search("let it").stream().sorted().toList());
+    }
+
+    @Test
+    void renamedArtistAndDeletedSongsAreSynced() throws SQLException {
+        DatabaseManager.write(conn -> {
+            try (var stmt = conn.createStatement()) {
+                return stmt.executeUpdate("UPDATE Artist SET name = 'Taylor' WHERE artist_id = 2");
+            }
+        });
+        assertEquals(List.of(), search("swift"));
+        assertEquals(4, search("taylor").size());
+
+        DatabaseManager.write(conn -> DatabaseManager.deleteSongById(conn, 4));
+        assertEquals(List.of(), search("style"));
+        DatabaseManager.write(conn -> DatabaseManager.deleteArtistById(conn, 2));
+        assertEquals(List.of(), search("taylor"));
+    }
+
+    @Test
+    void inputIsNeverParsedAsOperators() throws SQLException {
+        assertEquals("\"come\"* \"OR\"* \"NEAR(x\"*", FullTextSearch.toMatchExpression(null, " come OR \"NEAR(x "));
+        assertEquals("{song} : (\"a\"* \"b\"*)", FullTextSearch.toMatchExpression("song", "a b"));
+        assertNull(FullTextSearch.toMatchExpression(null, " \" "));
+        assertEquals(List.of(), search("come OR \"NEAR(x"));
+        assertEquals(List.of(), search("  "));
+    }
+
+    @Test
+    void rebuildIndexesEveryEntity() throws SQLException {
+        assertEquals(8, DatabaseManager.write(FullTextSearch::rebuild));
+        assertEquals(List.of("Artist 1: The Beatles"), search("the beatles").subList(0, 1));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.mean());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 32; value++) {
+            histogram.record(value);
+        }
+        assertEquals(15, histogram.percentile(50));
+        assertEquals(30, histogram.percentile(96));
+        assertEquals(31, histogram.percentile(100));
+    }
+
+    @Test
+    void percentilesAreWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertWithin(50_000_000, histogram.percentile(50));
+        assertWithin(99_000_000, histogram.percentile(99));
+        assertWithin(99_900_000, histogram.percentile(99.9));
+        assertEquals(100_000_000, histogram.percentile(100));
+        assertEquals(100_000_000, histogram.max());
+        assertEquals(50_000_500, histogram.mean(), 0.001);
+    }
+
+    @Test
+    void percentileIsCappedAtTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+        assertEquals(1_000_001, histogram.percentile(50));
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.percentile(100));
+    }
+
+    @Test
+    void mergeAddsTheOtherHistogram() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        for (int value = 1; value <= 10; value++) {
+            a.record(value);
+            b.record(value + 10);
+        }
+        a.merge(b);
+        assertEquals(20, a.count());
+        assertEquals(20, a.max());
+        assertEquals(10, a.percentile(50));
+        assertEquals(10.5, a.mean(), 0.001);
+    }
+
+    @Test
+    void resetForgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    // Reported values are the top of their bucket, so never below the true value
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.03,
+                "expected " + expected + " within 3%, was " + actual);
+    }
+}
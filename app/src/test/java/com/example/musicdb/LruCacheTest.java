@@ -0,0 +1,80 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LruCacheTest {
+
+    @Test
+    void loadsOnceAndServesHits() throws Exception {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10, 0);
+        AtomicInteger loads = new AtomicInteger();
+        LruCache.Loader<Integer, String> loader = key -> "v" + key + "#" + loads.incrementAndGet();
+        assertEquals("v1#1", cache.get(1, loader));
+        assertEquals("v1#1", cache.get(1, loader));
+        assertEquals(1, loads.get());
+        LruCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.misses);
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() throws Exception {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10, 0);
+        AtomicInteger loads = new AtomicInteger();
+        // A write invalidates the key while the read is loading the old row
+        String stale = cache.get(1, key -> {
+            loads.incrementAndGet();
+            cache.invalidate(key);
+            return "old";
+        });
+        assertEquals("old", stale);
+        assertEquals("new", cache.get(1, key -> {
+            loads.incrementAndGet();
+            return "new";
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidatingAnotherKeyAlsoSkipsTheStore() throws Exception {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10, 0);
+        cache.get(1, key -> {
+            cache.invalidateAll();
+            return "old";
+        });
+        assertEquals(0, cache.stats().size);
+    }
+
+    @Test
+    void invalidationDropsTheEntry() throws Exception {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10, 0);
+        cache.get(1, key -> "old");
+        cache.invalidate(1);
+        assertEquals("new", cache.get(1, key -> "new"));
+        assertEquals(1, cache.stats().invalidations);
+    }
+
+    @Test
+    void missingRowsAreNotCached() throws Exception {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10, 0);
+        assertNull(cache.get(1, key -> null));
+        assertEquals("found", cache.get(1, key -> "found"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsed() throws Exception {
+        LruCache<Integer, String> cache = new LruCache<>("test", 2, 0);
+        cache.get(1, key -> "a");
+        cache.get(2, key -> "b");
+        cache.get(1, key -> "unused");
+        cache.get(3, key -> "c");
+        assertEquals("a", cache.get(1, key -> "reloaded"));
+        assertEquals("reloaded", cache.get(2, key -> "reloaded"));
+        assertEquals(2, cache.stats().evictions);
+    }
+}
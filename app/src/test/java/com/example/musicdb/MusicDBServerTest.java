@@ -0,0 +1,119 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MusicDBServerTest {
+    @TempDir
+    Path dir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private MusicDBServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        // The Beatles: Abbey Road (1969) with 2 songs; Taylor Swift: 1989 (2014) with 2 songs
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+        server = new MusicDBServer(0, 4, 1_000);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return send("GET", path, null);
+    }
+
+    private static void assertResponse(int status, String body, HttpResponse<String> response) {
+        assertEquals(status, response.statusCode(), response.body());
+        assertEquals(body, response.body());
+    }
+
+    @Test
+    void pagesAndLookupsAreServedAsJson() throws Exception {
+        HttpResponse<String> page = get("/artists?limit=1");
+        assertResponse(200, "{\"items\":[{\"artist_id\":1,\"name\":\"The Beatles\",\"genre\":\"Rock\","
+                + "\"biography\":\"Legendary band from Liverpool.\"}],\"next_after\":1}", page);
+        assertTrue(page.headers().firstValue("Content-Type").orElseThrow().startsWith("application/json"));
+        assertEquals("{\"items\":[],\"next_after\":null}", get("/songs?after=4").body());
+        assertResponse(200, "{\"album_id\":2,\"title\":\"1989\",\"release_year\":2014,\"artist_id\":2}",
+                get("/albums/2"));
+        assertResponse(200, "[{\"name\":\"Abbey Road\",\"count\":2},{\"name\":\"1989\",\"count\":2}]",
+                get("/stats/songs-per-album"));
+        assertResponse(200, "[{\"kind\":\"album\",\"id\":1,\"name\":\"Abbey Road\"}]", get("/typeahead?q=ab"));
+    }
+
+    @Test
+    void writesAreVisibleToLaterReads() throws Exception {
+        assertResponse(201, "{\"id\":3}",
+                send("POST", "/albums", "{\"title\": \"Let It Be\", \"release_year\": 1970, \"artist_id\": 1}"));
+        assertResponse(200, "[{\"album_id\":3,\"title\":\"Let It Be\",\"release_year\":1970,\"artist_id\":1}]",
+                get("/albums/by-year?from=1970&to=2000"));
+
+        assertResponse(200, "{\"updated\":1}", send("PUT", "/albums/3", "{\"title\": \"Get Back\"}"));
+        assertTrue(get("/search?q=get+back").body().contains("\"album\":\"Get Back\""));
+
+        assertResponse(200, "{\"deleted\":1}", send("DELETE", "/songs/1", null));
+        assertResponse(404, "{\"deleted\":0}", send("DELETE", "/songs/1", null));
+        assertEquals("[{\"song_id\":2,\"title\":\"Something\",\"duration\":182,\"track_number\":2,\"album_id\":1}]",
+                get("/albums/1/songs").body());
+    }
+
+    @Test
+    void badRequestsGetClientErrors() throws Exception {
+        assertResponse(404, "{\"error\":\"Not found\"}", get("/albums/99"));
+        assertResponse(404, "{\"error\":\"Not found\"}", get("/nothing"));
+        assertResponse(400, "{\"error\":\"'id' must be a number\"}", get("/albums/x"));
+        assertResponse(400, "{\"error\":\"limit must be between 1 and 1000\"}", get("/songs?limit=0"));
+        assertResponse(400, "{\"error\":\"Missing field 'name'\"}", send("POST", "/artists", "{\"genre\": \"Pop\"}"));
+        assertEquals(400, send("POST", "/artists", "{\"name\": ").statusCode());
+        assertResponse(405, "{\"error\":\"Method not allowed\"}", send("PATCH", "/artists", "{}"));
+        assertTrue(server.metrics().startsWith("Requests: 7,"), server.metrics());
+    }
+
+    @Test
+    void requestsOverTheLimitAreRejected() throws Exception {
+        MusicDBServer full = new MusicDBServer(0, 0, 10);
+        full.start();
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + full.port() + "/artists/1")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertResponse(503, "{\"error\":\"Server busy\"}", response);
+            assertEquals("1", response.headers().firstValue("Retry-After").orElseThrow());
+        } finally {
+            full.stop(0);
+        }
+    }
+
+    @Test
+    void stringsAreEscaped() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", MusicDBServer.quote("a\"b\\c\nd\u0001"));
+        assertEquals("null", MusicDBServer.quote(null));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryLanesTest {
+    // Counts forever, until interrupted
+    private static final String ENDLESS_SQL =
+            "WITH RECURSIVE n(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM n) SELECT COUNT(*) FROM n";
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private static long endless(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement(); var rs = stmt.executeQuery(ENDLESS_SQL)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    void runningQueryIsInterruptedAtItsDeadline() {
+        long start = System.nanoTime();
+        SQLTimeoutException e = assertThrows(SQLTimeoutException.class,
+                () -> QueryLanes.submit(QueryLanes.Lane.ANALYTICAL, 200, QueryLanesTest::endless).get());
+        assertTrue(e.getMessage().contains("ANALYTICAL"), e.getMessage());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    void queuedWorkIsDroppedWhenCancelled() throws Exception {
+        // Occupy every analytical thread so the next execution waits in the queue
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        List<QueryLanes.Execution<Integer>> busy = new ArrayList<>();
+        for (int i = 0; i < QueryLanes.Lane.ANALYTICAL.threads; i++) {
+            busy.add(QueryLanes.submit(QueryLanes.Lane.ANALYTICAL, 60_000, conn -> {
+                release.join();
+                return 0;
+            }));
+        }
+        boolean[] ran = new boolean[1];
+        QueryLanes.Execution<Integer> queued = QueryLanes.submit(QueryLanes.Lane.ANALYTICAL, 60_000, conn -> {
+            ran[0] = true;
+            return 1;
+        });
+        assertTrue(queued.cancel());
+        assertFalse(queued.cancel());
+        SQLException e = assertThrows(SQLException.class, queued::get);
+        assertEquals("Query cancelled", e.getMessage());
+
+        release.complete(null);
+        for (QueryLanes.Execution<Integer> execution : busy) {
+            assertEquals(0, execution.get());
+        }
+        assertFalse(ran[0]);
+    }
+
+    @Test
+    void listingSpanningSeveralPagesIsPrintedInOrder() throws SQLException {
+        DatabaseManager.write(conn -> {
+            for (int i = 0; i < 2500; i++) {
+                DatabaseManager.addSong(conn, "Track " + i, 300 + i % 7, i + 3, 2);
+            }
+            return null;
+        });
+        List<String> ascending = listed(false);
+        assertEquals(2504, ascending.size());
+        assertEquals(List.of("Something: 182s", "Blank Space: 231s", "Style: 231s", "Come Together: 259s"),
+                ascending.subList(0, 4));
+        assertEquals("Track 2498: 306s", ascending.get(2503));
+        List<Integer> durations = ascending.stream().map(QueryLanesTest::duration).toList();
+        assertEquals(durations.stream().sorted().toList(), durations);
+
+        List<Integer> descending = new ArrayList<>(listed(true).stream().map(QueryLanesTest::duration).toList());
+        Collections.reverse(descending);
+        assertEquals(durations, descending);
+    }
+
+    private static int duration(String line) {
+        return Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1, line.length() - 1));
+    }
+
+    private static List<String> listed(boolean descending) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            DatabaseManager.listSongsSortedByDuration(descending);
+        } finally {
+            System.setOut(console);
+        }
+        return bytes.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ResultCacheTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    // Changes the table behind the cache's back, without bumping its version
+    private static void renameAlbumsUntracked() throws SQLException {
+        DatabaseManager.write(conn -> {
+            try (var stmt = conn.createStatement()) {
+                return stmt.executeUpdate("UPDATE Album SET title = title || '!'");
+            }
+        });
+    }
+
+    private static List<String> titles(List<Album> albums) {
+        return albums.stream().map(Album::title).toList();
+    }
+
+    @Test
+    void repeatedQueryIsServedFromTheCache() throws SQLException {
+        List<Album> first = DatabaseManager.albumsByYear(1969);
+        long hits = ResultCache.stats().hits;
+        renameAlbumsUntracked();
+        assertSame(first, DatabaseManager.albumsByYear(1969));
+        assertEquals(hits + 1, ResultCache.stats().hits);
+        // Other parameters are another entry
+        assertEquals(List.of("1989!"), titles(DatabaseManager.albumsByYearRange(2000, 2020)));
+    }
+
+    @Test
+    void writeToATableInvalidatesItsResults() throws SQLException {
+        assertEquals(List.of("Abbey Road"), titles(DatabaseManager.albumsByYear(1969)));
+        assertEquals(List.of(new NamedCount("Abbey Road", 2), new NamedCount("1989", 2)),
+                DatabaseManager.songCountsPerAlbum());
+
+        DatabaseManager.write(conn -> DatabaseManager.addAlbum(conn, "Let It Be", 1969, 1));
+        assertEquals(List.of("Abbey Road", "Let It Be"), titles(DatabaseManager.albumsByYear(1969)));
+
+        // A song change reaches the counts, which read Song, but not the album listings
+        renameAlbumsUntracked();
+        DatabaseManager.write(conn -> DatabaseManager.addSong(conn, "Help!", 138, 3, 1));
+        assertEquals(List.of("Abbey Road", "Let It Be"), titles(DatabaseManager.albumsByYear(1969)));
+        assertEquals(3, DatabaseManager.songCountsPerAlbum().stream()
+                .filter(c -> c.name().equals("Abbey Road!")).findFirst().orElseThrow().count());
+    }
+
+    @Test
+    void pendingOperationIsTakenOnce() {
+        WorkloadRecorder.arguments(WorkloadOp.LIST_ALBUMS_BY_YEAR, 1969);
+        WorkloadRecorder.Pending pending = WorkloadRecorder.take(WorkloadOp.LIST_ALBUMS_BY_YEAR.stats);
+        assertEquals(WorkloadOp.LIST_ALBUMS_BY_YEAR, pending.op);
+        assertEquals(List.of(1969), List.of(pending.args));
+        assertNull(WorkloadRecorder.take(WorkloadOp.LIST_ALBUMS_BY_YEAR.stats));
+
+        WorkloadRecorder.arguments(WorkloadOp.LIST_ALBUMS_BY_YEAR, 1969);
+        assertNull(WorkloadRecorder.take(WorkloadOp.GET_ALBUM.stats));
+        assertEquals(WorkloadOp.LIST_ALBUMS_BY_YEAR, WorkloadRecorder.take(WorkloadOp.LIST_ALBUMS_BY_YEAR.stats).op);
+    }
+}
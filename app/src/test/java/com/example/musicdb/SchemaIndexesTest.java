@@ -0,0 +1,74 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SchemaIndexesTest {
+    @TempDir
+    Path dir;
+
+    private Connection conn;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("music.db"));
+        SchemaMigrations.migrate(conn);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        conn.close();
+    }
+
+    private List<String> indexes() throws SQLException {
+        return CatalogQueries.list(conn, "SELECT name || ':' || sql FROM sqlite_master "
+                + "WHERE type = 'index' AND name LIKE 'idx\\_%' ESCAPE '\\' ORDER BY name", rs -> rs.getString(1));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    @Test
+    void migratedSchemaHasEveryIndex() throws SQLException {
+        assertEquals(SchemaIndexes.INDEXES.size(), indexes().size());
+        assertEquals(0, SchemaIndexes.ensureIndexes(conn));
+    }
+
+    @Test
+    void indexesAreBroughtInLineWithTheList() throws SQLException {
+        List<String> wanted = indexes();
+        execute("DROP INDEX idx_song_duration");
+        execute("DROP INDEX idx_album_year");
+        execute("CREATE INDEX idx_album_year ON Album(release_year)");
+        execute("CREATE INDEX idx_unlisted ON Song(title)");
+        // One created, one recreated (dropped and created) and one dropped
+        assertEquals(4, SchemaIndexes.ensureIndexes(conn));
+        assertEquals(wanted, indexes());
+    }
+
+    @Test
+    void everyQueryPlanUsesAnIndex() throws SQLException {
+        assertEquals(0, QueryPlanCheck.run(conn));
+    }
+
+    @Test
+    void missingIndexFailsThePlanCheck() throws SQLException {
+        execute("DROP INDEX idx_song_duration");
+        // Both listings and both keyset pages over (duration, song_id)
+        assertEquals(4, QueryPlanCheck.run(conn));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigrationsTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("music.db"));
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static List<Integer> versions(Connection conn) throws SQLException {
+        return CatalogQueries.list(conn, "SELECT version FROM schema_version ORDER BY version", rs -> rs.getInt(1));
+    }
+
+    private static boolean hasIndex(Connection conn, String name) throws SQLException {
+        return !CatalogQueries.list(conn, "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = ?",
+                rs -> rs.getInt(1), name).isEmpty();
+    }
+
+    private static List<Integer> allVersions() {
+        return IntStream.rangeClosed(1, SchemaMigrations.LATEST).boxed().toList();
+    }
+
+    @Test
+    void newDatabaseIsMigratedOnce() throws SQLException {
+        try (Connection conn = open()) {
+            assertEquals(0, SchemaMigrations.currentVersion(conn));
+            assertEquals(SchemaMigrations.LATEST, SchemaMigrations.migrate(conn));
+            assertEquals(allVersions(), versions(conn));
+
+            // Nothing runs again on an up-to-date database, so a dropped index stays dropped
+            execute(conn, "DROP INDEX idx_song_duration");
+            assertEquals(SchemaMigrations.LATEST, SchemaMigrations.migrate(conn));
+            assertEquals(allVersions(), versions(conn));
+            assertFalse(hasIndex(conn, "idx_song_duration"));
+        }
+    }
+
+    @Test
+    void interruptedMigrationRunsAgain() throws SQLException {
+        try (Connection conn = open()) {
+            SchemaMigrations.migrate(conn);
+            execute(conn, "DROP INDEX idx_song_duration");
+            // As if the process died after the index migration but before its version row
+            execute(conn, "DELETE FROM schema_version WHERE version >= 2");
+            assertEquals(1, SchemaMigrations.currentVersion(conn));
+            assertEquals(SchemaMigrations.LATEST, SchemaMigrations.migrate(conn));
+            assertTrue(hasIndex(conn, "idx_song_duration"));
+            assertEquals(allVersions(), versions(conn));
+        }
+    }
+
+    @Test
+    void unversionedDatabaseKeepsItsRows() throws SQLException {
+        try (Connection conn = open()) {
+            execute(conn, "CREATE TABLE Artist (artist_id INTEGER PRIMARY KEY, name TEXT NOT NULL, "
+                    + "genre TEXT, biography TEXT)");
+            execute(conn, "INSERT INTO Artist (artist_id, name, genre, biography) "
+                    + "VALUES (1, 'The Beatles', 'Rock', '')");
+            assertEquals(0, SchemaMigrations.currentVersion(conn));
+            assertEquals(SchemaMigrations.LATEST, SchemaMigrations.migrate(conn));
+            assertEquals(List.of("The Beatles"),
+                    CatalogQueries.list(conn, "SELECT name FROM Artist", rs -> rs.getString(1)));
+        }
+    }
+
+    @Test
+    void startupSkipsAnUpToDateDatabase() {
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        assertTrue(startup().contains("Migrated schema from version 0 to " + SchemaMigrations.LATEST + "."));
+        assertEquals("", startup());
+    }
+
+    private static String startup() {
+        PrintStream console = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            DatabaseManager.createTables();
+        } finally {
+            System.setOut(console);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
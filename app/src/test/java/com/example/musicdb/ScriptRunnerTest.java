@@ -0,0 +1,130 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptRunnerTest {
+    @TempDir
+    Path dir;
+
+    // Failed commands of the last script
+    private int failed;
+
+    @BeforeEach
+    void openCatalog() {
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    // The output lines with the timings left out
+    private List<String> script(boolean json, int batch, boolean continueOnError, String... lines)
+            throws IOException, SQLException {
+        StringWriter out = new StringWriter();
+        failed = ScriptRunner.run(new BufferedReader(new StringReader(String.join("\n", lines))),
+                new PrintWriter(out), json, batch, continueOnError);
+        return out.toString().lines()
+                .map(l -> l.replaceAll("\t(ok|error)\t\\d+\t", "\t$1\t").replaceAll(",\"micros\":\\d+", ""))
+                .toList();
+    }
+
+    private static List<String> songTitles(int albumId) throws SQLException {
+        return DatabaseManager.getSongsByAlbum(albumId).stream().map(Song::title).toList();
+    }
+
+    @Test
+    void wordsAreSplitOnTabsOrQuotedSpaces() {
+        assertEquals(List.of("add-song", "Come Together", "259"), ScriptRunner.split("add-song\tCome Together\t259"));
+        assertEquals(List.of("add-artist", "Guns N' Roses", "Say \"hi\"", ""),
+                ScriptRunner.split("add-artist  \"Guns N' Roses\" \"Say \\\"hi\\\"\" \"\""));
+        assertThrows(IllegalArgumentException.class, () -> ScriptRunner.split("search \"open"));
+    }
+
+    @Test
+    void resultsAreWrittenAsTsv() throws Exception {
+        List<String> out = script(false, 1, false,
+                "# comments and blank lines are skipped",
+                "",
+                "add-song \"Here Comes the Sun\" 185 3 1",
+                "update-album-title 2 \"AC\\\\DC\"",
+                "songs-per-album");
+        // Backslashes, tabs and line breaks in values are escaped
+        assertEquals(List.of(
+                "3\tadd-song\tok\t5",
+                "4\tupdate-album-title\tok\t1",
+                "5\tsongs-per-album\trow\tAbbey Road\t3",
+                "5\tsongs-per-album\trow\tAC\\\\DC\t2",
+                "5\tsongs-per-album\tok\t2"), out);
+        assertEquals(0, failed);
+        assertEquals("AC\\DC", DatabaseManager.getAlbum(2).title());
+    }
+
+    @Test
+    void resultsAreWrittenAsJsonLines() throws Exception {
+        List<String> out = script(true, 1, true, "albums-by-year 1969", "delete-song x", "frobnicate");
+        assertEquals(List.of(
+                "{\"line\":1,\"command\":\"albums-by-year\",\"status\":\"ok\",\"rows\":"
+                        + "[{\"albumId\":1,\"title\":\"Abbey Road\",\"releaseYear\":1969,\"artistId\":1}]}",
+                "{\"line\":2,\"command\":\"delete-song\",\"status\":\"error\",\"error\":\"'x' is not a number\"}",
+                "{\"line\":3,\"command\":\"frobnicate\",\"status\":\"error\","
+                        + "\"error\":\"Unknown command 'frobnicate'; try help\"}"), out);
+        assertEquals(2, failed);
+    }
+
+    @Test
+    void failureStopsTheScriptAndRollsBackTheBatch() throws Exception {
+        List<String> out = script(false, 2, false,
+                "add-song One 100 3 1",
+                "add-song Two 100 4 1",
+                "add-song Three 100 5 1",
+                "add-song Four",
+                "add-song Five 100 6 1");
+        assertEquals(4, out.size());
+        assertEquals("4\tadd-song\terror\tUsage: add-song TITLE DURATION TRACK ALBUM_ID", out.get(3));
+        assertEquals(1, failed);
+        // The first batch of two committed; Three was still open
+        assertEquals(List.of("Come Together", "Something", "One", "Two"), songTitles(1));
+    }
+
+    @Test
+    void continuingPastAFailureUndoesOnlyThatCommand() throws Exception {
+        DatabaseManager.write(conn -> {
+            try (var stmt = conn.createStatement()) {
+                stmt.execute("CREATE TRIGGER no_sevens BEFORE INSERT ON Song WHEN new.duration = 7 "
+                        + "BEGIN SELECT RAISE(ABORT, 'no sevens'); END");
+            }
+            return null;
+        });
+        List<String> out = script(false, 1, true,
+                "begin", "add-song One 100 3 1", "add-song Seven 7 4 1", "add-song Two 100 5 1", "commit",
+                "begin", "add-song Three 100 6 1", "rollback",
+                "begin", "add-song Four 100 7 1");
+        assertTrue(out.get(2).startsWith("3\tadd-song\terror\t"), out.get(2));
+        assertTrue(out.get(2).endsWith("(no sevens)"), out.get(2));
+        assertEquals("5\tcommit\tok\t2", out.get(4));
+        assertEquals("8\trollback\tok\t1", out.get(7));
+        assertEquals(1, failed);
+        // The script ended inside begin, so Four is rolled back too
+        assertEquals(List.of("Come Together", "Something", "One", "Two"), songTitles(1));
+    }
+}
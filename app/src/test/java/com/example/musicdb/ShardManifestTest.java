@@ -0,0 +1,45 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardManifestTest {
+
+    @Test
+    void parsesRangesAndSingleBuckets() {
+        assertArrayEquals(new int[] {0, 1, 2, 3, 8, 10, 11}, ShardManifest.parseBuckets("0-3,8,10-11"));
+    }
+
+    @Test
+    void ignoresSpacesAndEmptyParts() {
+        assertArrayEquals(new int[] {5, 6, 9}, ShardManifest.parseBuckets(" 5 - 6 ,, 9 ,"));
+        assertArrayEquals(new int[0], ShardManifest.parseBuckets(""));
+    }
+
+    @Test
+    void rejectsBucketsOutsideTheRange() {
+        assertThrows(IllegalArgumentException.class, () -> ShardManifest.parseBuckets("60-64"));
+        assertThrows(IllegalArgumentException.class, () -> ShardManifest.parseBuckets("7-3"));
+        assertThrows(IllegalArgumentException.class, () -> ShardManifest.parseBuckets("x"));
+    }
+
+    @Test
+    void formatsRunsAsRanges() {
+        assertEquals("0-3,8,10-11", ShardManifest.formatBuckets(new int[] {0, 1, 2, 3, 8, 10, 11}));
+        assertEquals("63", ShardManifest.formatBuckets(new int[] {63}));
+        assertEquals("", ShardManifest.formatBuckets(new int[0]));
+    }
+
+    @Test
+    void formatAndParseRoundTrip() {
+        int[] all = IntStream.range(0, ShardManifest.BUCKETS).toArray();
+        assertEquals("0-63", ShardManifest.formatBuckets(all));
+        int[] odd = IntStream.range(0, ShardManifest.BUCKETS).filter(b -> b % 2 == 1).toArray();
+        assertArrayEquals(odd, ShardManifest.parseBuckets(ShardManifest.formatBuckets(odd)));
+    }
+}
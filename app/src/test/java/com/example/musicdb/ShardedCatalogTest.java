@@ -0,0 +1,70 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardedCatalogTest {
+
+    // A row of one shard: the sort key and the shard it came from
+    private record Row(int key, int shard) {
+    }
+
+    private static final Comparator<Row> BY_KEY = Comparator.comparingInt(Row::key);
+
+    private static Iterator<Row> shard(int shard, int... keys) {
+        List<Row> rows = new ArrayList<>();
+        for (int key : keys) {
+            rows.add(new Row(key, shard));
+        }
+        return rows.iterator();
+    }
+
+    private static List<Row> drain(Iterator<Row> it) {
+        List<Row> rows = new ArrayList<>();
+        it.forEachRemaining(rows::add);
+        return rows;
+    }
+
+    @Test
+    void mergesSortedShardsInOrder() {
+        List<Row> merged = drain(ShardedCatalog.merge(
+                List.of(shard(0, 1, 4, 9), shard(1, 2, 3, 10), shard(2, 5)), BY_KEY));
+        assertEquals(List.of(1, 2, 3, 4, 5, 9, 10), merged.stream().map(Row::key).toList());
+    }
+
+    @Test
+    void tiesGoToTheLowerShard() {
+        List<Row> merged = drain(ShardedCatalog.merge(List.of(shard(0, 7, 7), shard(1, 7), shard(2, 6, 7)), BY_KEY));
+        assertEquals(List.of(new Row(6, 2), new Row(7, 0), new Row(7, 0), new Row(7, 1), new Row(7, 2)), merged);
+    }
+
+    @Test
+    void mergesInReverseOrder() {
+        List<Row> merged = drain(ShardedCatalog.merge(
+                List.of(shard(0, 9, 4, 1), shard(1, 10, 3, 2)), BY_KEY.reversed()));
+        assertEquals(List.of(10, 9, 4, 3, 2, 1), merged.stream().map(Row::key).toList());
+    }
+
+    @Test
+    void unorderedMergeConcatenatesShards() {
+        List<Row> merged = drain(ShardedCatalog.merge(List.of(shard(0, 3, 1), shard(1), shard(2, 2)), null));
+        assertEquals(List.of(new Row(3, 0), new Row(1, 0), new Row(2, 2)), merged);
+    }
+
+    @Test
+    void emptyShardsMergeToNothing() {
+        Iterator<Row> merged = ShardedCatalog.merge(List.of(shard(0), shard(1)), BY_KEY);
+        assertFalse(merged.hasNext());
+        assertThrows(NoSuchElementException.class, merged::next);
+        assertFalse(ShardedCatalog.merge(List.<Iterator<Row>>of(), BY_KEY).hasNext());
+    }
+}
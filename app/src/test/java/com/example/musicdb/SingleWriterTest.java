@@ -0,0 +1,144 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleWriterTest {
+    @TempDir
+    Path dir;
+
+    private String url;
+    private SingleWriter writer;
+
+    @BeforeEach
+    void openWriter() throws SQLException {
+        url = "jdbc:sqlite:" + dir.resolve("wal.db");
+        writer = new SingleWriter(url, List.of("journal_mode = WAL", "busy_timeout = 5000"), 4, 0, "PASSIVE");
+        writer.execute(conn -> update(conn, "CREATE TABLE Counter (n INTEGER)")
+                + update(conn, "INSERT INTO Counter VALUES (0)"));
+    }
+
+    @AfterEach
+    void closeWriter() {
+        writer.close();
+    }
+
+    private static int update(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate(sql);
+        }
+    }
+
+    private static int counter(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT n FROM Counter")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void writesFromManyThreadsRunOneAtATime() throws Exception {
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    // Read, then write: lost updates if two writes interleaved
+                    CompletableFuture<Integer> result = writer.submit(conn -> {
+                        int n = counter(conn);
+                        return update(conn, "UPDATE Counter SET n = " + (n + 1));
+                    });
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(1, result.get());
+        }
+        assertEquals(200, writer.execute(SingleWriterTest::counter));
+        assertEquals(0, writer.stats().failures);
+    }
+
+    @Test
+    void failedWorkLeavesNoTransactionOpen() throws SQLException {
+        SQLException failure = new SQLException("rejected");
+        SQLException thrown = assertThrows(SQLException.class, () -> writer.execute(conn -> {
+            conn.setAutoCommit(false);
+            update(conn, "UPDATE Counter SET n = 42");
+            throw failure;
+        }));
+        assertSame(failure, thrown);
+        assertTrue(writer.execute(Connection::getAutoCommit));
+        assertEquals(0, writer.execute(SingleWriterTest::counter));
+        assertEquals(1, writer.stats().failures);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> writer.submit(conn -> Integer.parseInt("x")).get());
+        assertInstanceOf(NumberFormatException.class, e.getCause());
+    }
+
+    @Test
+    void nestedWriteRunsOnTheWriterThread() throws SQLException {
+        int n = writer.execute(conn -> {
+            update(conn, "UPDATE Counter SET n = 7");
+            return writer.execute(SingleWriterTest::counter);
+        });
+        assertEquals(7, n);
+    }
+
+    @Test
+    void readersAreNotBlockedByAnOpenWrite() throws Exception {
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        CompletableFuture<Integer> write = writer.submit(conn -> {
+            conn.setAutoCommit(false);
+            update(conn, "UPDATE Counter SET n = 1");
+            started.complete(null);
+            release.join();
+            conn.commit();
+            return 1;
+        });
+        started.get();
+        try (Connection reader = DriverManager.getConnection(url)) {
+            // The reader sees the last commit while the write is in progress
+            assertEquals(0, counter(reader));
+            release.complete(null);
+            assertEquals(1, write.get());
+            assertEquals(1, counter(reader));
+        }
+    }
+
+    @Test
+    void closedWriterRejectsWork() throws Exception {
+        writer.close();
+        assertEquals(1, writer.stats().checkpoints);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> writer.submit(conn -> 1).get());
+        assertEquals("Writer is closed", e.getCause().getMessage());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SongSnapshotTest {
+    @TempDir
+    Path dir;
+
+    private Connection conn;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("music.db"));
+        SchemaMigrations.migrate(conn);
+        execute("INSERT INTO Album (album_id, title, release_year, artist_id) VALUES "
+                + "(1, 'Abbey Road', 1969, 1), (2, '1989', 2014, 2)");
+        execute("INSERT INTO Song (song_id, title, duration, track_number, album_id) VALUES "
+                + "(1, 'Come Together', 259, 1, 1), (2, 'Something', 182, 2, 1), "
+                + "(3, 'Blank Space', 231, 1, 2), (4, 'Style', 231, 2, 2), (5, 'Stray', NULL, NULL, 9)");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        conn.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private static List<Integer> ids(SongSnapshot snapshot, int[] rows) {
+        return Arrays.stream(rows).map(snapshot::songId).boxed().toList();
+    }
+
+    private static List<Integer> ids(List<Song> songs) {
+        return songs.stream().map(Song::songId).toList();
+    }
+
+    @Test
+    void columnsAnswerTheAnalytics() throws SQLException {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            SongSnapshot snapshot = SongSnapshot.load(conn, offHeap);
+            assertEquals(5, snapshot.size());
+            assertEquals(new Song(4, "Style", 231, 2, 2), snapshot.song(3));
+            // NULL reads as 0
+            assertEquals(new Song(5, "Stray", 0, 0, 9), snapshot.song(4));
+
+            assertEquals(List.of(5, 2, 3, 4, 1), ids(snapshot, snapshot.rowsByDuration(false)));
+            assertEquals(List.of(1, 4, 3, 2, 5), ids(snapshot, snapshot.rowsByDuration(true)));
+            assertEquals(List.of(1, 4), ids(snapshot.topByDuration(2, true)));
+            assertEquals(List.of(5, 2, 3), ids(snapshot.topByDuration(3, false)));
+            assertArrayEquals(new int[] {2, 3, 4}, snapshot.songIdsWithDuration(100, 240));
+            assertArrayEquals(new long[] {1, 1, 3, 0}, snapshot.durationHistogram(100, 4));
+            // The last bucket takes everything longer
+            assertArrayEquals(new long[] {1, 4}, snapshot.durationHistogram(100, 2));
+            assertThrows(IllegalArgumentException.class, () -> snapshot.durationHistogram(0, 4));
+            // The song of the missing album 9 is not counted
+            assertEquals(List.of(new AlbumTotal(1, "Abbey Road", 2, 441), new AlbumTotal(2, "1989", 2, 462)),
+                    snapshot.albumTotals());
+        }
+    }
+
+    @Test
+    void refreshMergesOnlyTheChanges() throws SQLException {
+        SongSnapshot before = SongSnapshot.load(conn, false);
+        assertSame(before, before.refresh(conn));
+
+        execute("INSERT INTO Song (song_id, title, duration, track_number, album_id) VALUES (6, 'Help!', 138, 3, 1)");
+        execute("UPDATE Song SET title = 'Shake It Off', duration = 219 WHERE song_id = 4");
+        execute("DELETE FROM Song WHERE song_id = 5");
+        execute("UPDATE Album SET title = 'Red' WHERE album_id = 2");
+        SongSnapshot after = before.refresh(conn);
+
+        assertEquals(5, before.size());
+        assertEquals("Style", before.title(3));
+        assertEquals(List.of(1, 2, 3, 4, 6), ids(after, IntStream.range(0, after.size()).toArray()));
+        assertEquals(new Song(4, "Shake It Off", 219, 2, 2), after.song(3));
+        assertEquals(List.of(6, 2, 4, 3, 1), ids(after, after.rowsByDuration(false)));
+        assertEquals(List.of(new AlbumTotal(1, "Abbey Road", 3, 579), new AlbumTotal(2, "Red", 2, 450)),
+                after.albumTotals());
+        assertSame(after, after.refresh(conn));
+    }
+
+    @Test
+    void refreshMatchesAFreshLoad() throws SQLException {
+        Random random = new Random(42);
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO Song (song_id, title, duration, track_number, album_id) VALUES (?, ?, ?, 1, ?)")) {
+            for (int id = 10; id < 3000; id++) {
+                ps.setInt(1, id);
+                ps.setString(2, "Song " + random.nextInt(500));
+                ps.setInt(3, random.nextInt(600));
+                ps.setInt(4, 1 + random.nextInt(2));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        SongSnapshot snapshot = SongSnapshot.load(conn, true);
+        // A few changes are merged; most of the table changing is loaded again
+        for (String change : new String[] {"UPDATE Song SET duration = duration + 1 WHERE song_id % 97 = 0",
+                "UPDATE Song SET album_id = 2, title = 'Moved' WHERE song_id % 3 = 0 OR song_id % 5 = 0"}) {
+            execute(change);
+            snapshot = snapshot.refresh(conn);
+            SongSnapshot fresh = SongSnapshot.load(conn, false);
+            assertEquals(ids(fresh, fresh.rowsByDuration(true)), ids(snapshot, snapshot.rowsByDuration(true)));
+            assertEquals(fresh.topByDuration(25, false), snapshot.topByDuration(25, false));
+            assertEquals(fresh.albumTotals(), snapshot.albumTotals());
+            assertEquals(fresh.song(fresh.size() - 1), snapshot.song(snapshot.size() - 1));
+        }
+    }
+}
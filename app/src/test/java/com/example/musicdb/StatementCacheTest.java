@@ -0,0 +1,115 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementCacheTest {
+    private static final String SELECT_SQL = "SELECT n FROM Numbers WHERE n >= ? ORDER BY n";
+
+    private Connection conn;
+    private StatementCache cache;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE Numbers (n INTEGER)");
+            stmt.execute("INSERT INTO Numbers VALUES (1), (2), (3)");
+        }
+        cache = new StatementCache(conn, 2);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        cache.close();
+        conn.close();
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        return cache.prepare(conn, new Object[] {sql});
+    }
+
+    // The driver's statement behind a cached handle
+    private static PreparedStatement underlying(PreparedStatement handle) throws SQLException {
+        return handle.unwrap(PreparedStatement.class);
+    }
+
+    @Test
+    void closedStatementIsReused() throws SQLException {
+        PreparedStatement first = prepare(SELECT_SQL);
+        PreparedStatement statement = underlying(first);
+        first.close();
+        PreparedStatement second = prepare(SELECT_SQL);
+        assertNotSame(first, second);
+        assertSame(statement, underlying(second));
+        assertFalse(statement.isClosed());
+        second.close();
+    }
+
+    @Test
+    void statementInUseIsPreparedUncached() throws SQLException {
+        try (PreparedStatement outer = prepare(SELECT_SQL);
+             PreparedStatement inner = prepare(SELECT_SQL)) {
+            assertNotSame(underlying(outer), underlying(inner));
+        }
+    }
+
+    @Test
+    void closingReleasesResultSetAndParameters() throws SQLException {
+        PreparedStatement handle = prepare(SELECT_SQL);
+        handle.setInt(1, 2);
+        handle.setFetchSize(1);
+        ResultSet rs = handle.executeQuery();
+        assertTrue(rs.next());
+        handle.close();
+        assertTrue(rs.isClosed());
+        assertTrue(handle.isClosed());
+        assertThrows(SQLException.class, () -> handle.setInt(1, 1));
+
+        try (PreparedStatement again = prepare(SELECT_SQL)) {
+            assertEquals(0, again.getFetchSize());
+            // A cleared parameter binds as NULL, which matches no row
+            try (ResultSet rows = again.executeQuery()) {
+                assertFalse(rows.next());
+            }
+        }
+    }
+
+    @Test
+    void releaseAllReturnsUnclosedStatements() throws SQLException {
+        PreparedStatement forgotten = prepare(SELECT_SQL);
+        PreparedStatement statement = underlying(forgotten);
+        cache.releaseAll();
+        assertTrue(forgotten.isClosed());
+        try (PreparedStatement next = prepare(SELECT_SQL)) {
+            assertSame(statement, underlying(next));
+        }
+    }
+
+    @Test
+    void evictedStatementClosesWhenReleased() throws SQLException {
+        PreparedStatement held = prepare("SELECT 1");
+        PreparedStatement statement = underlying(held);
+        prepare("SELECT 2").close();
+        prepare("SELECT 3").close();
+        // Evicted while checked out, so it stays open for its borrower
+        assertFalse(statement.isClosed());
+        held.close();
+        assertTrue(statement.isClosed());
+    }
+}
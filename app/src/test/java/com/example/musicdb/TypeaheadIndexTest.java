@@ -0,0 +1,94 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeaheadIndexTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    private static List<String> names(String prefix) throws SQLException {
+        return TypeaheadIndex.complete(prefix, 10).stream().map(TypeaheadIndex.Completion::name).toList();
+    }
+
+    private static String script(boolean continueOnError, String... lines) throws IOException, SQLException {
+        StringWriter out = new StringWriter();
+        ScriptRunner.run(new BufferedReader(new StringReader(String.join("\n", lines))), new PrintWriter(out),
+                false, 1, continueOnError);
+        return out.toString();
+    }
+
+    @Test
+    void completesFoldedNamesInOrder() throws SQLException {
+        DatabaseManager.write(conn -> DatabaseManager.addArtist(conn, "Beyoncé", "Pop", ""));
+        DatabaseManager.write(conn -> DatabaseManager.addAlbum(conn, "Beyond", 2001, 1));
+        assertEquals(List.of("Beyoncé", "Beyond"), names("BEYON"));
+        assertEquals(List.of("Come Together"), names("come"));
+        assertEquals(List.of(), names("zzz"));
+    }
+
+    @Test
+    void committedChangesAreListed() throws SQLException {
+        names("");
+        int albumId = DatabaseManager.write(conn -> DatabaseManager.addAlbum(conn, "Help!", 1965, 1));
+        assertEquals(List.of("Help!"), names("help"));
+        DatabaseManager.write(conn -> DatabaseManager.updateAlbumTitle(conn, albumId, "Rubber Soul"));
+        assertEquals(List.of(), names("help"));
+        assertEquals(List.of("Rubber Soul"), names("rubber"));
+        DatabaseManager.write(conn -> DatabaseManager.deleteAlbumById(conn, albumId));
+        assertEquals(List.of(), names("rubber"));
+    }
+
+    @Test
+    void rolledBackInsertIsNotListed() throws Exception {
+        names("");
+        script(false, "begin", "add-artist Zed Rock Bio", "rollback");
+        assertEquals(List.of(), names("zed"));
+        script(false, "begin", "add-artist Zed Rock Bio", "commit");
+        assertEquals(List.of("Zed"), names("zed"));
+    }
+
+    @Test
+    void failedCascadeInsideATransactionKeepsItsRows() throws Exception {
+        names("");
+        DatabaseManager.write(conn -> {
+            try (var stmt = conn.createStatement()) {
+                stmt.execute("CREATE TRIGGER keep_artists BEFORE DELETE ON Artist "
+                        + "BEGIN SELECT RAISE(ABORT, 'artists are kept'); END");
+            }
+            return null;
+        });
+        // The albums and songs are deleted before the artist fails, then rolled back to the savepoint
+        String out = script(true, "begin", "delete-artist 1", "add-artist Zed Rock Bio", "commit");
+        assertTrue(out.contains("artists are kept"), out);
+        assertEquals(List.of("Abbey Road"), names("abbey"));
+        assertEquals(List.of("Come Together"), names("come"));
+        assertEquals(List.of("Zed"), names("zed"));
+    }
+}
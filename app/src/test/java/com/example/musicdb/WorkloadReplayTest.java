@@ -0,0 +1,164 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkloadReplayTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void openCatalog() {
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        DatabaseManager.shutdown();
+    }
+
+    // Written the way WorkloadRecorder lays out an entry
+    private static void entry(DataOutputStream out, WorkloadOp op, long startMicros, long latencyNanos, boolean ok,
+                              Object... args) throws IOException {
+        out.writeByte(op.code);
+        varLong(out, startMicros);
+        varLong(out, latencyNanos);
+        out.writeByte(ok ? 0 : 1);
+        for (int i = 0; i < args.length; i++) {
+            switch (op.argTypes.charAt(i)) {
+                case 'i':
+                    int v = (Integer) args[i];
+                    varLong(out, ((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+                    break;
+                case 'b':
+                    out.writeByte((Boolean) args[i] ? 1 : 0);
+                    break;
+                default:
+                    if (args[i] == null) {
+                        varLong(out, 0);
+                    } else {
+                        byte[] bytes = ((String) args[i]).getBytes(StandardCharsets.UTF_8);
+                        varLong(out, bytes.length + 1L);
+                        out.write(bytes);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static void varLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static List<String> describe(List<WorkloadRecorder.Entry> entries) {
+        return entries.stream().map(e -> e.op() + Arrays.toString(e.args())).toList();
+    }
+
+    @Test
+    void recordingIsReadBackUpToATruncatedEntry() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(WorkloadRecorder.MAGIC);
+        out.writeInt(WorkloadRecorder.VERSION);
+        out.writeLong(System.currentTimeMillis());
+        entry(out, WorkloadOp.TYPEAHEAD, 1500, 42_000, true, -1, "Beyoncé", 10);
+        entry(out, WorkloadOp.ADD_ARTIST, 3_000_000, 7_000_000_000L, false, "Zed", null, "");
+        entry(out, WorkloadOp.SONGS_BY_DURATION_PAGE, 4_000_000, 1, true, true, 231, Integer.MIN_VALUE, 20);
+        // A crash in the middle of an entry
+        out.writeByte(WorkloadOp.GET_ALBUM.code);
+        out.writeByte(0x80);
+        Path file = dir.resolve("workload.rec");
+        Files.write(file, bytes.toByteArray());
+
+        List<WorkloadRecorder.Entry> entries = WorkloadRecorder.read(file);
+        assertEquals(List.of("TYPEAHEAD[-1, Beyoncé, 10]", "ADD_ARTIST[Zed, null, ]",
+                "SONGS_BY_DURATION_PAGE[true, 231, -2147483648, 20]"), describe(entries));
+        assertEquals(1_500_000, entries.get(0).startNanos());
+        assertEquals(42_000, entries.get(0).latencyNanos());
+        assertTrue(entries.get(0).ok());
+        assertEquals(7_000_000_000L, entries.get(1).latencyNanos());
+        assertFalse(entries.get(1).ok());
+
+        // The recorded calls run again against the catalog
+        Page<?> page = (Page<?>) entries.get(2).op().run(entries.get(2).args());
+        assertEquals(List.of(1, 4, 3, 2), page.items().stream().map(s -> ((Song) s).songId()).toList());
+        entries.get(1).op().run(entries.get(1).args());
+        assertEquals("Zed", DatabaseManager.getArtist(3).name());
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = dir.resolve("workload.rec");
+        Files.write(file, "not a recording".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> WorkloadRecorder.read(file));
+    }
+
+    @Test
+    void syntheticMixStaysWithinTheCatalog() throws SQLException {
+        List<WorkloadRecorder.Entry> reads = WorkloadReplay.synthetic(500, 0, 7);
+        assertEquals(describe(reads), describe(WorkloadReplay.synthetic(500, 0, 7)));
+        for (WorkloadRecorder.Entry entry : reads) {
+            int id = (Integer) entry.args()[0];
+            switch (entry.op()) {
+                case GET_ALBUM, GET_SONGS_BY_ALBUM, GET_ARTIST -> assertTrue(id == 1 || id == 2, entry.toString());
+                case LIST_ALBUMS_BY_YEAR -> assertTrue(id >= 1969 && id <= 2014, entry.toString());
+                case SONG_PAGE -> assertTrue(id >= 0 && id < 4, entry.toString());
+                default -> throw new AssertionError("Unexpected " + entry);
+            }
+            entry.op().run(entry.args());
+        }
+
+        List<WorkloadRecorder.Entry> writes = WorkloadReplay.synthetic(20, 100, 7);
+        for (WorkloadRecorder.Entry entry : writes) {
+            assertEquals(WorkloadOp.ADD_SONG, entry.op());
+            entry.op().run(entry.args());
+        }
+        assertEquals(4 + 20, DatabaseManager.getSongsByAlbum(1).size() + DatabaseManager.getSongsByAlbum(2).size());
+    }
+
+    @Test
+    void reportListsOnlyTheOperationsThatRan() {
+        Map<WorkloadOp, WorkloadReplay.Results> results = new EnumMap<>(WorkloadOp.class);
+        for (WorkloadOp op : WorkloadOp.values()) {
+            results.put(op, new WorkloadReplay.Results());
+        }
+        WorkloadReplay.Results album = results.get(WorkloadOp.GET_ALBUM);
+        album.latency.record(1_000_000);
+        album.latency.record(3_000_000);
+        album.errors.incrementAndGet();
+        album.busy.incrementAndGet();
+
+        String[] lines = WorkloadReplay.report(results, 1_000_000_000L).split("\\R");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("Operation"));
+        assertArrayEquals(new String[] {"getAlbum", "2", "2", "50.00", "50.00"},
+                Arrays.copyOf(lines[1].trim().split("\\s+"), 5));
+        assertTrue(lines[2].startsWith("total"));
+    }
+}
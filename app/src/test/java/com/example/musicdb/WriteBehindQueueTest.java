@@ -0,0 +1,112 @@
+package com.example.musicdb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+    @TempDir
+    Path dir;
+
+    private WriteBehindQueue queue;
+
+    @BeforeEach
+    void openCatalog() {
+        DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + dir.resolve("music.db"));
+        DatabaseManager.createTables();
+        DatabaseManager.populateData();
+    }
+
+    @AfterEach
+    void closeCatalog() {
+        if (queue != null) {
+            queue.close();
+        }
+        DatabaseManager.shutdown();
+    }
+
+    private static List<String> artists() throws SQLException {
+        return DatabaseManager.write(conn -> CatalogQueries.list(conn,
+                "SELECT name FROM Artist WHERE artist_id > 2 ORDER BY artist_id", rs -> rs.getString(1)));
+    }
+
+    private CompletableFuture<Integer> addArtist(String name) {
+        return queue.submit(conn -> DatabaseManager.addArtist(conn, name, "Rock", ""));
+    }
+
+    @Test
+    void queuedWritesCommitTogether() throws Exception {
+        // A long delay keeps the group open until the flush barrier ends it
+        queue = new WriteBehindQueue(100, 50, 5_000);
+        List<CompletableFuture<Integer>> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(addArtist("Band " + i));
+        }
+        queue.flush();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(3 + i, ids.get(i).get());
+        }
+        assertEquals(10, artists().size());
+        WriteBehindQueue.Stats stats = queue.stats();
+        assertEquals(10, stats.operations);
+        assertEquals(1, stats.commits);
+        assertEquals(0, stats.failedCommits);
+    }
+
+    @Test
+    void groupsAreCappedAtTheBatchSize() throws Exception {
+        queue = new WriteBehindQueue(100, 3, 5_000);
+        for (int i = 0; i < 7; i++) {
+            addArtist("Band " + i);
+        }
+        queue.flush();
+        assertEquals(7, artists().size());
+        assertEquals(3, queue.stats().largestBatch);
+        assertTrue(queue.stats().commits >= 3);
+    }
+
+    @Test
+    void failedWriteIsRolledBackAlone() throws Exception {
+        queue = new WriteBehindQueue(100, 50, 5_000);
+        CompletableFuture<Integer> first = addArtist("First");
+        CompletableFuture<Integer> failed = queue.submit(conn -> {
+            DatabaseManager.addArtist(conn, "Failed", "Rock", "");
+            throw new SQLException("rejected");
+        });
+        CompletableFuture<Integer> last = addArtist("Last");
+        queue.flush();
+
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertEquals("rejected", e.getCause().getMessage());
+        assertEquals(List.of("First", "Last"), artists());
+        assertEquals(3, first.get());
+        assertTrue(last.get() > 3);
+        WriteBehindQueue.Stats stats = queue.stats();
+        assertEquals(1, stats.failedOperations);
+        assertEquals(1, stats.commits);
+    }
+
+    @Test
+    void closeCommitsQueuedWritesAndRejectsNewOnes() throws Exception {
+        queue = new WriteBehindQueue(100, 50, 200);
+        CompletableFuture<Integer> queued = addArtist("Queued");
+        queue.close();
+        assertEquals(3, queued.get());
+        assertEquals(List.of("Queued"), artists());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> addArtist("Late").get());
+        assertEquals("Write-behind queue is closed", e.getCause().getMessage());
+    }
+}
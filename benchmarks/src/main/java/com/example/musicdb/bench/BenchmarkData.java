@@ -0,0 +1,139 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.DatabaseManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Generated benchmark catalogs.
+ *
+ * Each scale is generated once into -Dmusicdb.bench.dir (default "bench-data")
+ * and reused by later runs. The catalog has ten songs per album and five albums
+ * per artist; names, release years and durations are derived from the row number
+ * so that every run sees the same data.
+ */
+public final class BenchmarkData {
+    public static final int SONGS_PER_ALBUM = 10;
+    public static final int ALBUMS_PER_ARTIST = 5;
+    public static final int FIRST_YEAR = 1950;
+    public static final int YEARS = 75;
+
+    private static final int ROWS_PER_TRANSACTION = 500_000;
+
+    private BenchmarkData() {
+    }
+
+    public static int albums(int songs) {
+        return Math.max(1, songs / SONGS_PER_ALBUM);
+    }
+
+    public static int artists(int songs) {
+        return Math.max(1, albums(songs) / ALBUMS_PER_ARTIST);
+    }
+
+    /**
+     * Returns the pristine catalog for the given number of songs, generating it if needed.
+     */
+    public static synchronized Path catalog(int songs) {
+        Path dir = Paths.get(System.getProperty("musicdb.bench.dir", "bench-data"));
+        Path file = dir.resolve("music-" + songs + ".db");
+        if (Files.exists(file)) {
+            return file;
+        }
+        try {
+            Files.createDirectories(dir);
+            Path partial = dir.resolve("music-" + songs + ".db.partial");
+            Files.deleteIfExists(partial);
+            generate(partial, songs);
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not generate benchmark catalog: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copies the pristine catalog to a scratch file that benchmarks may modify.
+     */
+    public static Path scratchCopy(int songs) {
+        try {
+            Path copy = Files.createTempFile("musicdb-bench-" + songs + "-", ".db");
+            Files.copy(catalog(songs), copy, StandardCopyOption.REPLACE_EXISTING);
+            copy.toFile().deleteOnExit();
+            return copy;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static String url(Path file) {
+        return "jdbc:sqlite:" + file.toAbsolutePath();
+    }
+
+    private static void generate(Path file, int songs) throws SQLException {
+        int albums = albums(songs);
+        int artists = artists(songs);
+        System.out.printf("Generating benchmark catalog %s: %,d artists, %,d albums, %,d songs%n",
+                file, artists, albums, songs);
+        long start = System.nanoTime();
+
+        DatabaseManager.setDatabaseUrl(url(file));
+        DatabaseManager.createTables();
+        try {
+            DatabaseManager.write(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    // Nothing else reads this file until generation has finished
+                    stmt.execute("PRAGMA journal_mode = OFF");
+                    stmt.execute("PRAGMA synchronous = OFF");
+                }
+                conn.setAutoCommit(false);
+                insertRange(conn, "INSERT INTO Artist (artist_id, name, genre, biography) "
+                        + "SELECT n, 'Artist ' || n, 'Genre ' || (n % 20), 'Generated artist ' || n FROM seq",
+                        artists);
+                insertRange(conn, "INSERT INTO Album (album_id, title, release_year, artist_id) "
+                        + "SELECT n, 'Album ' || n, " + FIRST_YEAR + " + (n % " + YEARS + "), "
+                        + "((n - 1) / " + ALBUMS_PER_ARTIST + ") % " + artists + " + 1 FROM seq",
+                        albums);
+                insertRange(conn, "INSERT INTO Song (song_id, title, duration, track_number, album_id) "
+                        + "SELECT n, 'Song ' || n, 60 + (n * 7919) % 540, (n - 1) % " + SONGS_PER_ALBUM + " + 1, "
+                        + "((n - 1) / " + SONGS_PER_ALBUM + ") % " + albums + " + 1 FROM seq",
+                        songs);
+                conn.setAutoCommit(true);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("ANALYZE");
+                }
+                return null;
+            });
+        } finally {
+            DatabaseManager.shutdown();
+        }
+        System.out.printf("Generated in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Runs an INSERT ... SELECT over n = 1..count, committing every ROWS_PER_TRANSACTION rows.
+     */
+    private static void insertRange(Connection conn, String insertFromSeq, int count) throws SQLException {
+        String sql = "WITH RECURSIVE seq(n) AS (SELECT ? UNION ALL SELECT n + 1 FROM seq WHERE n < ?) "
+                + insertFromSeq;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int from = 1; from <= count; from += ROWS_PER_TRANSACTION) {
+                pstmt.setInt(1, from);
+                pstmt.setInt(2, Math.min(count, from + ROWS_PER_TRANSACTION - 1));
+                pstmt.executeUpdate();
+                conn.commit();
+            }
+        }
+    }
+}
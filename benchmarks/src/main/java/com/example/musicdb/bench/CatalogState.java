@@ -0,0 +1,68 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.DatabaseManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Points DatabaseManager at a generated catalog of the requested size.
+ * Read-only benchmarks share the pristine file; mutating benchmarks get a scratch copy.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+    @Param({"10000", "1000000", "10000000"})
+    public int songs;
+
+    public int albums;
+    public int artists;
+
+    protected boolean mutates() {
+        return false;
+    }
+
+    @Setup(Level.Trial)
+    public void open() {
+        albums = BenchmarkData.albums(songs);
+        artists = BenchmarkData.artists(songs);
+        DatabaseManager.setDatabaseUrl(BenchmarkData.url(
+                mutates() ? BenchmarkData.scratchCopy(songs) : BenchmarkData.catalog(songs)));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        DatabaseManager.shutdown();
+    }
+
+    public int randomSongId() {
+        return ThreadLocalRandom.current().nextInt(songs) + 1;
+    }
+
+    public int randomAlbumId() {
+        return ThreadLocalRandom.current().nextInt(albums) + 1;
+    }
+
+    public int randomArtistId() {
+        return ThreadLocalRandom.current().nextInt(artists) + 1;
+    }
+
+    public int randomYear() {
+        return BenchmarkData.FIRST_YEAR + ThreadLocalRandom.current().nextInt(BenchmarkData.YEARS);
+    }
+
+    /**
+     * Catalog state for benchmarks that insert, update or delete rows.
+     */
+    @State(Scope.Benchmark)
+    public static class Mutable extends CatalogState {
+        @Override
+        protected boolean mutates() {
+            return true;
+        }
+    }
+}
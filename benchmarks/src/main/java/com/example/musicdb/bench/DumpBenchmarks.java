@@ -0,0 +1,180 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.Album;
+import com.example.musicdb.Artist;
+import com.example.musicdb.BulkImporter;
+import com.example.musicdb.CatalogDump;
+import com.example.musicdb.CatalogQueries;
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.Song;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * CatalogDump export, cold open and import, with the BulkImporter CSV load of
+ * the same catalog as the baseline for importing into an empty database.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DumpBenchmarks {
+
+    /**
+     * The catalog exported once as a dump and as CSV files.
+     */
+    @State(Scope.Benchmark)
+    public static class Exported {
+        @Param({"10000", "1000000", "10000000"})
+        public int songs;
+
+        Path dir;
+        Path dumpFile;
+        CatalogDump dump;
+
+        @Setup(Level.Trial)
+        public void export() throws IOException, SQLException {
+            dir = Files.createTempDirectory("musicdb-dump-");
+            dumpFile = dir.resolve("catalog.mdb");
+            DatabaseManager.setDatabaseUrl(BenchmarkData.url(BenchmarkData.catalog(songs)));
+            try (Connection conn = DatabaseManager.getConnection()) {
+                dump = CatalogDump.export(conn, dumpFile);
+            }
+            // IDs in the generated catalog are dense, so the CSV loads reproduce them
+            writeCsv(dir.resolve("artists.csv"), "artist_id,name,genre,biography", CatalogQueries.artists(),
+                    (Artist a) -> Arrays.asList(a.artistId(), a.name(), a.genre(), a.biography()));
+            writeCsv(dir.resolve("albums.csv"), "album_id,title,release_year,artist_id", CatalogQueries.albums(),
+                    (Album a) -> Arrays.asList(a.albumId(), a.title(), a.releaseYear(), a.artistId()));
+            writeCsv(dir.resolve("songs.csv"), "song_id,title,duration,track_number,album_id", CatalogQueries.songs(),
+                    (Song s) -> Arrays.asList(s.songId(), s.title(), s.duration(), s.trackNumber(), s.albumId()));
+            DatabaseManager.shutdown();
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteFiles() throws IOException {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                    Files.deleteIfExists(it.next());
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+
+        private static <T> void writeCsv(Path file, String header, Stream<T> rows, Function<T, List<Object>> fields)
+                throws IOException {
+            try (rows; PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+                out.println(header);
+                for (Iterator<T> it = rows.iterator(); it.hasNext(); ) {
+                    StringBuilder line = new StringBuilder();
+                    for (Object field : fields.apply(it.next())) {
+                        line.append(line.length() == 0 ? "" : ",");
+                        if (field != null) {
+                            line.append('"').append(field.toString().replace("\"", "\"\"")).append('"');
+                        }
+                    }
+                    out.println(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * An empty database, created before each invocation, to import into.
+     */
+    @State(Scope.Benchmark)
+    public static class Target {
+        Path file;
+
+        @Setup(Level.Invocation)
+        public void create(Exported exported) throws IOException {
+            file = Files.createTempFile(exported.dir, "target-", ".db");
+            DatabaseManager.setDatabaseUrl(BenchmarkData.url(file));
+            DatabaseManager.createTables();
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            DatabaseManager.shutdown();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * The catalog to export, and a path for the dump.
+     */
+    @State(Scope.Benchmark)
+    public static class Source extends CatalogState {
+        Path dumpFile;
+
+        @Setup(Level.Trial)
+        public void createPath() throws IOException {
+            dumpFile = Files.createTempFile("musicdb-export-", ".mdb");
+        }
+
+        @TearDown(Level.Trial)
+        public void deletePath() throws IOException {
+            Files.deleteIfExists(dumpFile);
+        }
+    }
+
+    @Benchmark
+    public CatalogDump export(Source source) throws IOException, SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return CatalogDump.export(conn, source.dumpFile);
+        }
+    }
+
+    /**
+     * Opening (and checksumming) a dump and reading one column of every song.
+     */
+    @Benchmark
+    public long openAndSumDurations(Exported exported) throws IOException {
+        CatalogDump dump = CatalogDump.open(exported.dumpFile);
+        long total = 0;
+        for (int row = 0; row < dump.songCount(); row++) {
+            total += dump.songDuration(row);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public List<BulkImporter.Result> importDump(Exported exported, Target target) throws SQLException {
+        return DatabaseManager.write(conn -> exported.dump.importInto(conn, 1000, 50_000));
+    }
+
+    @Benchmark
+    public List<BulkImporter.Result> importCsv(Exported exported, Target target) throws IOException, SQLException {
+        BulkImporter importer = new BulkImporter(1000, 50_000);
+        List<BulkImporter.Result> results = new ArrayList<>();
+        results.add(importer.importArtists(exported.dir.resolve("artists.csv")));
+        results.add(importer.importAlbums(exported.dir.resolve("albums.csv")));
+        results.add(importer.importSongs(exported.dir.resolve("songs.csv")));
+        return results;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.Metrics;
+import com.example.musicdb.OperationStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording one call in the operation metrics, alone and from four
+ * threads at once. gc.alloc.rate.norm should stay at zero.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmarks {
+    private final OperationStats op = Metrics.operation("benchmark");
+
+    @Benchmark
+    public void recordSuccess() {
+        op.success(System.nanoTime() - 250_000, 10);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordSuccessContended() {
+        op.success(System.nanoTime() - 250_000, 10);
+    }
+}
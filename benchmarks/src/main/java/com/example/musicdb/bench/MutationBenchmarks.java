@@ -0,0 +1,123 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.DatabaseManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-row inserts, updates and deletes, each in its own autocommit
+ * transaction, run against a scratch copy of the catalog.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationBenchmarks {
+    static final int WRITE_BEHIND_OPS = 100;
+
+    /**
+     * A song inserted before each invocation, so every delete removes a real row.
+     */
+    @State(Scope.Thread)
+    public static class SongVictim {
+        int songId;
+
+        @Setup(Level.Invocation)
+        public void insert(CatalogState.Mutable state) throws SQLException {
+            songId = DatabaseManager.write(conn ->
+                    DatabaseManager.addSong(conn, "Doomed song", 180, 1, state.randomAlbumId()));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AlbumVictim {
+        int albumId;
+
+        @Setup(Level.Invocation)
+        public void insert(CatalogState.Mutable state) throws SQLException {
+            albumId = DatabaseManager.write(conn ->
+                    DatabaseManager.addAlbum(conn, "Doomed album", 2000, state.randomArtistId()));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ArtistVictim {
+        int artistId;
+
+        @Setup(Level.Invocation)
+        public void insert(CatalogState.Mutable state) throws SQLException {
+            artistId = DatabaseManager.write(conn ->
+                    DatabaseManager.addArtist(conn, "Doomed artist", "Test", null));
+        }
+    }
+
+    @Benchmark
+    public int addArtist(CatalogState.Mutable state) throws SQLException {
+        return DatabaseManager.write(conn ->
+                DatabaseManager.addArtist(conn, "Benchmark artist", "Rock", "Inserted by JMH"));
+    }
+
+    @Benchmark
+    public int addAlbum(CatalogState.Mutable state) throws SQLException {
+        return DatabaseManager.write(conn ->
+                DatabaseManager.addAlbum(conn, "Benchmark album", state.randomYear(), state.randomArtistId()));
+    }
+
+    @Benchmark
+    public int addSong(CatalogState.Mutable state) throws SQLException {
+        return DatabaseManager.write(conn ->
+                DatabaseManager.addSong(conn, "Benchmark song", 200, 1, state.randomAlbumId()));
+    }
+
+    /**
+     * The addSong insert through the write-behind queue: queues WRITE_BEHIND_OPS
+     * songs, then waits for their group commits.
+     */
+    @Benchmark
+    @OperationsPerInvocation(WRITE_BEHIND_OPS)
+    public int addSongWriteBehind(CatalogState.Mutable state) throws SQLException {
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < WRITE_BEHIND_OPS; i++) {
+            last = DatabaseManager.addSongAsync("Benchmark song", 200, 1, state.randomAlbumId());
+        }
+        DatabaseManager.flushWrites();
+        return last.join();
+    }
+
+    @Benchmark
+    public int updateAlbumTitle(CatalogState.Mutable state) throws SQLException {
+        int albumId = state.randomAlbumId();
+        return DatabaseManager.write(conn ->
+                DatabaseManager.updateAlbumTitle(conn, albumId, "Album " + albumId));
+    }
+
+    @Benchmark
+    public int deleteSongById(CatalogState.Mutable state, SongVictim victim) throws SQLException {
+        return DatabaseManager.write(conn -> DatabaseManager.deleteSongById(conn, victim.songId));
+    }
+
+    @Benchmark
+    public int deleteAlbumById(CatalogState.Mutable state, AlbumVictim victim) throws SQLException {
+        return DatabaseManager.write(conn -> DatabaseManager.deleteAlbumById(conn, victim.albumId));
+    }
+
+    @Benchmark
+    public int deleteArtistById(CatalogState.Mutable state, ArtistVictim victim) throws SQLException {
+        return DatabaseManager.write(conn -> DatabaseManager.deleteArtistById(conn, victim.artistId));
+    }
+}
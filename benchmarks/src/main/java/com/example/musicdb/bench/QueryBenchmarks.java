@@ -0,0 +1,81 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.Album;
+import com.example.musicdb.CatalogQueries;
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.Page;
+import com.example.musicdb.Song;
+import com.example.musicdb.SongTitle;
+import com.example.musicdb.SongWithAlbum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups, searches and paged listings; each operation borrows a pooled
+ * connection the way the application does. The result cache is off, so the
+ * pages measure the query; see ResultCacheBenchmarks for the cached path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dmusicdb.resultCache.maxRows=0")
+public class QueryBenchmarks {
+    private static final int PAGE_SIZE = 100;
+
+    @Benchmark
+    public List<SongWithAlbum> listSongsByArtist(CatalogState state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.songsByArtist(conn, "Artist " + state.randomArtistId());
+        }
+    }
+
+    @Benchmark
+    public List<SongTitle> searchSongsByTitle(CatalogState state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.searchSongsByTitle(conn, "Song " + state.randomSongId());
+        }
+    }
+
+    @Benchmark
+    public List<Album> listAlbumsByYear(CatalogState state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.albumsByYear(conn, state.randomYear());
+        }
+    }
+
+    @Benchmark
+    public List<Album> listAlbumsByYearRange(CatalogState state) throws SQLException {
+        int start = state.randomYear();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.albumsByYearRange(conn, start, start + 2);
+        }
+    }
+
+    @Benchmark
+    public Page<Song> songsSortedByDurationFirstPage(CatalogState state) throws SQLException {
+        return CatalogQueries.songsByDurationPage(false, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<Song> songsSortedByDurationSeekPage(CatalogState state) throws SQLException {
+        // Resume after a random row, as page N of a long listing would
+        Song after = new Song(state.randomSongId(), null, 60 + state.randomSongId() % 540, 0, 0);
+        return CatalogQueries.songsByDurationPage(false, after, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<Album> albumsSortedByYearFirstPage(CatalogState state) throws SQLException {
+        return CatalogQueries.albumsByReleaseYearPage(true, null, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.Album;
+import com.example.musicdb.CatalogQueries;
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.NamedCount;
+import com.example.musicdb.Page;
+import com.example.musicdb.Song;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates, year ranges and duration pages with the result cache
+ * (resultCache=100000 rows) and without it (resultCache=0). The *AfterWrite
+ * benchmarks change a table the result depends on before every read, so
+ * every read misses; they show the cost of a miss and of the version checks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultCacheBenchmarks {
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * The catalog, opened with the requested result cache limit.
+     */
+    @State(Scope.Benchmark)
+    public static class Cached extends CatalogState.Mutable {
+        @Param({"0", "100000"})
+        public int resultCache;
+
+        // Runs as the inherited trial setup
+        @Override
+        public void open() {
+            System.setProperty("musicdb.resultCache.maxRows", String.valueOf(resultCache));
+            super.open();
+        }
+    }
+
+    @Benchmark
+    public List<NamedCount> countSongsPerAlbum(Cached state) throws SQLException {
+        return DatabaseManager.songCountsPerAlbum();
+    }
+
+    @Benchmark
+    public List<Album> listAlbumsByYearRange(Cached state) throws SQLException {
+        int start = state.randomYear();
+        return DatabaseManager.albumsByYearRange(start, start + 2);
+    }
+
+    @Benchmark
+    public Page<Song> songsSortedByDurationFirstPage(Cached state) throws SQLException {
+        return CatalogQueries.songsByDurationPage(false, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Album> listAlbumsByYearRangeAfterWrite(Cached state) throws SQLException {
+        int albumId = state.randomAlbumId();
+        DatabaseManager.write(conn -> DatabaseManager.updateAlbumTitle(conn, albumId, "Album " + albumId));
+        int start = state.randomYear();
+        return DatabaseManager.albumsByYearRange(start, start + 2);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.Album;
+import com.example.musicdb.CatalogQueries;
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.NamedCount;
+import com.example.musicdb.Song;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Whole-catalog aggregates and complete sorted listings. These read every row,
+ * so they report time per operation rather than throughput.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ScanBenchmarks {
+
+    @Benchmark
+    public List<NamedCount> countSongsPerAlbum(CatalogState state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.songCountsPerAlbum(conn);
+        }
+    }
+
+    @Benchmark
+    public List<NamedCount> countAlbumsPerArtist(CatalogState state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.albumCountsPerArtist(conn);
+        }
+    }
+
+    @Benchmark
+    public void listSongsSortedByDuration(CatalogState state, Blackhole bh) throws SQLException {
+        try (Stream<Song> songs = CatalogQueries.songsByDuration(true)) {
+            songs.forEach(bh::consume);
+        }
+    }
+
+    @Benchmark
+    public void listAlbumsSortedByYear(CatalogState state, Blackhole bh) throws SQLException {
+        try (Stream<Album> albums = CatalogQueries.albumsByReleaseYear(false)) {
+            albums.forEach(bh::consume);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.MusicDBServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives MusicDBServer with many concurrent HTTP requests and reports throughput,
+ * latency percentiles and response codes.
+ *
+ * By default it starts the server in-process on a scratch copy of a generated
+ * catalog; pass --url to test a running server instead. Options:
+ * --songs N (catalog size, 100000), --requests N (50000), --concurrency N (2000),
+ * --writes PERCENT (5) and --url http://host:port.
+ */
+public final class ServerLoadTest {
+    private ServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int songs = Integer.parseInt(options.getOrDefault("songs", "100000"));
+        int total = Integer.parseInt(options.getOrDefault("requests", "50000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "2000"));
+        int writePercent = Integer.parseInt(options.getOrDefault("writes", "5"));
+
+        MusicDBServer server = null;
+        String base = options.get("url");
+        if (base == null) {
+            DatabaseManager.setDatabaseUrl(BenchmarkData.url(BenchmarkData.scratchCopy(songs)));
+            server = new MusicDBServer(0, Integer.getInteger("musicdb.server.maxConcurrent", 64),
+                    Long.getLong("musicdb.server.queueTimeoutMs", 10_000L));
+            server.start();
+            base = "http://localhost:" + server.port();
+        }
+        int albums = BenchmarkData.albums(songs);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[total];
+
+        System.out.printf("Sending %,d requests to %s, %,d at a time%n", total, base, concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            inFlight.acquire();
+            HttpRequest request = nextRequest(base, albums, writePercent);
+            long sent = System.nanoTime();
+            int slot = i;
+            futures[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        latencies[slot] = System.nanoTime() - sent;
+                        String outcome = error != null ? error.getClass().getSimpleName()
+                                : String.valueOf(response.statusCode());
+                        outcomes.computeIfAbsent(outcome, k -> new AtomicInteger()).incrementAndGet();
+                        completed.incrementAndGet();
+                        inFlight.release();
+                        return null;
+                    });
+        }
+        CompletableFuture.allOf(futures).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%,d requests in %.2f s: %,.0f requests/sec%n", completed.get(), seconds, total / seconds);
+        System.out.printf("Latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), latencies[total - 1] / 1e6);
+        System.out.println("Responses: " + new TreeMap<>(outcomes));
+
+        if (server != null) {
+            System.out.print(server.metrics());
+            server.stop(5);
+        }
+    }
+
+    // Mostly the cheap indexed reads a catalog browser makes, plus a share of inserts
+    private static HttpRequest nextRequest(String base, int albums, int writePercent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int albumId = random.nextInt(albums) + 1;
+        if (random.nextInt(100) < writePercent) {
+            String body = "{\"title\": \"Load test song\", \"duration\": 200, \"track_number\": 1, \"album_id\": "
+                    + albumId + "}";
+            return HttpRequest.newBuilder(URI.create(base + "/songs"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+        String path;
+        switch (random.nextInt(5)) {
+            case 0:
+                path = "/albums/" + albumId;
+                break;
+            case 1:
+                path = "/albums/" + albumId + "/songs";
+                break;
+            case 2:
+                path = "/albums/by-year?year=" + (BenchmarkData.FIRST_YEAR + random.nextInt(BenchmarkData.YEARS));
+                break;
+            case 3:
+                path = "/songs?limit=20&after=" + random.nextInt(albums * BenchmarkData.SONGS_PER_ALBUM);
+                break;
+            default:
+                path = "/artists/" + ((albumId - 1) / BenchmarkData.ALBUMS_PER_ARTIST + 1);
+                break;
+        }
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
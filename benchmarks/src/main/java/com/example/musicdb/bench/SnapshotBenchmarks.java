@@ -0,0 +1,85 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.AlbumTotal;
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.Song;
+import com.example.musicdb.SongSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ScanBenchmarks workloads answered from the columnar SongSnapshot instead
+ * of SQLite, plus the cost of loading and of refreshing it with no changes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SnapshotBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Loaded {
+        @Param({"false", "true"})
+        public boolean offHeap;
+
+        SongSnapshot snapshot;
+
+        @Setup(Level.Trial)
+        public void load(CatalogState catalog) throws SQLException {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                snapshot = SongSnapshot.load(conn, offHeap);
+            }
+        }
+    }
+
+    @Benchmark
+    public SongSnapshot load(CatalogState catalog, Loaded loaded) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return SongSnapshot.load(conn, loaded.offHeap);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public SongSnapshot refreshUnchanged(CatalogState catalog, Loaded loaded) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return loaded.snapshot.refresh(conn);
+        }
+    }
+
+    @Benchmark
+    public int[] sortByDuration(CatalogState catalog, Loaded loaded) {
+        return loaded.snapshot.rowsByDuration(true);
+    }
+
+    @Benchmark
+    public List<Song> top100ByDuration(CatalogState catalog, Loaded loaded) {
+        return loaded.snapshot.topByDuration(100, true);
+    }
+
+    @Benchmark
+    public long[] durationHistogram(CatalogState catalog, Loaded loaded) {
+        return loaded.snapshot.durationHistogram(30, 20);
+    }
+
+    @Benchmark
+    public List<AlbumTotal> albumTotals(CatalogState catalog, Loaded loaded) {
+        return loaded.snapshot.albumTotals();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.Album;
+import com.example.musicdb.CatalogQueries;
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.Page;
+import com.example.musicdb.Song;
+import com.example.musicdb.SongWithAlbum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short queries and an insert with the per-connection statement cache
+ * (statementCache=64) and with a fresh prepare on every call (statementCache=0).
+ * Every parameter combination runs in its own fork, so the size is set before
+ * the cache is first used.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementCacheBenchmarks {
+    private static final int PAGE_SIZE = 10;
+
+    /**
+     * The catalog, opened with the requested statement cache size.
+     */
+    @State(Scope.Benchmark)
+    public static class Cached extends CatalogState.Mutable {
+        @Param({"0", "64"})
+        public int statementCache;
+
+        // Runs as the inherited trial setup
+        @Override
+        public void open() {
+            System.setProperty("musicdb.statementCache.size", String.valueOf(statementCache));
+            super.open();
+        }
+    }
+
+    @Benchmark
+    public List<SongWithAlbum> listSongsByArtist(Cached state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.songsByArtist(conn, "Artist " + state.randomArtistId());
+        }
+    }
+
+    @Benchmark
+    public List<Album> listAlbumsByYear(Cached state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.albumsByYear(conn, state.randomYear());
+        }
+    }
+
+    @Benchmark
+    public Page<Song> songPage(Cached state) throws SQLException {
+        return CatalogQueries.songPage(new Song(state.randomSongId(), null, 0, 0, 0), PAGE_SIZE);
+    }
+
+    /**
+     * An insert rolled back instead of committed, so the fsync does not hide the prepare.
+     */
+    @Benchmark
+    public int addSongRolledBack(Cached state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                return DatabaseManager.addSong(conn, "Benchmark song", 200, 1, state.randomAlbumId());
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
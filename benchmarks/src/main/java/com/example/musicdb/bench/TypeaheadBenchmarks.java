@@ -0,0 +1,84 @@
+package com.example.musicdb.bench;
+
+import com.example.musicdb.DatabaseManager;
+import com.example.musicdb.FullTextSearch;
+import com.example.musicdb.SongTitle;
+import com.example.musicdb.SongWithAlbum;
+import com.example.musicdb.TypeaheadIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name completion from the in-memory typeahead index against the LIKE search
+ * a UI would otherwise issue per keystroke, and songs by artist ID against the
+ * join on the artist name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypeaheadBenchmarks {
+    private static final int LIMIT = 10;
+
+    /**
+     * The catalog with the typeahead index loaded before measuring.
+     */
+    @State(Scope.Benchmark)
+    public static class Loaded extends CatalogState {
+        @Setup(Level.Trial)
+        public void load() throws SQLException {
+            TypeaheadIndex.complete("", 1);
+        }
+
+        // A prefix of a song title, as typed so far
+        String songPrefix() {
+            return "song " + randomSongId() / 100;
+        }
+    }
+
+    @Benchmark
+    public List<TypeaheadIndex.Completion> completeSongTitle(Loaded state) throws SQLException {
+        return TypeaheadIndex.complete(FullTextSearch.KIND_SONG, state.songPrefix(), LIMIT);
+    }
+
+    @Benchmark
+    public List<TypeaheadIndex.Completion> completeAnyName(Loaded state) throws SQLException {
+        return TypeaheadIndex.complete("Artist " + state.randomArtistId() / 10, LIMIT);
+    }
+
+    @Benchmark
+    public List<SongTitle> searchSongTitleLike(Loaded state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.searchSongsByTitle(conn, state.songPrefix());
+        }
+    }
+
+    @Benchmark
+    public List<SongWithAlbum> songsByArtistName(Loaded state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.songsByArtist(conn, "Artist " + state.randomArtistId());
+        }
+    }
+
+    @Benchmark
+    public List<SongWithAlbum> songsByArtistId(Loaded state) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.songsByArtist(conn, state.randomArtistId());
+        }
+    }
+}